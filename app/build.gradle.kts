@@ -14,6 +14,9 @@ android {
         versionName = "1.0"
 
         testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+
+        // Asset to load, e.g. -Ppothole.model=model_int8.tflite for a quantized variant in src/main/assets
+        buildConfigField("String", "MODEL_FILE", "\"${project.findProperty("pothole.model") ?: "model.tflite"}\"")
     }
 
     buildTypes {
@@ -32,6 +35,18 @@ android {
     }
     buildFeatures {
         mlModelBinding = true
+        buildConfig = true
+    }
+    testOptions {
+        unitTests.all {
+            // QuantizedModelEvaluationTest only runs when pointed at a labelled image folder
+            for (name in listOf("pothole.eval.dir", "pothole.eval.quantModel", "pothole.eval.maxAccuracyDrop")) {
+                project.findProperty(name)?.let { value -> it.systemProperty(name, value) }
+            }
+            // The AAR only carries Android native libraries; point this at a desktop build of
+            // libtensorflowlite_jni (the same one bench uses as -Ptflite.libraryPath) to run it
+            project.findProperty("pothole.eval.jniDir")?.let { dir -> it.jvmArgs("-Djava.library.path=$dir") }
+        }
     }
 }
 
@@ -51,3 +66,53 @@ dependencies {
     androidTestImplementation(libs.ext.junit)
     androidTestImplementation(libs.espresso.core)
 }
+
+// Leaflet for map.html, bundled under src/main/assets/leaflet/ so the map opens without a network.
+// Builds only check the bundled scripts against the integrity hashes published for the release;
+// ./gradlew :app:vendorLeaflet (re)downloads the files, e.g. after changing leafletVersion.
+val leafletVersion = "1.9.4"
+val leafletDir = layout.projectDirectory.dir("src/main/assets/leaflet")
+val leafletIntegrity = mapOf(
+    "leaflet.js" to "sha256-20nQCchB9co0qIjJZRGuk2/Z9VM+kNiyxNV1lvTlZBo=",
+    "leaflet.css" to "sha256-p4NxAoJBhIIN+hmNHrzRCf9tD/miZyoHS5obTRR9BMY=",
+)
+val leafletImages = listOf("layers.png", "layers-2x.png", "marker-icon.png", "marker-icon-2x.png", "marker-shadow.png")
+
+fun checkLeafletFile(file: File, integrity: String) {
+    val digest = java.security.MessageDigest.getInstance("SHA-256").digest(file.readBytes())
+    val actual = "sha256-" + java.util.Base64.getEncoder().encodeToString(digest)
+    check(actual == integrity) { "$file is not Leaflet $leafletVersion ($actual)" }
+}
+
+val vendorLeaflet by tasks.registering {
+    group = "build setup"
+    description = "Downloads Leaflet $leafletVersion into the assets"
+    doLast {
+        for (name in leafletIntegrity.keys + leafletImages.map { "images/$it" }) {
+            val target = leafletDir.file(name).asFile
+            target.parentFile.mkdirs()
+            uri("https://unpkg.com/leaflet@$leafletVersion/dist/$name").toURL().openStream().use { input ->
+                target.outputStream().use { input.copyTo(it) }
+            }
+            leafletIntegrity[name]?.let { checkLeafletFile(target, it) }
+        }
+    }
+}
+
+val checkLeaflet by tasks.registering {
+    description = "Checks the bundled Leaflet files; never touches the network"
+    val files = leafletIntegrity.keys.map { leafletDir.file(it) }
+    inputs.files(files).optional()
+    doLast {
+        for ((name, integrity) in leafletIntegrity) {
+            val file = leafletDir.file(name).asFile
+            if (file.isFile) {
+                checkLeafletFile(file, integrity)
+            } else {
+                // MapResourceInterceptor downloads and pins it on first use instead
+                logger.warn("Leaflet $name is not bundled; run :app:vendorLeaflet and commit src/main/assets/leaflet/")
+            }
+        }
+    }
+}
+tasks.named("preBuild") { dependsOn(checkLeaflet) }
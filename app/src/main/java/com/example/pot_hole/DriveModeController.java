@@ -0,0 +1,334 @@
+package com.example.pot_hole;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.graphics.Bitmap;
+import android.graphics.SurfaceTexture;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Size;
+import android.view.Surface;
+import android.view.TextureView;
+import android.view.View;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.example.pot_hole.core.FrameThrottler;
+import com.example.pot_hole.core.InferenceScheduler;
+import com.example.pot_hole.core.PipelineMetrics;
+import com.example.pot_hole.core.PixelNormalizer;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * Drive mode: streams frames from an in-app camera preview into the inference scheduler.
+ * Frames are grabbed from the {@link TextureView} already scaled to the model input size,
+ * and the {@link FrameThrottler} decides which of them are worth classifying.
+ * All methods must be called on the main thread; the camera itself is only touched on its own
+ * thread, see {@link CameraSession}.
+ */
+public class DriveModeController implements TextureView.SurfaceTextureListener {
+
+    private static final String TAG = "DriveModeController";
+    private static final int MAX_PREVIEW_WIDTH = 1280;
+    private static final int MAX_PREVIEW_HEIGHT = 720;
+    // one frame being classified, one waiting in the scheduler queue
+    private static final int FRAME_POOL_SIZE = 2;
+
+    private final Context context;
+    private final TextureView textureView;
+    private final FrameThrottler throttler;
+    private final InferenceScheduler<Bitmap> scheduler;
+    private final PipelineMetrics metrics;
+
+    private final ArrayDeque<Bitmap> freeFrames = new ArrayDeque<>();
+    private final Set<Bitmap> streamFrames = Collections.newSetFromMap(new IdentityHashMap<Bitmap, Boolean>());
+
+    // the current camera, null while stopped
+    private CameraSession session;
+    private boolean running;
+
+    public DriveModeController(Context context, TextureView textureView, FrameThrottler throttler,
+                               InferenceScheduler<Bitmap> scheduler, PipelineMetrics metrics) {
+        this.context = context;
+        this.textureView = textureView;
+        this.throttler = throttler;
+        this.scheduler = scheduler;
+        this.metrics = metrics;
+        for (int i = 0; i < FRAME_POOL_SIZE; i++) {
+            Bitmap frame = Bitmap.createBitmap(PixelNormalizer.INPUT_SIZE, PixelNormalizer.INPUT_SIZE, Bitmap.Config.ARGB_8888);
+            freeFrames.add(frame);
+            streamFrames.add(frame);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        session = new CameraSession();
+        textureView.setVisibility(View.VISIBLE);
+        textureView.setSurfaceTextureListener(this);
+        if (textureView.isAvailable()) {
+            openCamera();
+        }
+    }
+
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        // closes on the camera thread, after an open still in flight has completed
+        CameraSession closing = session;
+        session = null;
+        closing.handler.post(closing::close);
+        textureView.setVisibility(View.GONE);
+        Log.d(TAG, "Drive mode stopped, classified " + throttler.getAcceptedCount() + " of " + throttler.getOfferedCount() + " frames");
+    }
+
+    /** True if {@code frame} came from the camera stream rather than a single capture. */
+    public boolean isStreamFrame(Bitmap frame) {
+        return streamFrames.contains(frame);
+    }
+
+    /** Returns a stream frame to the pool once the scheduler is done with it. */
+    public void releaseFrame(Bitmap frame) {
+        if (isStreamFrame(frame) && !freeFrames.contains(frame)) {
+            freeFrames.add(frame);
+        }
+    }
+
+    private void openCamera() {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            Log.e(TAG, "Camera permission not granted");
+            stop();
+            return;
+        }
+        CameraManager cameraManager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        try {
+            String cameraId = findBackCamera(cameraManager);
+            if (cameraId == null) {
+                Log.e(TAG, "No back-facing camera");
+                stop();
+                return;
+            }
+            Size previewSize = choosePreviewSize(cameraManager.getCameraCharacteristics(cameraId));
+            SurfaceTexture texture = textureView.getSurfaceTexture();
+            texture.setDefaultBufferSize(previewSize.getWidth(), previewSize.getHeight());
+            CameraSession opening = session;
+            opening.handler.post(() -> opening.open(cameraManager, cameraId, texture));
+        } catch (CameraAccessException e) {
+            Log.e(TAG, "Failed to open camera", e);
+            stop();
+        }
+    }
+
+    // Stops drive mode from the camera thread, unless it was already stopped or restarted
+    private void stopFrom(CameraSession failed) {
+        textureView.post(() -> {
+            if (session == failed) {
+                stop();
+            }
+        });
+    }
+
+    /**
+     * One camera thread and the camera opened on it. Its fields are only touched on that
+     * thread, so the device cannot be closed by stop() while it is being opened or configured.
+     */
+    private final class CameraSession {
+        final HandlerThread thread = new HandlerThread("drive-camera");
+        final Handler handler;
+        private CameraDevice device;
+        private CameraCaptureSession captureSession;
+        private boolean opening;
+        private boolean closed;
+
+        CameraSession() {
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        @SuppressLint("MissingPermission")
+        void open(CameraManager cameraManager, String cameraId, SurfaceTexture texture) {
+            if (closed) {
+                return;
+            }
+            try {
+                cameraManager.openCamera(cameraId, new CameraDevice.StateCallback() {
+                    @Override
+                    public void onOpened(@NonNull CameraDevice camera) {
+                        opening = false;
+                        if (closed) {
+                            // stopped while the camera was opening
+                            camera.close();
+                            thread.quitSafely();
+                            return;
+                        }
+                        device = camera;
+                        startPreview(new Surface(texture));
+                    }
+
+                    @Override
+                    public void onDisconnected(@NonNull CameraDevice camera) {
+                        lost(camera);
+                    }
+
+                    @Override
+                    public void onError(@NonNull CameraDevice camera, int error) {
+                        Log.e(TAG, "Camera error " + error);
+                        lost(camera);
+                    }
+                }, handler);
+                opening = true;
+            } catch (CameraAccessException | SecurityException e) {
+                Log.e(TAG, "Failed to open camera", e);
+                stopFrom(this);
+            }
+        }
+
+        private void lost(CameraDevice camera) {
+            opening = false;
+            camera.close();
+            device = null;
+            captureSession = null;
+            if (closed) {
+                thread.quitSafely();
+            } else {
+                stopFrom(this);
+            }
+        }
+
+        private void startPreview(Surface surface) {
+            try {
+                final CaptureRequest.Builder request = device.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+                request.addTarget(surface);
+                request.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+                device.createCaptureSession(Collections.singletonList(surface), new CameraCaptureSession.StateCallback() {
+                    @Override
+                    public void onConfigured(@NonNull CameraCaptureSession configured) {
+                        if (device == null) {
+                            configured.close();
+                            return;
+                        }
+                        captureSession = configured;
+                        try {
+                            configured.setRepeatingRequest(request.build(), null, handler);
+                        } catch (CameraAccessException e) {
+                            Log.e(TAG, "Failed to start preview", e);
+                        }
+                    }
+
+                    @Override
+                    public void onConfigureFailed(@NonNull CameraCaptureSession configured) {
+                        Log.e(TAG, "Preview session configuration failed");
+                    }
+                }, handler);
+            } catch (CameraAccessException e) {
+                Log.e(TAG, "Failed to create preview session", e);
+            }
+        }
+
+        void close() {
+            closed = true;
+            if (captureSession != null) {
+                captureSession.close();
+                captureSession = null;
+            }
+            if (device != null) {
+                device.close();
+                device = null;
+            }
+            // otherwise the thread is kept until onOpened can close the camera
+            if (!opening) {
+                thread.quitSafely();
+            }
+        }
+    }
+
+    private static String findBackCamera(CameraManager cameraManager) throws CameraAccessException {
+        for (String id : cameraManager.getCameraIdList()) {
+            Integer facing = cameraManager.getCameraCharacteristics(id).get(CameraCharacteristics.LENS_FACING);
+            if (facing != null && facing == CameraCharacteristics.LENS_FACING_BACK) {
+                return id;
+            }
+        }
+        return null;
+    }
+
+    private static Size choosePreviewSize(CameraCharacteristics characteristics) {
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        Size best = new Size(640, 480);
+        if (map == null) {
+            return best;
+        }
+        long bestArea = 0;
+        for (Size size : map.getOutputSizes(SurfaceTexture.class)) {
+            long area = (long) size.getWidth() * size.getHeight();
+            if (size.getWidth() <= MAX_PREVIEW_WIDTH && size.getHeight() <= MAX_PREVIEW_HEIGHT && area > bestArea) {
+                best = size;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void onSurfaceTextureAvailable(@NonNull SurfaceTexture surface, int width, int height) {
+        if (running) {
+            openCamera();
+        }
+    }
+
+    @Override
+    public void onSurfaceTextureSizeChanged(@NonNull SurfaceTexture surface, int width, int height) {
+    }
+
+    @Override
+    public boolean onSurfaceTextureDestroyed(@NonNull SurfaceTexture surface) {
+        stop();
+        return true;
+    }
+
+    @Override
+    public void onSurfaceTextureUpdated(@NonNull SurfaceTexture surface) {
+        if (!running || !throttler.offer(SystemClock.elapsedRealtimeNanos())) {
+            return;
+        }
+        Bitmap frame = freeFrames.poll();
+        if (frame == null) {
+            // both frames are still with the scheduler, skip this one
+            return;
+        }
+        // draws the current preview frame scaled into the pooled bitmap
+        long start = metrics.nowNanos();
+        textureView.getBitmap(frame);
+        metrics.recordSince(PipelineMetrics.Stage.CAPTURE, start);
+        if (scheduler.submit(frame)) {
+            metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+        } else {
+            releaseFrame(frame);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.pot_hole;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.example.pot_hole.core.PipelineMetrics;
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TensorQuantization;
+import com.example.pot_hole.core.TilePlanner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Turns camera bitmaps into model input tensors without per-frame allocations.
+ * Owns the scaled bitmap target, the pixel array and a small pool of direct input buffers,
+ * holding floats by default or one byte per channel for a quantized model.
+ * Full-resolution photos can instead be cut into a batch of tiles, see {@link #processTiles}.
+ */
+public class ImagePreprocessor {
+
+    private static final int SIZE = PixelNormalizer.INPUT_SIZE;
+
+    private final Bitmap scaledBitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+    private final Canvas scaledCanvas = new Canvas(scaledBitmap);
+    private final Paint scalePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Rect scaledRect = new Rect(0, 0, SIZE, SIZE);
+    private final int[] pixels = new int[PixelNormalizer.PIXEL_COUNT];
+    private final int poolSize;
+    private final PipelineMetrics metrics;
+
+    private final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<>();
+    // by identity: ByteBuffer.equals compares contents, and two black frames are equal
+    private final Set<ByteBuffer> buffersInUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    // float view over each pooled buffer, so filling it never copies; null values in quantized mode
+    private final Map<ByteBuffer, FloatBuffer> floatViews = new IdentityHashMap<>();
+    private byte[] quantizedLut;
+    // tiled photos: the photo's pixels and the batched input, grown to the largest seen
+    private int[] framePixels = new int[0];
+    private ByteBuffer batch;
+    private FloatBuffer batchFloats;
+
+    public ImagePreprocessor(int poolSize, PipelineMetrics metrics) {
+        this.poolSize = poolSize;
+        this.metrics = metrics;
+        allocatePool(PixelNormalizer.FLOAT_INPUT_BYTES);
+    }
+
+    /**
+     * Switches to uint8/int8 input for a quantized model, skipping float normalization.
+     * Must be called before the first {@link #process}.
+     */
+    public synchronized void useQuantizedInput(TensorQuantization quantization) {
+        quantizedLut = quantization.pixelLut();
+        allocatePool(PixelNormalizer.QUANTIZED_INPUT_BYTES);
+    }
+
+    /**
+     * Scales {@code bitmap} to the model input size and writes it into a pooled buffer.
+     * Returns null when every pooled buffer is in use; callers must {@link #release} the result.
+     */
+    public synchronized ByteBuffer process(Bitmap bitmap) {
+        ByteBuffer buffer = freeBuffers.poll();
+        if (buffer == null) {
+            return null;
+        }
+        buffersInUse.add(buffer);
+        long start = metrics.nowNanos();
+        Bitmap source = bitmap;
+        if (bitmap.getWidth() != SIZE || bitmap.getHeight() != SIZE || bitmap.getConfig() != Bitmap.Config.ARGB_8888) {
+            scaledCanvas.drawBitmap(bitmap, null, scaledRect, scalePaint);
+            source = scaledBitmap;
+        }
+        source.getPixels(pixels, 0, SIZE, 0, 0, SIZE, SIZE);
+        long scaled = metrics.nowNanos();
+        metrics.record(PipelineMetrics.Stage.SCALE, scaled - start);
+        if (quantizedLut != null) {
+            PixelNormalizer.toQuantizedRgb(pixels, quantizedLut, buffer);
+        } else {
+            PixelNormalizer.toFloatRgb(pixels, floatViews.get(buffer));
+        }
+        metrics.recordSince(PipelineMetrics.Stage.BUFFER_FILL, scaled);
+        return buffer;
+    }
+
+    /**
+     * Writes the tiles of {@code plan} cut from {@code bitmap} back to back into one buffer, for
+     * {@link TfliteModel#classifyBatch}. The buffer is reused by the next call.
+     */
+    public synchronized ByteBuffer processTiles(Bitmap bitmap, TilePlanner.Plan plan) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width != plan.frameWidth || height != plan.frameHeight) {
+            throw new IllegalArgumentException("Plan for " + plan.frameWidth + "x" + plan.frameHeight + ", got " + width + "x" + height);
+        }
+        if (framePixels.length < width * height) {
+            framePixels = new int[width * height];
+        }
+        bitmap.getPixels(framePixels, 0, width, 0, 0, width, height);
+        int tileBytes = quantizedLut != null ? PixelNormalizer.QUANTIZED_INPUT_BYTES : PixelNormalizer.FLOAT_INPUT_BYTES;
+        int bytes = plan.count() * tileBytes;
+        if (batch == null || batch.capacity() < bytes) {
+            batch = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            batchFloats = batch.asFloatBuffer();
+        }
+        for (int tile = 0; tile < plan.count(); tile++) {
+            long start = metrics.nowNanos();
+            plan.extract(framePixels, tile, pixels);
+            long scaled = metrics.nowNanos();
+            metrics.record(PipelineMetrics.Stage.SCALE, scaled - start);
+            if (quantizedLut != null) {
+                batch.limit(bytes).position(tile * tileBytes);
+                PixelNormalizer.toQuantizedRgb(pixels, quantizedLut, batch.slice());
+            } else {
+                int floats = tileBytes / 4;
+                batchFloats.limit(bytes / 4).position(tile * floats);
+                PixelNormalizer.toFloatRgb(pixels, batchFloats.slice());
+            }
+            metrics.recordSince(PipelineMetrics.Stage.BUFFER_FILL, scaled);
+        }
+        // exactly the batch, as the interpreter checks the buffer against the tensor size
+        batch.limit(bytes).position(0);
+        return batch.slice().order(ByteOrder.nativeOrder());
+    }
+
+    public synchronized void release(ByteBuffer buffer) {
+        // ignores buffers not from this pool and ones already released
+        if (buffer != null && buffersInUse.remove(buffer)) {
+            freeBuffers.add(buffer);
+        }
+    }
+
+    private void allocatePool(int bytes) {
+        freeBuffers.clear();
+        buffersInUse.clear();
+        floatViews.clear();
+        for (int i = 0; i < poolSize; i++) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            floatViews.put(buffer, quantizedLut == null ? buffer.asFloatBuffer() : null);
+            freeBuffers.add(buffer);
+        }
+    }
+}
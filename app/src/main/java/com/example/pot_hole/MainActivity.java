@@ -6,24 +6,41 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
 import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.net.Uri;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
+import android.media.ExifInterface;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.provider.MediaStore;
-import android.telephony.SmsManager;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
 import android.webkit.WebSettings;
 import android.webkit.WebView;
 import android.webkit.WebViewClient;
-import android.widget.ArrayAdapter;
 import android.widget.CheckBox;
+import android.widget.EditText;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.ListView;
+import android.widget.RadioGroup;
+import android.widget.SeekBar;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import androidx.activity.result.ActivityResult;
@@ -34,48 +51,201 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.core.content.FileProvider;
 
-import org.tensorflow.lite.DataType;
-import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.util.ArrayList;
-import java.util.HashSet;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import com.example.pot_hole.ml.Model;
+import com.example.pot_hole.core.BoundedInferenceScheduler;
+import com.example.pot_hole.core.ClusterDiffer;
+import com.example.pot_hole.core.DetectionFuser;
+import com.example.pot_hole.core.FrameThrottler;
+import com.example.pot_hole.core.InferenceScheduler;
+import com.example.pot_hole.core.LocationHistory;
+import com.example.pot_hole.core.LocationScheduler;
+import com.example.pot_hole.core.LongIntHashMap;
+import com.example.pot_hole.core.MapClusterer;
+import com.example.pot_hole.core.MapScripts;
+import com.example.pot_hole.core.MapTilePrefetcher;
+import com.example.pot_hole.core.MapUpdateCoalescer;
+import com.example.pot_hole.core.ModelLoader;
+import com.example.pot_hole.core.NearbyCounter;
+import com.example.pot_hole.core.PipelineMetrics;
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.PotholeIndex;
+import com.example.pot_hole.core.PotholeListQuery;
+import com.example.pot_hole.core.PotholeLog;
+import com.example.pot_hole.core.PotholeStore;
+import com.example.pot_hole.core.ReportDispatcher;
+import com.example.pot_hole.core.RollingMetricsLog;
+import com.example.pot_hole.core.TileCache;
+import com.example.pot_hole.core.TileHeatmap;
+import com.example.pot_hole.core.TilePlanner;
 
 public class MainActivity extends AppCompatActivity implements LocationListener {
 
     private static final int REQUEST_CAMERA_PERMISSION = 1;
     private static final int REQUEST_LOCATION_PERMISSION = 2;
     private static final int REQUEST_SEND_SMS = 3;
+    private static final String REPORT_PHONE_NUMBER = "9902956437"; // Replace with the actual phone number
     private static final String TAG = "MainActivity";
     private static final String PREFS_NAME = "PotholePrefs";
     private static final String POTHOLE_KEY = "potholes";
+    private static final String POTHOLE_LOG_FILE = "potholes.log";
+    private static final double POTHOLE_CELL_SIZE_METERS = 100;
+    private static final int POTHOLE_LIST_PAGE_SIZE = 50;
+    private static final long POTHOLE_SEARCH_DELAY_MS = 150; // Typing faster than this runs one search
+    private static final int CLUSTER_CELL_PIXELS = 64;
+    private static final int CLUSTER_PYRAMID_MAX_ZOOM = 10; // Cluster counts kept up to date for these zooms
+    private static final int CLUSTER_MAX_ZOOM = 15; // Beyond this every pothole is shown on its own
+    private static final double NEARBY_CELL_SIZE_METERS = 500; // Cells fully inside the nearby circle are counted without distance checks
+    private static final int LOCATION_HISTORY_SIZE = 64;
+    private static final double NETWORK_ACCURACY_PENALTY = 2; // Network fixes tend to understate their error
+    private static final double MAX_SPEED_METERS_PER_SECOND = 40; // Error added per second between a fix and the capture
+    private static final float UNKNOWN_ACCURACY_METERS = 50;
+    private static final long LOCATION_TICK_MS = 5000; // How often the location scheduler checks its timeouts
+    private static final String METRICS_FILE = "metrics.txt";
+    private static final long METRICS_DUMP_INTERVAL_MS = 60000;
+    private static final long METRICS_FILE_MAX_BYTES = 256 * 1024;
+    private static final int METRICS_FILE_COUNT = 3; // The live file plus two rolled ones
+    private static final String TILE_CACHE_DIR = "tiles";
+    private static final long TILE_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final int TILE_PREFETCH_MIN_ZOOM = 13;
+    private static final int TILE_PREFETCH_MAX_ZOOM = 16;
+    private static final double TILE_PREFETCH_STEP_METERS = 200; // Movement before tiles around the route are queued again
+    private static final int TILE_PREFETCH_MAX_QUEUED = 500;
+    private static final int TILE_PREFETCH_BATCH = 100;
+    private static final String PHOTO_DIR = "captures";
+    private static final String PHOTO_FILE = "photo.jpg";
+    private static final int PHOTO_MAX_SIDE = 2048; // Photos are decoded at most this large before tiling
+    private static final String EXIF_DATE_FORMAT = "yyyy:MM:dd HH:mm:ss"; // Local time, as camera apps write it
+    private static final double PHOTO_TILE_OVERLAP = 0.25;
+    private static final int PHOTO_MAX_TILES = 12; // Larger photos get larger tiles, scaled down to the model input
+    private static final int HEATMAP_COLUMNS = 6;
 
     private ImageView imageView;
     private WebView webView;
     private LocationManager locationManager;
-    private Location currentLocation;
-    private ArrayList<String> potholeList = new ArrayList<>();
+    private Location currentLocation; // Latest fix, for the map; detections are geotagged from locationHistory
+    private final LocationHistory locationHistory = new LocationHistory(LOCATION_HISTORY_SIZE, NETWORK_ACCURACY_PENALTY, MAX_SPEED_METERS_PER_SECOND);
+    private final LocationHistory.Fix captureFix = new LocationHistory.Fix();
+    // Picks one provider and its rate from how fast the phone is moving
+    private final LocationScheduler locationScheduler = new LocationScheduler(new LocationScheduler.Config());
+    private final Handler locationHandler = new Handler(Looper.getMainLooper());
+    private final Runnable locationTick = new Runnable() {
+        @Override
+        public void run() {
+            if (locationScheduler.tick(SystemClock.elapsedRealtimeNanos())) {
+                applyLocationRequest();
+            }
+            locationHandler.postDelayed(this, LOCATION_TICK_MS);
+        }
+    };
+    private final PotholeIndex potholeIndex = new PotholeIndex(POTHOLE_CELL_SIZE_METERS);
+    // Pages of the pothole list dialog, sorted and filtered without building the whole list
+    private final PotholeListQuery potholeListQuery = new PotholeListQuery(potholeIndex, POTHOLE_LIST_PAGE_SIZE);
+    private double dedupRadiusMeters = 10; // Detections closer than this count as the same pothole
+    private PotholeLog potholeLog;
+    // Saves index potholes to the log, which numbers them on its own
+    private PotholeStore potholeStore;
+    private final MapClusterer mapClusterer = new MapClusterer(potholeIndex, CLUSTER_CELL_PIXELS, CLUSTER_PYRAMID_MAX_ZOOM, CLUSTER_MAX_ZOOM);
+    private final MapClusterer.Clusters visibleClusters = new MapClusterer.Clusters();
+    // What the page shows, so only changed clusters are sent
+    private final ClusterDiffer clusterDiffer = new ClusterDiffer();
+    private final NearbyCounter nearbyCounter = new NearbyCounter(potholeIndex, NEARBY_CELL_SIZE_METERS);
+    private int nearbyRadiusKm = 5; // Radius of the "Potholes Nearby" count
+    private double[] viewport; // south, west, north, east, zoom of the map page
+    // Map scripts are coalesced into at most one WebView call per display frame
+    private final MapUpdateCoalescer mapUpdates = new MapUpdateCoalescer();
+    private final Choreographer.FrameCallback mapFrame = frameTimeNanos -> flushMapUpdates();
+    private final ExecutorService storageExecutor = Executors.newSingleThreadExecutor();
+    // Map page resources and tiles, cached on disk for driving without coverage
+    private MapResourceInterceptor mapResources;
+    private volatile MapTilePrefetcher tilePrefetcher;
+    private final ExecutorService tileExecutor = Executors.newSingleThreadExecutor();
+
+    // Per-stage latencies and counters, shown in the diagnostics dialog and dumped to METRICS_FILE
+    private final PipelineMetrics metrics = new PipelineMetrics();
+    private PipelineMetrics.Snapshot lastDumpedMetrics = metrics.snapshot();
+    private RollingMetricsLog metricsLog;
+    private final Handler metricsHandler = new Handler(Looper.getMainLooper());
+    private final Runnable metricsDump = new Runnable() {
+        @Override
+        public void run() {
+            dumpMetrics();
+            metricsHandler.postDelayed(this, METRICS_DUMP_INTERVAL_MS);
+        }
+    };
 
-    private Model model;
+    private TfliteModel model;
+    private ModelLoader<TfliteModel> modelLoader; // the load this activity waits for
+    private final ImagePreprocessor imagePreprocessor = new ImagePreprocessor(2, metrics);
+    private InferenceScheduler<Bitmap> inferenceScheduler;
+    // Photos are cut into overlapping tiles, so a small pothole is not lost in the downscale
+    private volatile boolean tiledPhotosEnabled = true;
+    private final TilePlanner photoTilePlanner = new TilePlanner(PixelNormalizer.INPUT_SIZE, PHOTO_TILE_OVERLAP, PHOTO_MAX_TILES);
+    // Heatmaps of tiled photos, from the inference worker until the result is handled
+    private final Map<Bitmap, TileHeatmap> photoHeatmaps = Collections.synchronizedMap(new WeakHashMap<>());
+    // When each submitted photo was taken, on the elapsedRealtime clock; main thread only
+    private final Map<Bitmap, Long> photoTakenNanos = new WeakHashMap<>();
+    private long cameraLaunchNanos; // 0 unless the camera app is open for this activity
     private boolean toastMessagesEnabled = true; // Variable to control Toast messages
     private boolean sendSmsEnabled = true; // Variable to control sending SMS
+    private int driveModeTargetFps = 2; // Frames per second classified in drive mode
+    private final FrameThrottler frameThrottler = new FrameThrottler(driveModeTargetFps, 5, 1, 0.2);
+    private DriveModeController driveModeController;
+    // Drive mode confirms a pothole only after it scores over several frames
+    private final DetectionFuser detectionFuser = new DetectionFuser(0.8, 2.5, 0.0, 2, 50, 3000000000L);
+    private SmsReportTransport smsReportTransport;
+    private ReportDispatcher reportDispatcher;
+    private final Handler reportHandler = new Handler(Looper.getMainLooper());
+    private final Runnable reportTick = this::scheduleReports;
 
     private final ActivityResultLauncher<Intent> takePictureLauncher =
             registerForActivityResult(new ActivityResultContracts.StartActivityForResult(), new ActivityResultCallback<ActivityResult>() {
                 @Override
                 public void onActivityResult(ActivityResult result) {
-                    if (result.getResultCode() == RESULT_OK && result.getData() != null) {
-                        Bundle extras = result.getData().getExtras();
-                        Bitmap imageBitmap = (Bitmap) extras.get("data");
-                        imageView.setImageBitmap(imageBitmap);
-                        classifyImage(imageBitmap);
+                    long launchNanos = cameraLaunchNanos;
+                    cameraLaunchNanos = 0;
+                    if (result.getResultCode() != RESULT_OK) {
+                        onCaptureChanged(false);
+                        return;
                     }
+                    // Camera apps that ignore EXTRA_OUTPUT still return a thumbnail
+                    Bitmap thumbnail = result.getData() != null && result.getData().getExtras() != null
+                            ? (Bitmap) result.getData().getExtras().get("data") : null;
+                    // A fixed path, so the photo is found even if the activity was recreated meanwhile
+                    File file = photoFile();
+                    storageExecutor.execute(() -> {
+                        Bitmap photo = decodePhoto(file);
+                        Bitmap imageBitmap = photo != null ? photo : thumbnail;
+                        long exifNanos = photo != null ? exifTakenNanos(file) : 0;
+                        runOnUiThread(() -> {
+                            if (imageBitmap == null || isDestroyed()) {
+                                return;
+                            }
+                            long takenNanos = photoCaptureNanos(exifNanos, launchNanos);
+                            if (takenNanos != 0) {
+                                photoTakenNanos.put(imageBitmap, takenNanos);
+                            }
+                            imageView.setImageBitmap(imageBitmap);
+                            classifyImage(imageBitmap);
+                        });
+                    });
                 }
             });
 
@@ -83,6 +253,25 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
+        // Reports are coalesced into digests and sent under a rate limit
+        smsReportTransport = new SmsReportTransport(this, REPORT_PHONE_NUMBER, metrics);
+        reportDispatcher = new ReportDispatcher(smsReportTransport, System::currentTimeMillis,
+                new ReportDispatcher.Listener() {
+                    @Override
+                    public void onSending(List<ReportDispatcher.Report> reports) {
+                        markSending(reports);
+                    }
+
+                    @Override
+                    public void onReported(List<ReportDispatcher.Report> reports) {
+                        markReported(reports);
+                    }
+                }, new ReportDispatcher.Config());
+        smsReportTransport.register(reportDispatcher, this::scheduleReports);
+        metricsLog = new RollingMetricsLog(new File(getFilesDir(), METRICS_FILE), METRICS_FILE_MAX_BYTES, METRICS_FILE_COUNT);
+        openPotholeLog();
+        loadSavedPotholes();
+        scheduleReports();
 
         imageView = findViewById(R.id.image_view);
         webView = findViewById(R.id.webview);
@@ -91,22 +280,41 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         ImageButton potholeListButton = findViewById(R.id.pothole_list_button);
         ImageButton settingsButton = findViewById(R.id.settings_button);
 
+        mapResources = new MapResourceInterceptor(this, new File(getFilesDir(), TILE_CACHE_DIR), TILE_CACHE_MAX_BYTES);
+        tileExecutor.execute(() -> {
+            try {
+                tilePrefetcher = new MapTilePrefetcher(mapResources.getCache(), MapResourceInterceptor.TILE_URL_TEMPLATE,
+                        TILE_PREFETCH_MIN_ZOOM, TILE_PREFETCH_MAX_ZOOM, 1, TILE_PREFETCH_STEP_METERS, TILE_PREFETCH_MAX_QUEUED);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to open tile cache", e);
+            }
+        });
+
         webView.setWebViewClient(new WebViewClient() {
+            @Override
+            public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                if (!"GET".equals(request.getMethod())) {
+                    return null;
+                }
+                return mapResources.intercept(request.getUrl().toString());
+            }
+
             @Override
             public void onPageFinished(WebView view, String url) {
                 super.onPageFinished(view, url);
-                // Re-send the current location to the WebView after it finishes loading
-                if (currentLocation != null) {
-                    String jsCode = "window.postMessage({type: 'currentLocation', lat: " + currentLocation.getLatitude() + ", lon: " + currentLocation.getLongitude() + "}, '*');";
-                    webView.evaluateJavascript(jsCode, null);
-                }
-                loadSavedPotholes();
+                // A fresh page has none of the earlier updates; re-send the current location
+                mapUpdates.reset();
+                clusterDiffer.reset();
+                pushCurrentLocation();
+                // The page asks for clusters itself once it knows its viewport
+                pushNearbyCount();
             }
         });
 
         WebSettings webSettings = webView.getSettings();
         webSettings.setJavaScriptEnabled(true);
         webSettings.setDomStorageEnabled(true);
+        webView.addJavascriptInterface(new MapBridge(), "PotholeBridge");
         webView.loadUrl("file:///android_asset/map.html");
 
         locationManager = (LocationManager) getSystemService(LOCATION_SERVICE);
@@ -125,148 +333,374 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         }
 
         takePictureButton.setOnClickListener(v -> dispatchTakePictureIntent());
+        takePictureButton.setOnLongClickListener(v -> {
+            toggleDriveMode();
+            return true;
+        });
         refreshButton.setOnClickListener(v -> refreshMap());
         potholeListButton.setOnClickListener(v -> showPotholeListDialog());
         settingsButton.setOnClickListener(v -> showSettingsDialog());
 
-        // Load TensorFlow Lite model
-        try {
-            model = Model.newInstance(this);
-            Log.d(TAG, "Model loaded successfully");
-            if (toastMessagesEnabled) {
-                Toast.makeText(this, "Model loaded successfully", Toast.LENGTH_SHORT).show();
+        // The TensorFlow Lite model has been loading in the background since the splash screen
+        loadModel();
+
+        // One frame in flight plus one waiting; older waiting frames are dropped
+        inferenceScheduler = new BoundedInferenceScheduler<>(this::runModel, 1,
+                ContextCompat.getMainExecutor(this), new InferenceScheduler.Listener<Bitmap>() {
+            @Override
+            public void onResult(Bitmap frame, float[] probabilities, long latencyNanos) {
+                metrics.record(PipelineMetrics.Stage.FRAME, latencyNanos);
+                // Frames are submitted as soon as they are captured, photos only once the camera app returns
+                Long takenNanos = photoTakenNanos.remove(frame);
+                long captureNanos = takenNanos != null ? takenNanos : SystemClock.elapsedRealtimeNanos() - latencyNanos;
+                boolean streamFrame = driveModeController.isStreamFrame(frame);
+                driveModeController.releaseFrame(frame);
+                TileHeatmap heatmap = photoHeatmaps.remove(frame);
+                if (heatmap != null) {
+                    drawHeatmap(frame, heatmap);
+                }
+                handleClassification(probabilities, latencyNanos, captureNanos, streamFrame, heatmap);
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            Log.e(TAG, "Failed to load model", e);
-            if (toastMessagesEnabled) {
-                Toast.makeText(this, "Failed to load model", Toast.LENGTH_LONG).show();
+
+            @Override
+            public void onDropped(Bitmap frame) {
+                metrics.increment(PipelineMetrics.Counter.FRAMES_DROPPED);
+                driveModeController.releaseFrame(frame);
+                Log.d(TAG, "Frame dropped, a newer one is queued");
             }
-        }
+
+            @Override
+            public void onError(Bitmap frame, Exception e) {
+                metrics.increment(PipelineMetrics.Counter.FRAMES_FAILED);
+                driveModeController.releaseFrame(frame);
+                Log.e(TAG, "Error during model inference", e);
+                if (toastMessagesEnabled) {
+                    Toast.makeText(MainActivity.this, "Error during model inference", Toast.LENGTH_LONG).show();
+                }
+            }
+        });
+        driveModeController = new DriveModeController(this, findViewById(R.id.drive_preview), frameThrottler, inferenceScheduler, metrics);
     }
 
     private void dispatchTakePictureIntent() {
         Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
         if (takePictureIntent.resolveActivity(getPackageManager()) != null) {
+            File file = photoFile();
+            File dir = file.getParentFile();
+            // Deleted first, so a photo found afterwards is from this capture
+            if ((dir.isDirectory() || dir.mkdirs()) && (!file.exists() || file.delete())) {
+                Uri photoUri = FileProvider.getUriForFile(this, getPackageName() + ".fileprovider", file);
+                takePictureIntent.putExtra(MediaStore.EXTRA_OUTPUT, photoUri);
+                takePictureIntent.addFlags(Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
+            }
+            // GPS until the photo is classified, even after standing still; it is geotagged from these fixes
+            onCaptureChanged(true);
+            cameraLaunchNanos = SystemClock.elapsedRealtimeNanos();
             takePictureLauncher.launch(takePictureIntent);
         }
     }
 
+    private File photoFile() {
+        return new File(new File(getCacheDir(), PHOTO_DIR), PHOTO_FILE);
+    }
+
+    // Runs on the storage executor; when the photo's EXIF says it was taken, on the elapsedRealtime clock, or 0
+    private long exifTakenNanos(File file) {
+        try {
+            String taken = new ExifInterface(file.getPath()).getAttribute(ExifInterface.TAG_DATETIME_ORIGINAL);
+            if (taken == null) {
+                return 0;
+            }
+            Date date = new SimpleDateFormat(EXIF_DATE_FORMAT, Locale.ROOT).parse(taken);
+            long ageMillis = System.currentTimeMillis() - date.getTime();
+            return SystemClock.elapsedRealtimeNanos() - ageMillis * 1000000L;
+        } catch (IOException | ParseException e) {
+            Log.w(TAG, "Photo has no readable capture time", e);
+            return 0;
+        }
+    }
+
+    // The EXIF time has whole seconds and the camera app's idea of the time zone, so it is kept
+    // between the camera launch and now; without it the launch time is the best guess
+    private long photoCaptureNanos(long exifNanos, long launchNanos) {
+        if (exifNanos == 0) {
+            return launchNanos;
+        }
+        long taken = Math.min(exifNanos, SystemClock.elapsedRealtimeNanos());
+        return launchNanos != 0 ? Math.max(taken, launchNanos) : taken;
+    }
+
+    // Runs on the storage executor; null if the camera app wrote no photo
+    private Bitmap decodePhoto(File file) {
+        if (!file.isFile() || file.length() == 0) {
+            return null;
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        int sampleSize = 1;
+        while (Math.max(options.outWidth, options.outHeight) / sampleSize > PHOTO_MAX_SIDE) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        options.inMutable = true; // The heatmap is drawn onto it
+        Bitmap photo = BitmapFactory.decodeFile(file.getPath(), options);
+        Log.d(TAG, "Decoded photo " + (photo != null ? photo.getWidth() + "x" + photo.getHeight() : "failed") + " at 1/" + sampleSize);
+        return photo;
+    }
+
+    private void toggleDriveMode() {
+        if (driveModeController.isRunning()) {
+            driveModeController.stop();
+            onDriveModeChanged(false);
+            Toast.makeText(this, "Drive mode off", Toast.LENGTH_SHORT).show();
+        } else if (ContextCompat.checkSelfPermission(this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.CAMERA}, REQUEST_CAMERA_PERMISSION);
+        } else if (model == null) {
+            Toast.makeText(this, modelNotReadyMessage(), Toast.LENGTH_LONG).show();
+        } else {
+            detectionFuser.reset();
+            driveModeController.start();
+            onDriveModeChanged(true);
+            Toast.makeText(this, "Drive mode on: scanning the road at up to " + driveModeTargetFps + " fps", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     private void classifyImage(Bitmap bitmap) {
         if (model == null) {
             if (toastMessagesEnabled) {
-                Toast.makeText(this, "Model is not loaded", Toast.LENGTH_LONG).show();
+                Toast.makeText(this, modelNotReadyMessage(), Toast.LENGTH_LONG).show();
             }
-            Log.e(TAG, "Model is not loaded");
+            Log.e(TAG, modelNotReadyMessage());
             return;
         }
+        if (inferenceScheduler.submit(bitmap)) {
+            metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+        }
+    }
 
-        try {
-            TensorBuffer inputFeature0 = TensorBuffer.createFixedSize(new int[]{1, 224, 224, 3}, DataType.FLOAT32);
-            ByteBuffer byteBuffer = convertBitmapToByteBuffer(bitmap);
-            inputFeature0.loadBuffer(byteBuffer);
-            Log.d(TAG, "Image loaded into tensor buffer");
-            if (toastMessagesEnabled) {
-                Toast.makeText(this, "Image prepared for classification", Toast.LENGTH_SHORT).show();
+    // Waits for the app-wide model; after a failed load, calling this again starts another attempt
+    private void loadModel() {
+        ModelLoader<TfliteModel> loader = ModelHolder.get(this);
+        if (loader == modelLoader) {
+            return;
+        }
+        modelLoader = loader;
+        loader.whenReady(ContextCompat.getMainExecutor(this), new ModelLoader.Listener<TfliteModel>() {
+            @Override
+            public void onReady(TfliteModel loadedModel, ModelLoader.Timings timings) {
+                if (loadedModel.getInputQuantization() != null) {
+                    // Before the model is published, so no frame is preprocessed as floats
+                    imagePreprocessor.useQuantizedInput(loadedModel.getInputQuantization());
+                }
+                model = loadedModel;
+                Log.d(TAG, "Model loaded successfully on " + loadedModel.getBackend() + ": " + timings);
+                if (toastMessagesEnabled && !isDestroyed()) {
+                    Toast.makeText(MainActivity.this, "Model loaded successfully", Toast.LENGTH_SHORT).show();
+                }
             }
 
-            Model.Outputs outputs = model.process(inputFeature0);
-            TensorBuffer outputFeature0 = outputs.getOutputFeature0AsTensorBuffer();
-
-            float[] probabilities = outputFeature0.getFloatArray();
-            if (probabilities.length != 2 || Float.isNaN(probabilities[0]) || Float.isNaN(probabilities[1])) {
-                Log.e(TAG, "Invalid output from model: NaN values detected");
-                if (toastMessagesEnabled) {
-                    Toast.makeText(this, "Invalid output from model (NaN values)", Toast.LENGTH_LONG).show();
+            @Override
+            public void onFailed(Exception e) {
+                Log.e(TAG, "Failed to load model", e);
+                if (toastMessagesEnabled && !isDestroyed()) {
+                    Toast.makeText(MainActivity.this, "Failed to load model", Toast.LENGTH_LONG).show();
                 }
-                return;
-            }
-            Log.d(TAG, "Model output probabilities: [" + probabilities[0] + ", " + probabilities[1] + "]");
-            if (toastMessagesEnabled) {
-                Toast.makeText(this, "Pothole prob: " + String.format("%.3f", probabilities[0]) + "\nNot Pothole prob: " + String.format("%.3f", probabilities[1]), Toast.LENGTH_LONG).show();
             }
+        });
+    }
 
-            float threshold = 0.5f;
-            String resultString = probabilities[0] > threshold ? "pothole" : "not a pothole";
+    private String modelNotReadyMessage() {
+        loadModel();
+        return modelLoader.isDone() ? "Model is not loaded" : "Model is still loading, try again in a moment";
+    }
 
-            // Ensure currentLocation is updated just before using it
-            if ("pothole".equals(resultString) && currentLocation != null) {
-                double lat = currentLocation.getLatitude();
-                double lon = currentLocation.getLongitude();
-                Log.d(TAG, "Using location for pothole: " + lat + ", " + lon); // Debug log
+    // Runs on the inference worker thread
+    private float[] runModel(Bitmap bitmap) throws Exception {
+        int size = PixelNormalizer.INPUT_SIZE;
+        if (tiledPhotosEnabled && (bitmap.getWidth() > size || bitmap.getHeight() > size)) {
+            return runModelTiled(bitmap);
+        }
+        ByteBuffer input = imagePreprocessor.process(bitmap);
+        if (input == null) {
+            throw new IllegalStateException("No free input buffer");
+        }
+        try {
+            long start = metrics.nowNanos();
+            float[] probabilities = model.classify(input);
+            metrics.recordSince(PipelineMetrics.Stage.INFERENCE, start);
+            return probabilities;
+        } finally {
+            imagePreprocessor.release(input);
+        }
+    }
 
-                // Send location to the WebView
-                String jsCode = "window.postMessage({type: 'location', lat: " + lat + ", lon: " + lon + "}, '*');";
-                webView.evaluateJavascript(jsCode, null);
+    // Classifies overlapping tiles of a photo in one batch; the photo scores as its hottest spot
+    private float[] runModelTiled(Bitmap bitmap) throws Exception {
+        TilePlanner.Plan plan = photoTilePlanner.plan(bitmap.getWidth(), bitmap.getHeight());
+        ByteBuffer input = imagePreprocessor.processTiles(bitmap, plan);
+        long start = metrics.nowNanos();
+        float[][] tileProbabilities = model.classifyBatch(input, plan.count());
+        metrics.recordSince(PipelineMetrics.Stage.INFERENCE, start);
+        float[] scores = new float[plan.count()];
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = tileProbabilities[i][0];
+        }
+        int rows = Math.max(1, Math.round((float) HEATMAP_COLUMNS * bitmap.getHeight() / bitmap.getWidth()));
+        TileHeatmap heatmap = TileHeatmap.merge(plan, scores, HEATMAP_COLUMNS, rows);
+        Log.d(TAG, plan.count() + " tiles of " + plan.cropWidth + " px, heatmap:\n" + heatmap);
+        photoHeatmaps.put(bitmap, heatmap);
+        return new float[]{heatmap.probability(), 1 - heatmap.probability()};
+    }
 
-                String pothole = "Pothole at: " + lat + ", " + lon;
-                if (!potholeList.contains(pothole)) {
-                    potholeList.add(pothole);
-                    savePotholes();
-                    if (sendSmsEnabled) {
-                        sendSms(lat, lon); // Send SMS automatically when a pothole is detected
-                    }
+    // Tints the cells of the photo that scored as a pothole
+    private void drawHeatmap(Bitmap photo, TileHeatmap heatmap) {
+        if (!photo.isMutable()) {
+            return;
+        }
+        Canvas canvas = new Canvas(photo);
+        Paint paint = new Paint();
+        float cellWidth = (float) photo.getWidth() / heatmap.cols;
+        float cellHeight = (float) photo.getHeight() / heatmap.rows;
+        for (int row = 0; row < heatmap.rows; row++) {
+            for (int col = 0; col < heatmap.cols; col++) {
+                float score = heatmap.cell(col, row);
+                if (score > 0.5f) {
+                    paint.setARGB(Math.round(160 * (score - 0.5f) * 2), 255, 0, 0);
+                    canvas.drawRect(col * cellWidth, row * cellHeight, (col + 1) * cellWidth, (row + 1) * cellHeight, paint);
                 }
+            }
+        }
+        imageView.invalidate();
+    }
 
-                if (toastMessagesEnabled) {
-                    Toast.makeText(MainActivity.this, "Pothole detected at: " + lat + ", " + lon, Toast.LENGTH_LONG).show();
-                }
-                Log.d(TAG, "Pothole detected at: " + lat + ", " + lon);
-            } else {
-                if (toastMessagesEnabled) {
-                    Toast.makeText(MainActivity.this, "Not a Pothole", Toast.LENGTH_LONG).show();
-                }
-                Log.d(TAG, "Image classified as not a pothole");
+    private void handleClassification(float[] probabilities, long latencyNanos, long captureNanos, boolean streamFrame, TileHeatmap heatmap) {
+        // Per-frame toasts would flood the screen in drive mode
+        boolean showToasts = toastMessagesEnabled && !streamFrame;
+        if (probabilities.length != 2 || Float.isNaN(probabilities[0]) || Float.isNaN(probabilities[1])) {
+            Log.e(TAG, "Invalid output from model: NaN values detected");
+            if (showToasts) {
+                Toast.makeText(this, "Invalid output from model (NaN values)", Toast.LENGTH_LONG).show();
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-            Log.e(TAG, "Error during model inference", e);
-            if (toastMessagesEnabled) {
-                Toast.makeText(this, "Error during model inference", Toast.LENGTH_LONG).show();
+            return;
+        }
+        Log.d(TAG, "Model output probabilities: [" + probabilities[0] + ", " + probabilities[1] + "] in " + latencyNanos / 1000000 + " ms");
+        if (showToasts) {
+            String hotspot = heatmap != null ? "\nMost likely at the " + heatmap.describeHottest() : "";
+            Toast.makeText(this, "Pothole prob: " + String.format("%.3f", probabilities[0]) + "\nNot Pothole prob: " + String.format("%.3f", probabilities[1]) + hotspot, Toast.LENGTH_LONG).show();
+        }
+
+        // Where the phone was when the frame was taken, not where the last fix put it
+        boolean located = locationHistory.positionAt(captureNanos, captureFix);
+        if (!streamFrame) {
+            onCaptureChanged(false);
+        }
+        if (streamFrame) {
+            if (!located) {
+                return;
             }
+            DetectionFuser.Event event = detectionFuser.offer(probabilities[0], captureFix.lat, captureFix.lon, captureNanos);
+            if (event != null) {
+                Log.d(TAG, "Pothole confirmed after " + event.frames + " frames (" + event.positiveFrames
+                        + " positive, mean prob " + event.meanProbability() + ", max " + event.maxProbability + ")");
+                confirmPothole(event.lat, event.lon, event.meanProbability(), false);
+            }
+            return;
+        }
+
+        float threshold = 0.5f;
+        String resultString = probabilities[0] > threshold ? "pothole" : "not a pothole";
+
+        if ("pothole".equals(resultString) && located) {
+            double lat = captureFix.lat;
+            double lon = captureFix.lon;
+            Log.d(TAG, "Using location for pothole: " + lat + ", " + lon + " (±" + Math.round(captureFix.accuracyMeters) + " m)");
+            confirmPothole(lat, lon, probabilities[0], showToasts);
+        } else {
+            if (showToasts) {
+                Toast.makeText(MainActivity.this, "Not a Pothole", Toast.LENGTH_LONG).show();
+            }
+            Log.d(TAG, "Image classified as not a pothole");
         }
     }
 
-    private void sendSms(double lat, double lon) {
-        String phoneNumber = "9902956437"; // Replace with the actual phone number
-        String googleMapsUrl = "https://www.google.com/maps?q=" + lat + "," + lon;
-        String message = "Pothole detected at:\n" + googleMapsUrl + "\n\n- Team idkWhatWe'reDoing";
+    private void confirmPothole(double lat, double lon, float confidence, boolean showToasts) {
+        long dedupStart = metrics.nowNanos();
+        int existing = potholeIndex.nearest(lat, lon, dedupRadiusMeters);
+        double oldLat = existing >= 0 ? potholeIndex.latitude(existing) : lat;
+        double oldLon = existing >= 0 ? potholeIndex.longitude(existing) : lon;
+        int id = potholeIndex.addOrMerge(lat, lon, dedupRadiusMeters);
+        if (existing < 0) {
+            mapClusterer.onAdded(id);
+            nearbyCounter.onAdded(id);
+            metrics.recordSince(PipelineMetrics.Stage.DEDUP, dedupStart);
+            metrics.increment(PipelineMetrics.Counter.POTHOLES_NEW);
+            savePothole(id, confidence, sendSmsEnabled ? PotholeLog.STATUS_QUEUED : PotholeLog.STATUS_DETECTED);
+            if (sendSmsEnabled) {
+                queueReport(new ReportDispatcher.Report(id, lat, lon, System.currentTimeMillis(), confidence));
+            }
+        } else {
+            mapClusterer.onMoved(id, oldLat, oldLon);
+            nearbyCounter.onMoved(id, oldLat, oldLon);
+            metrics.recordSince(PipelineMetrics.Stage.DEDUP, dedupStart);
+            metrics.increment(PipelineMetrics.Counter.POTHOLES_MERGED);
+            // Persist the refined position of the merged pothole
+            savePothole(id, confidence, PotholeLog.STATUS_DETECTED);
+        }
+        // Update the visible clusters and the nearby count on the map
+        pushClusters();
+        pushNearbyCount();
 
+        if (showToasts) {
+            Toast.makeText(MainActivity.this, "Pothole detected at: " + lat + ", " + lon, Toast.LENGTH_LONG).show();
+        }
+        Log.d(TAG, "Pothole detected at: " + lat + ", " + lon);
+    }
 
+    private void queueReport(ReportDispatcher.Report report) {
+        reportDispatcher.enqueue(report);
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
             Log.d(TAG, "SMS permission not granted. Requesting permission.");
             ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.SEND_SMS}, REQUEST_SEND_SMS);
-        } else {
-            Log.d(TAG, "Sending SMS to: " + phoneNumber);
-            SmsManager smsManager = SmsManager.getDefault();
-            smsManager.sendTextMessage(phoneNumber, null, message, null, null);
-            Toast.makeText(this, "SMS sent successfully!", Toast.LENGTH_SHORT).show();
         }
+        scheduleReports();
     }
 
-    private ByteBuffer convertBitmapToByteBuffer(Bitmap bitmap) {
-        Bitmap resizedBitmap = Bitmap.createScaledBitmap(bitmap, 224, 224, true);
-        ByteBuffer byteBuffer = ByteBuffer.allocateDirect(4 * 224 * 224 * 3);
-        byteBuffer.order(ByteOrder.nativeOrder());
-        byteBuffer.rewind();
-
-        int[] intValues = new int[224 * 224];
-        resizedBitmap.getPixels(intValues, 0, 224, 0, 0, 224, 224);
+    // Runs due reports and arranges for the dispatcher to be called again when it needs to be
+    private void scheduleReports() {
+        reportHandler.removeCallbacks(reportTick);
+        long next = reportDispatcher.tick();
+        if (next != ReportDispatcher.IDLE) {
+            reportHandler.postDelayed(reportTick, Math.max(0, next - System.currentTimeMillis()));
+        }
+    }
 
-        for (int value : intValues) {
-            byteBuffer.putFloat(((value >> 16) & 0xFF) / 255.0f);
-            byteBuffer.putFloat(((value >> 8) & 0xFF) / 255.0f);
-            byteBuffer.putFloat((value & 0xFF) / 255.0f);
+    // Queued on the storage thread ahead of the send; onDestroy drains it before a new activity reads the log
+    private void markSending(List<ReportDispatcher.Report> reports) {
+        for (ReportDispatcher.Report report : reports) {
+            savePothole(report.id, report.confidence, PotholeLog.STATUS_SENDING);
         }
+    }
 
-        return byteBuffer;
+    private void markReported(List<ReportDispatcher.Report> reports) {
+        for (ReportDispatcher.Report report : reports) {
+            savePothole(report.id, report.confidence, PotholeLog.STATUS_REPORTED);
+        }
+        Log.d(TAG, reports.size() + " potholes reported, " + reportDispatcher.pendingCount() + " still queued");
+        if (toastMessagesEnabled) {
+            Toast.makeText(this, "SMS sent successfully!", Toast.LENGTH_SHORT).show();
+        }
     }
 
     private void startLocationUpdates() {
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            // Use both GPS and Network providers for location updates
-            locationManager.requestLocationUpdates(LocationManager.GPS_PROVIDER, 5000, 10, this);
-            locationManager.requestLocationUpdates(LocationManager.NETWORK_PROVIDER, 5000, 10, this);
+            long now = SystemClock.elapsedRealtimeNanos();
+            locationScheduler.setProviderEnabled(LocationHistory.PROVIDER_GPS, locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER), now);
+            locationScheduler.setProviderEnabled(LocationHistory.PROVIDER_NETWORK, locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER), now);
+            locationScheduler.start(now);
+            applyLocationRequest();
 
             // Fallback to last known location
             Location lastKnownLocation = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
@@ -279,6 +713,53 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         }
     }
 
+    // Listens to the one provider the scheduler picked, at its rate
+    private void applyLocationRequest() {
+        if (ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        locationManager.removeUpdates(this);
+        LocationScheduler.Request request = locationScheduler.current();
+        if (request == null) {
+            Log.d(TAG, "No location provider enabled");
+            return;
+        }
+        String provider = request.provider == LocationHistory.PROVIDER_GPS ? LocationManager.GPS_PROVIDER : LocationManager.NETWORK_PROVIDER;
+        locationManager.requestLocationUpdates(provider, request.intervalMillis, 0, this);
+        Log.d(TAG, "Location updates: " + request);
+    }
+
+    private void onDriveModeChanged(boolean active) {
+        if (locationScheduler.setDriveMode(active, SystemClock.elapsedRealtimeNanos())) {
+            applyLocationRequest();
+        }
+    }
+
+    private void onCaptureChanged(boolean active) {
+        if (locationScheduler.setCapturing(active, SystemClock.elapsedRealtimeNanos())) {
+            applyLocationRequest();
+        }
+    }
+
+    @Override
+    public void onProviderEnabled(@NonNull String provider) {
+        onProviderChanged(provider, true);
+    }
+
+    @Override
+    public void onProviderDisabled(@NonNull String provider) {
+        onProviderChanged(provider, false);
+    }
+
+    private void onProviderChanged(String provider, boolean enabled) {
+        int id = LocationManager.GPS_PROVIDER.equals(provider) ? LocationHistory.PROVIDER_GPS
+                : LocationManager.NETWORK_PROVIDER.equals(provider) ? LocationHistory.PROVIDER_NETWORK
+                : LocationHistory.PROVIDER_OTHER;
+        if (locationScheduler.setProviderEnabled(id, enabled, SystemClock.elapsedRealtimeNanos())) {
+            applyLocationRequest();
+        }
+    }
+
     private void checkLocationServices() {
         boolean gpsEnabled = locationManager.isProviderEnabled(LocationManager.GPS_PROVIDER);
         boolean networkEnabled = locationManager.isProviderEnabled(LocationManager.NETWORK_PROVIDER);
@@ -298,9 +779,36 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     @Override
     public void onLocationChanged(@NonNull Location location) {
         currentLocation = location;
+        int provider = LocationManager.GPS_PROVIDER.equals(location.getProvider()) ? LocationHistory.PROVIDER_GPS
+                : LocationManager.NETWORK_PROVIDER.equals(location.getProvider()) ? LocationHistory.PROVIDER_NETWORK
+                : LocationHistory.PROVIDER_OTHER;
+        float accuracy = location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY_METERS;
+        double speed = location.hasSpeed() ? location.getSpeed() : Double.NaN;
+        locationHistory.add(location.getElapsedRealtimeNanos(), location.getLatitude(), location.getLongitude(), accuracy, provider);
+        frameThrottler.onLocation(location.getLatitude(), location.getLongitude(), location.getElapsedRealtimeNanos(), speed);
+        if (locationScheduler.onFix(location.getElapsedRealtimeNanos(), location.getLatitude(), location.getLongitude(), accuracy, speed, provider)) {
+            applyLocationRequest();
+        }
         Log.d(TAG, "Location updated: " + location.getLatitude() + ", " + location.getLongitude());
-        String jsCode = "window.postMessage({type: 'currentLocation', lat: " + location.getLatitude() + ", lon: " + location.getLongitude() + "}, '*');";
-        webView.evaluateJavascript(jsCode, null);
+        pushCurrentLocation();
+        pushNearbyCount();
+        prefetchTiles(location);
+    }
+
+    // Downloads the tiles around the route driven, only on unmetered networks
+    private void prefetchTiles(Location location) {
+        MapTilePrefetcher prefetcher = tilePrefetcher;
+        if (prefetcher == null || !prefetcher.onLocation(location.getLatitude(), location.getLongitude())) {
+            return;
+        }
+        ConnectivityManager connectivity = (ConnectivityManager) getSystemService(CONNECTIVITY_SERVICE);
+        if (connectivity.getActiveNetwork() == null || connectivity.isActiveNetworkMetered()) {
+            return;
+        }
+        tileExecutor.execute(() -> {
+            int cached = prefetcher.runPending(TILE_PREFETCH_BATCH);
+            Log.d(TAG, "Prefetched " + cached + " map tiles");
+        });
     }
 
     @Override
@@ -330,11 +838,10 @@ public class MainActivity extends AppCompatActivity implements LocationListener
             }
         } else if (requestCode == REQUEST_SEND_SMS) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                // Permission granted, retry sending SMS
+                // Permission granted, send the queued reports without waiting for the backoff
                 Log.d(TAG, "SMS permission granted. Retrying SMS sending.");
-                if (currentLocation != null) {
-                    sendSms(currentLocation.getLatitude(), currentLocation.getLongitude());
-                }
+                reportDispatcher.retryNow();
+                scheduleReports();
             } else {
                 Toast.makeText(this, "SMS permission denied.", Toast.LENGTH_SHORT).show();
             }
@@ -342,11 +849,11 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     }
 
     private void refreshMap() {
-        // Clear existing potholes from the map
-        webView.evaluateJavascript("window.clearPotholes();", null);
-
-        // Reload the map
-        webView.reload();
+        // The page keeps its state, so only send the clusters that changed instead of reloading everything
+        mapUpdates.reset();
+        pushClusters();
+        pushNearbyCount();
+        pushCurrentLocation();
 
         if (toastMessagesEnabled) {
             Toast.makeText(this, "Map refreshed", Toast.LENGTH_SHORT).show();
@@ -354,17 +861,55 @@ public class MainActivity extends AppCompatActivity implements LocationListener
     }
 
     private void showPotholeListDialog() {
-        AlertDialog.Builder builder = new AlertDialog.Builder(this);
-        builder.setTitle("Pothole List");
-
-        ListView listView = new ListView(this);
-        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, potholeList);
+        View listDialogView = getLayoutInflater().inflate(R.layout.dialog_pothole_list, null);
+        EditText searchText = listDialogView.findViewById(R.id.pothole_search);
+        RadioGroup sortGroup = listDialogView.findViewById(R.id.pothole_sort);
+        TextView countText = listDialogView.findViewById(R.id.pothole_count);
+        ListView listView = listDialogView.findViewById(R.id.pothole_list_view);
+        PotholeListAdapter adapter = new PotholeListAdapter(this, potholeListQuery, potholeIndex);
         listView.setAdapter(adapter);
 
-        builder.setView(listView);
-        builder.setPositiveButton("OK", (dialog, which) -> dialog.dismiss());
+        // Nearest first needs a position; without one the list starts with the newest
+        Location origin = currentLocation;
+        listDialogView.findViewById(R.id.pothole_sort_nearest).setEnabled(origin != null);
+        sortGroup.check(origin != null ? R.id.pothole_sort_nearest : R.id.pothole_sort_newest);
+        Runnable runQuery = () -> {
+            boolean nearest = sortGroup.getCheckedRadioButtonId() == R.id.pothole_sort_nearest;
+            double lat = origin != null ? origin.getLatitude() : Double.NaN;
+            double lon = origin != null ? origin.getLongitude() : Double.NaN;
+            potholeListQuery.query(nearest ? PotholeListQuery.Order.NEAREST : PotholeListQuery.Order.NEWEST,
+                    lat, lon, searchText.getText().toString());
+            adapter.setOrigin(lat, lon);
+            adapter.notifyDataSetChanged();
+            listView.setSelection(0);
+            countText.setText(potholeListQuery.size() + " of " + potholeIndex.size() + " potholes");
+        };
+        runQuery.run();
 
-        AlertDialog dialog = builder.create();
+        Handler searchHandler = new Handler(Looper.getMainLooper());
+        sortGroup.setOnCheckedChangeListener((group, checkedId) -> runQuery.run());
+        searchText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(runQuery);
+                searchHandler.postDelayed(runQuery, POTHOLE_SEARCH_DELAY_MS);
+            }
+        });
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Pothole List")
+                .setView(listDialogView)
+                .setPositiveButton("OK", (d, which) -> d.dismiss())
+                .create();
+        dialog.setOnDismissListener(d -> searchHandler.removeCallbacks(runQuery));
         dialog.show();
     }
 
@@ -382,10 +927,26 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         CheckBox sendSmsCheckBox = settingsView.findViewById(R.id.send_sms_checkbox);
         sendSmsCheckBox.setChecked(sendSmsEnabled);
 
+        CheckBox tiledPhotosCheckBox = settingsView.findViewById(R.id.tiled_photos_checkbox);
+        tiledPhotosCheckBox.setChecked(tiledPhotosEnabled);
+
+        SeekBar driveFpsSeekBar = settingsView.findViewById(R.id.drive_fps_seekbar);
+        driveFpsSeekBar.setProgress(driveModeTargetFps);
+
+        SeekBar nearbyRadiusSeekBar = settingsView.findViewById(R.id.nearby_radius_seekbar);
+        nearbyRadiusSeekBar.setProgress(nearbyRadiusKm);
+
+        settingsView.findViewById(R.id.diagnostics_button).setOnClickListener(v -> showDiagnosticsDialog());
+
         builder.setView(settingsView);
         builder.setPositiveButton("Save", (dialog, which) -> {
             toastMessagesEnabled = toastMessagesCheckBox.isChecked();
             sendSmsEnabled = sendSmsCheckBox.isChecked();
+            tiledPhotosEnabled = tiledPhotosCheckBox.isChecked();
+            driveModeTargetFps = driveFpsSeekBar.getProgress();
+            frameThrottler.setTargetFps(driveModeTargetFps);
+            nearbyRadiusKm = nearbyRadiusSeekBar.getProgress();
+            pushNearbyCount();
             if (toastMessagesEnabled) {
                 Toast.makeText(MainActivity.this, "Toast messages enabled", Toast.LENGTH_SHORT).show();
             }
@@ -399,38 +960,267 @@ public class MainActivity extends AppCompatActivity implements LocationListener
         dialog.show();
     }
 
-    private void savePotholes() {
+    private void showDiagnosticsDialog() {
+        View diagnosticsView = getLayoutInflater().inflate(R.layout.dialog_diagnostics, null);
+        TextView diagnosticsText = diagnosticsView.findViewById(R.id.diagnostics_text);
+        // Refreshed every second while the dialog is open
+        Runnable refresh = new Runnable() {
+            @Override
+            public void run() {
+                String backend = model != null ? model.getBackend().toString() : modelNotReadyMessage();
+                TileCache.Stats tileStats = mapResources.getStats();
+                diagnosticsText.setText("Backend: " + backend
+                        + "\nLocation: " + locationScheduler.current() + ", " + locationScheduler.getFixCount() + " fixes, "
+                        + locationScheduler.getRequestChanges() + " request changes"
+                        + "\nMap updates: " + mapUpdates.getPostedCount() + " posted, " + mapUpdates.getFlushCount() + " sent, "
+                        + mapUpdates.getSavedCount() + " bridge calls saved"
+                        + "\nClusters: " + clusterDiffer.getClustersSent() + " sent, " + clusterDiffer.getClustersKept()
+                        + " kept by " + clusterDiffer.getDiffUpdateCount() + " diffs, " + clusterDiffer.getFullUpdateCount() + " full"
+                        + "\nMap tiles: " + (tileStats != null ? tileStats : "cache not opened")
+                        + "\n\n" + metrics.snapshot().toText()
+                        + "\n\nDumped every " + METRICS_DUMP_INTERVAL_MS / 1000 + " s to " + metricsLog.getFile());
+                metricsHandler.postDelayed(this, 1000);
+            }
+        };
+        refresh.run();
+
+        AlertDialog dialog = new AlertDialog.Builder(this)
+                .setTitle("Diagnostics")
+                .setView(diagnosticsView)
+                .setPositiveButton("Close", (d, which) -> d.dismiss())
+                .create();
+        dialog.setOnDismissListener(d -> metricsHandler.removeCallbacks(refresh));
+        dialog.show();
+    }
+
+    // Appends what was recorded since the last dump as one line of the rolling metrics file
+    private void dumpMetrics() {
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        PipelineMetrics.Snapshot interval = snapshot.minus(lastDumpedMetrics);
+        lastDumpedMetrics = snapshot;
+        if (interval.isEmpty()) {
+            return;
+        }
+        String line = interval.toCompactLine(System.currentTimeMillis());
+        storageExecutor.execute(() -> {
+            try {
+                metricsLog.append(line);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to write metrics", e);
+            }
+        });
+    }
+
+    private void openPotholeLog() {
+        try {
+            potholeLog = PotholeLog.open(new File(getFilesDir(), POTHOLE_LOG_FILE));
+            potholeStore = new PotholeStore(potholeIndex, potholeLog);
+            migrateLegacyPotholes();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open pothole log", e);
+            Toast.makeText(this, "Failed to open saved potholes", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    // One-time import of potholes saved by older versions as a SharedPreferences string set
+    private void migrateLegacyPotholes() throws IOException {
         SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        Set<String> potholes = new HashSet<>(potholeList);
-        editor.putStringSet(POTHOLE_KEY, potholes);
-        editor.apply();
-        Log.d(TAG, "Potholes saved: " + potholes);
+        Set<String> potholes = prefs.getStringSet(POTHOLE_KEY, null);
+        if (potholes == null) {
+            return;
+        }
+        // An earlier run may have imported them and been killed before the key was removed
+        LongIntHashMap logged = new LongIntHashMap(potholeLog.getNextId());
+        potholeLog.readAll(record -> logged.put(legacyKey(record.lat, record.lon), record.id));
+        long now = System.currentTimeMillis();
+        int migrated = 0;
+        for (String pothole : potholes) {
+            try {
+                String[] parts = pothole.split(": ");
+                String[] coords = parts[1].split(", ");
+                double lat = Double.parseDouble(coords[0]);
+                double lon = Double.parseDouble(coords[1]);
+                if (logged.get(legacyKey(lat, lon)) == LongIntHashMap.MISSING) {
+                    logged.put(legacyKey(lat, lon), potholeLog.append(lat, lon, now, Float.NaN, PotholeLog.STATUS_DETECTED));
+                    migrated++;
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Skipping unreadable saved pothole: " + pothole);
+            }
+        }
+        potholeLog.sync();
+        if (!prefs.edit().remove(POTHOLE_KEY).commit()) {
+            Log.w(TAG, "Failed to remove migrated potholes from preferences");
+        }
+        Log.d(TAG, "Migrated " + migrated + " of " + potholes.size() + " potholes from preferences");
+    }
+
+    // A position at the log's 1e-7 degree resolution, so it matches what the log read back
+    private static long legacyKey(double lat, double lon) {
+        return ((long) Math.round(lat * 1e7) << 32) | (Math.round(lon * 1e7) & 0xFFFFFFFFL);
+    }
+
+    // newStatus applies to new potholes and to reported ones; otherwise the stored status is kept
+    private void savePothole(int id, float confidence, byte newStatus) {
+        if (potholeStore == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        potholeListQuery.setTimestamp(id, now);
+        // The index belongs to the main thread, the write to the storage thread along with compaction
+        double lat = potholeIndex.latitude(id);
+        double lon = potholeIndex.longitude(id);
+        storageExecutor.execute(() -> {
+            long start = metrics.nowNanos();
+            try {
+                // A pothole whose write fails is appended to the log on its next save
+                potholeStore.save(id, lat, lon, now, confidence, newStatus);
+                metrics.recordSince(PipelineMetrics.Stage.PERSIST, start);
+            } catch (IOException e) {
+                Log.e(TAG, "Failed to save pothole", e);
+            }
+        });
     }
 
     private void loadSavedPotholes() {
-        SharedPreferences prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
-        Set<String> potholes = prefs.getStringSet(POTHOLE_KEY, new HashSet<>());
+        potholeIndex.clear();
+        if (potholeLog == null) {
+            return;
+        }
 
-        // Clear existing potholes from the list
-        potholeList.clear();
+        try {
+            potholeStore.clear();
+            potholeLog.readLatest(record -> {
+                int id = potholeStore.load(record);
+                if (record.status == PotholeLog.STATUS_QUEUED) {
+                    // Not reported before the app was closed
+                    reportDispatcher.enqueue(new ReportDispatcher.Report(id, record.lat, record.lon, record.timestamp, record.confidence));
+                } else if (record.status == PotholeLog.STATUS_SENDING) {
+                    // Its SMS may still be on the way; the result broadcast reaches our transport
+                    reportDispatcher.adopt(new ReportDispatcher.Report(id, record.lat, record.lon, record.timestamp, record.confidence),
+                            record.timestamp);
+                }
+                potholeListQuery.setTimestamp(id, record.timestamp);
+            });
+            mapClusterer.rebuild();
+            nearbyCounter.rebuild();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to load saved potholes", e);
+        }
+        Log.d(TAG, "Potholes loaded: " + potholeIndex.size());
+    }
 
-        for (String pothole : potholes) {
-            potholeList.add(pothole);
-            String[] parts = pothole.split(": ");
-            String[] coords = parts[1].split(", ");
-            double lat = Double.parseDouble(coords[0]);
-            double lon = Double.parseDouble(coords[1]);
-            webView.evaluateJavascript("window.postMessage({type: 'location', lat: " + lat + ", lon: " + lon + "}, '*');", null);
+    // The push methods only queue an update; its script is built on the next display frame
+    private void pushClusters() {
+        if (viewport == null) {
+            return;
+        }
+        postMapUpdate(MapUpdateCoalescer.Kind.CLUSTERS, () -> {
+            mapClusterer.query(viewport[0], viewport[1], viewport[2], viewport[3], (int) viewport[4], visibleClusters);
+            return clusterDiffer.update(visibleClusters);
+        });
+    }
+
+    private void pushNearbyCount() {
+        if (currentLocation == null) {
+            return;
+        }
+        postMapUpdate(MapUpdateCoalescer.Kind.NEARBY_COUNT, () -> MapScripts.setNearbyCount(
+                nearbyCounter.count(currentLocation.getLatitude(), currentLocation.getLongitude(), nearbyRadiusKm * 1000.0)));
+    }
+
+    private void pushCurrentLocation() {
+        if (currentLocation == null) {
+            return;
+        }
+        postMapUpdate(MapUpdateCoalescer.Kind.LOCATION,
+                () -> MapScripts.setCurrentLocation(currentLocation.getLatitude(), currentLocation.getLongitude()));
+    }
+
+    private void postMapUpdate(MapUpdateCoalescer.Kind kind, MapUpdateCoalescer.ScriptSource source) {
+        if (mapUpdates.post(kind, source)) {
+            Choreographer.getInstance().postFrameCallback(mapFrame);
+        }
+    }
+
+    private void flushMapUpdates() {
+        long start = metrics.nowNanos();
+        String script = mapUpdates.flush();
+        if (script != null) {
+            webView.evaluateJavascript(script, null);
+        }
+        metrics.recordSince(PipelineMetrics.Stage.MAP_UPDATE, start);
+    }
+
+    // Called by map.html; JavaScript interface methods run on a WebView thread
+    private class MapBridge {
+        @JavascriptInterface
+        public void onViewportChanged(double south, double west, double north, double east, int zoom) {
+            runOnUiThread(() -> {
+                viewport = new double[]{south, west, north, east, zoom};
+                pushClusters();
+            });
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (potholeLog != null && potholeLog.needsCompaction()) {
+            storageExecutor.execute(() -> {
+                try {
+                    potholeLog.compact();
+                } catch (IOException e) {
+                    Log.e(TAG, "Failed to compact pothole log", e);
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        metricsHandler.postDelayed(metricsDump, METRICS_DUMP_INTERVAL_MS);
+        locationHandler.postDelayed(locationTick, LOCATION_TICK_MS);
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        metricsHandler.removeCallbacks(metricsDump);
+        locationHandler.removeCallbacks(locationTick);
+        dumpMetrics();
+        // Release the camera whenever the app leaves the foreground
+        if (driveModeController != null) {
+            driveModeController.stop();
+            onDriveModeChanged(false);
         }
-        Log.d(TAG, "Potholes loaded: " + potholes);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (model != null) {
-            model.close();
+        reportHandler.removeCallbacks(reportTick);
+        Choreographer.getInstance().removeFrameCallback(mapFrame);
+        locationManager.removeUpdates(this);
+        smsReportTransport.unregister();
+        try {
+            // The model itself is app-wide and stays open for the next activity
+            inferenceScheduler.shutdown(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        tileExecutor.shutdownNow();
+        storageExecutor.shutdown();
+        try {
+            storageExecutor.awaitTermination(2, TimeUnit.SECONDS);
+            if (potholeLog != null) {
+                potholeLog.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to close pothole log", e);
         }
     }
 }
@@ -0,0 +1,124 @@
+package com.example.pot_hole;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.util.Log;
+import android.webkit.WebResourceResponse;
+
+import com.example.pot_hole.core.TileCache;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Serves the map page's Leaflet files and OpenStreetMap tiles from a {@link TileCache}, so the
+ * map keeps working without coverage in areas seen before. map.html loads Leaflet from the
+ * bundled {@code assets/leaflet/}; a file missing there is downloaded once from unpkg instead
+ * and pinned in the cache. Tiles past the
+ * expiry their server gave are revalidated while there is a network.
+ *
+ * <p>Thread-safe; WebView calls it on its IO threads. The cache is opened on first use.
+ */
+public class MapResourceInterceptor {
+
+    private static final String TAG = "MapResourceInterceptor";
+    /** Where missing Leaflet files come from; must match leafletVersion in app/build.gradle.kts. */
+    static final String LEAFLET_URL_PREFIX = "https://unpkg.com/leaflet@1.9.4/dist/";
+    private static final String LEAFLET_ASSET_DIR = "leaflet/";
+    private static final String LEAFLET_ASSET_URL_PREFIX = "file:///android_asset/" + LEAFLET_ASSET_DIR;
+    private static final Pattern TILE_URL = Pattern.compile("https://[abc]\\.tile\\.openstreetmap\\.org/(\\d+)/(\\d+)/(\\d+)\\.png");
+    /** Tile URL for prefetching, in the placeholder form of {@link com.example.pot_hole.core.MapTilePrefetcher}. */
+    public static final String TILE_URL_TEMPLATE = "https://a.tile.openstreetmap.org/{z}/{x}/{y}.png";
+    private static final int FETCH_TIMEOUT_MS = 10000;
+
+    private final Context context;
+    private final File dir;
+    private final long maxBytes;
+    private TileCache cache;
+
+    public MapResourceInterceptor(Context context, File dir, long maxBytes) {
+        this.context = context.getApplicationContext();
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /** Opens the cache if needed; this scans its directory, so call it off the main thread. */
+    public synchronized TileCache getCache() throws IOException {
+        if (cache == null) {
+            // tile servers reject requests without an identifying User-Agent
+            cache = new TileCache(dir, maxBytes, TileCache.httpFetcher(
+                    context.getPackageName() + "/" + BuildConfig.VERSION_NAME, FETCH_TIMEOUT_MS));
+        }
+        return cache;
+    }
+
+    /** Cache statistics, or null while the cache has not been opened. */
+    public synchronized TileCache.Stats getStats() {
+        return cache != null ? cache.getStats() : null;
+    }
+
+    /** Response for {@code url}, or null to let WebView load it itself. */
+    public WebResourceResponse intercept(String url) {
+        if (url.startsWith(LEAFLET_ASSET_URL_PREFIX)) {
+            String file = url.substring(LEAFLET_ASSET_URL_PREFIX.length());
+            String mimeType = mimeType(file);
+            try {
+                InputStream asset = context.getAssets().open(LEAFLET_ASSET_DIR + file);
+                return new WebResourceResponse(mimeType, pinnedEncoding(mimeType), asset);
+            } catch (IOException e) {
+                // not bundled, fall back to the cache
+            }
+            return serve(LEAFLET_ASSET_DIR + file, LEAFLET_URL_PREFIX + file, true, mimeType);
+        }
+        Matcher tile = TILE_URL.matcher(url);
+        if (tile.matches()) {
+            // the a/b/c subdomains serve the same tiles
+            return serve(tile.group(1) + "/" + tile.group(2) + "/" + tile.group(3), url, false, "image/png");
+        }
+        return null;
+    }
+
+    private WebResourceResponse serve(String key, String url, boolean pinned, String mimeType) {
+        TileCache tiles;
+        try {
+            tiles = getCache();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open tile cache", e);
+            return null;
+        }
+        byte[] data = tiles.getOrFetch(key, url, pinned, isOnline());
+        if (data == null) {
+            // answered here so WebView does not retry the same unreachable server
+            return new WebResourceResponse(mimeType, null, 504, "Offline", Collections.emptyMap(), null);
+        }
+        return new WebResourceResponse(mimeType, pinned ? pinnedEncoding(mimeType) : null, new ByteArrayInputStream(data));
+    }
+
+    // Leaflet's images are binary
+    private static String pinnedEncoding(String mimeType) {
+        return mimeType.equals("image/png") ? null : "UTF-8";
+    }
+
+    private boolean isOnline() {
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        return connectivity != null && connectivity.getActiveNetwork() != null;
+    }
+
+    private static String mimeType(String file) {
+        if (file.endsWith(".js")) {
+            return "application/javascript";
+        }
+        if (file.endsWith(".css")) {
+            return "text/css";
+        }
+        if (file.endsWith(".png")) {
+            return "image/png";
+        }
+        return "application/octet-stream";
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.pot_hole;
+
+import android.content.Context;
+
+import com.example.pot_hole.core.ModelLoader;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * App-wide owner of the TensorFlow Lite model. Loading starts as soon as the splash screen
+ * is shown and the model then lives as long as the process, so activities never close it.
+ * On the first run loading includes picking the fastest backend, see {@link TfliteModel}.
+ * A failed load is forgotten, so the next {@link #get} tries again.
+ */
+public final class ModelHolder {
+
+    // Throwaway inferences run before the model is handed out
+    private static final int WARMUP_RUNS = 2;
+
+    private static ModelLoader<TfliteModel> loader;
+
+    private ModelHolder() {
+    }
+
+    /** Returns the app's model loader, starting the load on first use or after a failed one. */
+    public static synchronized ModelLoader<TfliteModel> get(Context context) {
+        if (loader == null) {
+            final Context appContext = context.getApplicationContext();
+            ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "model-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            loader = new ModelLoader<>(() -> TfliteModel.open(appContext), ModelHolder::warmUp, WARMUP_RUNS, executor);
+            final ModelLoader<TfliteModel> started = loader;
+            // e.g. out of memory during warm-up; not worth giving up on detection until the process dies
+            started.future().whenComplete((model, error) -> {
+                if (error != null) {
+                    forget(started);
+                }
+            });
+            started.start();
+            // The executor is only needed for the one load
+            executor.shutdown();
+        }
+        return loader;
+    }
+
+    private static synchronized void forget(ModelLoader<TfliteModel> failed) {
+        if (loader == failed) {
+            loader = null;
+        }
+    }
+
+    private static void warmUp(TfliteModel model) throws Exception {
+        model.classify(model.allocateInput());
+    }
+}
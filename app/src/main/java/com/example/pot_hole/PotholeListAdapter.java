@@ -0,0 +1,112 @@
+package com.example.pot_hole;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+import com.example.pot_hole.core.GeoMath;
+import com.example.pot_hole.core.PotholeIndex;
+import com.example.pot_hole.core.PotholeListQuery;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Shows a {@link PotholeListQuery} in a ListView. Rows are recycled through a view holder and
+ * only the positions on screen are asked for, so pages are loaded as the list scrolls.
+ */
+public class PotholeListAdapter extends BaseAdapter {
+
+    private static final class ViewHolder {
+        final TextView title;
+        final TextView details;
+
+        ViewHolder(View row) {
+            title = row.findViewById(R.id.pothole_title);
+            details = row.findViewById(R.id.pothole_details);
+        }
+    }
+
+    private final LayoutInflater inflater;
+    private final PotholeListQuery query;
+    private final PotholeIndex index;
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.MEDIUM, DateFormat.SHORT);
+    private final Date date = new Date();
+    private final StringBuilder text = new StringBuilder(64);
+    private double originLat = Double.NaN;
+    private double originLon;
+
+    public PotholeListAdapter(Context context, PotholeListQuery query, PotholeIndex index) {
+        this.inflater = LayoutInflater.from(context);
+        this.query = query;
+        this.index = index;
+    }
+
+    /** Position the distances are shown from; NaN hides them. */
+    public void setOrigin(double lat, double lon) {
+        originLat = lat;
+        originLon = lon;
+    }
+
+    @Override
+    public int getCount() {
+        return query.size();
+    }
+
+    @Override
+    public Integer getItem(int position) {
+        return query.idAt(position);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return query.idAt(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        View row = convertView;
+        ViewHolder holder;
+        if (row == null) {
+            row = inflater.inflate(R.layout.item_pothole, parent, false);
+            holder = new ViewHolder(row);
+            row.setTag(holder);
+        } else {
+            holder = (ViewHolder) row.getTag();
+        }
+        int id = query.idAt(position);
+
+        text.setLength(0);
+        query.appendTitle(id, text);
+        holder.title.setText(text);
+
+        text.setLength(0);
+        if (!Double.isNaN(originLat)) {
+            double meters = GeoMath.distanceMeters(originLat, originLon, index.latitude(id), index.longitude(id));
+            text.append(meters < 1000 ? String.format(Locale.ROOT, "%.0f m", meters)
+                    : String.format(Locale.ROOT, "%.1f km", meters / 1000)).append(" away");
+        }
+        long timestamp = query.timestamp(id);
+        if (timestamp > 0) {
+            if (text.length() > 0) {
+                text.append(" · ");
+            }
+            date.setTime(timestamp);
+            text.append("last seen ").append(dateFormat.format(date));
+        }
+        if (index.hits(id) > 1) {
+            text.append(" · ").append(index.hits(id)).append(" detections");
+        }
+        holder.details.setText(text);
+        return row;
+    }
+}
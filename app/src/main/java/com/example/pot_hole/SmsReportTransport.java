@@ -0,0 +1,132 @@
+package com.example.pot_hole;
+
+import android.Manifest;
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.example.pot_hole.core.PipelineMetrics;
+import com.example.pot_hole.core.ReportDispatcher;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sends report digests as SMS and turns the sent and delivered broadcasts back into
+ * {@link ReportDispatcher} results. A multipart message counts as sent once every part is.
+ * Results for batches sent before the activity was recreated are handed over on the first part,
+ * since their part count is gone with the old transport. Must be used on the main thread.
+ */
+public class SmsReportTransport extends BroadcastReceiver implements ReportDispatcher.Transport {
+
+    private static final String TAG = "SmsReportTransport";
+    private static final String ACTION_SENT = "com.example.pot_hole.SMS_SENT";
+    private static final String ACTION_DELIVERED = "com.example.pot_hole.SMS_DELIVERED";
+    private static final String EXTRA_BATCH_ID = "batch_id";
+
+    private final Context context;
+    private final String phoneNumber;
+    private final PipelineMetrics metrics;
+    private ReportDispatcher dispatcher;
+    private Runnable onResult;
+    // parts still waiting for their sent broadcast, per batch
+    private final Map<Long, Integer> remainingParts = new HashMap<>();
+    private final Map<Long, Long> sendStartNanos = new HashMap<>();
+
+    public SmsReportTransport(Context context, String phoneNumber, PipelineMetrics metrics) {
+        this.context = context;
+        this.phoneNumber = phoneNumber;
+        this.metrics = metrics;
+    }
+
+    /** Starts listening for results; {@code onResult} runs after each one is handed over. */
+    public void register(ReportDispatcher dispatcher, Runnable onResult) {
+        this.dispatcher = dispatcher;
+        this.onResult = onResult;
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(ACTION_SENT);
+        filter.addAction(ACTION_DELIVERED);
+        ContextCompat.registerReceiver(context, this, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    public void unregister() {
+        context.unregisterReceiver(this);
+    }
+
+    @Override
+    public boolean send(long batchId, String message) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.SEND_SMS) != PackageManager.PERMISSION_GRANTED) {
+            Log.d(TAG, "SMS permission not granted, report " + batchId + " not sent");
+            return false;
+        }
+        SmsManager smsManager = SmsManager.getDefault();
+        ArrayList<String> parts = smsManager.divideMessage(message);
+        ArrayList<PendingIntent> sentIntents = new ArrayList<>();
+        ArrayList<PendingIntent> deliveryIntents = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            sentIntents.add(pendingIntent(ACTION_SENT, batchId, i));
+            // one delivery report per message is enough
+            deliveryIntents.add(i == 0 ? pendingIntent(ACTION_DELIVERED, batchId, i) : null);
+        }
+        long start = metrics.nowNanos();
+        try {
+            smsManager.sendMultipartTextMessage(phoneNumber, null, parts, sentIntents, deliveryIntents);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to send report " + batchId, e);
+            metrics.increment(PipelineMetrics.Counter.SMS_FAILED);
+            return false;
+        }
+        remainingParts.put(batchId, parts.size());
+        sendStartNanos.put(batchId, start);
+        Log.d(TAG, "Sending report " + batchId + " to " + phoneNumber + " in " + parts.size() + " parts");
+        return true;
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        long batchId = intent.getLongExtra(EXTRA_BATCH_ID, -1);
+        if (ACTION_DELIVERED.equals(intent.getAction())) {
+            Log.d(TAG, "Report " + batchId + " delivered");
+            dispatcher.onDelivered(batchId);
+            return;
+        }
+        Integer remaining = remainingParts.get(batchId);
+        if (remaining == null) {
+            // Sent by an earlier transport, or already settled; the dispatcher tells them apart
+            Log.d(TAG, "Late result " + getResultCode() + " for report " + batchId);
+            dispatcher.onSendResult(batchId, getResultCode() == Activity.RESULT_OK);
+        } else if (getResultCode() != Activity.RESULT_OK) {
+            Log.w(TAG, "Report " + batchId + " failed with result " + getResultCode());
+            remainingParts.remove(batchId);
+            sendStartNanos.remove(batchId);
+            metrics.increment(PipelineMetrics.Counter.SMS_FAILED);
+            dispatcher.onSendResult(batchId, false);
+        } else if (remaining > 1) {
+            remainingParts.put(batchId, remaining - 1);
+            return;
+        } else {
+            remainingParts.remove(batchId);
+            metrics.recordSince(PipelineMetrics.Stage.SMS, sendStartNanos.remove(batchId));
+            metrics.increment(PipelineMetrics.Counter.SMS_SENT);
+            dispatcher.onSendResult(batchId, true);
+        }
+        onResult.run();
+    }
+
+    private PendingIntent pendingIntent(String action, long batchId, int part) {
+        Intent intent = new Intent(action).setPackage(context.getPackageName()).putExtra(EXTRA_BATCH_ID, batchId);
+        // request codes only need to be unique among the intents alive at the same time, which
+        // includes those of an earlier activity; batch ids do not repeat across instances
+        int requestCode = (int) (batchId * 64 + part);
+        return PendingIntent.getBroadcast(context, requestCode, intent, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.pot_hole;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.pot_hole.core.BackendSelector;
+import com.example.pot_hole.core.InferenceBackend;
+import com.example.pot_hole.core.TensorQuantization;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Delegate;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.nnapi.NnApiDelegate;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The pothole classifier on a TensorFlow Lite interpreter whose backend (CPU threads, XNNPACK,
+ * GPU or NNAPI delegate) is picked by {@link BackendSelector}. The ranking is benchmarked on
+ * first run and kept per device build; if the chosen backend fails during inference it is
+ * dropped and the next one takes over.
+ *
+ * <p>Float and post-training-quantized models both work: for a uint8/int8 input the caller
+ * passes one byte per channel (see {@link #getInputQuantization()}), and quantized output is
+ * dequantized back to probabilities.
+ *
+ * <p>Several inputs can be classified in one call with {@link #classifyBatch}: on CPU backends
+ * the input tensor is resized to the batch, delegates get the inputs one at a time. So do CPU
+ * backends once a batch has failed, since a model exported with a fixed batch of 1 cannot be
+ * resized at all; that is not held against the backend.
+ *
+ * <p>Thread-safe. The GPU delegate must be used on the thread that created it, so every
+ * interpreter and delegate of a model is created, benchmarked, run and closed on the model's own
+ * thread; callers on other threads wait for it.
+ */
+public class TfliteModel implements AutoCloseable {
+
+    private static final String TAG = "TfliteModel";
+    // model.tflite is packaged from src/main/ml by the model binding; pick another with -Ppothole.model
+    private static final String MODEL_FILE = BuildConfig.MODEL_FILE;
+    private static final String PREFS_NAME = "InferenceBackend";
+    private static final int BENCHMARK_WARMUP_RUNS = 2;
+    private static final int BENCHMARK_RUNS = 7;
+    private static final double MAX_JITTER = 3.0;
+    private static final float MAX_OUTPUT_ERROR = 0.05f;
+
+    private final MappedByteBuffer modelBuffer;
+    private final ModelThread thread;
+    private final BackendSelector selector;
+    private final List<InferenceBackend> candidates;
+    private Runner runner;
+    private InferenceBackend backend;
+    private boolean batchUnsupported;
+
+    private TfliteModel(MappedByteBuffer modelBuffer, ModelThread thread, BackendSelector selector, List<InferenceBackend> candidates) {
+        this.modelBuffer = modelBuffer;
+        this.thread = thread;
+        this.selector = selector;
+        this.candidates = candidates;
+    }
+
+    /** Loads the model on the best backend for this device, benchmarking them on first run. */
+    public static TfliteModel open(Context context) throws Exception {
+        MappedByteBuffer modelBuffer = FileUtil.loadMappedFile(context, MODEL_FILE);
+        final SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        // A system update can change which delegates work, so the ranking is per build
+        final String key = "ranking_" + Build.FINGERPRINT;
+        BackendSelector.Store store = new BackendSelector.Store() {
+            @Override
+            public String load() {
+                return prefs.getString(key, null);
+            }
+
+            @Override
+            public void save(String ranking) {
+                prefs.edit().putString(key, ranking).apply();
+            }
+        };
+        BackendSelector selector = new BackendSelector(backend -> new ProbeSession(new Runner(modelBuffer, backend)), store,
+                BENCHMARK_WARMUP_RUNS, BENCHMARK_RUNS, MAX_JITTER, MAX_OUTPUT_ERROR);
+        ModelThread thread = new ModelThread();
+        TfliteModel model = new TfliteModel(modelBuffer, thread, selector, candidates());
+        try {
+            thread.call(() -> {
+                model.openBest();
+                return null;
+            });
+        } catch (Exception | Error e) {
+            thread.shutdown();
+            throw e;
+        }
+        Log.d(TAG, "Loaded " + MODEL_FILE + (model.runner.inputQuantization != null ? " with quantized input" : ""));
+        for (BackendSelector.Result result : selector.getLastResults()) {
+            Log.d(TAG, "Benchmark " + result);
+        }
+        return model;
+    }
+
+    public synchronized InferenceBackend getBackend() {
+        return backend;
+    }
+
+    /** Quantization of the model input, or null for float input. */
+    public synchronized TensorQuantization getInputQuantization() {
+        return runner.inputQuantization;
+    }
+
+    /** A direct buffer of the model's input size, all zero. */
+    public synchronized ByteBuffer allocateInput() {
+        return ByteBuffer.allocateDirect(runner.inputBytes).order(ByteOrder.nativeOrder());
+    }
+
+    /** Classifies one normalized input tensor and returns the output probabilities. */
+    public float[] classify(ByteBuffer input) throws Exception {
+        return thread.call(() -> classifyOnThread(input));
+    }
+
+    /**
+     * Classifies {@code count} inputs laid out back to back in {@code input}, each the size of
+     * {@link #allocateInput()}, and returns the probabilities of each.
+     */
+    public float[][] classifyBatch(ByteBuffer input, int count) throws Exception {
+        return thread.call(() -> classifyBatchOnThread(input, count));
+    }
+
+    @Override
+    public void close() {
+        try {
+            thread.call(() -> {
+                closeOnThread();
+                return null;
+            });
+        } catch (Exception e) {
+            Log.w(TAG, "Failed to close the model", e);
+        } finally {
+            thread.shutdown();
+        }
+    }
+
+    private synchronized float[] classifyOnThread(ByteBuffer input) throws Exception {
+        try {
+            return runner.run(input);
+        } catch (RuntimeException e) {
+            if (backend.equals(InferenceBackend.DEFAULT)) {
+                throw e;
+            }
+            Log.w(TAG, "Backend " + backend + " failed, falling back", e);
+            selector.markFailed(backend);
+            runner.close();
+            openBest();
+            return runner.run(input);
+        }
+    }
+
+    private synchronized float[][] classifyBatchOnThread(ByteBuffer input, int count) throws Exception {
+        // Delegates are prepared for one input shape; resizing would rebuild their graph
+        if (!batchUnsupported && backend.kind == InferenceBackend.Kind.CPU) {
+            try {
+                float[][] probabilities = runner.runBatch(input, count);
+                if (probabilities != null) {
+                    return probabilities;
+                }
+                Log.w(TAG, "Model output does not follow the batch size, classifying one input at a time");
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Batch of " + count + " failed on " + backend + ", classifying one input at a time", e);
+            }
+            batchUnsupported = true;
+        }
+        // Single runs still drop a backend that really fails
+        float[][] probabilities = new float[count][];
+        int inputBytes = runner.inputBytes;
+        for (int i = 0; i < count; i++) {
+            ByteBuffer one = input.duplicate();
+            one.limit((i + 1) * inputBytes).position(i * inputBytes);
+            probabilities[i] = classifyOnThread(one.slice().order(ByteOrder.nativeOrder()));
+        }
+        return probabilities;
+    }
+
+    private synchronized void closeOnThread() {
+        if (runner != null) {
+            runner.close();
+            runner = null;
+        }
+    }
+
+    private void openBest() throws Exception {
+        runner = selector.open(candidates, backend -> new Runner(modelBuffer, backend));
+        backend = runner.backend;
+        Log.d(TAG, "Running on " + backend);
+    }
+
+    /** Every backend worth trying on this device. */
+    private static List<InferenceBackend> candidates() {
+        List<InferenceBackend> candidates = new ArrayList<>();
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, 2, 4}) {
+            if (threads <= cores) {
+                candidates.add(InferenceBackend.cpu(threads, false));
+                candidates.add(InferenceBackend.cpu(threads, true));
+            }
+        }
+        try (CompatibilityList compatibilityList = new CompatibilityList()) {
+            if (compatibilityList.isDelegateSupportedOnThisDevice()) {
+                candidates.add(InferenceBackend.delegate(InferenceBackend.Kind.GPU, 1));
+            }
+        } catch (RuntimeException | LinkageError e) {
+            Log.w(TAG, "GPU delegate unavailable", e);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P) {
+            // NNAPI before Android 9 is too patchy to be worth timing
+            candidates.add(InferenceBackend.delegate(InferenceBackend.Kind.NNAPI, 1));
+        }
+        return candidates;
+    }
+
+    private static Delegate createDelegate(InferenceBackend backend) {
+        switch (backend.kind) {
+            case GPU:
+                try (CompatibilityList compatibilityList = new CompatibilityList()) {
+                    return new GpuDelegate(compatibilityList.getBestOptionsForThisDevice());
+                }
+            case NNAPI:
+                return new NnApiDelegate();
+            default:
+                return null;
+        }
+    }
+
+    private static Interpreter.Options options(InferenceBackend backend, Delegate delegate) {
+        Interpreter.Options options = new Interpreter.Options()
+                .setNumThreads(backend.threads)
+                .setUseXNNPACK(backend.xnnpack);
+        if (delegate != null) {
+            options.addDelegate(delegate);
+        }
+        return options;
+    }
+
+    private static TensorQuantization quantization(Tensor tensor) {
+        DataType type = tensor.dataType();
+        if (type != DataType.UINT8 && type != DataType.INT8) {
+            return null;
+        }
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        return new TensorQuantization(params.getScale(), params.getZeroPoint(), type == DataType.INT8);
+    }
+
+    /** The single thread a model's interpreters and delegates live on. */
+    private static final class ModelThread implements ThreadFactory {
+        private final ExecutorService executor = Executors.newSingleThreadExecutor(this);
+        private volatile Thread thread;
+
+        @Override
+        public Thread newThread(Runnable r) {
+            thread = new Thread(r, "tflite");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        /** Runs {@code task} on the model thread and waits for it, rethrowing what it threw. */
+        <T> T call(Callable<T> task) throws Exception {
+            if (Thread.currentThread() == thread) {
+                return task.call();
+            }
+            try {
+                return executor.submit(task).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof Exception) {
+                    throw (Exception) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw e;
+            }
+        }
+
+        void shutdown() {
+            executor.shutdown();
+        }
+    }
+
+    /** An interpreter on one backend, with output buffers matching the model's output type. */
+    private static final class Runner {
+        final InferenceBackend backend;
+        final TensorQuantization inputQuantization;
+        final int inputBytes;
+        private final Interpreter interpreter;
+        private final int[] inputShape;
+        private int batchSize = 1; // inputs the input tensor is currently sized for
+        private final Delegate delegate;
+        private final TensorQuantization outputQuantization;
+        private final float[][] floatOutput;
+        private final ByteBuffer quantizedOutput;
+
+        Runner(MappedByteBuffer modelBuffer, InferenceBackend backend) {
+            this.backend = backend;
+            delegate = createDelegate(backend);
+            try {
+                interpreter = new Interpreter(modelBuffer, options(backend, delegate));
+            } catch (RuntimeException e) {
+                if (delegate != null) {
+                    delegate.close();
+                }
+                throw e;
+            }
+            Tensor input = interpreter.getInputTensor(0);
+            inputQuantization = quantization(input);
+            inputBytes = input.numBytes();
+            inputShape = input.shape();
+            Tensor output = interpreter.getOutputTensor(0);
+            outputQuantization = quantization(output);
+            int classes = output.shape()[1];
+            floatOutput = new float[1][classes];
+            quantizedOutput = outputQuantization != null ? ByteBuffer.allocateDirect(classes).order(ByteOrder.nativeOrder()) : null;
+        }
+
+        float[] run(ByteBuffer input) {
+            resize(1);
+            input.rewind();
+            if (outputQuantization == null) {
+                interpreter.run(input, floatOutput);
+                return floatOutput[0].clone();
+            }
+            quantizedOutput.rewind();
+            interpreter.run(input, quantizedOutput);
+            float[] probabilities = new float[floatOutput[0].length];
+            outputQuantization.dequantize(quantizedOutput, probabilities);
+            return probabilities;
+        }
+
+        /** Runs the inputs as one batch; null if the model's output is not one row per input. */
+        float[][] runBatch(ByteBuffer input, int count) {
+            int classes = floatOutput[0].length;
+            float[][] probabilities = new float[count][];
+            resize(count);
+            int[] outputShape = interpreter.getOutputTensor(0).shape();
+            if (outputShape.length != 2 || outputShape[0] != count || outputShape[1] != classes) {
+                return null;
+            }
+            input.rewind();
+            if (outputQuantization == null) {
+                float[][] output = new float[count][classes];
+                interpreter.run(input, output);
+                return output;
+            }
+            ByteBuffer output = ByteBuffer.allocateDirect(count * classes).order(ByteOrder.nativeOrder());
+            interpreter.run(input, output);
+            for (int i = 0; i < count; i++) {
+                output.limit((i + 1) * classes).position(i * classes);
+                probabilities[i] = new float[classes];
+                outputQuantization.dequantize(output.slice(), probabilities[i]);
+            }
+            return probabilities;
+        }
+
+        private void resize(int count) {
+            if (count == batchSize) {
+                return;
+            }
+            int[] shape = inputShape.clone();
+            shape[0] = count;
+            // unknown until allocation succeeds, so a failed resize is redone by the next run
+            batchSize = 0;
+            interpreter.resizeInput(0, shape);
+            interpreter.allocateTensors();
+            batchSize = count;
+        }
+
+        void close() {
+            interpreter.close();
+            if (delegate != null) {
+                delegate.close();
+            }
+        }
+    }
+
+    /** A runner fed a blank image, for benchmarking. */
+    private static final class ProbeSession implements BackendSelector.Session {
+        private final Runner runner;
+        private final ByteBuffer input;
+
+        ProbeSession(Runner runner) {
+            this.runner = runner;
+            input = ByteBuffer.allocateDirect(runner.inputBytes).order(ByteOrder.nativeOrder());
+        }
+
+        @Override
+        public float[] run() {
+            return runner.run(input);
+        }
+
+        @Override
+        public void close() {
+            runner.close();
+        }
+    }
+}
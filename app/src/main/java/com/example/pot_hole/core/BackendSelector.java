@@ -0,0 +1,257 @@
+package com.example.pot_hole.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Picks the fastest backend that runs the model reliably on this device.
+ *
+ * <p>On first use every candidate is opened through the {@link Probe} and timed over a few
+ * runs after warm-up. Candidates that fail to open or run, whose outputs disagree with the
+ * plain CPU reference, or whose slow runs are more than {@code maxJitter} times the median
+ * are dropped; the rest are ranked by median time and saved in the {@link Store}, so later
+ * starts skip the benchmark. {@link #open} walks that ranking and removes any backend that
+ * fails, ending with {@link InferenceBackend#DEFAULT}. Thread-safe.
+ */
+public class BackendSelector {
+
+    public interface Session extends AutoCloseable {
+        /** Runs the model once on fixed input and returns its output. */
+        float[] run() throws Exception;
+
+        @Override
+        void close();
+    }
+
+    public interface Probe {
+        Session open(InferenceBackend backend) throws Exception;
+    }
+
+    /** Where the ranking is kept between runs; {@code load} returns null if nothing is saved. */
+    public interface Store {
+        String load();
+
+        void save(String ranking);
+    }
+
+    public interface Opener<T> {
+        T open(InferenceBackend backend) throws Exception;
+    }
+
+    /** Benchmark outcome of one candidate. */
+    public static final class Result {
+        public final InferenceBackend backend;
+        public final long medianNanos;
+        public final long p90Nanos;
+        /** Why the candidate was rejected, or null. */
+        public final String failure;
+
+        Result(InferenceBackend backend, long medianNanos, long p90Nanos, String failure) {
+            this.backend = backend;
+            this.medianNanos = medianNanos;
+            this.p90Nanos = p90Nanos;
+            this.failure = failure;
+        }
+
+        @Override
+        public String toString() {
+            return backend + (failure != null ? " rejected: " + failure
+                    : " median " + medianNanos / 1000 + " us, p90 " + p90Nanos / 1000 + " us");
+        }
+    }
+
+    private final Probe probe;
+    private final Store store;
+    private final int warmupRuns;
+    private final int measuredRuns;
+    private final double maxJitter;
+    private final float maxOutputError;
+    private List<Result> lastResults = Collections.emptyList();
+
+    public BackendSelector(Probe probe, Store store, int warmupRuns, int measuredRuns, double maxJitter, float maxOutputError) {
+        if (measuredRuns < 1) {
+            throw new IllegalArgumentException("measuredRuns must be positive: " + measuredRuns);
+        }
+        this.probe = probe;
+        this.store = store;
+        this.warmupRuns = warmupRuns;
+        this.measuredRuns = measuredRuns;
+        this.maxJitter = maxJitter;
+        this.maxOutputError = maxOutputError;
+    }
+
+    /**
+     * Backends to try, fastest first, limited to {@code candidates} and always ending with
+     * {@link InferenceBackend#DEFAULT}. Benchmarks and saves the ranking if none is saved yet.
+     */
+    public synchronized List<InferenceBackend> ranking(List<InferenceBackend> candidates) {
+        List<InferenceBackend> saved = parse(store.load());
+        List<InferenceBackend> ranking = new ArrayList<>();
+        if (saved != null) {
+            for (InferenceBackend backend : saved) {
+                if (candidates.contains(backend) || backend.equals(InferenceBackend.DEFAULT)) {
+                    ranking.add(backend);
+                }
+            }
+        } else {
+            List<Result> results = benchmark(candidates);
+            List<Result> stable = new ArrayList<>();
+            for (Result result : results) {
+                if (result.failure == null) {
+                    stable.add(result);
+                }
+            }
+            Collections.sort(stable, (a, b) -> Long.compare(a.medianNanos, b.medianNanos));
+            for (Result result : stable) {
+                ranking.add(result.backend);
+            }
+        }
+        if (!ranking.contains(InferenceBackend.DEFAULT)) {
+            ranking.add(InferenceBackend.DEFAULT);
+        }
+        if (saved == null || !ranking.equals(saved)) {
+            store.save(format(ranking));
+        }
+        return ranking;
+    }
+
+    /**
+     * Opens the best working backend with {@code opener}. Backends that fail to open are
+     * removed from the saved ranking; if even the default fails its error is thrown.
+     */
+    public <T> T open(List<InferenceBackend> candidates, Opener<T> opener) throws Exception {
+        for (InferenceBackend backend : ranking(candidates)) {
+            try {
+                return opener.open(backend);
+            } catch (Exception e) {
+                if (backend.equals(InferenceBackend.DEFAULT)) {
+                    throw e;
+                }
+                markFailed(backend);
+            }
+        }
+        throw new IllegalStateException("Default backend missing from ranking");
+    }
+
+    /** Removes {@code backend} from the saved ranking, e.g. after a delegate failed during inference. */
+    public synchronized void markFailed(InferenceBackend backend) {
+        if (backend.equals(InferenceBackend.DEFAULT)) {
+            return;
+        }
+        List<InferenceBackend> saved = parse(store.load());
+        if (saved != null && saved.remove(backend)) {
+            store.save(format(saved));
+        }
+    }
+
+    /** Results of the last benchmark run by this selector, for diagnostics. */
+    public synchronized List<Result> getLastResults() {
+        return lastResults;
+    }
+
+    /** Times every candidate, the plain CPU reference first. */
+    public synchronized List<Result> benchmark(List<InferenceBackend> candidates) {
+        List<InferenceBackend> order = new ArrayList<>(candidates);
+        order.remove(InferenceBackend.DEFAULT);
+        order.add(0, InferenceBackend.DEFAULT);
+        List<Result> results = new ArrayList<>();
+        float[] reference = null;
+        for (InferenceBackend backend : order) {
+            float[][] output = new float[1][];
+            Result result = measure(backend, reference, output);
+            if (reference == null && result.failure == null) {
+                reference = output[0];
+            }
+            results.add(result);
+        }
+        lastResults = Collections.unmodifiableList(results);
+        return lastResults;
+    }
+
+    private Result measure(InferenceBackend backend, float[] reference, float[][] output) {
+        Session session;
+        try {
+            session = probe.open(backend);
+        } catch (Exception | LinkageError e) {
+            return new Result(backend, 0, 0, "open failed: " + e);
+        }
+        try {
+            for (int i = 0; i < warmupRuns; i++) {
+                session.run();
+            }
+            long[] times = new long[measuredRuns];
+            for (int i = 0; i < measuredRuns; i++) {
+                long start = System.nanoTime();
+                output[0] = session.run();
+                times[i] = System.nanoTime() - start;
+                String mismatch = compare(output[0], reference);
+                if (mismatch != null) {
+                    return new Result(backend, 0, 0, mismatch);
+                }
+            }
+            Arrays.sort(times);
+            long median = times[measuredRuns / 2];
+            long p90 = times[Math.min(measuredRuns - 1, (int) Math.ceil(measuredRuns * 0.9) - 1)];
+            if (p90 > median * maxJitter) {
+                return new Result(backend, median, p90, "unstable timing");
+            }
+            return new Result(backend, median, p90, null);
+        } catch (Exception | LinkageError e) {
+            return new Result(backend, 0, 0, "run failed: " + e);
+        } finally {
+            session.close();
+        }
+    }
+
+    private String compare(float[] output, float[] reference) {
+        if (output == null) {
+            return "no output";
+        }
+        for (float value : output) {
+            if (Float.isNaN(value)) {
+                return "NaN output";
+            }
+        }
+        if (reference == null) {
+            return null;
+        }
+        if (output.length != reference.length) {
+            return "output size " + output.length + " instead of " + reference.length;
+        }
+        for (int i = 0; i < output.length; i++) {
+            if (Math.abs(output[i] - reference[i]) > maxOutputError) {
+                return "output " + i + " is " + output[i] + " instead of " + reference[i];
+            }
+        }
+        return null;
+    }
+
+    private static String format(List<InferenceBackend> ranking) {
+        StringBuilder text = new StringBuilder();
+        for (InferenceBackend backend : ranking) {
+            if (text.length() > 0) {
+                text.append(',');
+            }
+            text.append(backend.key());
+        }
+        return text.toString();
+    }
+
+    /** Saved ranking, or null if there is none or it cannot be read. */
+    private static List<InferenceBackend> parse(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        List<InferenceBackend> ranking = new ArrayList<>();
+        try {
+            for (String key : text.split(",")) {
+                ranking.add(InferenceBackend.parse(key));
+            }
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return ranking;
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.pot_hole.core;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-worker scheduler with a bounded queue. When the queue is full the oldest
+ * waiting frame is dropped, so the worker always moves on to the freshest frames.
+ * Listener callbacks run on {@code callbackExecutor} (the UI thread in the app), except
+ * for frames cancelled by {@link #shutdown}, which are reported on the calling thread.
+ */
+public class BoundedInferenceScheduler<F> implements InferenceScheduler<F> {
+
+    private static final class Pending<F> {
+        final F frame;
+        final long submittedAt;
+
+        Pending(F frame, long submittedAt) {
+            this.frame = frame;
+            this.submittedAt = submittedAt;
+        }
+    }
+
+    private final FrameClassifier<F> classifier;
+    private final int capacity;
+    private final Executor callbackExecutor;
+    private final Listener<F> listener;
+    private final ExecutorService worker;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Pending<F>> queue;
+    private boolean draining;
+    private volatile boolean shutdown;
+
+    public BoundedInferenceScheduler(FrameClassifier<F> classifier, int capacity,
+                                     Executor callbackExecutor, Listener<F> listener) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.classifier = classifier;
+        this.capacity = capacity;
+        this.callbackExecutor = callbackExecutor;
+        this.listener = listener;
+        this.queue = new ArrayDeque<>(capacity);
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "inference");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public boolean submit(F frame) {
+        Pending<F> dropped = null;
+        boolean startDrain = false;
+        synchronized (lock) {
+            if (shutdown) {
+                return false;
+            }
+            if (queue.size() == capacity) {
+                dropped = queue.poll();
+            }
+            queue.add(new Pending<>(frame, System.nanoTime()));
+            if (!draining) {
+                draining = true;
+                startDrain = true;
+            }
+        }
+        if (dropped != null) {
+            notifyDropped(dropped.frame);
+        }
+        if (startDrain) {
+            worker.execute(this::drain);
+        }
+        return true;
+    }
+
+    @Override
+    public int pendingCount() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    @Override
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        ArrayDeque<Pending<F>> cancelled;
+        synchronized (lock) {
+            shutdown = true;
+            cancelled = new ArrayDeque<>(queue);
+            queue.clear();
+        }
+        for (Pending<F> pending : cancelled) {
+            listener.onDropped(pending.frame);
+        }
+        worker.shutdown();
+        return worker.awaitTermination(timeout, unit);
+    }
+
+    private void drain() {
+        while (true) {
+            Pending<F> next;
+            synchronized (lock) {
+                next = queue.poll();
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            final F frame = next.frame;
+            try {
+                final float[] probabilities = classifier.classify(frame);
+                final long latency = System.nanoTime() - next.submittedAt;
+                callbackExecutor.execute(() -> {
+                    if (shutdown) {
+                        listener.onDropped(frame);
+                    } else {
+                        listener.onResult(frame, probabilities, latency);
+                    }
+                });
+            } catch (Exception e) {
+                callbackExecutor.execute(() -> listener.onError(frame, e));
+            }
+        }
+    }
+
+    private void notifyDropped(F frame) {
+        callbackExecutor.execute(() -> listener.onDropped(frame));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.pot_hole.core;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Remembers which clusters the map page shows and builds the script that brings it to a new
+ * set, so a refresh or a small pan only sends the clusters that changed.
+ *
+ * <p>A cluster is identified by its formatted position and count, the same text the page
+ * parses, so a cluster whose count changed is removed and added again. The first update after
+ * {@link #reset()}, and any update where the diff would be longer than the new set, replaces
+ * everything with {@code window.showClusters}; otherwise {@code window.updateClusters(removed,
+ * added)} sends the difference.
+ *
+ * <p>Not thread-safe; used from the main thread when map updates are flushed.
+ */
+public class ClusterDiffer {
+
+    private Set<String> shown = new HashSet<>();
+    private Set<String> next = new HashSet<>();
+    private final List<String> ordered = new ArrayList<>();
+    private boolean pageKnown;
+
+    private long fullUpdates;
+    private long diffUpdates;
+    private long clustersSent;
+    private long clustersKept;
+
+    /**
+     * The script that makes the page show {@code clusters}, or null if it already does. The
+     * page is assumed to run every returned script.
+     */
+    public String update(MapClusterer.Clusters clusters) {
+        next.clear();
+        ordered.clear();
+        StringBuilder key = new StringBuilder(32);
+        for (int i = 0; i < clusters.size; i++) {
+            key.setLength(0);
+            MapScripts.appendCoordinate(key, clusters.lats[i]);
+            key.append(',');
+            MapScripts.appendCoordinate(key, clusters.lons[i]);
+            key.append(',').append(clusters.counts[i]);
+            String k = key.toString();
+            if (next.add(k)) {
+                ordered.add(k);
+            }
+        }
+
+        int added = 0;
+        for (String k : ordered) {
+            if (!shown.contains(k)) {
+                added++;
+            }
+        }
+        int removed = shown.size() - (ordered.size() - added);
+        String script;
+        if (!pageKnown || added + removed > ordered.size()) {
+            script = MapScripts.showClusters(clusters);
+            fullUpdates++;
+            clustersSent += ordered.size();
+        } else if (added == 0 && removed == 0) {
+            script = null;
+        } else {
+            script = updateClusters(added, removed);
+            diffUpdates++;
+            clustersSent += added + removed;
+            clustersKept += ordered.size() - added;
+        }
+        pageKnown = true;
+        Set<String> swap = shown;
+        shown = next;
+        next = swap;
+        return script;
+    }
+
+    /** Forgets what the page shows, after it reloaded; the next update replaces everything. */
+    public void reset() {
+        shown.clear();
+        pageKnown = false;
+    }
+
+    /** Updates that replaced every cluster. */
+    public long getFullUpdateCount() {
+        return fullUpdates;
+    }
+
+    /** Updates that only sent the changed clusters. */
+    public long getDiffUpdateCount() {
+        return diffUpdates;
+    }
+
+    /** Clusters written into scripts, added and removed ones alike. */
+    public long getClustersSent() {
+        return clustersSent;
+    }
+
+    /** Clusters the page kept from an earlier update instead of being sent again. */
+    public long getClustersKept() {
+        return clustersKept;
+    }
+
+    private String updateClusters(int added, int removed) {
+        StringBuilder sb = new StringBuilder((added + removed) * 28 + 40);
+        sb.append("window.updateClusters([");
+        // shown still holds the previous set here
+        appendMissing(sb, shown, next);
+        sb.append("],[");
+        appendMissing(sb, ordered, shown);
+        sb.append("]);");
+        return sb.toString();
+    }
+
+    // Appends the keys of from that are not in skip, comma separated
+    private static void appendMissing(StringBuilder sb, Iterable<String> from, Set<String> skip) {
+        boolean first = true;
+        for (String k : from) {
+            if (skip.contains(k)) {
+                continue;
+            }
+            if (!first) {
+                sb.append(',');
+            }
+            sb.append(k);
+            first = false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.pot_hole.core;
+
+/**
+ * Fuses per-frame pothole probabilities from a moving camera into confirmed detections.
+ *
+ * <p>Each frame adds the log-odds of its (clipped) probability to a running score, and the
+ * score from earlier frames is scaled by {@code retention} first, so it behaves like an
+ * exponential moving window over the last few frames. A pothole is confirmed when the score
+ * reaches {@code enterLogOdds} with at least {@code minPositiveFrames} positive frames, and the
+ * event stays open until the score falls back to {@code exitLogOdds}; that hysteresis keeps one
+ * pothole seen over several frames from being reported twice. A jump in position or time
+ * larger than the allowed gap starts over.
+ *
+ * <p>Not thread-safe.
+ */
+public class DetectionFuser {
+
+    private static final float MIN_PROBABILITY = 0.02f;
+    private static final float MAX_PROBABILITY = 0.95f;
+
+    /** Statistics of one detection event, updated while the event is open. */
+    public static final class Event {
+        /** Probability-weighted mean position of the positive frames. */
+        public double lat;
+        public double lon;
+        public long firstNanos;
+        public long confirmedNanos;
+        public long lastNanos;
+        public int frames;
+        public int positiveFrames;
+        public float maxProbability;
+        public double peakLogOdds;
+        public boolean confirmed;
+        double sumProbability;
+        double weight;
+
+        /** Mean probability over every frame of the event. */
+        public float meanProbability() {
+            return frames == 0 ? 0 : (float) (sumProbability / frames);
+        }
+    }
+
+    private final double retention;
+    private final double enterLogOdds;
+    private final double exitLogOdds;
+    private final int minPositiveFrames;
+    private final double maxGapMeters;
+    private final long maxGapNanos;
+
+    private Event event;
+    private double logOdds;
+    private double lastLat;
+    private double lastLon;
+    private long lastNanos;
+    private boolean hasLast;
+    private long frameCount;
+    private long confirmedCount;
+
+    public DetectionFuser(double retention, double enterLogOdds, double exitLogOdds, int minPositiveFrames,
+                          double maxGapMeters, long maxGapNanos) {
+        if (retention < 0 || retention >= 1) {
+            throw new IllegalArgumentException("retention must be in [0, 1): " + retention);
+        }
+        if (exitLogOdds >= enterLogOdds) {
+            throw new IllegalArgumentException("exitLogOdds must be below enterLogOdds");
+        }
+        this.retention = retention;
+        this.enterLogOdds = enterLogOdds;
+        this.exitLogOdds = exitLogOdds;
+        this.minPositiveFrames = minPositiveFrames;
+        this.maxGapMeters = maxGapMeters;
+        this.maxGapNanos = maxGapNanos;
+        this.logOdds = exitLogOdds;
+    }
+
+    /**
+     * Adds the classifier output for one frame taken at the given position. Returns the event
+     * when this frame confirms it, otherwise null; the returned event keeps being updated by
+     * later frames until it closes.
+     */
+    public Event offer(float probability, double lat, double lon, long timestampNanos) {
+        frameCount++;
+        if (hasLast && (timestampNanos - lastNanos > maxGapNanos
+                || GeoMath.distanceMeters(lastLat, lastLon, lat, lon) > maxGapMeters)) {
+            reset();
+        }
+        hasLast = true;
+        lastLat = lat;
+        lastLon = lon;
+        lastNanos = timestampNanos;
+
+        float p = Math.max(MIN_PROBABILITY, Math.min(MAX_PROBABILITY, probability));
+        // scores below the exit level only delay the next event, so they are not accumulated
+        logOdds = Math.max(exitLogOdds, logOdds * retention + Math.log(p / (1 - p)));
+
+        if (event == null) {
+            if (probability <= 0.5f) {
+                return null;
+            }
+            event = new Event();
+            event.firstNanos = timestampNanos;
+        }
+        record(event, probability, lat, lon, timestampNanos);
+        if (!event.confirmed) {
+            if (logOdds >= enterLogOdds && event.positiveFrames >= minPositiveFrames) {
+                event.confirmed = true;
+                event.confirmedNanos = timestampNanos;
+                confirmedCount++;
+                return event;
+            }
+        }
+        if (logOdds <= exitLogOdds) {
+            event = null;
+        }
+        return null;
+    }
+
+    /** Forgets the current score and event, e.g. when drive mode stops. */
+    public void reset() {
+        logOdds = exitLogOdds;
+        event = null;
+        hasLast = false;
+    }
+
+    public double getLogOdds() {
+        return logOdds;
+    }
+
+    public long getFrameCount() {
+        return frameCount;
+    }
+
+    public long getConfirmedCount() {
+        return confirmedCount;
+    }
+
+    private void record(Event event, float probability, double lat, double lon, long timestampNanos) {
+        event.frames++;
+        event.lastNanos = timestampNanos;
+        event.sumProbability += probability;
+        event.maxProbability = Math.max(event.maxProbability, probability);
+        event.peakLogOdds = Math.max(event.peakLogOdds, logOdds);
+        if (probability > 0.5f) {
+            event.positiveFrames++;
+            event.weight += probability;
+            event.lat += (lat - event.lat) * probability / event.weight;
+            event.lon += (lon - event.lon) * probability / event.weight;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.pot_hole.core;
+
+/**
+ * Runs the model on a single frame and returns the class probabilities.
+ */
+public interface FrameClassifier<F> {
+
+    float[] classify(F frame) throws Exception;
+}
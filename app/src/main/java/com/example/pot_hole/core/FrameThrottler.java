@@ -0,0 +1,107 @@
+package com.example.pot_hole.core;
+
+/**
+ * Decides which camera frames are worth classifying in drive mode.
+ *
+ * <p>The goal is one frame per {@code frameSpacingMeters} of road, capped at the target FPS:
+ * at low speed most frames show the same patch of road and are skipped, while at high speed
+ * the throttler runs at the full target rate. When the vehicle is stationary it falls back to
+ * {@code stationaryFps}. Without a recent speed estimate frames are taken at the target FPS.
+ *
+ * <p>Not thread-safe; the app feeds it from the main thread.
+ */
+public class FrameThrottler {
+
+    private static final long NANOS_PER_SECOND = 1000000000L;
+    // speed samples older than this are ignored
+    private static final long SPEED_MAX_AGE_NANOS = 10 * NANOS_PER_SECOND;
+
+    private final double frameSpacingMeters;
+    private final double stationarySpeedMps;
+    private final double stationaryFps;
+    private double targetFps;
+
+    private double speedMps = Double.NaN;
+    private long speedTimestampNanos;
+    private double lastLat = Double.NaN;
+    private double lastLon;
+    private long lastFixNanos;
+
+    private long nextDueNanos = Long.MIN_VALUE;
+    private long offered;
+    private long accepted;
+
+    public FrameThrottler(double targetFps, double frameSpacingMeters, double stationarySpeedMps, double stationaryFps) {
+        setTargetFps(targetFps);
+        this.frameSpacingMeters = frameSpacingMeters;
+        this.stationarySpeedMps = stationarySpeedMps;
+        this.stationaryFps = stationaryFps;
+    }
+
+    public void setTargetFps(double targetFps) {
+        if (!(targetFps > 0)) {
+            throw new IllegalArgumentException("targetFps must be positive: " + targetFps);
+        }
+        this.targetFps = targetFps;
+    }
+
+    public double getTargetFps() {
+        return targetFps;
+    }
+
+    /**
+     * Records a location fix. {@code speedMps} may be NaN when the provider has no speed,
+     * in which case it is derived from the previous fix.
+     */
+    public void onLocation(double lat, double lon, long timestampNanos, double speedMps) {
+        if (Double.isNaN(speedMps) && !Double.isNaN(lastLat) && timestampNanos > lastFixNanos) {
+            double meters = GeoMath.distanceMeters(lastLat, lastLon, lat, lon);
+            speedMps = meters * NANOS_PER_SECOND / (timestampNanos - lastFixNanos);
+        }
+        lastLat = lat;
+        lastLon = lon;
+        lastFixNanos = timestampNanos;
+        if (!Double.isNaN(speedMps)) {
+            this.speedMps = speedMps;
+            this.speedTimestampNanos = timestampNanos;
+        }
+    }
+
+    /** Minimum time between accepted frames given the latest speed. */
+    public long intervalNanos(long nowNanos) {
+        long minInterval = (long) (NANOS_PER_SECOND / targetFps);
+        if (Double.isNaN(speedMps) || nowNanos - speedTimestampNanos > SPEED_MAX_AGE_NANOS) {
+            return minInterval;
+        }
+        if (speedMps < stationarySpeedMps) {
+            return Math.max(minInterval, (long) (NANOS_PER_SECOND / stationaryFps));
+        }
+        return Math.max(minInterval, (long) (frameSpacingMeters / speedMps * NANOS_PER_SECOND));
+    }
+
+    /** Returns true if the frame captured at {@code frameNanos} should be classified. */
+    public boolean offer(long frameNanos) {
+        offered++;
+        if (nextDueNanos != Long.MIN_VALUE && frameNanos < nextDueNanos) {
+            return false;
+        }
+        long interval = intervalNanos(frameNanos);
+        // advance from the deadline rather than the frame time so camera frame jitter
+        // does not erode the average rate, but never build up a backlog after a gap
+        if (nextDueNanos != Long.MIN_VALUE && frameNanos - nextDueNanos < interval) {
+            nextDueNanos += interval;
+        } else {
+            nextDueNanos = frameNanos + interval;
+        }
+        accepted++;
+        return true;
+    }
+
+    public long getOfferedCount() {
+        return offered;
+    }
+
+    public long getAcceptedCount() {
+        return accepted;
+    }
+}
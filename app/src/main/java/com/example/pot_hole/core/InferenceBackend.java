@@ -0,0 +1,73 @@
+package com.example.pot_hole.core;
+
+import java.util.Locale;
+
+/** One way of running the model: where it runs, with how many CPU threads and whether XNNPACK is used. */
+public final class InferenceBackend {
+
+    public enum Kind {
+        CPU, GPU, NNAPI
+    }
+
+    /** Plain single-threaded CPU, which works everywhere. */
+    public static final InferenceBackend DEFAULT = cpu(1, false);
+
+    public final Kind kind;
+    public final int threads;
+    public final boolean xnnpack;
+
+    private InferenceBackend(Kind kind, int threads, boolean xnnpack) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.kind = kind;
+        this.threads = threads;
+        this.xnnpack = xnnpack;
+    }
+
+    public static InferenceBackend cpu(int threads, boolean xnnpack) {
+        return new InferenceBackend(Kind.CPU, threads, xnnpack);
+    }
+
+    /** A delegate backend; {@code threads} covers the operations left on the CPU. */
+    public static InferenceBackend delegate(Kind kind, int threads) {
+        if (kind == Kind.CPU) {
+            throw new IllegalArgumentException("CPU is not a delegate");
+        }
+        return new InferenceBackend(kind, threads, false);
+    }
+
+    /** Stable text form, e.g. {@code cpu:4:xnnpack} or {@code gpu:1}, understood by {@link #parse}. */
+    public String key() {
+        return kind.name().toLowerCase(Locale.ROOT) + ":" + threads + (xnnpack ? ":xnnpack" : "");
+    }
+
+    public static InferenceBackend parse(String key) {
+        String[] parts = key.split(":");
+        if (parts.length < 2 || parts.length > 3 || (parts.length == 3 && !"xnnpack".equals(parts[2]))) {
+            throw new IllegalArgumentException("Not a backend: " + key);
+        }
+        Kind kind = Kind.valueOf(parts[0].toUpperCase(Locale.ROOT));
+        int threads = Integer.parseInt(parts[1]);
+        return kind == Kind.CPU ? cpu(threads, parts.length == 3) : delegate(kind, threads);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof InferenceBackend)) {
+            return false;
+        }
+        InferenceBackend other = (InferenceBackend) o;
+        return kind == other.kind && threads == other.threads && xnnpack == other.xnnpack;
+    }
+
+    @Override
+    public int hashCode() {
+        return (kind.hashCode() * 31 + threads) * 2 + (xnnpack ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+}
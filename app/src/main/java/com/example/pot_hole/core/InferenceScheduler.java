@@ -0,0 +1,31 @@
+package com.example.pot_hole.core;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules frames for classification away from the caller's thread.
+ */
+public interface InferenceScheduler<F> {
+
+    interface Listener<F> {
+        void onResult(F frame, float[] probabilities, long latencyNanos);
+
+        /** Called for frames that were replaced by newer ones or cancelled by shutdown. */
+        void onDropped(F frame);
+
+        void onError(F frame, Exception e);
+    }
+
+    /**
+     * Queues a frame. Returns false if the scheduler has been shut down.
+     */
+    boolean submit(F frame);
+
+    int pendingCount();
+
+    /**
+     * Cancels queued frames and waits for the frame in flight, if any.
+     * Returns true if the worker finished within the timeout, so the model may be closed.
+     */
+    boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException;
+}
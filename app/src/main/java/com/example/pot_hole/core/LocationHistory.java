@@ -0,0 +1,222 @@
+package com.example.pot_hole.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-capacity ring buffer of timestamped location fixes, for geotagging a frame with where
+ * it was captured rather than with whichever fix arrived last.
+ *
+ * <p>{@link #positionAt} finds the fixes around a capture time by binary search and
+ * interpolates between them. Fixes are not trusted equally: network fixes get their reported
+ * accuracy multiplied by a penalty, and a fix further away in time is charged for how far the
+ * phone may have moved since. Among the few fixes on each side of the capture time, the one
+ * with the lowest resulting error is used.
+ *
+ * <p>Lock-free: each slot is guarded by a sequence stamp that a reader checks before and after
+ * copying it, so readers on any thread never see a torn or overwritten fix. Fixes must be
+ * added from a single thread.
+ */
+public final class LocationHistory {
+
+    public static final int PROVIDER_GPS = 0;
+    public static final int PROVIDER_NETWORK = 1;
+    public static final int PROVIDER_OTHER = 2;
+
+    /** A position estimate; reused by callers so lookups do not allocate. */
+    public static final class Fix {
+        public long timeNanos;
+        public double lat;
+        public double lon;
+        /** Estimated error in meters, including provider penalty and possible movement. */
+        public double accuracyMeters;
+    }
+
+    // slot layout: stamp, time, lat, lon, effective accuracy
+    private static final int STRIDE = 5;
+    // fixes considered on each side of the capture time
+    private static final int WINDOW = 4;
+
+    private final int capacity;
+    private final int mask;
+    private final double networkAccuracyPenalty;
+    private final double maxSpeedMetersPerSecond;
+    private final AtomicLongArray slots;
+    // number of fixes ever added; the newest is at count - 1
+    private final AtomicLong count = new AtomicLong();
+    private long lastTimeNanos = Long.MIN_VALUE;
+
+    /**
+     * @param capacity                 fixes kept, rounded up to a power of two
+     * @param networkAccuracyPenalty   factor applied to the reported accuracy of network fixes
+     * @param maxSpeedMetersPerSecond  assumed worst-case speed when using a fix away from the capture time
+     */
+    public LocationHistory(int capacity, double networkAccuracyPenalty, double maxSpeedMetersPerSecond) {
+        if (capacity < 4 * WINDOW || capacity > 1 << 24) {
+            throw new IllegalArgumentException("capacity out of range: " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.networkAccuracyPenalty = networkAccuracyPenalty;
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+        this.slots = new AtomicLongArray(this.capacity * STRIDE);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return (int) Math.min(count.get(), capacity);
+    }
+
+    /**
+     * Adds a fix. Fixes older than the newest one already added are ignored, since providers
+     * can deliver out of order; returns false for those.
+     */
+    public boolean add(long timeNanos, double lat, double lon, double accuracyMeters, int provider) {
+        if (timeNanos < lastTimeNanos) {
+            return false;
+        }
+        lastTimeNanos = timeNanos;
+        double accuracy = provider == PROVIDER_NETWORK ? accuracyMeters * networkAccuracyPenalty : accuracyMeters;
+        long index = count.get();
+        int base = (int) (index & mask) * STRIDE;
+        // odd stamp while the slot is being written
+        slots.set(base, 2 * index + 1);
+        slots.set(base + 1, timeNanos);
+        slots.set(base + 2, Double.doubleToRawLongBits(lat));
+        slots.set(base + 3, Double.doubleToRawLongBits(lon));
+        slots.set(base + 4, Double.doubleToRawLongBits(accuracy));
+        slots.set(base, 2 * index + 2);
+        count.set(index + 1);
+        return true;
+    }
+
+    /** Copies the newest fix into {@code out}; false if there is none. */
+    public boolean latest(Fix out) {
+        while (true) {
+            long newest = count.get() - 1;
+            if (newest < 0) {
+                return false;
+            }
+            if (read(newest, out)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Estimates the position at {@code timeNanos} (same clock as the fixes). Returns false if
+     * there are no fixes or the time is older than every fix still kept. Times after the
+     * newest fix use that fix, with its error grown by the time elapsed.
+     */
+    public boolean positionAt(long timeNanos, Fix out) {
+        Fix before = new Fix();
+        Fix after = new Fix();
+        Fix probe = new Fix();
+        return positionAt(timeNanos, out, before, after, probe);
+    }
+
+    /** Allocation-free variant of {@link #positionAt(long, Fix)} with caller-owned scratch fixes. */
+    public boolean positionAt(long timeNanos, Fix out, Fix before, Fix after, Fix probe) {
+        while (true) {
+            int result = tryPositionAt(timeNanos, out, before, after, probe);
+            if (result >= 0) {
+                return result == 1;
+            }
+            // a slot we needed was overwritten mid-lookup; retry against the new window
+        }
+    }
+
+    // 1 found, 0 not available, -1 raced with the writer
+    private int tryPositionAt(long timeNanos, Fix out, Fix before, Fix after, Fix probe) {
+        long end = count.get();
+        // leave a margin so the writer is unlikely to lap the oldest slots during the search
+        long start = Math.max(0, end - capacity + WINDOW);
+        if (end == 0 || start >= end) {
+            return 0;
+        }
+        if (!read(start, probe)) {
+            return -1;
+        }
+        if (timeNanos < probe.timeNanos) {
+            return 0;
+        }
+        // first index whose time is after timeNanos
+        long low = start;
+        long high = end;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (!read(mid, probe)) {
+                return -1;
+            }
+            if (probe.timeNanos <= timeNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        double beforeCost = Double.POSITIVE_INFINITY;
+        for (long i = low - 1; i >= Math.max(start, low - WINDOW); i--) {
+            if (!read(i, probe)) {
+                return -1;
+            }
+            double cost = cost(probe, timeNanos);
+            if (cost < beforeCost) {
+                beforeCost = cost;
+                copy(probe, before);
+            }
+        }
+        double afterCost = Double.POSITIVE_INFINITY;
+        for (long i = low; i < Math.min(end, low + WINDOW); i++) {
+            if (!read(i, probe)) {
+                return -1;
+            }
+            double cost = cost(probe, timeNanos);
+            if (cost < afterCost) {
+                afterCost = cost;
+                copy(probe, after);
+            }
+        }
+        out.timeNanos = timeNanos;
+        if (afterCost == Double.POSITIVE_INFINITY) {
+            out.lat = before.lat;
+            out.lon = before.lon;
+            out.accuracyMeters = beforeCost;
+            return 1;
+        }
+        // linear in time between the two chosen fixes
+        double span = after.timeNanos - before.timeNanos;
+        double t = span > 0 ? (timeNanos - before.timeNanos) / span : 0;
+        out.lat = before.lat + (after.lat - before.lat) * t;
+        out.lon = before.lon + (after.lon - before.lon) * t;
+        out.accuracyMeters = beforeCost + (afterCost - beforeCost) * t;
+        return 1;
+    }
+
+    private double cost(Fix fix, long timeNanos) {
+        return fix.accuracyMeters + maxSpeedMetersPerSecond * Math.abs(timeNanos - fix.timeNanos) / 1e9;
+    }
+
+    private static void copy(Fix from, Fix to) {
+        to.timeNanos = from.timeNanos;
+        to.lat = from.lat;
+        to.lon = from.lon;
+        to.accuracyMeters = from.accuracyMeters;
+    }
+
+    // Copies fix number index; false if it has been overwritten or is being written
+    private boolean read(long index, Fix out) {
+        int base = (int) (index & mask) * STRIDE;
+        long stamp = 2 * index + 2;
+        if (slots.get(base) != stamp) {
+            return false;
+        }
+        out.timeNanos = slots.get(base + 1);
+        out.lat = Double.longBitsToDouble(slots.get(base + 2));
+        out.lon = Double.longBitsToDouble(slots.get(base + 3));
+        out.accuracyMeters = Double.longBitsToDouble(slots.get(base + 4));
+        return slots.get(base) == stamp;
+    }
+}
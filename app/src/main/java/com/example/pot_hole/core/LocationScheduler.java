@@ -0,0 +1,265 @@
+package com.example.pot_hole.core;
+
+/**
+ * Decides which location provider to listen to and how often, from the fixes it is fed.
+ *
+ * <p>The phone is classified as stationary, moving or driving from the speed of the fixes,
+ * with hysteresis so a red light does not drop the rate. Driving gets GPS at a high rate for
+ * geotagging; moving gets GPS at a lower rate; after standing still for a while only the
+ * network provider is used, at a low rate. Only one provider runs at a time. If GPS delivers
+ * nothing for a while (indoors, tunnels) the network provider is used instead and GPS is
+ * retried later. While drive mode is on the phone is never treated as stationary.
+ *
+ * <p>While a photo is being taken GPS is used at the driving rate even when standing still, as
+ * the photo is geotagged from these fixes. A capture that is never ended stops counting after
+ * {@link Config#captureTimeoutMillis}.
+ *
+ * <p>All times are on the fixes' clock ({@code elapsedRealtimeNanos} on Android). Call
+ * {@link #tick} periodically so timeouts are noticed when no fixes arrive.
+ *
+ * <p>Not thread-safe; the app feeds it from the main thread.
+ */
+public class LocationScheduler {
+
+    public enum Mode {
+        STATIONARY,
+        MOVING,
+        DRIVING
+    }
+
+    public static class Config {
+        public double drivingSpeedMps = 4; // about 15 km/h
+        public double stationarySpeedMps = 0.5;
+        public long stationaryAfterMillis = 60_000;
+        public long drivingHoldMillis = 20_000; // stops shorter than this stay in driving
+        public long drivingIntervalMillis = 1000;
+        public long movingIntervalMillis = 5000;
+        public long stationaryIntervalMillis = 30_000;
+        public long gpsFixTimeoutMillis = 30_000; // GPS silent this long falls back to network
+        public long gpsRetryMillis = 120_000;
+        public long captureTimeoutMillis = 120_000;
+    }
+
+    /** What to listen to. Immutable. */
+    public static final class Request {
+        /** {@link LocationHistory#PROVIDER_GPS} or {@link LocationHistory#PROVIDER_NETWORK}. */
+        public final int provider;
+        public final long intervalMillis;
+        public final Mode mode;
+
+        Request(int provider, long intervalMillis, Mode mode) {
+            this.provider = provider;
+            this.intervalMillis = intervalMillis;
+            this.mode = mode;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Request)) {
+                return false;
+            }
+            Request other = (Request) o;
+            return provider == other.provider && intervalMillis == other.intervalMillis && mode == other.mode;
+        }
+
+        @Override
+        public int hashCode() {
+            return (provider * 31 + Long.hashCode(intervalMillis)) * 31 + mode.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return mode + " " + (provider == LocationHistory.PROVIDER_GPS ? "gps" : "network") + " every " + intervalMillis + " ms";
+        }
+    }
+
+    private static final long NANOS_PER_MILLI = 1000000L;
+    private static final long NEVER = Long.MIN_VALUE;
+    // derived speeds are measured over at least this long, so fix noise averages out
+    private static final long SPEED_BASELINE_NANOS = 10 * 1000 * NANOS_PER_MILLI;
+
+    private final Config config;
+    private boolean gpsEnabled = true;
+    private boolean networkEnabled = true;
+    private boolean driveMode;
+    private long captureSinceNanos = NEVER;
+
+    private Mode mode = Mode.MOVING; // until the speed is known
+    // the fix derived speeds are measured from
+    private double anchorLat = Double.NaN;
+    private double anchorLon;
+    private double anchorAccuracy;
+    private long anchorNanos;
+    private long slowSinceNanos = NEVER; // below driving speed since
+    private long stillSinceNanos = NEVER; // below stationary speed since
+
+    private Request current;
+    private long requestSinceNanos;
+    private long lastGpsFixNanos = NEVER;
+    private long gpsFailedNanos = NEVER;
+
+    private long fixes;
+    private long requestChanges;
+
+    public LocationScheduler(Config config) {
+        this.config = config;
+    }
+
+    /** Starts scheduling; returns the first request, or null if no provider is enabled. */
+    public Request start(long nowNanos) {
+        current = null;
+        update(nowNanos);
+        return current;
+    }
+
+    /** The request in force, or null if no provider is enabled. */
+    public Request current() {
+        return current;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    /**
+     * Records a fix; returns true if the request changed. {@code speedMps} may be NaN, in which
+     * case it is derived from an earlier fix, ignoring movement within the fixes' error.
+     */
+    public boolean onFix(long timeNanos, double lat, double lon, double accuracyMeters, double speedMps, int provider) {
+        fixes++;
+        if (provider == LocationHistory.PROVIDER_GPS) {
+            lastGpsFixNanos = timeNanos;
+            gpsFailedNanos = NEVER;
+        }
+        if (Double.isNaN(speedMps) && !Double.isNaN(anchorLat)) {
+            if (timeNanos - anchorNanos < SPEED_BASELINE_NANOS) {
+                return update(timeNanos);
+            }
+            double meters = GeoMath.distanceMeters(anchorLat, anchorLon, lat, lon) - (accuracyMeters + anchorAccuracy) / 2;
+            speedMps = Math.max(0, meters) * 1e9 / (timeNanos - anchorNanos);
+        }
+        anchorLat = lat;
+        anchorLon = lon;
+        anchorAccuracy = accuracyMeters;
+        anchorNanos = timeNanos;
+        if (!Double.isNaN(speedMps)) {
+            classify(timeNanos, speedMps);
+        }
+        return update(timeNanos);
+    }
+
+    /** Checks the timeouts; returns true if the request changed. */
+    public boolean tick(long nowNanos) {
+        if (stillSinceNanos != NEVER && mode != Mode.STATIONARY
+                && nowNanos - stillSinceNanos >= config.stationaryAfterMillis * NANOS_PER_MILLI) {
+            mode = Mode.STATIONARY;
+        }
+        return update(nowNanos);
+    }
+
+    /** Returns true if the request changed. */
+    public boolean setProviderEnabled(int provider, boolean enabled, long nowNanos) {
+        if (provider == LocationHistory.PROVIDER_GPS) {
+            gpsEnabled = enabled;
+        } else if (provider == LocationHistory.PROVIDER_NETWORK) {
+            networkEnabled = enabled;
+        }
+        return update(nowNanos);
+    }
+
+    /** Returns true if the request changed. */
+    public boolean setDriveMode(boolean active, long nowNanos) {
+        driveMode = active;
+        return update(nowNanos);
+    }
+
+    /** Starts or ends taking a photo; returns true if the request changed. */
+    public boolean setCapturing(boolean active, long nowNanos) {
+        captureSinceNanos = active ? nowNanos : NEVER;
+        return update(nowNanos);
+    }
+
+    /** Fixes received since construction. */
+    public long getFixCount() {
+        return fixes;
+    }
+
+    /** Times the request changed, including the first one. */
+    public long getRequestChanges() {
+        return requestChanges;
+    }
+
+    private void classify(long timeNanos, double speedMps) {
+        if (speedMps >= config.drivingSpeedMps) {
+            mode = Mode.DRIVING;
+            slowSinceNanos = NEVER;
+            stillSinceNanos = NEVER;
+            return;
+        }
+        if (slowSinceNanos == NEVER) {
+            slowSinceNanos = timeNanos;
+        }
+        if (speedMps < config.stationarySpeedMps) {
+            if (stillSinceNanos == NEVER) {
+                stillSinceNanos = timeNanos;
+            }
+        } else {
+            stillSinceNanos = NEVER;
+            if (mode == Mode.STATIONARY) {
+                mode = Mode.MOVING;
+            }
+        }
+        if (mode == Mode.DRIVING && timeNanos - slowSinceNanos >= config.drivingHoldMillis * NANOS_PER_MILLI) {
+            mode = Mode.MOVING;
+        }
+        if (stillSinceNanos != NEVER && mode == Mode.MOVING
+                && timeNanos - stillSinceNanos >= config.stationaryAfterMillis * NANOS_PER_MILLI) {
+            mode = Mode.STATIONARY;
+        }
+    }
+
+    private boolean update(long nowNanos) {
+        if (current != null && current.provider == LocationHistory.PROVIDER_GPS
+                && nowNanos - Math.max(requestSinceNanos, lastGpsFixNanos) >= config.gpsFixTimeoutMillis * NANOS_PER_MILLI) {
+            gpsFailedNanos = nowNanos;
+        }
+        boolean gpsBackingOff = gpsFailedNanos != NEVER && nowNanos - gpsFailedNanos < config.gpsRetryMillis * NANOS_PER_MILLI;
+
+        if (captureSinceNanos != NEVER && nowNanos - captureSinceNanos >= config.captureTimeoutMillis * NANOS_PER_MILLI) {
+            captureSinceNanos = NEVER;
+        }
+        boolean capturing = captureSinceNanos != NEVER;
+
+        Mode effective = (driveMode || capturing) && mode == Mode.STATIONARY ? Mode.MOVING : mode;
+        // a capture tries GPS even while backing off, its accuracy is what the report gets
+        boolean wantGps = effective != Mode.STATIONARY && (!gpsBackingOff || capturing);
+        int provider;
+        if (wantGps ? gpsEnabled : !networkEnabled && gpsEnabled) {
+            provider = LocationHistory.PROVIDER_GPS;
+        } else if (networkEnabled) {
+            provider = LocationHistory.PROVIDER_NETWORK;
+        } else {
+            provider = -1;
+        }
+        long interval = capturing ? config.drivingIntervalMillis : intervalMillis(effective);
+        Request next = provider < 0 ? null : new Request(provider, interval, effective);
+        if (next == null ? current == null : next.equals(current)) {
+            return false;
+        }
+        current = next;
+        requestSinceNanos = nowNanos;
+        requestChanges++;
+        return true;
+    }
+
+    private long intervalMillis(Mode mode) {
+        switch (mode) {
+            case DRIVING:
+                return config.drivingIntervalMillis;
+            case MOVING:
+                return config.movingIntervalMillis;
+            default:
+                return config.stationaryIntervalMillis;
+        }
+    }
+}
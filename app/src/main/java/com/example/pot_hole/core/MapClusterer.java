@@ -0,0 +1,219 @@
+package com.example.pot_hole.core;
+
+import java.util.Arrays;
+
+/**
+ * Groups potholes into screen-space grid clusters for the map viewport.
+ *
+ * <p>The grid is laid out in Web Mercator pixels, {@code cellPixels} wide at every zoom level,
+ * the same way Leaflet tiles the world. For low zoom levels (up to {@code maxPyramidZoom})
+ * per-cell counts and coordinate sums are maintained incrementally, so a query only visits
+ * the cells on screen no matter how many potholes there are. Between that and
+ * {@code maxClusterZoom} the potholes in the viewport are aggregated on the fly from the
+ * {@link PotholeIndex}; above it every pothole is returned on its own.
+ *
+ * <p>Viewports crossing the antimeridian are not supported. Not thread-safe.
+ */
+public class MapClusterer {
+
+    private static final double MAX_LATITUDE = 85.05112878;
+    private static final int TILE_SIZE = 256;
+
+    /** Clusters returned by {@link #query}, as parallel arrays. */
+    public static class Clusters {
+        public double[] lats = new double[64];
+        public double[] lons = new double[64];
+        public int[] counts = new int[64];
+        public int size;
+
+        public void clear() {
+            size = 0;
+        }
+
+        void add(double lat, double lon, int count) {
+            if (size == counts.length) {
+                lats = Arrays.copyOf(lats, size * 2);
+                lons = Arrays.copyOf(lons, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            lats[size] = lat;
+            lons[size] = lon;
+            counts[size] = count;
+            size++;
+        }
+
+        /** Total number of potholes across all clusters. */
+        public int totalCount() {
+            int total = 0;
+            for (int i = 0; i < size; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+    }
+
+    /** Cell counts and coordinate sums for one zoom level. */
+    private static final class Level {
+        final LongIntHashMap slots = new LongIntHashMap(256);
+        int[] counts = new int[64];
+        double[] sumLats = new double[64];
+        double[] sumLons = new double[64];
+        int size;
+
+        void add(long key, double lat, double lon, int delta) {
+            int slot = slots.get(key);
+            if (slot == LongIntHashMap.MISSING) {
+                if (size == counts.length) {
+                    counts = Arrays.copyOf(counts, size * 2);
+                    sumLats = Arrays.copyOf(sumLats, size * 2);
+                    sumLons = Arrays.copyOf(sumLons, size * 2);
+                }
+                slot = size++;
+                slots.put(key, slot);
+            }
+            counts[slot] += delta;
+            sumLats[slot] += lat * delta;
+            sumLons[slot] += lon * delta;
+        }
+
+        void clear() {
+            slots.clear();
+            Arrays.fill(counts, 0, size, 0);
+            Arrays.fill(sumLats, 0, size, 0);
+            Arrays.fill(sumLons, 0, size, 0);
+            size = 0;
+        }
+    }
+
+    private final PotholeIndex index;
+    private final int cellPixels;
+    private final int maxPyramidZoom;
+    private final int maxClusterZoom;
+    private final Level[] levels;
+    // scratch map for on-the-fly aggregation
+    private final Level scratch = new Level();
+
+    public MapClusterer(PotholeIndex index, int cellPixels, int maxPyramidZoom, int maxClusterZoom) {
+        if (maxPyramidZoom > maxClusterZoom) {
+            throw new IllegalArgumentException("maxPyramidZoom must not exceed maxClusterZoom");
+        }
+        this.index = index;
+        this.cellPixels = cellPixels;
+        this.maxPyramidZoom = maxPyramidZoom;
+        this.maxClusterZoom = maxClusterZoom;
+        this.levels = new Level[maxPyramidZoom + 1];
+        for (int z = 0; z <= maxPyramidZoom; z++) {
+            levels[z] = new Level();
+        }
+    }
+
+    /** Rebuilds the cluster pyramid from every pothole in the index. */
+    public void rebuild() {
+        for (Level level : levels) {
+            level.clear();
+        }
+        for (int id = 0; id < index.size(); id++) {
+            update(index.latitude(id), index.longitude(id), 1);
+        }
+    }
+
+    /** Must be called after a pothole is added to the index. */
+    public void onAdded(int id) {
+        update(index.latitude(id), index.longitude(id), 1);
+    }
+
+    /** Must be called after a pothole in the index moved from the given position. */
+    public void onMoved(int id, double oldLat, double oldLon) {
+        update(oldLat, oldLon, -1);
+        update(index.latitude(id), index.longitude(id), 1);
+    }
+
+    /**
+     * Fills {@code out} with the clusters visible in the viewport at the given zoom.
+     * At zoom levels above {@code maxClusterZoom} every pothole is its own cluster of one.
+     */
+    public void query(double south, double west, double north, double east, int zoom, Clusters out) {
+        out.clear();
+        zoom = Math.max(0, zoom);
+        if (zoom > maxClusterZoom) {
+            index.forEachInBox(south, west, north, east, id -> out.add(index.latitude(id), index.longitude(id), 1));
+            return;
+        }
+        if (zoom <= maxPyramidZoom) {
+            emit(levels[zoom], zoom, south, west, north, east, out);
+            return;
+        }
+        scratch.clear();
+        final int z = zoom;
+        index.forEachInBox(south, west, north, east, id -> {
+            double lat = index.latitude(id);
+            double lon = index.longitude(id);
+            scratch.add(cellKey(lat, lon, z), lat, lon, 1);
+        });
+        emit(scratch, zoom, south, west, north, east, out);
+    }
+
+    private void emit(Level level, int zoom, double south, double west, double north, double east, Clusters out) {
+        long minX = cellX(west, zoom);
+        long maxX = cellX(east, zoom);
+        long minY = cellY(north, zoom);
+        long maxY = cellY(south, zoom);
+        if ((maxX - minX + 1) * (maxY - minY + 1) > level.slots.size()) {
+            for (int s = 0; s < level.slots.capacity(); s++) {
+                if (level.slots.isUsed(s)) {
+                    long key = level.slots.keyAt(s);
+                    long x = key >>> 32;
+                    long y = key & 0xFFFFFFFFL;
+                    if (x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                        emitSlot(level, level.slots.valueAt(s), out);
+                    }
+                }
+            }
+            return;
+        }
+        for (long x = minX; x <= maxX; x++) {
+            for (long y = minY; y <= maxY; y++) {
+                int slot = level.slots.get((x << 32) | y);
+                if (slot != LongIntHashMap.MISSING) {
+                    emitSlot(level, slot, out);
+                }
+            }
+        }
+    }
+
+    private static void emitSlot(Level level, int slot, Clusters out) {
+        int count = level.counts[slot];
+        if (count > 0) {
+            out.add(level.sumLats[slot] / count, level.sumLons[slot] / count, count);
+        }
+    }
+
+    private void update(double lat, double lon, int delta) {
+        for (int z = 0; z <= maxPyramidZoom; z++) {
+            levels[z].add(cellKey(lat, lon, z), lat, lon, delta);
+        }
+    }
+
+    private long cellKey(double lat, double lon, int zoom) {
+        return (cellX(lon, zoom) << 32) | cellY(lat, zoom);
+    }
+
+    private long cellX(double lon, int zoom) {
+        double worldPixels = (double) TILE_SIZE * (1L << zoom);
+        double x = (lon + 180.0) / 360.0 * worldPixels;
+        return clampCell((long) Math.floor(x / cellPixels), worldPixels);
+    }
+
+    private long cellY(double lat, int zoom) {
+        double worldPixels = (double) TILE_SIZE * (1L << zoom);
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        double sin = Math.sin(Math.toRadians(clamped));
+        double y = (0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * worldPixels;
+        return clampCell((long) Math.floor(y / cellPixels), worldPixels);
+    }
+
+    private long clampCell(long cell, double worldPixels) {
+        long maxCell = (long) Math.ceil(worldPixels / cellPixels) - 1;
+        return Math.max(0, Math.min(maxCell, cell));
+    }
+}
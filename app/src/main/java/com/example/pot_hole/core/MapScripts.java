@@ -0,0 +1,60 @@
+package com.example.pot_hole.core;
+
+/**
+ * Builds the JavaScript calls the app sends to {@code assets/map.html}.
+ * Payloads are flat number arrays, formatted without String.format.
+ */
+public final class MapScripts {
+
+    private static final int COORDINATE_SCALE = 1000000; // 6 decimals, about 10 cm
+
+    private MapScripts() {
+    }
+
+    /** {@code window.showClusters([lat, lon, count, ...])}, replacing what the page shows. */
+    public static String showClusters(MapClusterer.Clusters clusters) {
+        StringBuilder sb = new StringBuilder(clusters.size * 28 + 32);
+        sb.append("window.showClusters([");
+        for (int i = 0; i < clusters.size; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendCoordinate(sb, clusters.lats[i]);
+            sb.append(',');
+            appendCoordinate(sb, clusters.lons[i]);
+            sb.append(',').append(clusters.counts[i]);
+        }
+        sb.append("]);");
+        return sb.toString();
+    }
+
+    /** {@code window.setCurrentLocation(lat, lon)}, moving the existing marker. */
+    public static String setCurrentLocation(double lat, double lon) {
+        StringBuilder sb = new StringBuilder(64);
+        sb.append("window.setCurrentLocation(");
+        appendCoordinate(sb, lat);
+        sb.append(',');
+        appendCoordinate(sb, lon);
+        sb.append(");");
+        return sb.toString();
+    }
+
+    public static String setNearbyCount(int count) {
+        return "window.setNearbyCount(" + count + ");";
+    }
+
+    /** Appends {@code value} with six decimals. */
+    public static void appendCoordinate(StringBuilder sb, double value) {
+        long scaled = Math.round(value * COORDINATE_SCALE);
+        if (scaled < 0) {
+            sb.append('-');
+            scaled = -scaled;
+        }
+        sb.append(scaled / COORDINATE_SCALE).append('.');
+        long fraction = scaled % COORDINATE_SCALE;
+        for (long digit = COORDINATE_SCALE / 10; digit > fraction && digit > 1; digit /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+}
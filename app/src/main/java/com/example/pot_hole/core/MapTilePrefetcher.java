@@ -0,0 +1,133 @@
+package com.example.pot_hole.core;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+
+/**
+ * Fills the {@link TileCache} along the route being driven, so the map keeps working when the
+ * same roads are driven again without coverage. Each time the phone has moved far enough, the
+ * tiles around its position at a few zoom levels are queued; {@link #runPending} downloads them
+ * in the background.
+ *
+ * <p>Thread-safe.
+ */
+public class MapTilePrefetcher {
+
+    private static final double MAX_LATITUDE = 85.05112878;
+
+    private final TileCache cache;
+    private final String urlTemplate;
+    private final int minZoom;
+    private final int maxZoom;
+    private final int marginTiles;
+    private final double minStepMeters;
+    private final int maxQueued;
+    // insertion order, so the oldest queued tiles are dropped first when the queue is full
+    private final LinkedHashSet<String> queue = new LinkedHashSet<>();
+    private double lastLat = Double.NaN;
+    private double lastLon = Double.NaN;
+
+    /**
+     * @param urlTemplate tile URL with {z}, {x} and {y} placeholders
+     * @param marginTiles tiles queued on each side of the current one
+     * @param minStepMeters movement needed before another position is queued
+     * @param maxQueued   tiles kept waiting at most
+     */
+    public MapTilePrefetcher(TileCache cache, String urlTemplate, int minZoom, int maxZoom, int marginTiles,
+                             double minStepMeters, int maxQueued) {
+        if (minZoom < 0 || maxZoom < minZoom || maxZoom > 22) {
+            throw new IllegalArgumentException("Bad zoom range " + minZoom + ".." + maxZoom);
+        }
+        this.cache = cache;
+        this.urlTemplate = urlTemplate;
+        this.minZoom = minZoom;
+        this.maxZoom = maxZoom;
+        this.marginTiles = marginTiles;
+        this.minStepMeters = minStepMeters;
+        this.maxQueued = maxQueued;
+    }
+
+    /** Queues the tiles around a new position; returns true if any were queued. */
+    public synchronized boolean onLocation(double lat, double lon) {
+        if (!Double.isNaN(lastLat) && GeoMath.distanceMeters(lastLat, lastLon, lat, lon) < minStepMeters) {
+            return false;
+        }
+        lastLat = lat;
+        lastLon = lon;
+        int before = queue.size();
+        for (int zoom = minZoom; zoom <= maxZoom; zoom++) {
+            tilesAround(lat, lon, zoom, marginTiles, queue);
+        }
+        Iterator<String> oldest = queue.iterator();
+        while (queue.size() > maxQueued) {
+            oldest.next();
+            oldest.remove();
+        }
+        return queue.size() != before;
+    }
+
+    public synchronized int pendingCount() {
+        return queue.size();
+    }
+
+    /** Downloads up to {@code maxTiles} queued tiles that are not cached yet; returns how many were cached. */
+    public int runPending(int maxTiles) {
+        int cached = 0;
+        for (int i = 0; i < maxTiles; i++) {
+            String key;
+            synchronized (this) {
+                Iterator<String> next = queue.iterator();
+                if (!next.hasNext()) {
+                    break;
+                }
+                key = next.next();
+                next.remove();
+            }
+            if (cache.contains(key)) {
+                continue;
+            }
+            if (cache.prefetch(key, tileUrl(key))) {
+                cached++;
+            }
+        }
+        return cached;
+    }
+
+    String tileUrl(String key) {
+        String[] parts = key.split("/");
+        return urlTemplate.replace("{z}", parts[0]).replace("{x}", parts[1]).replace("{y}", parts[2]);
+    }
+
+    public static String tileKey(int zoom, int x, int y) {
+        return zoom + "/" + x + "/" + y;
+    }
+
+    /** Adds the keys of the tile containing the point and {@code margin} tiles around it. */
+    public static void tilesAround(double lat, double lon, int zoom, int margin, Collection<String> out) {
+        int tiles = 1 << zoom;
+        int centerX = tileX(lon, zoom);
+        int centerY = tileY(lat, zoom);
+        for (int y = Math.max(0, centerY - margin); y <= Math.min(tiles - 1, centerY + margin); y++) {
+            for (int dx = -margin; dx <= margin; dx++) {
+                // wraps around the antimeridian
+                int x = ((centerX + dx) % tiles + tiles) % tiles;
+                out.add(tileKey(zoom, x, y));
+            }
+        }
+    }
+
+    public static int tileX(double lon, int zoom) {
+        int tiles = 1 << zoom;
+        int x = (int) Math.floor((lon + 180.0) / 360.0 * tiles);
+        return Math.max(0, Math.min(tiles - 1, x));
+    }
+
+    public static int tileY(double lat, int zoom) {
+        int tiles = 1 << zoom;
+        double clamped = Math.max(-MAX_LATITUDE, Math.min(MAX_LATITUDE, lat));
+        double sin = Math.sin(Math.toRadians(clamped));
+        int y = (int) Math.floor((0.5 - Math.log((1 + sin) / (1 - sin)) / (4 * Math.PI)) * tiles);
+        return Math.max(0, Math.min(tiles - 1, y));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.pot_hole.core;
+
+/**
+ * Collects map updates between display frames and hands them to the WebView as one script.
+ *
+ * <p>Each kind of update only keeps its latest value, so several location fixes or cluster
+ * changes within a frame cost one bridge call. Scripts are built when the frame is flushed, not
+ * when the update is posted, and a script identical to the last one sent for its kind is
+ * dropped. Call {@link #reset()} when the page reloads and has forgotten what it was sent.
+ *
+ * <p>Not thread-safe; post and flush from the main thread.
+ */
+public class MapUpdateCoalescer {
+
+    /** Update kinds, in the order they are applied within a frame. */
+    public enum Kind {
+        LOCATION,
+        CLUSTERS,
+        NEARBY_COUNT
+    }
+
+    /** Builds the script for an update when its frame is flushed. */
+    public interface ScriptSource {
+        String build();
+    }
+
+    private static final Kind[] KINDS = Kind.values();
+
+    private final ScriptSource[] pending = new ScriptSource[KINDS.length];
+    private final String[] lastSent = new String[KINDS.length];
+    private boolean anyPending;
+
+    private long posted;
+    private long flushes;
+    private long unchanged;
+
+    /** Queues an update, replacing any of the same kind not yet flushed; returns true if a flush must be scheduled. */
+    public boolean post(Kind kind, ScriptSource source) {
+        posted++;
+        pending[kind.ordinal()] = source;
+        boolean first = !anyPending;
+        anyPending = true;
+        return first;
+    }
+
+    public boolean hasPending() {
+        return anyPending;
+    }
+
+    /** The script for everything posted since the last flush, or null if nothing changed. */
+    public String flush() {
+        if (!anyPending) {
+            return null;
+        }
+        anyPending = false;
+        StringBuilder script = null;
+        for (int i = 0; i < KINDS.length; i++) {
+            ScriptSource source = pending[i];
+            if (source == null) {
+                continue;
+            }
+            pending[i] = null;
+            String part = source.build();
+            if (part == null || part.equals(lastSent[i])) {
+                unchanged++;
+                continue;
+            }
+            lastSent[i] = part;
+            if (script == null) {
+                script = new StringBuilder(part.length() + 64);
+            }
+            script.append(part);
+        }
+        if (script == null) {
+            return null;
+        }
+        flushes++;
+        return script.toString();
+    }
+
+    /** Forgets what was sent, so the next update of every kind goes through. */
+    public void reset() {
+        for (int i = 0; i < lastSent.length; i++) {
+            lastSent[i] = null;
+        }
+    }
+
+    /** Updates posted since construction. */
+    public long getPostedCount() {
+        return posted;
+    }
+
+    /** Scripts actually sent to the WebView. */
+    public long getFlushCount() {
+        return flushes;
+    }
+
+    /** Bridge calls avoided compared to sending every update as it was posted. */
+    public long getSavedCount() {
+        return posted - flushes;
+    }
+
+    /** Flushed updates dropped because they matched what the page already shows. */
+    public long getUnchangedCount() {
+        return unchanged;
+    }
+}
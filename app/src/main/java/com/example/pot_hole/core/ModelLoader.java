@@ -0,0 +1,147 @@
+package com.example.pot_hole.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a model once in the background and warms it up with a few throwaway inferences,
+ * so the first real frame does not pay for interpreter creation and first-run allocations.
+ *
+ * <p>{@link #start()} may be called any number of times; the model is created on the first
+ * call. Readiness is available both as a future and as {@link Listener} callbacks, which also
+ * carry the load and warm-up {@link Timings}. Thread-safe.
+ */
+public class ModelLoader<M> {
+
+    public interface Factory<M> {
+        M create() throws Exception;
+    }
+
+    public interface Warmup<M> {
+        /** Runs one inference on dummy input. */
+        void run(M model) throws Exception;
+    }
+
+    public interface Listener<M> {
+        void onReady(M model, Timings timings);
+
+        void onFailed(Exception e);
+    }
+
+    /** Durations measured while loading, in nanoseconds. */
+    public static final class Timings {
+        public final long loadNanos;
+        /** First warm-up inference, or 0 without warm-up. */
+        public final long firstInferenceNanos;
+        /** All warm-up inferences together. */
+        public final long warmupNanos;
+        public final int warmupRuns;
+
+        Timings(long loadNanos, long firstInferenceNanos, long warmupNanos, int warmupRuns) {
+            this.loadNanos = loadNanos;
+            this.firstInferenceNanos = firstInferenceNanos;
+            this.warmupNanos = warmupNanos;
+            this.warmupRuns = warmupRuns;
+        }
+
+        @Override
+        public String toString() {
+            return "load " + loadNanos / 1000000 + " ms, first inference " + firstInferenceNanos / 1000000
+                    + " ms, " + warmupRuns + " warm-up runs " + warmupNanos / 1000000 + " ms";
+        }
+    }
+
+    private final Factory<M> factory;
+    private final Warmup<M> warmup;
+    private final int warmupRuns;
+    private final Executor executor;
+    private final CompletableFuture<M> ready = new CompletableFuture<>();
+    private volatile Timings timings;
+    private boolean started;
+
+    public ModelLoader(Factory<M> factory, Warmup<M> warmup, int warmupRuns, Executor executor) {
+        if (warmupRuns < 0) {
+            throw new IllegalArgumentException("warmupRuns must not be negative: " + warmupRuns);
+        }
+        this.factory = factory;
+        this.warmup = warmup;
+        this.warmupRuns = warmupRuns;
+        this.executor = executor;
+    }
+
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        executor.execute(this::load);
+    }
+
+    /** Completes with the warmed-up model, or exceptionally if loading failed. */
+    public CompletableFuture<M> future() {
+        return ready;
+    }
+
+    /** The model if it is ready, otherwise null. */
+    public M getIfReady() {
+        return ready.isDone() && !ready.isCompletedExceptionally() ? ready.join() : null;
+    }
+
+    public boolean isDone() {
+        return ready.isDone();
+    }
+
+    /** Timings of a successful load, or null. */
+    public Timings getTimings() {
+        return timings;
+    }
+
+    /** Calls {@code listener} on {@code callbackExecutor} once loading finished, or soon if it already has. */
+    public void whenReady(Executor callbackExecutor, Listener<M> listener) {
+        ready.whenCompleteAsync((model, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                listener.onFailed(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+            } else {
+                listener.onReady(model, timings);
+            }
+        }, callbackExecutor);
+    }
+
+    private void load() {
+        M model;
+        long start = System.nanoTime();
+        try {
+            model = factory.create();
+        } catch (Exception e) {
+            ready.completeExceptionally(e);
+            return;
+        }
+        long loadNanos = System.nanoTime() - start;
+        long firstInferenceNanos = 0;
+        long warmupStart = System.nanoTime();
+        try {
+            for (int i = 0; i < warmupRuns; i++) {
+                long runStart = System.nanoTime();
+                warmup.run(model);
+                if (i == 0) {
+                    firstInferenceNanos = System.nanoTime() - runStart;
+                }
+            }
+        } catch (Exception e) {
+            // a model that cannot run is as good as none
+            if (model instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) model).close();
+                } catch (Exception closeError) {
+                    e.addSuppressed(closeError);
+                }
+            }
+            ready.completeExceptionally(e);
+            return;
+        }
+        timings = new Timings(loadNanos, firstInferenceNanos, System.nanoTime() - warmupStart, warmupRuns);
+        ready.complete(model);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.pot_hole.core;
+
+/**
+ * Counts potholes within a radius using a coarse grid of precomputed cell counts.
+ *
+ * <p>Coarse cells lying entirely inside the circle contribute their stored count, cells
+ * entirely outside are skipped, and only the cells on the circle's border are scanned point
+ * by point through the {@link PotholeIndex}. The cost therefore depends on the radius and the
+ * density along the border, not on how many potholes are stored. The last answer is cached
+ * until the index changes or a different query comes in.
+ *
+ * <p>Not thread-safe.
+ */
+public class NearbyCounter {
+
+    private final PotholeIndex index;
+    private final double cellDegrees;
+    private final LongIntHashMap cellCounts = new LongIntHashMap(1024);
+
+    private long version;
+    private long cachedVersion = -1;
+    private double cachedLat;
+    private double cachedLon;
+    private double cachedRadius;
+    private int cachedCount;
+
+    public NearbyCounter(PotholeIndex index, double cellSizeMeters) {
+        if (!(cellSizeMeters > 0)) {
+            throw new IllegalArgumentException("cellSizeMeters must be positive: " + cellSizeMeters);
+        }
+        this.index = index;
+        this.cellDegrees = cellSizeMeters / GeoMath.METERS_PER_DEGREE_LAT;
+    }
+
+    /** Recomputes the cell counts from every pothole in the index. */
+    public void rebuild() {
+        cellCounts.clear();
+        for (int id = 0; id < index.size(); id++) {
+            cellCounts.addTo(cellKey(index.latitude(id), index.longitude(id)), 1);
+        }
+        version++;
+    }
+
+    /** Must be called after a pothole is added to the index. */
+    public void onAdded(int id) {
+        cellCounts.addTo(cellKey(index.latitude(id), index.longitude(id)), 1);
+        version++;
+    }
+
+    /** Must be called after a pothole in the index moved from the given position. */
+    public void onMoved(int id, double oldLat, double oldLon) {
+        cellCounts.addTo(cellKey(oldLat, oldLon), -1);
+        cellCounts.addTo(cellKey(index.latitude(id), index.longitude(id)), 1);
+        version++;
+    }
+
+    public int count(final double lat, final double lon, final double radiusMeters) {
+        if (cachedVersion == version && cachedLat == lat && cachedLon == lon && cachedRadius == radiusMeters) {
+            return cachedCount;
+        }
+        double dLat = radiusMeters / GeoMath.METERS_PER_DEGREE_LAT;
+        double dLon = radiusMeters / GeoMath.metersPerDegreeLon(Math.min(89.9, Math.abs(lat) + dLat));
+        long minRow = cell(lat - dLat);
+        long maxRow = cell(lat + dLat);
+        long minCol = cell(lon - dLon);
+        long maxCol = cell(lon + dLon);
+        final int[] count = {0};
+        for (long row = minRow; row <= maxRow; row++) {
+            double south = row * cellDegrees;
+            double north = south + cellDegrees;
+            for (long col = minCol; col <= maxCol; col++) {
+                int cellCount = cellCounts.get(key(row, col));
+                if (cellCount <= 0) {
+                    continue;
+                }
+                double west = col * cellDegrees;
+                double east = west + cellDegrees;
+                double nearLat = Math.max(south, Math.min(north, lat));
+                double nearLon = Math.max(west, Math.min(east, lon));
+                if (GeoMath.distanceMeters(lat, lon, nearLat, nearLon) > radiusMeters) {
+                    continue;
+                }
+                double farLat = lat - south > north - lat ? south : north;
+                double farLon = lon - west > east - lon ? west : east;
+                if (GeoMath.distanceMeters(lat, lon, farLat, farLon) <= radiusMeters) {
+                    count[0] += cellCount;
+                    continue;
+                }
+                // border cell: check its own potholes one by one
+                final long cellKey = key(row, col);
+                double slack = cellDegrees * 1e-9; // cell() and the bounds may round differently
+                index.forEachInBox(south - slack, west - slack, north + slack, east + slack, id -> {
+                    double pLat = index.latitude(id);
+                    double pLon = index.longitude(id);
+                    if (cellKey(pLat, pLon) == cellKey
+                            && GeoMath.distanceMeters(lat, lon, pLat, pLon) <= radiusMeters) {
+                        count[0]++;
+                    }
+                });
+            }
+        }
+        cachedVersion = version;
+        cachedLat = lat;
+        cachedLon = lon;
+        cachedRadius = radiusMeters;
+        cachedCount = count[0];
+        return cachedCount;
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees / cellDegrees);
+    }
+
+    private long cellKey(double lat, double lon) {
+        return key(cell(lat), cell(lon));
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) | (col & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,197 @@
+package com.example.pot_hole.core;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms per stage of the detection pipeline plus event counters. Recording is
+ * lock-free and allocation-free, so it can sit on the camera and inference hot paths.
+ *
+ * <p>Thread-safe.
+ */
+public final class PipelineMetrics {
+
+    public enum Stage {
+        /** Grabbing a preview frame into a pooled bitmap. */
+        CAPTURE,
+        /** Scaling a frame to the model input size and reading its pixels. */
+        SCALE,
+        /** Writing pixels into the input tensor. */
+        BUFFER_FILL,
+        /** The interpreter run alone. */
+        INFERENCE,
+        /** A frame from submission to result, including time spent waiting in the queue. */
+        FRAME,
+        DEDUP,
+        PERSIST,
+        /** Building and posting map scripts to the WebView. */
+        MAP_UPDATE,
+        /** An SMS report from sending until every part is reported sent. */
+        SMS
+    }
+
+    public enum Counter {
+        FRAMES_SUBMITTED,
+        FRAMES_DROPPED,
+        FRAMES_FAILED,
+        POTHOLES_NEW,
+        POTHOLES_MERGED,
+        SMS_SENT,
+        SMS_FAILED
+    }
+
+    public interface Clock {
+        long nowNanos();
+    }
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final Clock clock;
+    private final long startNanos;
+    private final LatencyHistogram[] histograms = new LatencyHistogram[STAGES.length];
+    private final LongAdder[] counters = new LongAdder[COUNTERS.length];
+
+    public PipelineMetrics(Clock clock) {
+        this.clock = clock;
+        this.startNanos = clock.nowNanos();
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+    }
+
+    public PipelineMetrics() {
+        this(System::nanoTime);
+    }
+
+    public long nowNanos() {
+        return clock.nowNanos();
+    }
+
+    public void record(Stage stage, long nanos) {
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /** Records the time from {@code startNanos}, taken with {@link #nowNanos()}, until now. */
+    public void recordSince(Stage stage, long startNanos) {
+        histograms[stage.ordinal()].record(clock.nowNanos() - startNanos);
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public Snapshot snapshot() {
+        LatencyHistogram.Snapshot[] stages = new LatencyHistogram.Snapshot[histograms.length];
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = histograms[i].snapshot();
+        }
+        long[] counts = new long[counters.length];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = counters[i].sum();
+        }
+        return new Snapshot(clock.nowNanos(), startNanos, stages, counts);
+    }
+
+    /** Everything recorded up to one point in time, or within an interval. Immutable. */
+    public static final class Snapshot {
+        public final long nanos;
+        /** Start of the covered interval: creation of the metrics, or an earlier snapshot. */
+        public final long sinceNanos;
+        private final LatencyHistogram.Snapshot[] stages;
+        private final long[] counters;
+
+        Snapshot(long nanos, long sinceNanos, LatencyHistogram.Snapshot[] stages, long[] counters) {
+            this.nanos = nanos;
+            this.sinceNanos = sinceNanos;
+            this.stages = stages;
+            this.counters = counters;
+        }
+
+        public LatencyHistogram.Snapshot stage(Stage stage) {
+            return stages[stage.ordinal()];
+        }
+
+        public long counter(Counter counter) {
+            return counters[counter.ordinal()];
+        }
+
+        /** What was recorded between {@code earlier} and this snapshot. */
+        public Snapshot minus(Snapshot earlier) {
+            LatencyHistogram.Snapshot[] deltaStages = new LatencyHistogram.Snapshot[stages.length];
+            for (int i = 0; i < stages.length; i++) {
+                deltaStages[i] = stages[i].minus(earlier.stages[i]);
+            }
+            long[] deltaCounters = new long[counters.length];
+            for (int i = 0; i < counters.length; i++) {
+                deltaCounters[i] = counters[i] - earlier.counters[i];
+            }
+            return new Snapshot(nanos, earlier.nanos, deltaStages, deltaCounters);
+        }
+
+        public boolean isEmpty() {
+            for (LatencyHistogram.Snapshot stage : stages) {
+                if (stage.count() != 0) {
+                    return false;
+                }
+            }
+            for (long counter : counters) {
+                if (counter != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * One line for the rolling metrics file:
+         * {@code <epochMillis> <intervalMillis> <stage>=<count>/<p50>/<p90>/<p99>/<max> ... <counter>=<n> ...}
+         * with latencies in microseconds. Stages and counters that saw nothing are left out.
+         */
+        public String toCompactLine(long epochMillis) {
+            StringBuilder line = new StringBuilder(256);
+            line.append(epochMillis).append(' ').append((nanos - sinceNanos) / 1000000);
+            for (Stage stage : STAGES) {
+                LatencyHistogram.Snapshot histogram = stage(stage);
+                if (histogram.count() == 0) {
+                    continue;
+                }
+                line.append(' ').append(stage.name().toLowerCase(Locale.ROOT)).append('=').append(histogram.count())
+                        .append('/').append(histogram.percentile(0.5) / 1000)
+                        .append('/').append(histogram.percentile(0.9) / 1000)
+                        .append('/').append(histogram.percentile(0.99) / 1000)
+                        .append('/').append(histogram.max() / 1000);
+            }
+            for (Counter counter : COUNTERS) {
+                long value = counter(counter);
+                if (value != 0) {
+                    line.append(' ').append(counter.name().toLowerCase(Locale.ROOT)).append('=').append(value);
+                }
+            }
+            return line.toString();
+        }
+
+        /** Multi-line table for the diagnostics screen, with rates over the covered time. */
+        public String toText() {
+            double seconds = Math.max(1e-9, (nanos - sinceNanos) / 1e9);
+            StringBuilder text = new StringBuilder(1024);
+            text.append(String.format(Locale.ROOT, "%-11s %6s %7s %7s %7s %7s %6s%n", "stage", "n", "p50 ms", "p90 ms", "p99 ms", "max ms", "/s"));
+            for (Stage stage : STAGES) {
+                LatencyHistogram.Snapshot histogram = stage(stage);
+                text.append(String.format(Locale.ROOT, "%-11s %6d %7.2f %7.2f %7.2f %7.2f %6.2f%n",
+                        stage.name().toLowerCase(Locale.ROOT), histogram.count(),
+                        histogram.percentile(0.5) / 1e6, histogram.percentile(0.9) / 1e6,
+                        histogram.percentile(0.99) / 1e6, histogram.max() / 1e6, histogram.count() / seconds));
+            }
+            text.append(String.format(Locale.ROOT, "%n"));
+            for (Counter counter : COUNTERS) {
+                text.append(String.format(Locale.ROOT, "%-17s %8d%n", counter.name().toLowerCase(Locale.ROOT), counter(counter)));
+            }
+            text.append(String.format(Locale.ROOT, "%nover %.0f s", seconds));
+            return text.toString();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.pot_hole.core;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * Converts packed ARGB pixels into the RGB float layout expected by the pothole model, or into
+ * one byte per channel for a quantized model.
+ * Plain Java so it can be tested and benchmarked on a desktop JVM.
+ */
+public final class PixelNormalizer {
+
+    public static final int INPUT_SIZE = 224;
+    public static final int CHANNELS = 3;
+    public static final int PIXEL_COUNT = INPUT_SIZE * INPUT_SIZE;
+    public static final int FLOAT_INPUT_BYTES = 4 * PIXEL_COUNT * CHANNELS;
+    public static final int QUANTIZED_INPUT_BYTES = PIXEL_COUNT * CHANNELS;
+
+    // channel value (0..255) -> normalized float (0..1), avoids a division per channel
+    private static final float[] LUT = new float[256];
+
+    static {
+        for (int i = 0; i < LUT.length; i++) {
+            LUT[i] = i / 255.0f;
+        }
+    }
+
+    private PixelNormalizer() {
+    }
+
+    public static float normalize(int channel) {
+        return LUT[channel & 0xFF];
+    }
+
+    /**
+     * Writes {@code count} pixels starting at {@code offset} into {@code out} as R, G, B floats,
+     * starting at the buffer's absolute index 0. The buffer position is left untouched.
+     */
+    public static void toFloatRgb(int[] argb, int offset, int count, FloatBuffer out) {
+        if (out.capacity() < count * CHANNELS) {
+            throw new IllegalArgumentException("Output buffer too small: " + out.capacity() + " < " + count * CHANNELS);
+        }
+        final float[] lut = LUT;
+        int index = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int value = argb[i];
+            out.put(index++, lut[(value >> 16) & 0xFF]);
+            out.put(index++, lut[(value >> 8) & 0xFF]);
+            out.put(index++, lut[value & 0xFF]);
+        }
+    }
+
+    public static void toFloatRgb(int[] argb, FloatBuffer out) {
+        toFloatRgb(argb, 0, argb.length, out);
+    }
+
+    /**
+     * Writes the pixels into {@code out} as R, G, B bytes mapped through {@code lut}, see
+     * {@link TensorQuantization#pixelLut()}, starting at the buffer's absolute index 0.
+     */
+    public static void toQuantizedRgb(int[] argb, int offset, int count, byte[] lut, ByteBuffer out) {
+        if (out.capacity() < count * CHANNELS) {
+            throw new IllegalArgumentException("Output buffer too small: " + out.capacity() + " < " + count * CHANNELS);
+        }
+        int index = 0;
+        for (int i = offset, end = offset + count; i < end; i++) {
+            int value = argb[i];
+            out.put(index++, lut[(value >> 16) & 0xFF]);
+            out.put(index++, lut[(value >> 8) & 0xFF]);
+            out.put(index++, lut[value & 0xFF]);
+        }
+    }
+
+    public static void toQuantizedRgb(int[] argb, byte[] lut, ByteBuffer out) {
+        toQuantizedRgb(argb, 0, argb.length, lut, out);
+    }
+}
@@ -0,0 +1,357 @@
+package com.example.pot_hole.core;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * In-memory spatial index of detected potholes.
+ *
+ * <p>Potholes are bucketed into a uniform grid of square cells (in degrees, sized from
+ * {@code cellSizeMeters} at the equator) and chained per cell through primitive arrays, so
+ * inserts are O(1) expected and radius queries only visit the cells around the query point.
+ * Each pothole gets a dense id in insertion order; ids stay stable for the index lifetime.
+ *
+ * <p>Not thread-safe; the app only touches it from the main thread.
+ */
+public class PotholeIndex {
+
+    private static final int NONE = -1;
+
+    private final double cellSizeMeters;
+    private final double cellsPerDegree;
+    private final LongIntHashMap cellHeads = new LongIntHashMap(1024);
+
+    private double[] lats = new double[64];
+    private double[] lons = new double[64];
+    private int[] hits = new int[64];
+    private int[] next = new int[64];
+    private int size;
+    private int modCount;
+
+    public PotholeIndex(double cellSizeMeters) {
+        if (!(cellSizeMeters > 0)) {
+            throw new IllegalArgumentException("cellSizeMeters must be positive: " + cellSizeMeters);
+        }
+        this.cellSizeMeters = cellSizeMeters;
+        this.cellsPerDegree = GeoMath.METERS_PER_DEGREE_LAT / cellSizeMeters;
+    }
+
+    public double getCellSizeMeters() {
+        return cellSizeMeters;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Changes so far: adds, merges and clears. Anything derived from the positions is stale once it moves. */
+    public int getModCount() {
+        return modCount;
+    }
+
+    public double latitude(int id) {
+        return lats[id];
+    }
+
+    public double longitude(int id) {
+        return lons[id];
+    }
+
+    /** Number of detections merged into this pothole, 1 for a fresh one. */
+    public int hits(int id) {
+        return hits[id];
+    }
+
+    public void clear() {
+        cellHeads.clear();
+        size = 0;
+        modCount++;
+    }
+
+    /** Adds a pothole unconditionally and returns its id. */
+    public int add(double lat, double lon) {
+        ensureCapacity(size + 1);
+        int id = size++;
+        lats[id] = lat;
+        lons[id] = lon;
+        hits[id] = 1;
+        link(id);
+        modCount++;
+        return id;
+    }
+
+    /**
+     * Merges the detection into the nearest pothole within {@code mergeRadiusMeters}, moving
+     * it to the running mean of its detections, or adds a new pothole if there is none.
+     * Returns the pothole id; a newly added pothole has {@link #hits} equal to 1.
+     */
+    public int addOrMerge(double lat, double lon, double mergeRadiusMeters) {
+        int id = nearest(lat, lon, mergeRadiusMeters);
+        if (id == NONE) {
+            return add(lat, lon);
+        }
+        int n = ++hits[id];
+        modCount++;
+        double newLat = lats[id] + (lat - lats[id]) / n;
+        double newLon = lons[id] + (lon - lons[id]) / n;
+        if (cellKey(newLat, newLon) != cellKey(lats[id], lons[id])) {
+            unlink(id);
+            lats[id] = newLat;
+            lons[id] = newLon;
+            link(id);
+        } else {
+            lats[id] = newLat;
+            lons[id] = newLon;
+        }
+        return id;
+    }
+
+    /** Id of the closest pothole within {@code radiusMeters}, or -1. */
+    public int nearest(double lat, double lon, double radiusMeters) {
+        int[] out = new int[1];
+        return nearest(lat, lon, 1, radiusMeters, out) == 1 ? out[0] : NONE;
+    }
+
+    /**
+     * Writes the ids of up to {@code k} potholes closest to the point and within
+     * {@code maxRadiusMeters} into {@code out}, nearest first, and returns how many were found.
+     * The search radius grows from one cell outwards, so dense areas stay cheap.
+     */
+    public int nearest(double lat, double lon, int k, double maxRadiusMeters, int[] out) {
+        if (k <= 0 || size == 0) {
+            return 0;
+        }
+        Candidates candidates = new Candidates(k);
+        double radius = Math.min(cellSizeMeters, maxRadiusMeters);
+        while (true) {
+            candidates.reset();
+            visitRadius(lat, lon, radius, candidates, null);
+            if (candidates.count == k || radius >= maxRadiusMeters || candidates.seen == size) {
+                break;
+            }
+            radius = Math.min(radius * 2, maxRadiusMeters);
+        }
+        return candidates.drainSorted(out);
+    }
+
+    public int countWithinRadius(double lat, double lon, double radiusMeters) {
+        Counter counter = new Counter();
+        visitRadius(lat, lon, radiusMeters, counter, null);
+        return counter.count;
+    }
+
+    public void forEachWithinRadius(double lat, double lon, double radiusMeters, IntConsumer action) {
+        visitRadius(lat, lon, radiusMeters, null, action);
+    }
+
+    /** Visits every pothole inside the box, bounds inclusive. Does not wrap at the antimeridian. */
+    public void forEachInBox(double minLat, double minLon, double maxLat, double maxLon, IntConsumer action) {
+        long minRow = cell(minLat);
+        long maxRow = cell(maxLat);
+        long minCol = cell(minLon);
+        long maxCol = cell(maxLon);
+        if ((maxRow - minRow + 1) * (maxCol - minCol + 1) > cellHeads.size()) {
+            // a big box touches more empty cells than there are occupied ones
+            for (int slot = 0; slot < cellHeads.capacity(); slot++) {
+                if (cellHeads.isUsed(slot)) {
+                    long key = cellHeads.keyAt(slot);
+                    long row = key >> 32;
+                    long col = (int) key;
+                    if (row >= minRow && row <= maxRow && col >= minCol && col <= maxCol) {
+                        visitCellBox(cellHeads.valueAt(slot), minLat, minLon, maxLat, maxLon, action);
+                    }
+                }
+            }
+            return;
+        }
+        for (long row = minRow; row <= maxRow; row++) {
+            for (long col = minCol; col <= maxCol; col++) {
+                int head = cellHeads.get(key(row, col));
+                if (head != LongIntHashMap.MISSING) {
+                    visitCellBox(head, minLat, minLon, maxLat, maxLon, action);
+                }
+            }
+        }
+    }
+
+    private void visitCellBox(int head, double minLat, double minLon, double maxLat, double maxLon, IntConsumer action) {
+        for (int id = head; id != NONE; id = next[id]) {
+            double lat = lats[id];
+            double lon = lons[id];
+            if (lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon) {
+                action.accept(id);
+            }
+        }
+    }
+
+    /** Feeds every pothole within the radius to {@code sink} or {@code action}. */
+    private void visitRadius(double lat, double lon, double radiusMeters, Sink sink, IntConsumer action) {
+        double dLat = radiusMeters / GeoMath.METERS_PER_DEGREE_LAT;
+        double dLon = radiusMeters / GeoMath.metersPerDegreeLon(Math.min(89.9, Math.abs(lat) + dLat));
+        double minLat = lat - dLat;
+        double maxLat = lat + dLat;
+        double minLon = lon - dLon;
+        double maxLon = lon + dLon;
+        forEachInBox(minLat, minLon, maxLat, maxLon, id -> {
+            double distance = GeoMath.distanceMeters(lat, lon, lats[id], lons[id]);
+            if (sink != null) {
+                sink.seen();
+            }
+            if (distance <= radiusMeters) {
+                if (sink != null) {
+                    sink.accept(id, distance);
+                } else {
+                    action.accept(id);
+                }
+            }
+        });
+    }
+
+    private long cell(double degrees) {
+        return (long) Math.floor(degrees * cellsPerDegree);
+    }
+
+    private long cellKey(double lat, double lon) {
+        return key(cell(lat), cell(lon));
+    }
+
+    private static long key(long row, long col) {
+        return (row << 32) | (col & 0xFFFFFFFFL);
+    }
+
+    private void link(int id) {
+        long key = cellKey(lats[id], lons[id]);
+        int head = cellHeads.put(key, id);
+        next[id] = head == LongIntHashMap.MISSING ? NONE : head;
+    }
+
+    private void unlink(int id) {
+        long key = cellKey(lats[id], lons[id]);
+        int head = cellHeads.get(key);
+        if (head == id) {
+            if (next[id] == NONE) {
+                // leave an empty chain marker rather than deleting from the open-addressing map
+                cellHeads.put(key, NONE);
+            } else {
+                cellHeads.put(key, next[id]);
+            }
+            return;
+        }
+        for (int prev = head; prev != NONE; prev = next[prev]) {
+            if (next[prev] == id) {
+                next[prev] = next[id];
+                return;
+            }
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > lats.length) {
+            int newLength = Math.max(capacity, lats.length * 2);
+            lats = Arrays.copyOf(lats, newLength);
+            lons = Arrays.copyOf(lons, newLength);
+            hits = Arrays.copyOf(hits, newLength);
+            next = Arrays.copyOf(next, newLength);
+        }
+    }
+
+    private interface Sink {
+        void seen();
+
+        void accept(int id, double distance);
+    }
+
+    private static final class Counter implements Sink {
+        int count;
+
+        @Override
+        public void seen() {
+        }
+
+        @Override
+        public void accept(int id, double distance) {
+            count++;
+        }
+    }
+
+    /** Bounded max-heap keeping the k closest ids. */
+    private static final class Candidates implements Sink {
+        final int[] ids;
+        final double[] distances;
+        int count;
+        int seen;
+
+        Candidates(int k) {
+            ids = new int[k];
+            distances = new double[k];
+        }
+
+        void reset() {
+            count = 0;
+            seen = 0;
+        }
+
+        @Override
+        public void seen() {
+            seen++;
+        }
+
+        @Override
+        public void accept(int id, double distance) {
+            if (count < ids.length) {
+                ids[count] = id;
+                distances[count] = distance;
+                siftUp(count++);
+            } else if (distance < distances[0]) {
+                ids[0] = id;
+                distances[0] = distance;
+                siftDown(0, count);
+            }
+        }
+
+        int drainSorted(int[] out) {
+            int n = count;
+            for (int end = n - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            System.arraycopy(ids, 0, out, 0, n);
+            return n;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (distances[parent] >= distances[i]) {
+                    return;
+                }
+                swap(parent, i);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int left = 2 * i + 1;
+                if (left >= end) {
+                    return;
+                }
+                int largest = left + 1 < end && distances[left + 1] > distances[left] ? left + 1 : left;
+                if (distances[i] >= distances[largest]) {
+                    return;
+                }
+                swap(i, largest);
+                i = largest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int id = ids[a];
+            ids[a] = ids[b];
+            ids[b] = id;
+            double d = distances[a];
+            distances[a] = distances[b];
+            distances[b] = d;
+        }
+    }
+}
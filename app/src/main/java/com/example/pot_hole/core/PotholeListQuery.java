@@ -0,0 +1,282 @@
+package com.example.pot_hole.core;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Pages through the stored potholes for the pothole list, nearest first or newest first,
+ * optionally narrowed by a search text.
+ *
+ * <p>Each pothole gets a 64-bit sort key: its distance in millimeters or its age in seconds in
+ * the high bits and its id in the low 24, so ties are broken by id and ordering is a single long
+ * comparison. A page is the {@code pageSize} smallest keys after the last one listed, found with
+ * one scan and a small heap, so nothing is sorted up front. Every scan reads all the keys, so
+ * once a few pages were scanned, or when jumping far ahead as fast scrolling does, the keys are
+ * sorted once and the rest of the list is read from them.
+ *
+ * <p>Search terms are separated by whitespace and must all occur in the pothole's title, see
+ * {@link #appendTitle}. A search that extends the previous one only rechecks its matches, as
+ * long as the index has not changed since.
+ *
+ * <p>Not thread-safe; the list is driven from the main thread.
+ */
+public class PotholeListQuery {
+
+    public enum Order {
+        NEAREST,
+        NEWEST
+    }
+
+    private static final int ID_BITS = 24;
+    public static final int MAX_ID = (1 << ID_BITS) - 1;
+    private static final long ID_MASK = MAX_ID;
+    private static final long MAX_KEY = (1L << (63 - ID_BITS)) - 1;
+    // jumping further ahead than this sorts everything instead of paging
+    private static final int MAX_PAGES_AHEAD = 4;
+    // pages scanned per query before the rest is sorted
+    private static final int MAX_PAGE_SCANS = 4;
+
+    private final PotholeIndex index;
+    private final int pageSize;
+    private long[] timestamps = new long[64];
+
+    private String filter = "";
+    private int[] matches; // ids matching the filter, null without one
+    private int matchCount;
+    private int indexedModCount; // index changes when the matches were computed
+
+    private long[] keys = new long[0];
+    private int keyCount;
+    private long[] listed = new long[0]; // keys in list order, aliases keys once sorted
+    private int listedCount;
+    private int pageScans; // in the current query
+    private final long[] heap;
+    private long pagesLoaded;
+
+    private final StringBuilder title = new StringBuilder(48);
+
+    public PotholeListQuery(PotholeIndex index, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("pageSize must be positive: " + pageSize);
+        }
+        this.index = index;
+        this.pageSize = pageSize;
+        this.heap = new long[pageSize];
+    }
+
+    /** Records when {@code id} was last detected, in epoch milliseconds. */
+    public void setTimestamp(int id, long millis) {
+        if (id >= timestamps.length) {
+            timestamps = Arrays.copyOf(timestamps, Math.max(timestamps.length * 2, id + 1));
+        }
+        timestamps[id] = millis;
+    }
+
+    public long timestamp(int id) {
+        return id < timestamps.length ? timestamps[id] : 0;
+    }
+
+    /**
+     * Starts listing the potholes matching {@code filter} in the given order. Potholes added
+     * to the index later are not listed until the next query.
+     */
+    public void query(Order order, double lat, double lon, String filter) {
+        String normalized = filter.trim().toLowerCase(Locale.ROOT);
+        int size = index.size();
+        if (size > MAX_ID + 1) {
+            throw new IllegalStateException("Too many potholes to list: " + size);
+        }
+        applyFilter(normalized, size);
+
+        int count = matches != null ? matchCount : size;
+        if (keys.length < count) {
+            keys = new long[count];
+        }
+        keyCount = count;
+        long newest = 0;
+        if (order == Order.NEWEST) {
+            for (int i = 0; i < count; i++) {
+                newest = Math.max(newest, timestamp(candidate(i)));
+            }
+        }
+        double cosLat = Math.cos(Math.toRadians(lat));
+        for (int i = 0; i < count; i++) {
+            int id = candidate(i);
+            long key;
+            if (order == Order.NEAREST) {
+                key = Math.round(sortDistanceMeters(lat, lon, cosLat, index.latitude(id), index.longitude(id)) * 1000);
+            } else {
+                // never-stamped potholes sort last
+                long millis = timestamp(id);
+                key = millis > 0 ? (newest - millis) / 1000 : MAX_KEY;
+            }
+            keys[i] = Math.min(key, MAX_KEY) << ID_BITS | id;
+        }
+        listedCount = 0;
+        pageScans = 0;
+        if (listed == keys || listed.length < count) {
+            listed = new long[Math.max(count, pageSize)];
+        }
+    }
+
+    /** Number of potholes in the current query. */
+    public int size() {
+        return keyCount;
+    }
+
+    /** Id of the pothole at {@code position}, loading pages as needed. */
+    public int idAt(int position) {
+        if (position < 0 || position >= keyCount) {
+            throw new IndexOutOfBoundsException("position " + position + " of " + keyCount);
+        }
+        while (position >= listedCount) {
+            if (pageScans >= MAX_PAGE_SCANS || position - listedCount >= MAX_PAGES_AHEAD * pageSize) {
+                sortAll();
+            } else {
+                loadPage();
+            }
+        }
+        return (int) (listed[position] & ID_MASK);
+    }
+
+    /** Potholes whose position in the list is known without another scan. */
+    public int loadedCount() {
+        return listedCount;
+    }
+
+    /** Pages found by scanning since construction. */
+    public long getPagesLoaded() {
+        return pagesLoaded;
+    }
+
+    /**
+     * Appends the pothole's title, {@code lat, lon} with six decimals. Index ids change when
+     * the log is compacted and read again, so they are not part of it.
+     */
+    public void appendTitle(int id, StringBuilder sb) {
+        MapScripts.appendCoordinate(sb, index.latitude(id));
+        sb.append(", ");
+        MapScripts.appendCoordinate(sb, index.longitude(id));
+    }
+
+    // Haversine without the final arcsine: within a millimeter of the true distance up to a few
+    // kilometers, further away it grows slower but still in the same order
+    private static double sortDistanceMeters(double lat1, double lon1, double cosLat1, double lat2, double lon2) {
+        double sinLat = Math.sin(Math.toRadians(lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(lon2 - lon1) / 2);
+        double a = sinLat * sinLat + cosLat1 * Math.cos(Math.toRadians(lat2)) * sinLon * sinLon;
+        return 2 * GeoMath.EARTH_RADIUS_METERS * Math.sqrt(a);
+    }
+
+    private int candidate(int i) {
+        return matches != null ? matches[i] : i;
+    }
+
+    private void applyFilter(String normalized, int size) {
+        if (normalized.isEmpty()) {
+            matches = null;
+            filter = normalized;
+            return;
+        }
+        // a longer version of the previous search can only match a subset of its matches
+        boolean narrowing = matches != null && normalized.startsWith(filter) && index.getModCount() == indexedModCount;
+        if (narrowing && normalized.equals(filter)) {
+            return;
+        }
+        String[] terms = normalized.split("\\s+");
+        int from = narrowing ? matchCount : size;
+        int[] result = narrowing ? matches : new int[Math.min(size, 1024)];
+        int count = 0;
+        for (int i = 0; i < from; i++) {
+            int id = narrowing ? matches[i] : i;
+            if (!matchesAll(id, terms)) {
+                continue;
+            }
+            if (count == result.length) {
+                result = Arrays.copyOf(result, Math.min(size, result.length * 2));
+            }
+            // narrowing compacts in place, never ahead of the read position
+            result[count++] = id;
+        }
+        matches = result;
+        matchCount = count;
+        indexedModCount = index.getModCount();
+        filter = normalized;
+    }
+
+    private boolean matchesAll(int id, String[] terms) {
+        title.setLength(0);
+        appendTitle(id, title);
+        for (String term : terms) {
+            if (title.indexOf(term) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Appends the pageSize smallest keys after the last listed one
+    private void loadPage() {
+        long after = listedCount == 0 ? Long.MIN_VALUE : listed[listedCount - 1];
+        int n = 0;
+        for (int i = 0; i < keyCount; i++) {
+            long key = keys[i];
+            if (key <= after) {
+                continue;
+            }
+            if (n < pageSize) {
+                heap[n] = key;
+                siftUp(n++);
+            } else if (key < heap[0]) {
+                heap[0] = key;
+                siftDown(n);
+            }
+        }
+        Arrays.sort(heap, 0, n);
+        System.arraycopy(heap, 0, listed, listedCount, n);
+        listedCount += n;
+        pageScans++;
+        pagesLoaded++;
+    }
+
+    private void sortAll() {
+        Arrays.sort(keys, 0, keyCount);
+        // keys are unique, so the listed prefix is unchanged
+        listed = keys;
+        listedCount = keyCount;
+    }
+
+    // Max-heap on heap[0..n)
+    private void siftUp(int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] >= key) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private void siftDown(int n) {
+        long key = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= n) {
+                break;
+            }
+            if (child + 1 < n && heap[child + 1] > heap[child]) {
+                child++;
+            }
+            if (heap[child] <= key) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
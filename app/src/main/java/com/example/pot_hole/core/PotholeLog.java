@@ -0,0 +1,382 @@
+package com.example.pot_hole.core;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log of potholes.
+ *
+ * <p>The file is a 16 byte header (magic, version, id counter) followed by fixed-width
+ * 32 byte little-endian records:
+ * <pre>
+ *  0  int    id
+ *  4  int    latitude  * 1e7
+ *  8  int    longitude * 1e7
+ * 12  long   timestamp (ms since epoch)
+ * 20  float  confidence
+ * 24  byte   status
+ * 25  byte[3] reserved
+ * 28  int    CRC32 of bytes 0..27
+ * </pre>
+ * A pothole is updated by appending a new record with the same id; the latest record wins.
+ * {@link #compact()} rewrites the file with only the latest record of each live pothole.
+ * On open, a torn or corrupt tail left by a crash is truncated away.
+ *
+ * <p>Thread-safe.
+ */
+public class PotholeLog implements PotholeStore.Log, Closeable {
+
+    public static final byte STATUS_DETECTED = 0;
+    public static final byte STATUS_REPORTED = 1;
+    public static final byte STATUS_FIXED = 2;
+    public static final byte STATUS_DELETED = 3;
+    /** Detected and waiting to be reported. */
+    public static final byte STATUS_QUEUED = 4;
+    /** Handed to the SMS service; the outcome is not known yet. */
+    public static final byte STATUS_SENDING = 5;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int RECORD_SIZE = 32;
+
+    private static final int MAGIC = 0x50484C47; // "PHLG"
+    private static final int VERSION = 1;
+    private static final double E7 = 1e7;
+    // compact once at least this many records are superseded
+    private static final int MIN_DEAD_RECORDS = 256;
+
+    /** Receives records during a read; the record object is reused between calls. */
+    public interface Visitor {
+        void visit(PotholeRecord record);
+    }
+
+    private final File file;
+    private RandomAccessFile raf;
+    private FileChannel channel;
+    private long recordCount;
+    private int nextId;
+    private int liveCount;
+    private byte[] statuses = new byte[64];
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 crc = new CRC32();
+
+    private PotholeLog(File file) {
+        this.file = file;
+    }
+
+    public static PotholeLog open(File file) throws IOException {
+        PotholeLog log = new PotholeLog(file);
+        log.openChannel();
+        return log;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /** Number of records in the file, including superseded ones. */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /** Number of potholes whose latest record is not deleted. */
+    public synchronized int getLiveCount() {
+        return liveCount;
+    }
+
+    public synchronized int getNextId() {
+        return nextId;
+    }
+
+    /** Latest status of {@code id}; ids dropped by compaction report {@link #STATUS_DELETED}. */
+    @Override
+    public synchronized byte getStatus(int id) {
+        if (id < 0 || id >= nextId) {
+            throw new IllegalArgumentException("Unknown pothole id " + id);
+        }
+        return statuses[id];
+    }
+
+    /** Appends a new pothole and returns its id. */
+    @Override
+    public synchronized int append(double lat, double lon, long timestamp, float confidence, byte status) throws IOException {
+        int id = nextId;
+        write(id, lat, lon, timestamp, confidence, status);
+        return id;
+    }
+
+    /** Appends a record for {@code id}, replacing any earlier record with that id. */
+    @Override
+    public synchronized void write(int id, double lat, double lon, long timestamp, float confidence, byte status) throws IOException {
+        if (id < 0 || id > nextId) {
+            throw new IllegalArgumentException("Unknown pothole id " + id);
+        }
+        writeBuffer.clear();
+        encode(writeBuffer, id, lat, lon, timestamp, confidence, status);
+        writeBuffer.flip();
+        long position = HEADER_SIZE + recordCount * RECORD_SIZE;
+        while (writeBuffer.hasRemaining()) {
+            position += channel.write(writeBuffer, position);
+        }
+        recordCount++;
+        boolean wasLive = id < nextId && statuses[id] != STATUS_DELETED;
+        if (id == nextId) {
+            nextId++;
+        }
+        setStatus(id, status);
+        if (wasLive != (status != STATUS_DELETED)) {
+            liveCount += wasLive ? -1 : 1;
+        }
+    }
+
+    private void setStatus(int id, byte status) {
+        if (id >= statuses.length) {
+            statuses = Arrays.copyOf(statuses, Math.max(id + 1, statuses.length * 2));
+        }
+        statuses[id] = status;
+    }
+
+    /** Flushes appended records to the storage device. */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /** Visits every record in file order, including superseded ones. */
+    public synchronized void readAll(Visitor visitor) throws IOException {
+        if (recordCount == 0) {
+            return;
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordCount * RECORD_SIZE);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        PotholeRecord record = new PotholeRecord();
+        for (long i = 0; i < recordCount; i++) {
+            decode(map, (int) (i * RECORD_SIZE), record);
+            visitor.visit(record);
+        }
+    }
+
+    /** Visits the latest record of every live pothole, in id order. */
+    public synchronized void readLatest(Visitor visitor) throws IOException {
+        if (recordCount == 0) {
+            return;
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordCount * RECORD_SIZE);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+        int[] latest = latestOffsets(map);
+        PotholeRecord record = new PotholeRecord();
+        for (int offset : latest) {
+            if (offset < 0) {
+                continue;
+            }
+            decode(map, offset, record);
+            if (record.status != STATUS_DELETED) {
+                visitor.visit(record);
+            }
+        }
+    }
+
+    public synchronized boolean needsCompaction() {
+        long dead = recordCount - liveCount;
+        return dead >= MIN_DEAD_RECORDS && dead > liveCount;
+    }
+
+    /**
+     * Rewrites the log with only the latest record of each live pothole. The new file is
+     * written next to the old one and renamed over it, so a crash leaves one of the two intact.
+     */
+    public synchronized void compact() throws IOException {
+        File tmp = new File(file.getPath() + ".compact");
+        try (RandomAccessFile out = new RandomAccessFile(tmp, "rw")) {
+            out.setLength(0);
+            FileChannel outChannel = out.getChannel();
+            writeHeader(outChannel, nextId);
+            if (recordCount > 0) {
+                MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordCount * RECORD_SIZE);
+                map.order(ByteOrder.LITTLE_ENDIAN);
+                int[] latest = latestOffsets(map);
+                ByteBuffer chunk = ByteBuffer.allocate(RECORD_SIZE * 256);
+                long position = HEADER_SIZE;
+                for (int offset : latest) {
+                    if (offset < 0 || map.get(offset + 24) == STATUS_DELETED) {
+                        continue;
+                    }
+                    for (int i = 0; i < RECORD_SIZE; i++) {
+                        chunk.put(map.get(offset + i));
+                    }
+                    if (!chunk.hasRemaining()) {
+                        position = flush(outChannel, chunk, position);
+                    }
+                }
+                flush(outChannel, chunk, position);
+            }
+            outChannel.force(true);
+        }
+        closeChannel();
+        if (!tmp.renameTo(file)) {
+            openChannel();
+            throw new IOException("Failed to replace " + file + " with compacted log");
+        }
+        openChannel();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeChannel();
+    }
+
+    private static long flush(FileChannel channel, ByteBuffer chunk, long position) throws IOException {
+        chunk.flip();
+        while (chunk.hasRemaining()) {
+            position += channel.write(chunk, position);
+        }
+        chunk.clear();
+        return position;
+    }
+
+    /** Offset of the latest record per id, or -1 for ids without records. */
+    private int[] latestOffsets(ByteBuffer map) {
+        int[] latest = new int[nextId];
+        Arrays.fill(latest, -1);
+        for (long i = 0; i < recordCount; i++) {
+            int offset = (int) (i * RECORD_SIZE);
+            latest[map.getInt(offset)] = offset;
+        }
+        return latest;
+    }
+
+    private void openChannel() throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        channel = raf.getChannel();
+        try {
+            if (channel.size() < HEADER_SIZE) {
+                // new file, or crashed before the header was complete
+                channel.truncate(0);
+                writeHeader(channel, 0);
+                channel.force(true);
+                recover(0);
+            } else {
+                recover(readHeader());
+            }
+        } catch (IOException | RuntimeException e) {
+            closeChannel();
+            throw e;
+        }
+    }
+
+    /** Validates the header and returns the id counter saved by the last compaction. */
+    private int readHeader() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        channel.read(header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not a pothole log: " + file);
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported pothole log version " + version);
+        }
+        return header.getInt();
+    }
+
+    /** Validates every record, truncates the file after the last good one and rebuilds counters. */
+    private void recover(int headerNextId) throws IOException {
+        long count = (channel.size() - HEADER_SIZE) / RECORD_SIZE;
+        long valid = 0;
+        int maxId = -1;
+        if (count > 0) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, count * RECORD_SIZE);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            for (; valid < count; valid++) {
+                int offset = (int) (valid * RECORD_SIZE);
+                int id = map.getInt(offset);
+                if (!checksumMatches(map, offset) || id < 0) {
+                    break;
+                }
+                maxId = Math.max(maxId, id);
+            }
+        }
+        long validSize = HEADER_SIZE + valid * RECORD_SIZE;
+        if (channel.size() != validSize) {
+            channel.truncate(validSize);
+            channel.force(true);
+        }
+        recordCount = valid;
+        nextId = Math.max(headerNextId, maxId + 1);
+        liveCount = 0;
+        if (recordCount > 0) {
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, recordCount * RECORD_SIZE);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            int[] latest = latestOffsets(map);
+            for (int id = 0; id < latest.length; id++) {
+                // ids without records were deleted and dropped by compaction
+                byte status = latest[id] < 0 ? STATUS_DELETED : map.get(latest[id] + 24);
+                setStatus(id, status);
+                if (status != STATUS_DELETED) {
+                    liveCount++;
+                }
+            }
+        }
+    }
+
+    private boolean checksumMatches(ByteBuffer map, int offset) {
+        byte[] bytes = writeBuffer.array();
+        for (int i = 0; i < RECORD_SIZE - 4; i++) {
+            bytes[i] = map.get(offset + i);
+        }
+        crc.reset();
+        crc.update(bytes, 0, RECORD_SIZE - 4);
+        return (int) crc.getValue() == map.getInt(offset + RECORD_SIZE - 4);
+    }
+
+    private static void writeHeader(FileChannel channel, int nextId) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(nextId).putInt(0);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    private void encode(ByteBuffer out, int id, double lat, double lon, long timestamp, float confidence, byte status) {
+        int start = out.position();
+        out.putInt(id);
+        out.putInt((int) Math.round(lat * E7));
+        out.putInt((int) Math.round(lon * E7));
+        out.putLong(timestamp);
+        out.putFloat(confidence);
+        out.put(status);
+        out.put((byte) 0).put((byte) 0).put((byte) 0);
+        crc.reset();
+        crc.update(out.array(), out.arrayOffset() + start, RECORD_SIZE - 4);
+        out.putInt((int) crc.getValue());
+    }
+
+    private static void decode(ByteBuffer map, int offset, PotholeRecord record) {
+        record.id = map.getInt(offset);
+        record.lat = map.getInt(offset + 4) / E7;
+        record.lon = map.getInt(offset + 8) / E7;
+        record.timestamp = map.getLong(offset + 12);
+        record.confidence = map.getFloat(offset + 20);
+        record.status = map.get(offset + 24);
+    }
+
+    private void closeChannel() throws IOException {
+        if (raf != null) {
+            raf.close();
+            raf = null;
+            channel = null;
+        }
+    }
+}
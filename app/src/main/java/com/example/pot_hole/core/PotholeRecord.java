@@ -0,0 +1,14 @@
+package com.example.pot_hole.core;
+
+/**
+ * One pothole as stored in the {@link PotholeLog}.
+ */
+public class PotholeRecord {
+
+    public int id;
+    public double lat;
+    public double lon;
+    public long timestamp;
+    public float confidence;
+    public byte status;
+}
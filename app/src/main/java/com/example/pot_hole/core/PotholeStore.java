@@ -0,0 +1,86 @@
+package com.example.pot_hole.core;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Keeps the potholes of a {@link PotholeIndex} in a {@link PotholeLog}.
+ *
+ * <p>Index ids and log ids are assigned separately: the index numbers potholes as they are
+ * loaded or detected, the log as records are appended. A failed append or a deleted pothole
+ * makes the two drift apart, so each index id remembers its log id. A pothole whose append
+ * failed is appended again on its next save.
+ *
+ * <p>Not thread-safe. The app loads on the main thread before anything is saved, then saves on
+ * its storage thread with positions read from the index on the main thread.
+ */
+public class PotholeStore {
+
+    /** What the store needs from the log; implemented by {@link PotholeLog}. */
+    public interface Log {
+        int append(double lat, double lon, long timestamp, float confidence, byte status) throws IOException;
+
+        void write(int id, double lat, double lon, long timestamp, float confidence, byte status) throws IOException;
+
+        byte getStatus(int id);
+    }
+
+    private static final int NOT_LOGGED = -1;
+
+    private final PotholeIndex index;
+    private final Log log;
+    private int[] logIds = new int[64];
+
+    public PotholeStore(PotholeIndex index, Log log) {
+        this.index = index;
+        this.log = log;
+        Arrays.fill(logIds, NOT_LOGGED);
+    }
+
+    /** Empties the index, before the log is read again. */
+    public void clear() {
+        index.clear();
+        Arrays.fill(logIds, NOT_LOGGED);
+    }
+
+    /** Adds a pothole read from the log to the index and returns its index id. */
+    public int load(PotholeRecord record) {
+        int id = index.add(record.lat, record.lon);
+        setLogId(id, record.id);
+        return id;
+    }
+
+    /** Log id of index id {@code id}, or -1 if it has not been saved. */
+    public int logId(int id) {
+        return id < logIds.length ? logIds[id] : NOT_LOGGED;
+    }
+
+    /**
+     * Saves the current position of index id {@code id}. A {@code newStatus} of
+     * {@link PotholeLog#STATUS_DETECTED}, a refined position, keeps the stored status of a
+     * pothole already in the log; any other status replaces it.
+     */
+    public void save(int id, long timestamp, float confidence, byte newStatus) throws IOException {
+        save(id, index.latitude(id), index.longitude(id), timestamp, confidence, newStatus);
+    }
+
+    /** Like {@link #save(int, long, float, byte)}, with the position read by the caller. */
+    public void save(int id, double lat, double lon, long timestamp, float confidence, byte newStatus) throws IOException {
+        int logId = logId(id);
+        if (logId == NOT_LOGGED) {
+            setLogId(id, log.append(lat, lon, timestamp, confidence, newStatus));
+            return;
+        }
+        byte status = newStatus == PotholeLog.STATUS_DETECTED ? log.getStatus(logId) : newStatus;
+        log.write(logId, lat, lon, timestamp, confidence, status);
+    }
+
+    private void setLogId(int id, int logId) {
+        if (id >= logIds.length) {
+            int oldLength = logIds.length;
+            logIds = Arrays.copyOf(logIds, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(logIds, oldLength, logIds.length, NOT_LOGGED);
+        }
+        logIds[id] = logId;
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.pot_hole.core;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Outbound queue of pothole reports, sent as digest messages.
+ *
+ * <p>Reports wait up to {@code windowMillis} after detection so that nearby potholes
+ * ({@code areaMeters} around the oldest waiting one) go out together in one message of at most
+ * {@code maxReportsPerMessage}. At most {@code maxMessagesPerPeriod} sends are attempted per
+ * {@code periodMillis}. One message is in flight at a time; a failed or timed-out send is
+ * retried with exponential backoff before anything else is sent.
+ *
+ * <p>The dispatcher keeps nothing on disk: the caller persists queued reports, marks them in
+ * flight in {@link Listener#onSending} and done in {@link Listener#onReported}. After a restart
+ * it re-enqueues the queued ones and hands the ones in flight to {@link #adopt}, whose send may
+ * still report back. Batch ids start at the clock time, so they do not repeat those of an
+ * earlier dispatcher. It does no scheduling of its own either; the caller runs {@link #tick()}
+ * at the time it returns. Not thread-safe.
+ */
+public class ReportDispatcher {
+
+    /** Returned by {@link #tick()} when there is nothing to do until the next report. */
+    public static final long IDLE = Long.MAX_VALUE;
+
+    private static final String MAPS_URL = "https://www.google.com/maps?q=";
+
+    public interface Clock {
+        long nowMillis();
+    }
+
+    public interface Transport {
+        /**
+         * Starts sending {@code message}; the outcome must be reported through
+         * {@link ReportDispatcher#onSendResult}. Returns false if it cannot be sent at all.
+         */
+        boolean send(long batchId, String message);
+    }
+
+    public interface Listener {
+        /** Called before each attempt to send the reports, including retries. */
+        void onSending(List<Report> reports);
+
+        /** Called once the reports have been sent. */
+        void onReported(List<Report> reports);
+    }
+
+    public static final class Report {
+        public final int id;
+        public final double lat;
+        public final double lon;
+        public final long timeMillis;
+        public final float confidence;
+
+        public Report(int id, double lat, double lon, long timeMillis, float confidence) {
+            this.id = id;
+            this.lat = lat;
+            this.lon = lon;
+            this.timeMillis = timeMillis;
+            this.confidence = confidence;
+        }
+    }
+
+    public static class Config {
+        public long windowMillis = 60_000;
+        public double areaMeters = 2_000;
+        public int maxReportsPerMessage = 5;
+        public int maxMessagesPerPeriod = 5;
+        public long periodMillis = 60 * 60_000;
+        public long initialBackoffMillis = 30_000;
+        public long maxBackoffMillis = 30 * 60_000;
+        public long sendTimeoutMillis = 2 * 60_000;
+        public String signature = "- Team idkWhatWe'reDoing";
+    }
+
+    private static final class Batch {
+        final List<Report> reports;
+        long id;
+        int attempts;
+        long sentMillis;
+
+        Batch(List<Report> reports) {
+            this.reports = reports;
+        }
+    }
+
+    private final Transport transport;
+    private final Clock clock;
+    private final Listener listener;
+    private final Config config;
+
+    private final List<Report> pending = new ArrayList<>();
+    private final ArrayDeque<Long> sendTimes = new ArrayDeque<>();
+    private Batch inFlight;
+    private Batch retry;
+    private long retryMillis;
+    private Batch adopted; // sent by an earlier dispatcher, sentMillis is when
+    private final long firstBatchId;
+    private long nextBatchId;
+
+    private long sentCount;
+    private long failedCount;
+    private long deliveredCount;
+
+    public ReportDispatcher(Transport transport, Clock clock, Listener listener, Config config) {
+        this.transport = transport;
+        this.clock = clock;
+        this.listener = listener;
+        this.config = config;
+        this.firstBatchId = clock.nowMillis();
+        this.nextBatchId = firstBatchId;
+    }
+
+    public void enqueue(Report report) {
+        pending.add(report);
+    }
+
+    /**
+     * Takes over a report an earlier dispatcher was sending at {@code sentMillis}. The first
+     * result for a batch id issued before this dispatcher settles all adopted reports; without
+     * one within {@code sendTimeoutMillis} they are queued again.
+     */
+    public void adopt(Report report, long sentMillis) {
+        if (adopted == null) {
+            adopted = new Batch(new ArrayList<>());
+        }
+        adopted.reports.add(report);
+        adopted.sentMillis = Math.max(adopted.sentMillis, sentMillis);
+    }
+
+    /** Reports waiting to be sent, including the ones in flight or waiting for a retry. */
+    public int pendingCount() {
+        return pending.size()
+                + (inFlight != null ? inFlight.reports.size() : 0)
+                + (retry != null ? retry.reports.size() : 0)
+                + (adopted != null ? adopted.reports.size() : 0);
+    }
+
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /** Sends whatever is due and returns the clock time of the next call, or {@link #IDLE}. */
+    public long tick() {
+        if (adopted != null && clock.nowMillis() >= adopted.sentMillis + config.sendTimeoutMillis) {
+            requeueAdopted();
+        }
+        long next = sendDue();
+        return adopted != null ? Math.min(next, adopted.sentMillis + config.sendTimeoutMillis) : next;
+    }
+
+    private long sendDue() {
+        while (true) {
+            long now = clock.nowMillis();
+            if (inFlight != null) {
+                long deadline = inFlight.sentMillis + config.sendTimeoutMillis;
+                if (now < deadline) {
+                    return deadline;
+                }
+                fail(inFlight, now);
+            }
+            if (retry != null && now < retryMillis) {
+                return retryMillis;
+            }
+            if (retry == null && pending.isEmpty()) {
+                return IDLE;
+            }
+            while (!sendTimes.isEmpty() && sendTimes.peekFirst() <= now - config.periodMillis) {
+                sendTimes.pollFirst();
+            }
+            if (sendTimes.size() >= config.maxMessagesPerPeriod) {
+                return sendTimes.peekFirst() + config.periodMillis;
+            }
+            Batch batch = retry;
+            if (batch == null) {
+                long readyMillis = pending.get(0).timeMillis + config.windowMillis;
+                batch = takeBatch(now >= readyMillis);
+                if (batch == null) {
+                    return readyMillis;
+                }
+            }
+            retry = null;
+            batch.id = nextBatchId++;
+            batch.attempts++;
+            batch.sentMillis = now;
+            sendTimes.addLast(now);
+            inFlight = batch;
+            listener.onSending(batch.reports);
+            if (!transport.send(batch.id, formatMessage(batch.reports, config.signature))) {
+                fail(batch, now);
+            }
+        }
+    }
+
+    /** Outcome of the send started for {@code batchId}; stale or unknown ids are ignored. */
+    public void onSendResult(long batchId, boolean success) {
+        if (adopted != null && batchId < firstBatchId) {
+            if (success) {
+                Batch batch = adopted;
+                adopted = null;
+                sentCount++;
+                listener.onReported(batch.reports);
+            } else {
+                failedCount++;
+                requeueAdopted();
+            }
+            return;
+        }
+        if (inFlight == null || inFlight.id != batchId) {
+            return;
+        }
+        Batch batch = inFlight;
+        if (success) {
+            inFlight = null;
+            sentCount++;
+            listener.onReported(batch.reports);
+        } else {
+            fail(batch, clock.nowMillis());
+        }
+    }
+
+    public void onDelivered(long batchId) {
+        deliveredCount++;
+    }
+
+    /** Drops any backoff wait, e.g. once the SMS permission has been granted. */
+    public void retryNow() {
+        retryMillis = 0;
+    }
+
+    // Adopted reports go ahead of the pending ones, they are the oldest
+    private void requeueAdopted() {
+        pending.addAll(0, adopted.reports);
+        adopted = null;
+    }
+
+    private void fail(Batch batch, long now) {
+        inFlight = null;
+        failedCount++;
+        retry = batch;
+        int shift = Math.min(batch.attempts - 1, 30);
+        retryMillis = now + Math.min(config.maxBackoffMillis, config.initialBackoffMillis << shift);
+    }
+
+    /**
+     * Takes the oldest pending report and those within the area around it. Unless {@code due},
+     * only does so once a full message is available.
+     */
+    private Batch takeBatch(boolean due) {
+        Report first = pending.get(0);
+        List<Report> reports = new ArrayList<>();
+        for (Report report : pending) {
+            if (reports.size() == config.maxReportsPerMessage) {
+                break;
+            }
+            if (GeoMath.distanceMeters(first.lat, first.lon, report.lat, report.lon) <= config.areaMeters) {
+                reports.add(report);
+            }
+        }
+        if (!due && reports.size() < config.maxReportsPerMessage) {
+            return null;
+        }
+        Iterator<Report> it = pending.iterator();
+        int taken = 0;
+        while (it.hasNext() && taken < reports.size()) {
+            if (it.next() == reports.get(taken)) {
+                it.remove();
+                taken++;
+            }
+        }
+        return new Batch(reports);
+    }
+
+    static String formatMessage(List<Report> reports, String signature) {
+        StringBuilder message = new StringBuilder();
+        if (reports.size() == 1) {
+            message.append("Pothole detected at:\n");
+        } else {
+            message.append(reports.size()).append(" potholes detected at:\n");
+        }
+        for (Report report : reports) {
+            message.append(MAPS_URL).append(report.lat).append(',').append(report.lon).append('\n');
+        }
+        return message.append('\n').append(signature).toString();
+    }
+}
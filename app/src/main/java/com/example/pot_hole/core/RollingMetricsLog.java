@@ -0,0 +1,62 @@
+package com.example.pot_hole.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Appends metrics lines to a text file that is rolled over once it would exceed
+ * {@code maxBytes}: {@code metrics.txt} becomes {@code metrics.txt.1}, the previous
+ * {@code .1} becomes {@code .2} and so on, and the oldest file beyond {@code maxFiles} is deleted.
+ *
+ * <p>Not thread-safe; call it from one background thread.
+ */
+public class RollingMetricsLog {
+
+    private final File file;
+    private final long maxBytes;
+    private final int maxFiles;
+
+    public RollingMetricsLog(File file, long maxBytes, int maxFiles) {
+        if (maxBytes <= 0 || maxFiles < 1) {
+            throw new IllegalArgumentException("maxBytes and maxFiles must be positive");
+        }
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public void append(String line) throws IOException {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        if (file.length() > 0 && file.length() + bytes.length > maxBytes) {
+            roll();
+        }
+        try (OutputStream out = new FileOutputStream(file, true)) {
+            out.write(bytes);
+        }
+    }
+
+    private void roll() throws IOException {
+        File oldest = rolled(maxFiles - 1);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Failed to delete " + oldest);
+        }
+        for (int i = maxFiles - 2; i >= 0; i--) {
+            File from = rolled(i);
+            if (from.exists() && !from.renameTo(rolled(i + 1))) {
+                throw new IOException("Failed to roll " + from);
+            }
+        }
+    }
+
+    // 0 is the live file itself
+    private File rolled(int generation) {
+        return generation == 0 ? file : new File(file.getPath() + "." + generation);
+    }
+}
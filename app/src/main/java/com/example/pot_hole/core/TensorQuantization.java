@@ -0,0 +1,50 @@
+package com.example.pot_hole.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Affine quantization of a uint8 or int8 tensor: {@code real = scale * (q - zeroPoint)}.
+ */
+public final class TensorQuantization {
+
+    public final float scale;
+    public final int zeroPoint;
+    public final boolean signed;
+
+    public TensorQuantization(float scale, int zeroPoint, boolean signed) {
+        if (!(scale > 0)) {
+            throw new IllegalArgumentException("scale must be positive: " + scale);
+        }
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+        this.signed = signed;
+    }
+
+    /**
+     * Quantized input value for every 0..255 channel value, for a model trained on
+     * {@link PixelNormalizer#normalize} input. With the usual scale of 1/255 and zero point 0
+     * this is the raw channel value itself.
+     */
+    public byte[] pixelLut() {
+        int min = signed ? -128 : 0;
+        int max = signed ? 127 : 255;
+        byte[] lut = new byte[256];
+        for (int i = 0; i < lut.length; i++) {
+            int q = Math.round(PixelNormalizer.normalize(i) / scale) + zeroPoint;
+            lut[i] = (byte) Math.max(min, Math.min(max, q));
+        }
+        return lut;
+    }
+
+    public float dequantize(byte raw) {
+        int q = signed ? raw : raw & 0xFF;
+        return scale * (q - zeroPoint);
+    }
+
+    /** Dequantizes {@code out.length} values from {@code raw}, starting at its absolute index 0. */
+    public void dequantize(ByteBuffer raw, float[] out) {
+        for (int i = 0; i < out.length; i++) {
+            out[i] = dequantize(raw.get(i));
+        }
+    }
+}
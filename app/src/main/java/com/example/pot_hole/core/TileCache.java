@@ -0,0 +1,505 @@
+package com.example.pot_hole.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Disk cache for map tiles and the map page's scripts, one flat file per entry, with a size
+ * cap and least-recently-used eviction. Pinned entries (the Leaflet files) are never evicted.
+ * Recency is kept in the files' modification times, so it survives restarts.
+ *
+ * <p>Each entry keeps the expiry its server sent (Cache-Control max-age or Expires, a week if
+ * neither) and its ETag, in a small header before the data. Stale entries are still served
+ * offline; online they are revalidated with a conditional request first, as the OpenStreetMap
+ * tile usage policy asks. Pinned entries come from versioned URLs and never expire.
+ *
+ * <p>Hits, misses and upstream fetches are counted and their latencies recorded, see
+ * {@link #getStats()}.
+ *
+ * <p>Thread-safe: the index is guarded by the cache's lock, file reads and upstream fetches
+ * happen outside it.
+ */
+public class TileCache {
+
+    /** Downloads an entry. */
+    public interface Fetcher {
+        /**
+         * Fetches {@code url}; with an {@code etag} the request is conditional and the response
+         * has no data if the cached copy is still current.
+         */
+        Response fetch(String url, String etag) throws IOException;
+    }
+
+    public interface Clock {
+        long nowMillis();
+    }
+
+    /** What the server sent. Immutable. */
+    public static final class Response {
+        /** The body, or null when the server confirmed the cached copy. */
+        public final byte[] data;
+        /** How long the body stays fresh, or -1 if the server did not say. */
+        public final long maxAgeMillis;
+        public final String etag;
+
+        public Response(byte[] data, long maxAgeMillis, String etag) {
+            this.data = data;
+            this.maxAgeMillis = maxAgeMillis;
+            this.etag = etag;
+        }
+    }
+
+    /** Freshness of responses without caching headers. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 7L * 24 * 60 * 60 * 1000;
+
+    private static final String PINNED_PREFIX = "pin_";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HEADER_MAGIC = 0x54433031; // "TC01"
+    // magic, expiry and the ETag's length; the size cap counts data only
+    private static final int HEADER_BYTES = 4 + 8 + 2;
+
+    private static final class Entry {
+        final File file;
+        final long size;
+        final boolean pinned;
+        final long expiresMillis;
+
+        Entry(File file, long size, boolean pinned, long expiresMillis) {
+            this.file = file;
+            this.size = size;
+            this.pinned = pinned;
+            this.expiresMillis = expiresMillis;
+        }
+    }
+
+    /** An entry's data and header as read from its file. */
+    private static final class Stored {
+        final byte[] data;
+        final long expiresMillis;
+        final String etag;
+
+        Stored(byte[] data, long expiresMillis, String etag) {
+            this.data = data;
+            this.expiresMillis = expiresMillis;
+            this.etag = etag;
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+    private final Fetcher fetcher;
+    private final Clock clock;
+    // access order, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong fetchFailures = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong staleHits = new AtomicLong();
+    private final LatencyHistogram hitLatency = new LatencyHistogram();
+    private final LatencyHistogram fetchLatency = new LatencyHistogram();
+
+    public TileCache(File dir, long maxBytes, Fetcher fetcher) throws IOException {
+        this(dir, maxBytes, fetcher, System::currentTimeMillis);
+    }
+
+    public TileCache(File dir, long maxBytes, Fetcher fetcher, Clock clock) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        this.fetcher = fetcher;
+        this.clock = clock;
+        load();
+    }
+
+    /** Cached bytes for {@code key}, fresh or not, or null; counts as a hit or a miss. */
+    public byte[] get(String key) {
+        Stored stored = lookup(key);
+        return stored != null ? stored.data : null;
+    }
+
+    /**
+     * Cached bytes for {@code key}, downloading them from {@code url} on a miss. A stale entry
+     * is revalidated when {@code online}, and served as it is when not or when that fails.
+     * Returns null if the entry is not cached and cannot be downloaded.
+     */
+    public byte[] getOrFetch(String key, String url, boolean pinned, boolean online) {
+        Stored stored = lookup(key);
+        if (stored == null) {
+            return fetch(key, url, pinned, null);
+        }
+        if (stored.expiresMillis > clock.nowMillis()) {
+            return stored.data;
+        }
+        staleHits.incrementAndGet();
+        byte[] fresh = online ? fetch(key, url, pinned, stored) : null;
+        return fresh != null ? fresh : stored.data;
+    }
+
+    /**
+     * Downloads {@code key} unless a fresh copy is cached, revalidating a stale one; returns
+     * true if it is cached afterwards.
+     */
+    public boolean prefetch(String key, String url) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.expiresMillis > clock.nowMillis()) {
+            return true;
+        }
+        Stored stored = entry != null ? read(entry) : null;
+        return fetch(key, url, false, stored) != null || stored != null;
+    }
+
+    public synchronized boolean contains(String key) {
+        return entries.containsKey(key);
+    }
+
+    /** Stores {@code data} as fresh for {@link #DEFAULT_MAX_AGE_MILLIS}, or for good if pinned. */
+    public void put(String key, byte[] data, boolean pinned) throws IOException {
+        put(key, data, pinned, expiry(pinned, -1), null);
+    }
+
+    private void put(String key, byte[] data, boolean pinned, long expiresMillis, String etag) throws IOException {
+        File file = new File(dir, fileName(key, pinned));
+        // unique, so concurrent downloads of the same tile do not clash
+        File temp = File.createTempFile("tile", TEMP_SUFFIX, dir);
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(temp))) {
+            out.writeInt(HEADER_MAGIC);
+            out.writeLong(expiresMillis);
+            out.writeUTF(etag != null ? etag : "");
+            out.write(data);
+        }
+        long size = data.length;
+        synchronized (this) {
+            Entry old = entries.remove(key);
+            if (old != null) {
+                totalBytes -= old.size;
+                if (!old.file.equals(file)) {
+                    old.file.delete();
+                }
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                throw new IOException("Failed to store " + file);
+            }
+            entries.put(key, new Entry(file, size, pinned, expiresMillis));
+            totalBytes += size;
+            evict();
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Stats getStats() {
+        return new Stats(hits.get(), misses.get(), fetchFailures.get(), evictions.get(), staleHits.get(),
+                revalidations.get(), getTotalBytes(), hitLatency.snapshot(), fetchLatency.snapshot());
+    }
+
+    private Stored lookup(String key) {
+        long start = System.nanoTime();
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+        }
+        Stored stored = entry != null ? read(entry) : null;
+        if (stored == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        // keeps the recency across restarts; failure only costs LRU accuracy
+        entry.file.setLastModified(System.currentTimeMillis());
+        hitLatency.record(System.nanoTime() - start);
+        return stored;
+    }
+
+    // Downloads key, conditionally if a stale copy is given; null if that fails
+    private byte[] fetch(String key, String url, boolean pinned, Stored stale) {
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = fetcher.fetch(url, stale != null && !stale.etag.isEmpty() ? stale.etag : null);
+        } catch (IOException e) {
+            fetchFailures.incrementAndGet();
+            return null;
+        }
+        fetchLatency.record(System.nanoTime() - start);
+        byte[] data = response.data;
+        String etag = response.etag;
+        if (data == null) {
+            if (stale == null) {
+                fetchFailures.incrementAndGet();
+                return null;
+            }
+            revalidations.incrementAndGet();
+            data = stale.data;
+            etag = etag != null ? etag : stale.etag;
+        }
+        try {
+            put(key, data, pinned, expiry(pinned, response.maxAgeMillis), etag);
+        } catch (IOException e) {
+            // still usable for this request
+        }
+        return data;
+    }
+
+    private long expiry(boolean pinned, long maxAgeMillis) {
+        if (pinned) {
+            return Long.MAX_VALUE;
+        }
+        return clock.nowMillis() + (maxAgeMillis >= 0 ? maxAgeMillis : DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (entry.pinned) {
+                continue;
+            }
+            iterator.remove();
+            entry.file.delete();
+            totalBytes -= entry.size;
+            evictions.incrementAndGet();
+        }
+    }
+
+    private static Stored read(Entry entry) {
+        // read to the end rather than trusting entry.size, the file may have been replaced since
+        try (InputStream in = new FileInputStream(entry.file)) {
+            byte[] bytes = readFully(in);
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(bytes));
+            if (bytes.length < 4 || header.readInt() != HEADER_MAGIC) {
+                // written before entries had headers; stale, so it is revalidated when online
+                return new Stored(bytes, 0, "");
+            }
+            long expiresMillis = header.readLong();
+            String etag = header.readUTF();
+            int offset = bytes.length - header.available();
+            return new Stored(Arrays.copyOfRange(bytes, offset, bytes.length), expiresMillis, etag);
+        } catch (IOException e) {
+            // evicted by another thread since the lookup
+            return null;
+        }
+    }
+
+    // Size and expiry from the header, without reading the data
+    private static Entry readEntry(File file, boolean pinned) {
+        long length = file.length();
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (length >= HEADER_BYTES && in.readInt() == HEADER_MAGIC) {
+                long expiresMillis = in.readLong();
+                int etagBytes = in.readUnsignedShort();
+                return new Entry(file, length - HEADER_BYTES - etagBytes, pinned, expiresMillis);
+            }
+        } catch (IOException e) {
+            // unreadable, treated as an entry without a header
+        }
+        return new Entry(file, length, pinned, 0);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(16 * 1024);
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    // Rebuilds the index from disk, oldest first so the access order matches the file times
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> cached = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // left over from a crash mid-write
+                file.delete();
+            } else if (file.isFile()) {
+                cached.add(file);
+            }
+        }
+        File[] sorted = cached.toArray(new File[0]);
+        Arrays.sort(sorted, Comparator.comparingLong(File::lastModified));
+        for (File file : sorted) {
+            String name = file.getName();
+            boolean pinned = name.startsWith(PINNED_PREFIX);
+            String key = unescape(pinned ? name.substring(PINNED_PREFIX.length()) : name);
+            Entry entry = readEntry(file, pinned);
+            entries.put(key, entry);
+            totalBytes += entry.size;
+        }
+        evict();
+    }
+
+    private static String fileName(String key, boolean pinned) {
+        return (pinned ? PINNED_PREFIX : "") + escape(key);
+    }
+
+    // Keys like "14/11700/7600" or "leaflet/leaflet.js" become single file names
+    private static String escape(String key) {
+        StringBuilder name = new StringBuilder(key.length() + 8);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+                name.append(c);
+            } else {
+                name.append('_').append(String.format(Locale.ROOT, "%04x", (int) c));
+            }
+        }
+        return name.toString();
+    }
+
+    private static String unescape(String name) {
+        StringBuilder key = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c == '_' && i + 4 < name.length()) {
+                key.append((char) Integer.parseInt(name.substring(i + 1, i + 5), 16));
+                i += 4;
+            } else {
+                key.append(c);
+            }
+        }
+        return key.toString();
+    }
+
+    /** Fetches over HTTP(S) with the given User-Agent, as tile servers require one. */
+    public static Fetcher httpFetcher(final String userAgent, final int timeoutMillis) {
+        return (url, etag) -> {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            try {
+                connection.setConnectTimeout(timeoutMillis);
+                connection.setReadTimeout(timeoutMillis);
+                connection.setRequestProperty("User-Agent", userAgent);
+                if (etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                int code = connection.getResponseCode();
+                long maxAge = maxAgeMillis(connection.getHeaderField("Cache-Control"),
+                        connection.getExpiration(), connection.getDate());
+                String newEtag = connection.getHeaderField("ETag");
+                if (code == HttpURLConnection.HTTP_NOT_MODIFIED && etag != null) {
+                    return new Response(null, maxAge, newEtag);
+                }
+                if (code != HttpURLConnection.HTTP_OK) {
+                    throw new IOException("HTTP " + code + " for " + url);
+                }
+                try (InputStream in = connection.getInputStream()) {
+                    return new Response(readFully(in), maxAge, newEtag);
+                }
+            } finally {
+                connection.disconnect();
+            }
+        };
+    }
+
+    /**
+     * Freshness from a response's headers: Cache-Control max-age, else Expires relative to Date
+     * (or now), else -1. no-cache and no-store make it stale at once; it is still kept for offline
+     * use but revalidated before every online use.
+     */
+    static long maxAgeMillis(String cacheControl, long expiresMillis, long dateMillis) {
+        if (cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                String d = directive.trim().toLowerCase(Locale.ROOT);
+                if (d.equals("no-cache") || d.equals("no-store")) {
+                    return 0;
+                }
+                if (d.startsWith("max-age=")) {
+                    try {
+                        return Math.max(0, Long.parseLong(d.substring("max-age=".length()).trim())) * 1000;
+                    } catch (NumberFormatException e) {
+                        // fall back to Expires
+                    }
+                }
+            }
+        }
+        if (expiresMillis > 0) {
+            long date = dateMillis > 0 ? dateMillis : System.currentTimeMillis();
+            return Math.max(0, expiresMillis - date);
+        }
+        return -1;
+    }
+
+    /** Counters and latencies since the cache was opened. Immutable. */
+    public static final class Stats {
+        public final long hits;
+        public final long misses;
+        public final long fetchFailures;
+        public final long evictions;
+        /** Hits on entries past their expiry. */
+        public final long staleHits;
+        /** Stale entries the server confirmed without sending them again. */
+        public final long revalidations;
+        public final long totalBytes;
+        public final LatencyHistogram.Snapshot hitLatency;
+        public final LatencyHistogram.Snapshot fetchLatency;
+
+        Stats(long hits, long misses, long fetchFailures, long evictions, long staleHits, long revalidations,
+              long totalBytes, LatencyHistogram.Snapshot hitLatency, LatencyHistogram.Snapshot fetchLatency) {
+            this.hits = hits;
+            this.misses = misses;
+            this.fetchFailures = fetchFailures;
+            this.evictions = evictions;
+            this.staleHits = staleHits;
+            this.revalidations = revalidations;
+            this.totalBytes = totalBytes;
+            this.hitLatency = hitLatency;
+            this.fetchLatency = fetchLatency;
+        }
+
+        public double hitRate() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "hit rate %.2f (%d/%d), %d fetch failures, %d evicted, %d stale, %d revalidated,"
+                            + " %d KiB, hit p50 %.2f ms, fetch p50 %.1f ms",
+                    hitRate(), hits, hits + misses, fetchFailures, evictions, staleHits, revalidations,
+                    totalBytes / 1024,
+                    hitLatency.percentile(0.5) / 1e6, fetchLatency.percentile(0.5) / 1e6);
+        }
+    }
+}
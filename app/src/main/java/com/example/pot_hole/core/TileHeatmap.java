@@ -0,0 +1,114 @@
+package com.example.pot_hole.core;
+
+import java.util.Locale;
+
+/**
+ * Merges the pothole probabilities of a {@link TilePlanner.Plan}'s tiles into a coarse grid over
+ * the frame. Each cell is the mean of the tiles covering its centre, so overlapping tiles agree
+ * before a cell lights up. The frame's probability is that of its hottest cell.
+ *
+ * <p>Immutable.
+ */
+public final class TileHeatmap {
+
+    public final int cols;
+    public final int rows;
+    private final float[] cells;
+    private final int hottest;
+
+    private TileHeatmap(int cols, int rows, float[] cells) {
+        this.cols = cols;
+        this.rows = rows;
+        this.cells = cells;
+        int best = 0;
+        for (int i = 1; i < cells.length; i++) {
+            if (cells[i] > cells[best]) {
+                best = i;
+            }
+        }
+        this.hottest = best;
+    }
+
+    /**
+     * Merges {@code tileScores}, one pothole probability per tile of {@code plan}, into a
+     * {@code gridCols} x {@code gridRows} grid.
+     */
+    public static TileHeatmap merge(TilePlanner.Plan plan, float[] tileScores, int gridCols, int gridRows) {
+        if (tileScores.length < plan.count()) {
+            throw new IllegalArgumentException("Need " + plan.count() + " scores, got " + tileScores.length);
+        }
+        if (gridCols < 1 || gridRows < 1) {
+            throw new IllegalArgumentException("Bad grid " + gridCols + "x" + gridRows);
+        }
+        float[] sums = new float[gridCols * gridRows];
+        int[] counts = new int[sums.length];
+        for (int tile = 0; tile < plan.count(); tile++) {
+            int left = plan.x(tile);
+            int top = plan.y(tile);
+            // cells whose centres lie inside the tile
+            int firstCol = firstCentreAtOrAfter(left, plan.frameWidth, gridCols);
+            int endCol = firstCentreAtOrAfter(left + plan.cropWidth, plan.frameWidth, gridCols);
+            int firstRow = firstCentreAtOrAfter(top, plan.frameHeight, gridRows);
+            int endRow = firstCentreAtOrAfter(top + plan.cropHeight, plan.frameHeight, gridRows);
+            for (int row = firstRow; row < endRow; row++) {
+                for (int col = firstCol; col < endCol; col++) {
+                    sums[row * gridCols + col] += tileScores[tile];
+                    counts[row * gridCols + col]++;
+                }
+            }
+        }
+        for (int i = 0; i < sums.length; i++) {
+            sums[i] = counts[i] > 0 ? sums[i] / counts[i] : 0;
+        }
+        return new TileHeatmap(gridCols, gridRows, sums);
+    }
+
+    // Cell centres along a side of `length` split into `cells` are at (i + 0.5) * length / cells
+    private static int firstCentreAtOrAfter(int position, int length, int cells) {
+        // ceil((2 * position * cells - length) / (2 * length)); the numerator is at least -length
+        long index = (2L * position * cells + length - 1) / (2L * length);
+        return (int) Math.max(0, Math.min(cells, index));
+    }
+
+    public float cell(int col, int row) {
+        return cells[row * cols + col];
+    }
+
+    /** Pothole probability of the whole frame. */
+    public float probability() {
+        return cells[hottest];
+    }
+
+    public int hottestCol() {
+        return hottest % cols;
+    }
+
+    public int hottestRow() {
+        return hottest / cols;
+    }
+
+    /** Where the hottest cell is, e.g. "bottom left". */
+    public String describeHottest() {
+        String vertical = third(hottestRow(), rows, "top", "middle", "bottom");
+        String horizontal = third(hottestCol(), cols, "left", "centre", "right");
+        return vertical.equals("middle") && horizontal.equals("centre") ? "centre" : vertical + " " + horizontal;
+    }
+
+    private static String third(int index, int count, String first, String second, String last) {
+        // which third the cell's centre falls in
+        int third = 3 * (2 * index + 1) / (2 * count);
+        return third <= 0 ? first : third == 1 ? second : last;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                sb.append(col == 0 ? "" : " ").append(String.format(Locale.ROOT, "%.2f", cell(col, row)));
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.pot_hole.core;
+
+/**
+ * Cuts a large frame into overlapping square crops for the model, so a small pothole fills a
+ * useful part of some crop instead of being averaged away by downscaling the whole frame.
+ *
+ * <p>Crops are {@code tileSize} frame pixels wide when the grid fits in {@code maxTiles};
+ * otherwise they grow until it does, and are scaled down to {@code tileSize} on extraction.
+ * Neighbouring crops overlap by at least {@code overlap} of their width, and the outermost
+ * crops touch the frame edges.
+ *
+ * <p>Thread-safe; plans are immutable.
+ */
+public class TilePlanner {
+
+    // crops grow by this factor until the grid fits
+    private static final double GROWTH = 1.125;
+
+    private final int tileSize;
+    private final double overlap;
+    private final int maxTiles;
+
+    public TilePlanner(int tileSize, double overlap, int maxTiles) {
+        if (tileSize < 1 || !(overlap >= 0 && overlap < 1) || maxTiles < 1) {
+            throw new IllegalArgumentException("Bad tiling " + tileSize + "/" + overlap + "/" + maxTiles);
+        }
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+        this.maxTiles = maxTiles;
+    }
+
+    /** Tiles covering a {@code width} x {@code height} frame. */
+    public Plan plan(int width, int height) {
+        int shortSide = Math.min(width, height);
+        int crop = Math.min(tileSize, shortSide);
+        while (true) {
+            int cols = tilesAlong(width, crop);
+            int rows = tilesAlong(height, crop);
+            if (cols * rows <= maxTiles || crop == shortSide) {
+                return new Plan(width, height, crop, crop, tileSize, positions(width, crop, cols), positions(height, crop, rows));
+            }
+            crop = Math.min(shortSide, (int) Math.ceil(crop * GROWTH));
+        }
+    }
+
+    /** The whole frame squeezed into one tile, as the single-crop path does. */
+    public Plan whole(int width, int height) {
+        return new Plan(width, height, width, height, tileSize, new int[]{0}, new int[]{0});
+    }
+
+    private int tilesAlong(int length, int crop) {
+        if (length <= crop) {
+            return 1;
+        }
+        double stride = crop * (1 - overlap);
+        return (int) Math.ceil((length - crop) / stride) + 1;
+    }
+
+    // Evenly spread, first at 0 and last flush with the far edge
+    private static int[] positions(int length, int crop, int count) {
+        int[] positions = new int[count];
+        for (int i = 1; i < count; i++) {
+            positions[i] = (int) ((long) (length - crop) * i / (count - 1));
+        }
+        return positions;
+    }
+
+    /** Where the crops of one frame size are. Immutable. */
+    public static final class Plan {
+        public final int frameWidth;
+        public final int frameHeight;
+        public final int cropWidth;
+        public final int cropHeight;
+        public final int tileSize;
+        public final int cols;
+        public final int rows;
+        private final int[] xs;
+        private final int[] ys;
+        // source offsets within a crop for each output column and row
+        private final int[] sampleX;
+        private final int[] sampleY;
+        // distance to the second sample averaged in, 0 when not downscaling
+        private final int stepX;
+        private final int stepY;
+
+        Plan(int frameWidth, int frameHeight, int cropWidth, int cropHeight, int tileSize, int[] xs, int[] ys) {
+            this.frameWidth = frameWidth;
+            this.frameHeight = frameHeight;
+            this.cropWidth = cropWidth;
+            this.cropHeight = cropHeight;
+            this.tileSize = tileSize;
+            this.cols = xs.length;
+            this.rows = ys.length;
+            this.xs = xs;
+            this.ys = ys;
+            this.stepX = cropWidth >= 2 * tileSize ? 1 : 0;
+            this.stepY = cropHeight >= 2 * tileSize ? 1 : 0;
+            this.sampleX = samples(cropWidth, tileSize, stepX);
+            this.sampleY = samples(cropHeight, tileSize, stepY);
+        }
+
+        public int count() {
+            return cols * rows;
+        }
+
+        /** Left edge of tile {@code tile}, tiles numbered row by row. */
+        public int x(int tile) {
+            return xs[tile % cols];
+        }
+
+        public int y(int tile) {
+            return ys[tile / cols];
+        }
+
+        /**
+         * Writes tile {@code tile} of {@code frame} (packed ARGB, {@link #frameWidth} wide) into
+         * {@code out} as {@code tileSize * tileSize} pixels. Crops at least twice the tile size
+         * average two by two source pixels per output pixel.
+         */
+        public void extract(int[] frame, int tile, int[] out) {
+            int left = x(tile);
+            int top = y(tile);
+            int index = 0;
+            for (int row = 0; row < tileSize; row++) {
+                int line = (top + sampleY[row]) * frameWidth + left;
+                if (stepX == 0 && stepY == 0) {
+                    for (int col = 0; col < tileSize; col++) {
+                        out[index++] = frame[line + sampleX[col]];
+                    }
+                    continue;
+                }
+                int nextLine = line + stepY * frameWidth;
+                for (int col = 0; col < tileSize; col++) {
+                    int offset = sampleX[col];
+                    out[index++] = average(frame[line + offset], frame[line + offset + stepX],
+                            frame[nextLine + offset], frame[nextLine + offset + stepX]);
+                }
+            }
+        }
+
+        private static int[] samples(int crop, int size, int step) {
+            int[] samples = new int[size];
+            for (int i = 0; i < size; i++) {
+                // centre of output pixel i, in crop pixels; the averaged neighbour stays inside
+                samples[i] = Math.min(crop - 1 - step, (int) ((2L * i + 1) * crop / (2L * size)));
+            }
+            return samples;
+        }
+
+        private static int average(int a, int b, int c, int d) {
+            int r = ((a >> 16 & 0xFF) + (b >> 16 & 0xFF) + (c >> 16 & 0xFF) + (d >> 16 & 0xFF)) >> 2;
+            int g = ((a >> 8 & 0xFF) + (b >> 8 & 0xFF) + (c >> 8 & 0xFF) + (d >> 8 & 0xFF)) >> 2;
+            int bl = ((a & 0xFF) + (b & 0xFF) + (c & 0xFF) + (d & 0xFF)) >> 2;
+            return 0xFF000000 | r << 16 | g << 8 | bl;
+        }
+    }
+}
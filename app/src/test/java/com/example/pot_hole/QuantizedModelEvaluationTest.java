@@ -0,0 +1,161 @@
+package com.example.pot_hole;
+
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TensorQuantization;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the quantized model against the float one on a labelled image folder, so a new
+ * quantized variant is only shipped if it keeps its accuracy. Skipped unless run with
+ * {@code -Ppothole.eval.dir=<dir>} holding {@code pothole/} and {@code normal/} subfolders.
+ *
+ * <p>The TensorFlow Lite dependency only ships Android native libraries, so the test also needs
+ * a desktop build of {@code libtensorflowlite_jni} of the same version (2.16.1), passed as
+ * {@code -Ppothole.eval.jniDir}; without it the test is skipped:
+ *
+ * <pre>
+ * ./gradlew :app:testDebugUnitTest --tests '*QuantizedModelEvaluationTest' \
+ *     -Ppothole.eval.dir=/data/potholes -Ppothole.eval.jniDir=/opt/tflite/jni \
+ *     -Ppothole.eval.quantModel=src/main/assets/model_int8.tflite
+ * </pre>
+ */
+public class QuantizedModelEvaluationTest {
+
+    private static final int SIZE = PixelNormalizer.INPUT_SIZE;
+
+    @Test
+    public void quantizedModelKeepsAccuracy() throws Exception {
+        String dir = System.getProperty("pothole.eval.dir");
+        Assume.assumeTrue("pothole.eval.dir not set", dir != null);
+        File floatModel = new File("src/main/ml/model.tflite");
+        File quantModel = new File(System.getProperty("pothole.eval.quantModel", "src/main/assets/model_int8.tflite"));
+        Assume.assumeTrue("No quantized model at " + quantModel, quantModel.isFile());
+        double maxDrop = Double.parseDouble(System.getProperty("pothole.eval.maxAccuracyDrop", "0.05"));
+
+        List<int[]> images = new ArrayList<>();
+        List<Boolean> labels = new ArrayList<>();
+        loadImages(new File(dir, "pothole"), true, images, labels);
+        loadImages(new File(dir, "normal"), false, images, labels);
+        assertFalse("No images under " + dir, images.isEmpty());
+
+        Evaluation reference = evaluate(floatModel, images, labels);
+        Evaluation quantized = evaluate(quantModel, images, labels);
+        System.out.println(String.format(Locale.ROOT, "%d images: float %s, quantized %s",
+                images.size(), reference, quantized));
+        assertTrue("Accuracy dropped from " + reference.accuracy + " to " + quantized.accuracy,
+                reference.accuracy - quantized.accuracy <= maxDrop);
+    }
+
+    private static Evaluation evaluate(File modelFile, List<int[]> images, List<Boolean> labels) {
+        Interpreter interpreter;
+        try {
+            interpreter = new Interpreter(modelFile);
+        } catch (LinkageError e) {
+            Assume.assumeNoException("TensorFlow Lite native library unavailable, see -Ppothole.eval.jniDir", e);
+            throw e;
+        }
+        try {
+            Tensor inputTensor = interpreter.getInputTensor(0);
+            Tensor outputTensor = interpreter.getOutputTensor(0);
+            TensorQuantization inputQuantization = quantization(inputTensor);
+            TensorQuantization outputQuantization = quantization(outputTensor);
+            byte[] lut = inputQuantization != null ? inputQuantization.pixelLut() : null;
+            ByteBuffer input = ByteBuffer.allocateDirect(inputTensor.numBytes()).order(ByteOrder.nativeOrder());
+            int classes = outputTensor.shape()[1];
+            float[][] floatOutput = new float[1][classes];
+            ByteBuffer rawOutput = ByteBuffer.allocateDirect(classes).order(ByteOrder.nativeOrder());
+            float[] probabilities = new float[classes];
+
+            int correct = 0;
+            long totalNanos = 0;
+            for (int i = 0; i < images.size(); i++) {
+                if (lut != null) {
+                    PixelNormalizer.toQuantizedRgb(images.get(i), lut, input);
+                } else {
+                    PixelNormalizer.toFloatRgb(images.get(i), input.asFloatBuffer());
+                }
+                input.rewind();
+                long start = System.nanoTime();
+                if (outputQuantization != null) {
+                    rawOutput.rewind();
+                    interpreter.run(input, rawOutput);
+                    outputQuantization.dequantize(rawOutput, probabilities);
+                } else {
+                    interpreter.run(input, floatOutput);
+                    System.arraycopy(floatOutput[0], 0, probabilities, 0, classes);
+                }
+                totalNanos += System.nanoTime() - start;
+                // Same threshold as a manual capture in MainActivity
+                if ((probabilities[0] > 0.5f) == labels.get(i)) {
+                    correct++;
+                }
+            }
+            return new Evaluation((double) correct / images.size(), totalNanos / images.size());
+        } finally {
+            interpreter.close();
+        }
+    }
+
+    private static TensorQuantization quantization(Tensor tensor) {
+        DataType type = tensor.dataType();
+        if (type != DataType.UINT8 && type != DataType.INT8) {
+            return null;
+        }
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        return new TensorQuantization(params.getScale(), params.getZeroPoint(), type == DataType.INT8);
+    }
+
+    private static void loadImages(File folder, boolean pothole, List<int[]> images, List<Boolean> labels) throws Exception {
+        File[] files = folder.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            BufferedImage image = ImageIO.read(file);
+            if (image == null) {
+                continue;
+            }
+            BufferedImage scaled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D graphics = scaled.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, SIZE, SIZE, null);
+            graphics.dispose();
+            images.add(scaled.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE));
+            labels.add(pothole);
+        }
+    }
+
+    private static final class Evaluation {
+        final double accuracy;
+        final long meanNanos;
+
+        Evaluation(double accuracy, long meanNanos) {
+            this.accuracy = accuracy;
+            this.meanNanos = meanNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "accuracy %.3f, mean latency %.2f ms", accuracy, meanNanos / 1e6);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.pot_hole.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class BackendSelectorTest {
+
+    private static final InferenceBackend CPU1 = InferenceBackend.DEFAULT;
+    private static final InferenceBackend CPU4_XNN = InferenceBackend.cpu(4, true);
+    private static final InferenceBackend CPU2 = InferenceBackend.cpu(2, false);
+    private static final InferenceBackend GPU = InferenceBackend.delegate(InferenceBackend.Kind.GPU, 1);
+    private static final InferenceBackend NNAPI = InferenceBackend.delegate(InferenceBackend.Kind.NNAPI, 1);
+    private static final List<InferenceBackend> CANDIDATES = Arrays.asList(CPU1, CPU2, CPU4_XNN, GPU, NNAPI);
+
+    /** Mocked backend: how long a run takes, what it outputs and whether it breaks. */
+    private static final class Behaviour {
+        long[] runMillis = {4};
+        float[] output = {0.9f, 0.1f};
+        boolean failOpen;
+        boolean failRun;
+    }
+
+    private final Map<InferenceBackend, Behaviour> behaviours = new HashMap<>();
+    private final List<InferenceBackend> opened = new ArrayList<>();
+    private String saved;
+    private int saves;
+    private BackendSelector selector;
+
+    private Behaviour behaviour(InferenceBackend backend) {
+        Behaviour behaviour = behaviours.get(backend);
+        if (behaviour == null) {
+            behaviour = new Behaviour();
+            behaviours.put(backend, behaviour);
+        }
+        return behaviour;
+    }
+
+    @Before
+    public void setUp() {
+        BackendSelector.Probe probe = backend -> {
+            opened.add(backend);
+            final Behaviour behaviour = behaviour(backend);
+            if (behaviour.failOpen) {
+                throw new IllegalStateException(backend + " delegate unavailable");
+            }
+            return new BackendSelector.Session() {
+                int run;
+
+                @Override
+                public float[] run() throws Exception {
+                    if (behaviour.failRun) {
+                        throw new IllegalStateException("delegate crashed");
+                    }
+                    Thread.sleep(behaviour.runMillis[run++ % behaviour.runMillis.length]);
+                    return behaviour.output.clone();
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+        };
+        BackendSelector.Store store = new BackendSelector.Store() {
+            @Override
+            public String load() {
+                return saved;
+            }
+
+            @Override
+            public void save(String ranking) {
+                saved = ranking;
+                saves++;
+            }
+        };
+        selector = new BackendSelector(probe, store, 1, 5, 3.0, 0.05f);
+    }
+
+    @Test
+    public void ranksStableCandidatesByMedianTime() {
+        behaviour(CPU1).runMillis = new long[]{8};
+        behaviour(CPU2).runMillis = new long[]{5};
+        behaviour(CPU4_XNN).runMillis = new long[]{2};
+        behaviour(GPU).runMillis = new long[]{1};
+        behaviour(GPU).output = new float[]{0.2f, 0.8f}; // wrong answers, however fast
+        behaviour(NNAPI).failOpen = true;
+
+        List<InferenceBackend> ranking = selector.ranking(CANDIDATES);
+        assertEquals(Arrays.asList(CPU4_XNN, CPU2, CPU1), ranking);
+        assertEquals("cpu:4:xnnpack,cpu:2,cpu:1", saved);
+        assertEquals(CPU1, opened.get(0));
+
+        List<BackendSelector.Result> results = selector.getLastResults();
+        assertEquals(5, results.size());
+        for (BackendSelector.Result result : results) {
+            if (result.backend.equals(GPU) || result.backend.equals(NNAPI)) {
+                assertNotNull(result.failure);
+            } else {
+                assertNull(result.failure);
+            }
+        }
+    }
+
+    @Test
+    public void savedRankingSkipsTheBenchmark() {
+        saved = "gpu:1,cpu:4:xnnpack,cpu:1";
+        assertEquals(Arrays.asList(GPU, CPU4_XNN, CPU1), selector.ranking(CANDIDATES));
+        assertTrue(opened.isEmpty());
+        assertEquals(0, saves);
+    }
+
+    @Test
+    public void unreadableRankingIsBenchmarkedAgain() {
+        saved = "tpu:8";
+        selector.ranking(CANDIDATES);
+        assertEquals(CANDIDATES.size(), opened.size());
+        assertFalse(saved.contains("tpu"));
+    }
+
+    @Test
+    public void unavailableSavedBackendIsDropped() {
+        saved = "gpu:1,cpu:2";
+        // no GPU on the candidate list this time
+        assertEquals(Arrays.asList(CPU2, CPU1), selector.ranking(Arrays.asList(CPU1, CPU2)));
+        assertEquals("cpu:2,cpu:1", saved);
+    }
+
+    @Test
+    public void unstableTimingIsRejected() {
+        behaviour(GPU).runMillis = new long[]{1, 1, 1, 40};
+        selector.ranking(Arrays.asList(CPU1, GPU));
+        assertEquals("cpu:1", saved);
+        assertEquals("unstable timing", selector.getLastResults().get(1).failure);
+    }
+
+    @Test
+    public void crashingDelegateIsRejected() {
+        behaviour(NNAPI).runMillis = new long[]{1};
+        behaviour(NNAPI).failRun = true;
+        assertEquals(Arrays.asList(CPU1), selector.ranking(Arrays.asList(CPU1, NNAPI)));
+    }
+
+    @Test
+    public void openFallsBackAndForgetsFailingBackends() throws Exception {
+        saved = "gpu:1,nnapi:1,cpu:1";
+        InferenceBackend chosen = selector.open(CANDIDATES, backend -> {
+            if (backend.kind != InferenceBackend.Kind.CPU) {
+                throw new IllegalStateException("no " + backend);
+            }
+            return backend;
+        });
+        assertEquals(CPU1, chosen);
+        assertEquals("cpu:1", saved);
+    }
+
+    @Test
+    public void markFailedRemovesOnlyThatBackend() {
+        saved = "gpu:1,cpu:4:xnnpack,cpu:1";
+        selector.markFailed(GPU);
+        assertEquals("cpu:4:xnnpack,cpu:1", saved);
+        selector.markFailed(CPU1);
+        assertEquals("cpu:4:xnnpack,cpu:1", saved);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void defaultFailureIsThrown() throws Exception {
+        saved = "cpu:1";
+        selector.open(CANDIDATES, backend -> {
+            throw new IllegalStateException("model missing");
+        });
+    }
+
+    @Test
+    public void keysRoundTrip() {
+        for (InferenceBackend backend : CANDIDATES) {
+            assertEquals(backend, InferenceBackend.parse(backend.key()));
+        }
+        assertEquals("cpu:4:xnnpack", CPU4_XNN.toString());
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class BoundedInferenceSchedulerTest {
+
+    private static final int FRAMES = 1000;
+
+    /** Collects callbacks; runs them inline, standing in for the UI thread. */
+    private static class RecordingListener implements InferenceScheduler.Listener<Integer> {
+        final List<Integer> results = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> dropped = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger errors = new AtomicInteger();
+        final AtomicLong maxLatency = new AtomicLong();
+
+        @Override
+        public void onResult(Integer frame, float[] probabilities, long latencyNanos) {
+            assertEquals(frame.floatValue(), probabilities[0], 0f);
+            results.add(frame);
+            maxLatency.accumulateAndGet(latencyNanos, Math::max);
+        }
+
+        @Override
+        public void onDropped(Integer frame) {
+            dropped.add(frame);
+        }
+
+        @Override
+        public void onError(Integer frame, Exception e) {
+            errors.incrementAndGet();
+        }
+    }
+
+    private static FrameClassifier<Integer> sleepingClassifier(long micros) {
+        return frame -> {
+            TimeUnit.MICROSECONDS.sleep(micros);
+            return new float[]{frame, 0f};
+        };
+    }
+
+    @Test
+    public void dropsOldestAndKeepsOrderUnderLoad() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        BoundedInferenceScheduler<Integer> scheduler =
+                new BoundedInferenceScheduler<>(sleepingClassifier(200), 2, Runnable::run, listener);
+
+        for (int i = 0; i < FRAMES; i++) {
+            assertTrue(scheduler.submit(i));
+        }
+        waitUntil(() -> listener.results.size() + listener.dropped.size() == FRAMES);
+        assertTrue(scheduler.shutdown(1, TimeUnit.SECONDS));
+
+        assertEquals(0, listener.errors.get());
+        assertFalse("queue should have dropped frames", listener.dropped.isEmpty());
+        List<Integer> results = new ArrayList<>(listener.results);
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue("results out of order at " + i, results.get(i - 1) < results.get(i));
+        }
+        // the newest frame is never dropped
+        assertEquals(Integer.valueOf(FRAMES - 1), results.get(results.size() - 1));
+    }
+
+    @Test
+    public void latencyIsBoundedByQueueCapacity() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        BoundedInferenceScheduler<Integer> scheduler =
+                new BoundedInferenceScheduler<>(sleepingClassifier(1000), 1, Runnable::run, listener);
+
+        for (int i = 0; i < FRAMES; i++) {
+            scheduler.submit(i);
+            if (i % 50 == 0) {
+                TimeUnit.MICROSECONDS.sleep(500);
+            }
+        }
+        waitUntil(() -> listener.results.size() + listener.dropped.size() == FRAMES);
+        scheduler.shutdown(1, TimeUnit.SECONDS);
+
+        // one frame in flight plus one queued, with generous slack for slow CI machines
+        assertTrue("max latency " + listener.maxLatency.get(),
+                listener.maxLatency.get() < TimeUnit.MILLISECONDS.toNanos(200));
+    }
+
+    @Test
+    public void shutdownCancelsQueuedFramesAndRejectsNewOnes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener();
+        BoundedInferenceScheduler<Integer> scheduler = new BoundedInferenceScheduler<>(frame -> {
+            started.countDown();
+            release.await();
+            return new float[]{frame, 0f};
+        }, 4, Runnable::run, listener);
+
+        scheduler.submit(0);
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        scheduler.submit(1);
+        scheduler.submit(2);
+        assertEquals(2, scheduler.pendingCount());
+
+        assertFalse(scheduler.shutdown(10, TimeUnit.MILLISECONDS));
+        release.countDown();
+        assertTrue(scheduler.shutdown(1, TimeUnit.SECONDS));
+
+        assertFalse(scheduler.submit(3));
+        assertTrue(listener.results.isEmpty());
+        assertEquals(3, listener.dropped.size());
+    }
+
+    @Test
+    public void classifierErrorsAreReported() throws Exception {
+        RecordingListener listener = new RecordingListener();
+        BoundedInferenceScheduler<Integer> scheduler = new BoundedInferenceScheduler<>(frame -> {
+            throw new IllegalStateException("boom");
+        }, 1, Runnable::run, listener);
+
+        scheduler.submit(7);
+        waitUntil(() -> listener.errors.get() == 1);
+        assertTrue(scheduler.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    private interface Condition {
+        boolean met();
+    }
+
+    private static void waitUntil(Condition condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.met()) {
+            if (System.nanoTime() > deadline) {
+                fail("timed out");
+            }
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class ClusterDifferTest {
+
+    private static MapClusterer.Clusters clusters(double... latLonCount) {
+        MapClusterer.Clusters clusters = new MapClusterer.Clusters();
+        for (int i = 0; i < latLonCount.length; i += 3) {
+            clusters.add(latLonCount[i], latLonCount[i + 1], (int) latLonCount[i + 2]);
+        }
+        return clusters;
+    }
+
+    @Test
+    public void replacesEverythingFirstThenSendsOnlyTheChanges() {
+        ClusterDiffer differ = new ClusterDiffer();
+        MapClusterer.Clusters first = clusters(1, 1, 1, 2, 2, 5, 3, 3, 1, 4, 4, 2);
+        assertEquals(MapScripts.showClusters(first), differ.update(first));
+
+        // one cluster grew, one disappeared, the other two stay
+        MapClusterer.Clusters second = clusters(1, 1, 1, 2, 2, 6, 4, 4, 2);
+        String script = differ.update(second);
+        assertTrue(script, script.startsWith("window.updateClusters(["));
+        assertEquals(set("2.000000,2.000000,5", "3.000000,3.000000,1"), part(script, 0));
+        assertEquals(set("2.000000,2.000000,6"), part(script, 1));
+        assertEquals(1, differ.getDiffUpdateCount());
+        assertEquals(2, differ.getClustersKept());
+    }
+
+    @Test
+    public void sendsNothingWhenTheClustersAreUnchanged() {
+        ClusterDiffer differ = new ClusterDiffer();
+        differ.update(clusters(1, 1, 1, 2, 2, 5));
+        // a refresh rebuilds the clusters in another order
+        assertNull(differ.update(clusters(2, 2, 5, 1, 1, 1)));
+        assertEquals(1, differ.getFullUpdateCount());
+        assertEquals(0, differ.getDiffUpdateCount());
+    }
+
+    @Test
+    public void replacesEverythingWhenTheDiffIsLarger() {
+        ClusterDiffer differ = new ClusterDiffer();
+        differ.update(clusters(1, 1, 1, 2, 2, 1, 3, 3, 1));
+        MapClusterer.Clusters moved = clusters(4, 4, 1, 5, 5, 1);
+        assertEquals(MapScripts.showClusters(moved), differ.update(moved));
+        assertEquals(2, differ.getFullUpdateCount());
+    }
+
+    @Test
+    public void replacesEverythingAfterReset() {
+        ClusterDiffer differ = new ClusterDiffer();
+        MapClusterer.Clusters clusters = clusters(1, 1, 1);
+        differ.update(clusters);
+        differ.reset();
+        assertEquals(MapScripts.showClusters(clusters), differ.update(clusters));
+    }
+
+    @Test
+    public void diffsReplayToTheLatestSet() {
+        // applies each script to a model of the page and checks it ends up with the new set
+        ClusterDiffer differ = new ClusterDiffer();
+        Set<String> page = new HashSet<>();
+        Random random = new Random(4);
+        for (int round = 0; round < 200; round++) {
+            MapClusterer.Clusters clusters = new MapClusterer.Clusters();
+            Set<String> expected = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                if (random.nextInt(4) > 0) {
+                    int count = 1 + random.nextInt(3);
+                    clusters.add(i, -i, count);
+                    expected.add(i + ".000000," + (i == 0 ? "0" : "-" + i) + ".000000," + count);
+                }
+            }
+            String script = differ.update(clusters);
+            if (script == null) {
+                // nothing to do
+            } else if (script.startsWith("window.showClusters(")) {
+                page = part(script, 0);
+            } else {
+                Set<String> removed = part(script, 0);
+                assertTrue(page.containsAll(removed));
+                page.removeAll(removed);
+                page.addAll(part(script, 1));
+            }
+            assertEquals(expected, page);
+        }
+    }
+
+    // Clusters in the index-th array of a script, as "lat,lon,count" strings
+    private static Set<String> part(String script, int index) {
+        String[] arrays = script.substring(script.indexOf('[') + 1, script.lastIndexOf(']')).split("\\],\\[");
+        Set<String> clusters = new HashSet<>();
+        String[] values = arrays[index].isEmpty() ? new String[0] : arrays[index].split(",");
+        for (int i = 0; i < values.length; i += 3) {
+            clusters.add(values[i] + "," + values[i + 1] + "," + values[i + 2]);
+        }
+        return clusters;
+    }
+
+    private static Set<String> set(String... clusters) {
+        return new HashSet<>(Arrays.asList(clusters));
+    }
+}
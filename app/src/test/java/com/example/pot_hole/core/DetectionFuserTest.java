@@ -0,0 +1,138 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class DetectionFuserTest {
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final double LAT = 12.97;
+    private static final double LON = 77.59;
+
+    private static DetectionFuser newFuser() {
+        return new DetectionFuser(0.8, 2.5, 0.0, 2, 50, 3 * SECOND);
+    }
+
+    /** Latitude {@code meters} north of the start of the test road. */
+    private static double latAt(double meters) {
+        return LAT + meters / GeoMath.METERS_PER_DEGREE_LAT;
+    }
+
+    @Test
+    public void singleConfidentFrameIsNotConfirmed() {
+        DetectionFuser fuser = newFuser();
+        float[] trace = {0.1f, 0.2f, 0.99f, 0.1f, 0.15f, 0.05f};
+        for (int i = 0; i < trace.length; i++) {
+            assertNull(fuser.offer(trace[i], latAt(i * 5), LON, i * SECOND / 2));
+        }
+        assertEquals(0, fuser.getConfirmedCount());
+    }
+
+    @Test
+    public void consecutiveFramesConfirmOnceWithStatistics() {
+        DetectionFuser fuser = newFuser();
+        float[] trace = {0.1f, 0.9f, 0.92f, 0.95f, 0.8f, 0.2f, 0.05f, 0.1f};
+        List<DetectionFuser.Event> confirmed = new ArrayList<>();
+        for (int i = 0; i < trace.length; i++) {
+            DetectionFuser.Event event = fuser.offer(trace[i], latAt(i * 5), LON, i * SECOND / 2);
+            if (event != null) {
+                assertEquals(2, i);
+                confirmed.add(event);
+            }
+        }
+        assertEquals(1, confirmed.size());
+        DetectionFuser.Event event = confirmed.get(0);
+        assertTrue(event.confirmed);
+        assertEquals(SECOND / 2, event.firstNanos);
+        assertEquals(SECOND, event.confirmedNanos);
+        assertEquals(4, event.positiveFrames);
+        assertEquals(0.95f, event.maxProbability, 0);
+        assertTrue(event.peakLogOdds >= 2.5);
+        // weighted towards the middle of the positive frames
+        double meters = (event.lat - LAT) * GeoMath.METERS_PER_DEGREE_LAT;
+        assertEquals(12.5, meters, 1.0);
+        assertEquals(LON, event.lon, 1e-9);
+    }
+
+    @Test
+    public void hysteresisKeepsAFlickeringDetectionAsOneEvent() {
+        DetectionFuser fuser = newFuser();
+        float[] trace = {0.9f, 0.9f, 0.4f, 0.9f, 0.45f, 0.9f, 0.9f, 0.05f, 0.05f};
+        int confirmations = 0;
+        for (int i = 0; i < trace.length; i++) {
+            if (fuser.offer(trace[i], latAt(i * 2), LON, i * SECOND / 2) != null) {
+                confirmations++;
+            }
+        }
+        assertEquals(1, confirmations);
+    }
+
+    @Test
+    public void gapStartsOver() {
+        DetectionFuser fuser = newFuser();
+        assertNull(fuser.offer(0.9f, LAT, LON, 0));
+        // same probability again, but a kilometre further on
+        assertNull(fuser.offer(0.9f, latAt(1000), LON, SECOND / 2));
+        assertNull(fuser.offer(0.9f, latAt(1000), LON, 10 * SECOND));
+        assertNotNull(fuser.offer(0.9f, latAt(1005), LON, 10 * SECOND + SECOND / 2));
+    }
+
+    @Test
+    public void cutsFalseConfirmationsPerKilometre() {
+        Random random = new Random(42);
+        double spacing = 5; // 10 m/s at 2 frames per second
+        double routeMeters = 50_000;
+        double potholeEvery = 500;
+        DetectionFuser fuser = newFuser();
+        int singleFalse = 0;
+        int fusedFalse = 0;
+        int fusedTrue = 0;
+        int potholes = 0;
+        double lastPothole = -1;
+        for (int i = 0; i * spacing < routeMeters; i++) {
+            double position = i * spacing;
+            double nearest = Math.round(position / potholeEvery) * potholeEvery;
+            // the camera sees a pothole over the 20 m in front of it
+            boolean visible = nearest > 0 && nearest - position >= 0 && nearest - position < 20;
+            float p;
+            if (visible) {
+                if (nearest != lastPothole) {
+                    potholes++;
+                    lastPothole = nearest;
+                }
+                p = random.nextFloat() < 0.85f ? 0.75f + random.nextFloat() * 0.25f : random.nextFloat() * 0.5f;
+            } else {
+                p = random.nextFloat() < 0.03f ? 0.6f + random.nextFloat() * 0.4f : random.nextFloat() * 0.4f;
+            }
+            if (p > 0.5f && !visible) {
+                singleFalse++;
+            }
+            DetectionFuser.Event event = fuser.offer(p, latAt(position), LON, i * SECOND / 2);
+            if (event != null) {
+                double meters = (event.lat - LAT) * GeoMath.METERS_PER_DEGREE_LAT;
+                double target = Math.round(meters / potholeEvery) * potholeEvery;
+                if (target > 0 && Math.abs(meters - target) <= 20) {
+                    fusedTrue++;
+                } else {
+                    fusedFalse++;
+                }
+            }
+        }
+        double km = routeMeters / 1000;
+        double singlePerKm = singleFalse / km;
+        double fusedPerKm = fusedFalse / km;
+        assertTrue("single-frame false positives per km: " + singlePerKm, singlePerKm > 4);
+        assertTrue("fused false confirmations per km: " + fusedPerKm, fusedPerKm < singlePerKm / 10);
+        assertTrue("recall " + fusedTrue + "/" + potholes, fusedTrue >= potholes * 0.9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvertedThresholds() {
+        new DetectionFuser(0.7, 0.0, 3.0, 2, 50, SECOND);
+    }
+}
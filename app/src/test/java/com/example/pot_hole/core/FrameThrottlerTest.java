@@ -0,0 +1,93 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameThrottlerTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final int CAMERA_FPS = 30;
+
+    private static FrameThrottler newThrottler() {
+        // 4 fps cap, one frame per 5 m of road, 0.2 fps below 1 m/s
+        return new FrameThrottler(4, 5, 1, 0.2);
+    }
+
+    /** Feeds a 30 fps synthetic camera stream for {@code seconds} and returns accepted frames. */
+    private static int run(FrameThrottler throttler, long startNanos, int seconds) {
+        int accepted = 0;
+        for (int i = 0; i < seconds * CAMERA_FPS; i++) {
+            if (throttler.offer(startNanos + i * SECOND / CAMERA_FPS)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Test
+    public void runsAtTargetFpsWithoutSpeed() {
+        FrameThrottler throttler = newThrottler();
+        int accepted = run(throttler, 0, 10);
+        assertEquals(40, accepted, 1);
+        assertEquals(300, throttler.getOfferedCount());
+    }
+
+    @Test
+    public void highwaySpeedIsCappedAtTargetFps() {
+        FrameThrottler throttler = newThrottler();
+        throttler.onLocation(12.97, 77.59, 0, 30);
+        assertEquals(40, run(throttler, 0, 10), 1);
+    }
+
+    @Test
+    public void citySpeedSkipsFramesByDistance() {
+        FrameThrottler throttler = newThrottler();
+        // 10 m/s with 5 m spacing -> 2 frames per second
+        throttler.onLocation(12.97, 77.59, 0, 10);
+        assertEquals(20, run(throttler, 0, 10), 1);
+    }
+
+    @Test
+    public void stationaryDropsToIdleRate() {
+        FrameThrottler throttler = newThrottler();
+        throttler.onLocation(12.97, 77.59, 0, 0);
+        assertEquals(2, run(throttler, 0, 10), 1);
+    }
+
+    @Test
+    public void staleSpeedFallsBackToTargetFps() {
+        FrameThrottler throttler = newThrottler();
+        throttler.onLocation(12.97, 77.59, 0, 0);
+        assertEquals(40, run(throttler, 60 * SECOND, 10), 1);
+    }
+
+    @Test
+    public void derivesSpeedFromFixesWhenProviderHasNone() {
+        FrameThrottler throttler = newThrottler();
+        double metersPerDegree = GeoMath.METERS_PER_DEGREE_LAT;
+        throttler.onLocation(12.97, 77.59, 0, Double.NaN);
+        // 50 m north in 5 s = 10 m/s
+        throttler.onLocation(12.97 + 50 / metersPerDegree, 77.59, 5 * SECOND, Double.NaN);
+        assertEquals(SECOND / 2, throttler.intervalNanos(5 * SECOND), SECOND / 100);
+    }
+
+    @Test
+    public void speedTraceAdaptsRate() {
+        FrameThrottler throttler = newThrottler();
+        double[] trace = {0, 0, 3, 8, 15, 25, 25, 10, 2, 0};
+        int total = 0;
+        for (int i = 0; i < trace.length; i++) {
+            throttler.onLocation(12.97, 77.59, i * 5 * SECOND, trace[i]);
+            total += run(throttler, i * 5 * SECOND, 5);
+        }
+        assertEquals(total, throttler.getAcceptedCount());
+        assertTrue("accepted " + total, total > 40 && total < 200);
+        assertTrue(throttler.getAcceptedCount() * 5 < throttler.getOfferedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveFps() {
+        newThrottler().setTargetFps(0);
+    }
+}
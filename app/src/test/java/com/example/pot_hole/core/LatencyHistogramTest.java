@@ -0,0 +1,110 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinThreePercent() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            long value = i < 1000 ? i : (long) Math.exp(random.nextDouble() * Math.log(1L << 40));
+            int index = LatencyHistogram.bucketIndex(value);
+            long low = LatencyHistogram.lowestValue(index);
+            long high = LatencyHistogram.highestValue(index);
+            assertTrue(value + " in [" + low + ", " + high + "]", low <= value && value <= high);
+            assertTrue("bucket of " + value + " too wide", high - low <= low / 32);
+        }
+        // consecutive buckets leave no gaps
+        for (int index = 1; index < LatencyHistogram.BUCKET_COUNT; index++) {
+            assertEquals(LatencyHistogram.highestValue(index - 1) + 1, LatencyHistogram.lowestValue(index));
+        }
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void percentilesMatchSortedValues() {
+        Random random = new Random(7);
+        LatencyHistogram histogram = new LatencyHistogram();
+        long[] values = new long[10000];
+        for (int i = 0; i < values.length; i++) {
+            // roughly log-normal around 30 ms, like an inference
+            values[i] = (long) (30e6 * Math.exp(random.nextGaussian() * 0.4));
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(values.length, snapshot.count());
+        for (double q : new double[]{0.5, 0.9, 0.99, 0.999}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            assertEquals("p" + q, exact, snapshot.percentile(q), exact / 32.0);
+        }
+        assertEquals(values[0], snapshot.min(), values[0] / 32.0);
+        assertEquals(values[values.length - 1], snapshot.max(), values[values.length - 1] / 32.0);
+        assertEquals(Arrays.stream(values).average().getAsDouble(), snapshot.mean(), 1e-6);
+    }
+
+    @Test
+    public void emptyAndNegative() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.snapshot().percentile(0.5));
+        assertEquals(0, histogram.snapshot().max());
+        histogram.record(-5);
+        assertEquals(1, histogram.snapshot().count());
+        assertEquals(0, histogram.snapshot().max());
+    }
+
+    @Test
+    public void intervalHoldsOnlyNewRecordings() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        LatencyHistogram.Snapshot first = histogram.snapshot();
+        histogram.record(5000000);
+        histogram.record(6000000);
+
+        LatencyHistogram.Snapshot interval = histogram.snapshot().minus(first);
+
+        assertEquals(2, interval.count());
+        assertEquals(11000000, interval.sum());
+        assertTrue(interval.min() >= 5000000 * 31 / 32);
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 8;
+        final int perThread = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long value = (t + 1) * 1000L;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(value);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(threads * perThread, snapshot.count());
+        assertEquals(perThread * 1000L * threads * (threads + 1) / 2, snapshot.sum());
+        assertEquals(8000, snapshot.max(), 8000 / 32.0);
+    }
+}
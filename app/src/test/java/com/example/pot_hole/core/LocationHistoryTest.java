@@ -0,0 +1,152 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class LocationHistoryTest {
+
+    private static final long SECOND = 1000000000L;
+    private static final double LAT = 12.97;
+    private static final double LON = 77.59;
+
+    private final LocationHistory.Fix fix = new LocationHistory.Fix();
+
+    @Test
+    public void interpolatesBetweenFixes() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        history.add(0, LAT, LON, 5, LocationHistory.PROVIDER_GPS);
+        history.add(SECOND, LAT + 0.001, LON - 0.002, 5, LocationHistory.PROVIDER_GPS);
+
+        assertTrue(history.positionAt(SECOND / 4, fix));
+
+        assertEquals(SECOND / 4, fix.timeNanos);
+        assertEquals(LAT + 0.00025, fix.lat, 1e-12);
+        assertEquals(LON - 0.0005, fix.lon, 1e-12);
+        // 5 m plus up to 30 m/s for a quarter or three quarters of a second
+        assertEquals(5 + 30 * 0.25 + (30 * 0.5) * 0.25, fix.accuracyMeters, 1e-9);
+    }
+
+    @Test
+    public void exactTimeUsesThatFix() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        for (int i = 0; i < 10; i++) {
+            history.add(i * SECOND, LAT + i * 0.001, LON, 5, LocationHistory.PROVIDER_GPS);
+        }
+        assertTrue(history.positionAt(7 * SECOND, fix));
+        assertEquals(LAT + 0.007, fix.lat, 1e-12);
+        assertEquals(5, fix.accuracyMeters, 1e-9);
+    }
+
+    @Test
+    public void coarseNetworkFixLosesToSlightlyOlderGpsFix() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        history.add(0, LAT, LON, 5, LocationHistory.PROVIDER_GPS);
+        // arrives just before the capture, but 20 m reported is 60 m after the penalty
+        history.add(9 * SECOND / 10, LAT + 0.01, LON + 0.01, 20, LocationHistory.PROVIDER_NETWORK);
+        history.add(2 * SECOND, LAT + 0.002, LON, 5, LocationHistory.PROVIDER_GPS);
+
+        assertTrue(history.positionAt(SECOND, fix));
+
+        assertEquals(LAT + 0.001, fix.lat, 1e-12);
+        assertEquals(LON, fix.lon, 1e-12);
+        assertEquals(35, fix.accuracyMeters, 1e-9);
+    }
+
+    @Test
+    public void afterNewestFixTheErrorGrows() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        history.add(0, LAT, LON, 5, LocationHistory.PROVIDER_GPS);
+        history.add(SECOND, LAT + 0.001, LON, 8, LocationHistory.PROVIDER_GPS);
+
+        assertTrue(history.positionAt(3 * SECOND, fix));
+
+        assertEquals(LAT + 0.001, fix.lat, 1e-12);
+        assertEquals(8 + 60, fix.accuracyMeters, 1e-9);
+        assertTrue(history.latest(fix));
+        assertEquals(SECOND, fix.timeNanos);
+    }
+
+    @Test
+    public void olderThanKeptFixesIsUnknown() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        assertFalse(history.latest(fix));
+        assertFalse(history.positionAt(0, fix));
+        for (int i = 0; i < 100; i++) {
+            history.add(i * SECOND, LAT, LON, 5, LocationHistory.PROVIDER_GPS);
+        }
+        assertEquals(16, history.size());
+        assertFalse(history.positionAt(50 * SECOND, fix));
+        assertTrue(history.positionAt(95 * SECOND, fix));
+    }
+
+    @Test
+    public void outOfOrderFixesAreIgnored() {
+        LocationHistory history = new LocationHistory(16, 3, 30);
+        assertTrue(history.add(2 * SECOND, LAT, LON, 5, LocationHistory.PROVIDER_GPS));
+        assertFalse(history.add(SECOND, LAT + 1, LON, 5, LocationHistory.PROVIDER_NETWORK));
+        assertEquals(1, history.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTinyCapacity() {
+        new LocationHistory(4, 3, 30);
+    }
+
+    @Test
+    public void concurrentReadersNeverSeeTornOrStaleFixes() throws Exception {
+        // a small buffer so the writer laps the readers constantly
+        final LocationHistory history = new LocationHistory(32, 3, 30);
+        final int fixes = 300000;
+        final AtomicBoolean done = new AtomicBoolean();
+        final AtomicReference<String> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] readers = new Thread[4];
+        for (int r = 0; r < readers.length; r++) {
+            final long seed = r;
+            readers[r] = new Thread(() -> {
+                Random random = new Random(seed);
+                LocationHistory.Fix out = new LocationHistory.Fix();
+                LocationHistory.Fix before = new LocationHistory.Fix();
+                LocationHistory.Fix after = new LocationHistory.Fix();
+                LocationHistory.Fix probe = new LocationHistory.Fix();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                while (!done.get() && failure.get() == null) {
+                    if (history.latest(out) && (out.lon != -out.lat || Math.abs(out.lat - out.timeNanos * 1e-9) > 1e-12)) {
+                        failure.set("torn latest fix " + out.timeNanos + " " + out.lat + " " + out.lon);
+                    }
+                    if (!history.latest(out)) {
+                        continue;
+                    }
+                    long time = out.timeNanos - random.nextInt(20) * 1000000L;
+                    if (history.positionAt(time, out, before, after, probe)) {
+                        // every fix lies on lat = t, lon = -t, so interpolation must too
+                        if (out.lon != -out.lat || Math.abs(out.lat - time * 1e-9) > 1e-9) {
+                            failure.set("bad position at " + time + ": " + out.lat + " " + out.lon);
+                        }
+                    }
+                }
+            });
+            readers[r].start();
+        }
+        start.countDown();
+        for (int i = 1; i <= fixes; i++) {
+            long time = i * 1000000L;
+            history.add(time, time * 1e-9, -(time * 1e-9), 5, LocationHistory.PROVIDER_GPS);
+        }
+        done.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertNull(failure.get(), failure.get());
+    }
+}
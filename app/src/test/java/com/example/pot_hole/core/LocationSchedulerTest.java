@@ -0,0 +1,204 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/** Replays synthetic drives through the scheduler, delivering fixes at the rate it asks for. */
+public class LocationSchedulerTest {
+
+    private static final long MS = 1000000L;
+    private static final double START_LAT = 13.0;
+    private static final double START_LON = 80.0;
+
+    // Still for 5 minutes, 10 minutes at 15 m/s with a 15 s red light, then still for 10 minutes
+    private static final int TRACE_SECONDS = 1500;
+
+    private static double eastMeters(double t) {
+        if (t < 300) {
+            return 0;
+        }
+        if (t < 600) {
+            return (t - 300) * 15;
+        }
+        if (t < 615) {
+            return 4500;
+        }
+        if (t < 900) {
+            return 4500 + (t - 615) * 15;
+        }
+        return 4500 + 285 * 15;
+    }
+
+    private static double speed(double t) {
+        return (t >= 300 && t < 600) || (t >= 615 && t < 900) ? 15 : 0;
+    }
+
+    private interface GpsAvailability {
+        boolean at(double t);
+    }
+
+    private static final class Replay {
+        final LocationScheduler scheduler = new LocationScheduler(new LocationScheduler.Config());
+        final int[] fixesPerMinute = new int[TRACE_SECONDS / 60];
+        final LocationScheduler.Request[] requestPerSecond = new LocationScheduler.Request[TRACE_SECONDS];
+        int gpsFixes;
+        int networkFixes;
+
+        Replay(GpsAvailability gps) {
+            Random random = new Random(7);
+            long step = 100 * MS;
+            long nextFix = 0;
+            long nextTick = 5000 * MS;
+            scheduler.start(0);
+            for (long now = 0; now < TRACE_SECONDS * 1000 * MS; now += step) {
+                double t = now / 1e9;
+                LocationScheduler.Request request = scheduler.current();
+                boolean changed = false;
+                if (now >= nextFix) {
+                    nextFix = now + request.intervalMillis * MS;
+                    boolean isGps = request.provider == LocationHistory.PROVIDER_GPS;
+                    if (!isGps || gps.at(t)) {
+                        // GPS: a few meters of noise and a speed; network: tens of meters and no speed
+                        double noise = isGps ? 3 : 40;
+                        double north = (random.nextDouble() - 0.5) * noise;
+                        double east = eastMeters(t) + (random.nextDouble() - 0.5) * noise;
+                        double lat = START_LAT + north / GeoMath.METERS_PER_DEGREE_LAT;
+                        double lon = START_LON + east / GeoMath.metersPerDegreeLon(START_LAT);
+                        changed = scheduler.onFix(now, lat, lon, isGps ? 5 : 50, isGps ? speed(t) : Double.NaN, request.provider);
+                        fixesPerMinute[(int) (t / 60)]++;
+                        if (isGps) {
+                            gpsFixes++;
+                        } else {
+                            networkFixes++;
+                        }
+                    }
+                }
+                if (now >= nextTick) {
+                    nextTick += 5000 * MS;
+                    changed |= scheduler.tick(now);
+                }
+                if (changed) {
+                    // a new registration delivers its first fix right away
+                    nextFix = now + step;
+                }
+                requestPerSecond[(int) t] = scheduler.current();
+            }
+        }
+
+        int fixesBetween(int fromMinute, int toMinute) {
+            int sum = 0;
+            for (int m = fromMinute; m < toMinute; m++) {
+                sum += fixesPerMinute[m];
+            }
+            return sum;
+        }
+    }
+
+    @Test
+    public void followsTheDriveWithOneProvider() {
+        Replay replay = new Replay(t -> true);
+
+        assertEquals(LocationScheduler.Mode.STATIONARY, replay.requestPerSecond[200].mode);
+        assertEquals(LocationHistory.PROVIDER_NETWORK, replay.requestPerSecond[200].provider);
+        assertEquals(LocationScheduler.Mode.DRIVING, replay.requestPerSecond[400].mode);
+        assertEquals(LocationHistory.PROVIDER_GPS, replay.requestPerSecond[400].provider);
+        // the red light is shorter than the driving hold
+        assertEquals(LocationScheduler.Mode.DRIVING, replay.requestPerSecond[612].mode);
+        assertEquals(LocationScheduler.Mode.STATIONARY, replay.requestPerSecond[TRACE_SECONDS - 1].mode);
+        assertEquals(LocationHistory.PROVIDER_NETWORK, replay.requestPerSecond[TRACE_SECONDS - 1].provider);
+    }
+
+    @Test
+    public void spendsUpdatesWhereTheyAreNeeded() {
+        Replay replay = new Replay(t -> true);
+
+        // the fixed policy this replaced: both providers every 5 s, 12 fixes a minute each
+        int fixedPerMinute = 2 * 12;
+        int stillMinutes = replay.fixesBetween(2, 5) + replay.fixesBetween(17, 25);
+        int drivingMinutes = replay.fixesBetween(6, 14);
+        assertTrue("fixes while still: " + stillMinutes, stillMinutes <= 11 * 3);
+        assertTrue("fixes while driving: " + drivingMinutes, drivingMinutes >= 8 * 55);
+        assertTrue(stillMinutes < 11 * fixedPerMinute / 5);
+        // a handful of changes over the whole trace, not one per fix
+        assertTrue("request changes: " + replay.scheduler.getRequestChanges(), replay.scheduler.getRequestChanges() <= 8);
+        assertEquals(replay.gpsFixes + replay.networkFixes, replay.scheduler.getFixCount());
+    }
+
+    @Test
+    public void fallsBackToNetworkInATunnelAndRetriesGps() {
+        Replay replay = new Replay(t -> t < 400 || t >= 500);
+
+        assertEquals(LocationHistory.PROVIDER_GPS, replay.requestPerSecond[420].provider);
+        assertEquals(LocationHistory.PROVIDER_NETWORK, replay.requestPerSecond[440].provider);
+        // speed derived from the noisy network fixes still shows driving
+        assertEquals(LocationScheduler.Mode.DRIVING, replay.requestPerSecond[480].mode);
+        assertEquals(LocationHistory.PROVIDER_GPS, replay.requestPerSecond[600].provider);
+    }
+
+    @Test
+    public void driveModeKeepsGpsWhileStill() {
+        LocationScheduler scheduler = new LocationScheduler(new LocationScheduler.Config());
+        scheduler.start(0);
+        for (long t = 0; t <= 120; t += 5) {
+            scheduler.onFix(t * 1000 * MS, START_LAT, START_LON, 5, 0, LocationHistory.PROVIDER_GPS);
+        }
+        assertEquals(LocationScheduler.Mode.STATIONARY, scheduler.current().mode);
+
+        assertTrue(scheduler.setDriveMode(true, 121 * 1000 * MS));
+        assertEquals(LocationHistory.PROVIDER_GPS, scheduler.current().provider);
+        assertEquals(LocationScheduler.Mode.MOVING, scheduler.current().mode);
+        assertTrue(scheduler.setDriveMode(false, 122 * 1000 * MS));
+        assertEquals(LocationHistory.PROVIDER_NETWORK, scheduler.current().provider);
+    }
+
+    @Test
+    public void takingAPhotoWhileStillUsesGps() {
+        LocationScheduler scheduler = new LocationScheduler(new LocationScheduler.Config());
+        scheduler.start(0);
+        for (long t = 0; t <= 120; t += 5) {
+            scheduler.onFix(t * 1000 * MS, START_LAT, START_LON, 5, 0, LocationHistory.PROVIDER_GPS);
+        }
+        assertEquals(LocationHistory.PROVIDER_NETWORK, scheduler.current().provider);
+        assertEquals(30_000, scheduler.current().intervalMillis);
+
+        assertTrue(scheduler.setCapturing(true, 121 * 1000 * MS));
+        assertEquals(LocationHistory.PROVIDER_GPS, scheduler.current().provider);
+        assertEquals(1000, scheduler.current().intervalMillis);
+        // still fixes during the capture do not drop it back to network
+        scheduler.onFix(125 * 1000 * MS, START_LAT, START_LON, 5, 0, LocationHistory.PROVIDER_GPS);
+        assertEquals(LocationHistory.PROVIDER_GPS, scheduler.current().provider);
+
+        assertTrue(scheduler.setCapturing(false, 130 * 1000 * MS));
+        assertEquals(LocationHistory.PROVIDER_NETWORK, scheduler.current().provider);
+    }
+
+    @Test
+    public void captureNobodyEndsTimesOut() {
+        LocationScheduler.Config config = new LocationScheduler.Config();
+        LocationScheduler scheduler = new LocationScheduler(config);
+        scheduler.start(0);
+        for (long t = 0; t <= 120; t += 5) {
+            scheduler.onFix(t * 1000 * MS, START_LAT, START_LON, 5, 0, LocationHistory.PROVIDER_GPS);
+        }
+        scheduler.setCapturing(true, 121 * 1000 * MS);
+        assertFalse(scheduler.tick((121 * 1000 + config.captureTimeoutMillis - 1) * MS));
+        assertTrue(scheduler.tick((121 * 1000 + config.captureTimeoutMillis) * MS));
+        assertEquals(LocationHistory.PROVIDER_NETWORK, scheduler.current().provider);
+    }
+
+    @Test
+    public void usesWhicheverProviderIsEnabled() {
+        LocationScheduler scheduler = new LocationScheduler(new LocationScheduler.Config());
+        scheduler.setProviderEnabled(LocationHistory.PROVIDER_GPS, false, 0);
+        assertEquals(LocationHistory.PROVIDER_NETWORK, scheduler.start(0).provider);
+
+        assertTrue(scheduler.setProviderEnabled(LocationHistory.PROVIDER_NETWORK, false, 0));
+        assertNull(scheduler.current());
+        assertTrue(scheduler.setProviderEnabled(LocationHistory.PROVIDER_GPS, true, 0));
+        assertEquals(LocationHistory.PROVIDER_GPS, scheduler.current().provider);
+        assertFalse(scheduler.tick(1000 * MS));
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LongIntHashMapTest {
+
+    @Test
+    public void behavesLikeHashMap() {
+        Random random = new Random(1);
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextInt(5000) - 2500L << 32 | random.nextInt(100);
+            int value = random.nextInt(1000);
+            Integer previous = reference.put(key, value);
+            assertEquals(previous == null ? LongIntHashMap.MISSING : previous, map.put(key, value));
+        }
+        assertEquals(reference.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue().intValue(), map.get(entry.getKey()));
+        }
+        assertEquals(LongIntHashMap.MISSING, map.get(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void addToStartsFromZero() {
+        LongIntHashMap map = new LongIntHashMap();
+        assertEquals(3, map.addTo(-7L, 3));
+        assertEquals(1, map.addTo(-7L, -2));
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(LongIntHashMap.MISSING, map.get(-7L));
+    }
+}
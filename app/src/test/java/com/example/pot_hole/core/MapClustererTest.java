@@ -0,0 +1,120 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MapClustererTest {
+
+    private static final int CELL_PIXELS = 64;
+
+    private static PotholeIndex randomIndex(int n, long seed) {
+        Random random = new Random(seed);
+        PotholeIndex index = new PotholeIndex(100);
+        for (int i = 0; i < n; i++) {
+            // a few dense cities plus scattered points
+            if (random.nextInt(4) == 0) {
+                index.add(8 + random.nextDouble() * 27, 68 + random.nextDouble() * 29);
+            } else {
+                int city = random.nextInt(3);
+                index.add(12.97 + city * 6 + random.nextGaussian() * 0.05, 77.59 - city * 3 + random.nextGaussian() * 0.05);
+            }
+        }
+        return index;
+    }
+
+    /** Sorted map of rounded cluster positions to counts, for comparisons. */
+    private static Map<String, Integer> summary(MapClusterer.Clusters clusters) {
+        Map<String, Integer> map = new HashMap<>();
+        for (int i = 0; i < clusters.size; i++) {
+            map.put(String.format("%.6f,%.6f", clusters.lats[i], clusters.lons[i]), clusters.counts[i]);
+        }
+        return map;
+    }
+
+    @Test
+    public void everyZoomAccountsForEveryPothole() {
+        PotholeIndex index = randomIndex(5000, 1);
+        MapClusterer clusterer = new MapClusterer(index, CELL_PIXELS, 10, 15);
+        clusterer.rebuild();
+        MapClusterer.Clusters out = new MapClusterer.Clusters();
+        for (int zoom = 0; zoom <= 18; zoom++) {
+            clusterer.query(-85, -180, 85, 180, zoom, out);
+            assertEquals("zoom " + zoom, 5000, out.totalCount());
+        }
+        clusterer.query(-85, -180, 85, 180, 18, out);
+        assertEquals(5000, out.size);
+    }
+
+    @Test
+    public void pyramidMatchesOnTheFlyAggregation() {
+        PotholeIndex index = randomIndex(5000, 2);
+        MapClusterer pyramid = new MapClusterer(index, CELL_PIXELS, 10, 15);
+        MapClusterer onTheFly = new MapClusterer(index, CELL_PIXELS, 0, 15);
+        pyramid.rebuild();
+        onTheFly.rebuild();
+        MapClusterer.Clusters a = new MapClusterer.Clusters();
+        MapClusterer.Clusters b = new MapClusterer.Clusters();
+        for (int zoom = 1; zoom <= 10; zoom++) {
+            pyramid.query(-85, -180, 85, 180, zoom, a);
+            onTheFly.query(-85, -180, 85, 180, zoom, b);
+            assertEquals("zoom " + zoom, summary(b), summary(a));
+        }
+    }
+
+    @Test
+    public void viewportOnlyReturnsVisibleCells() {
+        PotholeIndex index = new PotholeIndex(100);
+        index.add(12.97, 77.59);
+        index.add(12.98, 77.60);
+        index.add(28.61, 77.20);
+        MapClusterer clusterer = new MapClusterer(index, CELL_PIXELS, 10, 15);
+        clusterer.rebuild();
+        MapClusterer.Clusters out = new MapClusterer.Clusters();
+
+        clusterer.query(12.5, 77, 13.5, 78, 8, out);
+        assertEquals(1, out.size);
+        assertEquals(2, out.counts[0]);
+        assertEquals(12.975, out.lats[0], 1e-9);
+
+        clusterer.query(12.5, 77, 13.5, 78, 12, out);
+        assertEquals(2, out.totalCount());
+
+        clusterer.query(12.96, 77.58, 12.975, 77.595, 17, out);
+        assertEquals(1, out.size);
+    }
+
+    @Test
+    public void incrementalUpdatesMatchRebuild() {
+        PotholeIndex index = new PotholeIndex(100);
+        MapClusterer incremental = new MapClusterer(index, CELL_PIXELS, 12, 15);
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            double lat = 12.9 + random.nextDouble() * 0.2;
+            double lon = 77.5 + random.nextDouble() * 0.2;
+            int existing = index.nearest(lat, lon, 50);
+            double oldLat = existing >= 0 ? index.latitude(existing) : 0;
+            double oldLon = existing >= 0 ? index.longitude(existing) : 0;
+            int id = index.addOrMerge(lat, lon, 50);
+            if (existing < 0) {
+                incremental.onAdded(id);
+            } else {
+                incremental.onMoved(id, oldLat, oldLon);
+            }
+        }
+        MapClusterer rebuilt = new MapClusterer(index, CELL_PIXELS, 12, 15);
+        rebuilt.rebuild();
+        MapClusterer.Clusters a = new MapClusterer.Clusters();
+        MapClusterer.Clusters b = new MapClusterer.Clusters();
+        for (int zoom = 0; zoom <= 12; zoom++) {
+            incremental.query(12, 77, 14, 79, zoom, a);
+            rebuilt.query(12, 77, 14, 79, zoom, b);
+            assertEquals("zoom " + zoom, b.totalCount(), a.totalCount());
+            assertEquals("zoom " + zoom, b.size, a.size);
+        }
+    }
+}
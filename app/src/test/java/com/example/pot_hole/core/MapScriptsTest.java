@@ -0,0 +1,49 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MapScriptsTest {
+
+    private static String format(double value) {
+        StringBuilder sb = new StringBuilder();
+        MapScripts.appendCoordinate(sb, value);
+        return sb.toString();
+    }
+
+    @Test
+    public void formatsCoordinatesWithSixDecimals() {
+        assertEquals("12.971600", format(12.9716));
+        assertEquals("-0.000001", format(-0.000001));
+        assertEquals("77.000000", format(77));
+        assertEquals("-179.123457", format(-179.1234567));
+        assertEquals("0.050000", format(0.05));
+    }
+
+    @Test
+    public void formattedCoordinatesParseBack() {
+        Random random = new Random(3);
+        for (int i = 0; i < 10000; i++) {
+            double value = (random.nextDouble() - 0.5) * 360;
+            assertEquals(value, Double.parseDouble(format(value)), 5e-7);
+        }
+    }
+
+    @Test
+    public void encodesClustersAsFlatArray() {
+        MapClusterer.Clusters clusters = new MapClusterer.Clusters();
+        assertEquals("window.showClusters([]);", MapScripts.showClusters(clusters));
+        clusters.add(12.5, 77.25, 3);
+        clusters.add(-1, 2, 1);
+        assertEquals("window.showClusters([12.500000,77.250000,3,-1.000000,2.000000,1]);", MapScripts.showClusters(clusters));
+    }
+
+    @Test
+    public void buildsLocationAndCountCalls() {
+        assertEquals("window.setCurrentLocation(12.971600,-77.594600);", MapScripts.setCurrentLocation(12.9716, -77.5946));
+        assertEquals("window.setNearbyCount(42);", MapScripts.setNearbyCount(42));
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.pot_hole.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class MapTilePrefetcherTest {
+
+    private File dir;
+    private final List<String> fetched = new ArrayList<>();
+    private TileCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tile-prefetch").toFile();
+        cache = new TileCache(dir, 1 << 20, (url, etag) -> {
+            fetched.add(url);
+            return new TileCache.Response(new byte[100], -1, null);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void tileMathMatchesKnownTiles() {
+        assertEquals(0, MapTilePrefetcher.tileX(-180, 0));
+        assertEquals(0, MapTilePrefetcher.tileY(0, 0));
+        // Chennai at zoom 14
+        assertEquals(11845, MapTilePrefetcher.tileX(80.27, 14));
+        assertEquals(7591, MapTilePrefetcher.tileY(13.08, 14));
+        // clamped at the poles and the antimeridian
+        assertEquals(0, MapTilePrefetcher.tileY(90, 3));
+        assertEquals(7, MapTilePrefetcher.tileY(-90, 3));
+        assertEquals(7, MapTilePrefetcher.tileX(180, 3));
+    }
+
+    @Test
+    public void tilesAroundWrapsAndClamps() {
+        Set<String> tiles = new HashSet<>();
+        MapTilePrefetcher.tilesAround(85, -179.9, 3, 1, tiles);
+        // top row clamped away, x wraps to the far side
+        assertEquals(6, tiles.size());
+        assertTrue(tiles.contains("3/7/0"));
+        assertTrue(tiles.contains("3/1/1"));
+    }
+
+    @Test
+    public void queuesOnlyAfterMovingFarEnough() {
+        MapTilePrefetcher prefetcher = new MapTilePrefetcher(cache, "http://t/{z}/{x}/{y}.png", 14, 15, 1, 200, 1000);
+        assertTrue(prefetcher.onLocation(13.08, 80.27));
+        assertEquals(18, prefetcher.pendingCount());
+        assertFalse(prefetcher.onLocation(13.0801, 80.2701));
+        assertTrue(prefetcher.onLocation(13.10, 80.27));
+    }
+
+    @Test
+    public void fetchesQueuedTilesNotYetCached() throws IOException {
+        MapTilePrefetcher prefetcher = new MapTilePrefetcher(cache, "http://t/{z}/{x}/{y}.png", 14, 14, 0, 200, 1000);
+        cache.put("14/11845/7591", new byte[100], false);
+        prefetcher.onLocation(13.08, 80.27);
+        assertEquals(0, prefetcher.runPending(10));
+
+        prefetcher.onLocation(13.20, 80.27);
+        assertEquals(1, prefetcher.runPending(10));
+        assertEquals(1, fetched.size());
+        assertTrue(fetched.get(0).startsWith("http://t/14/11845/"));
+        assertEquals(0, prefetcher.pendingCount());
+    }
+
+    @Test
+    public void dropsOldestWhenQueueIsFull() {
+        MapTilePrefetcher prefetcher = new MapTilePrefetcher(cache, "http://t/{z}/{x}/{y}.png", 10, 16, 1, 200, 20);
+        prefetcher.onLocation(13.08, 80.27);
+        assertEquals(20, prefetcher.pendingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadZoomRange() {
+        new MapTilePrefetcher(cache, "http://t/{z}/{x}/{y}.png", 16, 14, 1, 200, 10);
+    }
+}
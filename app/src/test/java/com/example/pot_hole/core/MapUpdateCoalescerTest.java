@@ -0,0 +1,61 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MapUpdateCoalescerTest {
+
+    @Test
+    public void keepsOnlyTheLatestUpdateOfEachKindPerFrame() {
+        MapUpdateCoalescer coalescer = new MapUpdateCoalescer();
+        assertTrue(coalescer.post(MapUpdateCoalescer.Kind.NEARBY_COUNT, () -> "count(1);"));
+        assertFalse(coalescer.post(MapUpdateCoalescer.Kind.LOCATION, () -> "loc(1);"));
+        assertFalse(coalescer.post(MapUpdateCoalescer.Kind.LOCATION, () -> "loc(2);"));
+
+        assertEquals("loc(2);count(1);", coalescer.flush());
+        assertFalse(coalescer.hasPending());
+        assertNull(coalescer.flush());
+        assertEquals(3, coalescer.getPostedCount());
+        assertEquals(1, coalescer.getFlushCount());
+        assertEquals(2, coalescer.getSavedCount());
+    }
+
+    @Test
+    public void buildsScriptsOnlyWhenFlushed() {
+        MapUpdateCoalescer coalescer = new MapUpdateCoalescer();
+        int[] builds = new int[1];
+        for (int i = 0; i < 10; i++) {
+            coalescer.post(MapUpdateCoalescer.Kind.CLUSTERS, () -> {
+                builds[0]++;
+                return "clusters();";
+            });
+        }
+        assertEquals(0, builds[0]);
+        coalescer.flush();
+        assertEquals(1, builds[0]);
+    }
+
+    @Test
+    public void dropsScriptsThePageAlreadyHasUntilReset() {
+        MapUpdateCoalescer coalescer = new MapUpdateCoalescer();
+        coalescer.post(MapUpdateCoalescer.Kind.NEARBY_COUNT, () -> "count(3);");
+        assertEquals("count(3);", coalescer.flush());
+
+        assertTrue(coalescer.post(MapUpdateCoalescer.Kind.NEARBY_COUNT, () -> "count(3);"));
+        assertNull(coalescer.flush());
+        assertEquals(1, coalescer.getUnchangedCount());
+
+        coalescer.reset();
+        coalescer.post(MapUpdateCoalescer.Kind.NEARBY_COUNT, () -> "count(3);");
+        assertEquals("count(3);", coalescer.flush());
+    }
+
+    @Test
+    public void skipsNullScripts() {
+        MapUpdateCoalescer coalescer = new MapUpdateCoalescer();
+        coalescer.post(MapUpdateCoalescer.Kind.LOCATION, () -> null);
+        coalescer.post(MapUpdateCoalescer.Kind.CLUSTERS, () -> "clusters();");
+        assertEquals("clusters();", coalescer.flush());
+    }
+}
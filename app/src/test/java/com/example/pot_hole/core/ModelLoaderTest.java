@@ -0,0 +1,138 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ModelLoaderTest {
+
+    private static final class FakeModel implements AutoCloseable {
+        final AtomicInteger runs = new AtomicInteger();
+        boolean closed;
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static final class RecordingListener implements ModelLoader.Listener<FakeModel> {
+        final List<String> events = new ArrayList<>();
+        ModelLoader.Timings timings;
+
+        @Override
+        public void onReady(FakeModel model, ModelLoader.Timings timings) {
+            this.timings = timings;
+            events.add("ready");
+        }
+
+        @Override
+        public void onFailed(Exception e) {
+            events.add("failed: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void loadsOnceAndWarmsUp() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ModelLoader<FakeModel> loader = new ModelLoader<>(() -> {
+                created.incrementAndGet();
+                Thread.sleep(5);
+                return new FakeModel();
+            }, model -> model.runs.incrementAndGet(), 3, executor);
+            assertNull(loader.getIfReady());
+            loader.start();
+            loader.start();
+            FakeModel model = loader.future().get(5, TimeUnit.SECONDS);
+            loader.start();
+            assertEquals(1, created.get());
+            assertEquals(3, model.runs.get());
+            assertSame(model, loader.getIfReady());
+            ModelLoader.Timings timings = loader.getTimings();
+            assertEquals(3, timings.warmupRuns);
+            assertTrue(timings.loadNanos >= TimeUnit.MILLISECONDS.toNanos(5));
+            assertTrue(timings.warmupNanos >= timings.firstInferenceNanos);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void listenersRunOnTheCallbackExecutorBeforeAndAfterReady() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            ModelLoader<FakeModel> loader = new ModelLoader<>(() -> {
+                release.await();
+                return new FakeModel();
+            }, model -> { }, 0, executor);
+            List<Runnable> callbacks = new ArrayList<>();
+            RecordingListener early = new RecordingListener();
+            loader.whenReady(callbacks::add, early);
+            loader.start();
+            release.countDown();
+            loader.future().get(5, TimeUnit.SECONDS);
+            RecordingListener late = new RecordingListener();
+            loader.whenReady(callbacks::add, late);
+
+            assertTrue(early.events.isEmpty());
+            for (Runnable callback : new ArrayList<>(callbacks)) {
+                callback.run();
+            }
+            assertEquals(1, early.events.size());
+            assertEquals("ready", early.events.get(0));
+            assertEquals("ready", late.events.get(0));
+            assertEquals(0, late.timings.firstInferenceNanos);
+            assertEquals(0, late.timings.warmupRuns);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void loadFailureIsReported() {
+        ModelLoader<FakeModel> loader = new ModelLoader<>(() -> {
+            throw new IOException("missing model.tflite");
+        }, model -> { }, 1, Runnable::run);
+        loader.start();
+        RecordingListener listener = new RecordingListener();
+        loader.whenReady(Runnable::run, listener);
+        assertTrue(loader.isDone());
+        assertNull(loader.getIfReady());
+        assertNull(loader.getTimings());
+        assertEquals("failed: missing model.tflite", listener.events.get(0));
+        try {
+            loader.future().get();
+            fail();
+        } catch (InterruptedException e) {
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void warmupFailureClosesTheModel() {
+        FakeModel model = new FakeModel();
+        ModelLoader<FakeModel> loader = new ModelLoader<>(() -> model, m -> {
+            throw new IllegalStateException("bad input shape");
+        }, 2, Runnable::run);
+        loader.start();
+        RecordingListener listener = new RecordingListener();
+        loader.whenReady(Runnable::run, listener);
+        assertTrue(model.closed);
+        assertEquals("failed: bad input shape", listener.events.get(0));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class NearbyCounterTest {
+
+    private static int bruteForce(PotholeIndex index, double lat, double lon, double radius) {
+        int count = 0;
+        for (int id = 0; id < index.size(); id++) {
+            if (GeoMath.distanceMeters(lat, lon, index.latitude(id), index.longitude(id)) <= radius) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void matchesBruteForce() {
+        Random random = new Random(1);
+        PotholeIndex index = new PotholeIndex(100);
+        for (int i = 0; i < 20000; i++) {
+            index.add(12.97 + random.nextGaussian() * 0.08, 77.59 + random.nextGaussian() * 0.08);
+        }
+        NearbyCounter counter = new NearbyCounter(index, 500);
+        counter.rebuild();
+        for (int q = 0; q < 200; q++) {
+            double lat = 12.97 + random.nextGaussian() * 0.1;
+            double lon = 77.59 + random.nextGaussian() * 0.1;
+            double radius = 200 + random.nextDouble() * 10000;
+            assertEquals(bruteForce(index, lat, lon, radius), counter.count(lat, lon, radius));
+        }
+    }
+
+    @Test
+    public void tracksAddsAndMoves() {
+        Random random = new Random(2);
+        PotholeIndex index = new PotholeIndex(100);
+        NearbyCounter counter = new NearbyCounter(index, 500);
+        counter.rebuild();
+        double lat = 19.076;
+        double lon = 72.8777;
+        for (int i = 0; i < 5000; i++) {
+            double pLat = lat + random.nextGaussian() * 0.05;
+            double pLon = lon + random.nextGaussian() * 0.05;
+            int existing = index.nearest(pLat, pLon, 300);
+            double oldLat = existing >= 0 ? index.latitude(existing) : pLat;
+            double oldLon = existing >= 0 ? index.longitude(existing) : pLon;
+            int id = index.addOrMerge(pLat, pLon, 300);
+            if (existing < 0) {
+                counter.onAdded(id);
+            } else {
+                counter.onMoved(id, oldLat, oldLon);
+            }
+            if (i % 250 == 0) {
+                assertEquals(bruteForce(index, lat, lon, 5000), counter.count(lat, lon, 5000));
+            }
+        }
+        assertEquals(bruteForce(index, lat, lon, 5000), counter.count(lat, lon, 5000));
+    }
+
+    @Test
+    public void cachedCountIsInvalidatedByChanges() {
+        PotholeIndex index = new PotholeIndex(100);
+        NearbyCounter counter = new NearbyCounter(index, 500);
+        counter.rebuild();
+        assertEquals(0, counter.count(28.6139, 77.209, 5000));
+        counter.onAdded(index.add(28.62, 77.21));
+        assertEquals(1, counter.count(28.6139, 77.209, 5000));
+        assertEquals(0, counter.count(28.6139, 77.209, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCellSize() {
+        new NearbyCounter(new PotholeIndex(100), 0);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.pot_hole.core;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+public class PipelineMetricsTest {
+
+    private long now = 1000000000L;
+
+    @Test
+    public void intervalSnapshotAndCompactLine() {
+        PipelineMetrics metrics = new PipelineMetrics(() -> now);
+        metrics.record(PipelineMetrics.Stage.INFERENCE, 1000000);
+        metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+        now += 60000000000L;
+        PipelineMetrics.Snapshot first = metrics.snapshot();
+
+        long start = metrics.nowNanos();
+        now += 32000000;
+        metrics.recordSince(PipelineMetrics.Stage.INFERENCE, start);
+        metrics.record(PipelineMetrics.Stage.DEDUP, 20000);
+        metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+        metrics.increment(PipelineMetrics.Counter.POTHOLES_NEW);
+        now += 30000000000L;
+        PipelineMetrics.Snapshot interval = metrics.snapshot().minus(first);
+
+        assertEquals(1, interval.stage(PipelineMetrics.Stage.INFERENCE).count());
+        assertEquals(1, interval.counter(PipelineMetrics.Counter.FRAMES_SUBMITTED));
+        assertFalse(interval.isEmpty());
+        assertTrue(metrics.snapshot().minus(metrics.snapshot()).isEmpty());
+        assertEquals("1700000000000 30032 inference=1/32505/32505/32505/32505 dedup=1/20/20/20/20"
+                + " frames_submitted=1 potholes_new=1", interval.toCompactLine(1700000000000L));
+        assertTrue(interval.toText().contains("inference"));
+    }
+
+    @Test
+    public void concurrentCountersAndStagesStayExact() throws Exception {
+        final PipelineMetrics metrics = new PipelineMetrics();
+        final int threads = 6;
+        final int perThread = 50000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final PipelineMetrics.Stage stage = PipelineMetrics.Stage.values()[t % 3];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    metrics.record(stage, i);
+                    metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        PipelineMetrics.Snapshot snapshot = metrics.snapshot();
+        assertEquals(threads * perThread, snapshot.counter(PipelineMetrics.Counter.FRAMES_SUBMITTED));
+        for (int s = 0; s < 3; s++) {
+            assertEquals(2 * perThread, snapshot.stage(PipelineMetrics.Stage.values()[s]).count());
+        }
+        assertEquals(0, snapshot.stage(PipelineMetrics.Stage.SMS).count());
+    }
+
+    @Test
+    public void recordingIsAllocationFreeAndCheap() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        PipelineMetrics metrics = new PipelineMetrics();
+        int iterations = 1000000;
+        // warm up so the JIT has compiled the recording path
+        record(metrics, iterations);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long startNanos = System.nanoTime();
+        record(metrics, iterations);
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+        // a loose bound that only catches locks or allocation sneaking into the hot path
+        assertTrue("took " + elapsedNanos / iterations + " ns per recording", elapsedNanos / iterations < 500);
+    }
+
+    private static void record(PipelineMetrics metrics, int iterations) {
+        for (int i = 0; i < iterations; i++) {
+            metrics.record(PipelineMetrics.Stage.INFERENCE, i * 37L);
+            metrics.increment(PipelineMetrics.Counter.FRAMES_SUBMITTED);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+public class PixelNormalizerTest {
+
+    @Test
+    public void lookupTableMatchesDivision() {
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i / 255.0f, PixelNormalizer.normalize(i), 0f);
+        }
+    }
+
+    @Test
+    public void writesRgbInOrderAndIgnoresAlpha() {
+        int[] pixels = {0xFFFF0000, 0x0000FF00, 0x800000FF, 0xFF7F7F7F};
+        FloatBuffer out = FloatBuffer.allocate(pixels.length * 3);
+
+        PixelNormalizer.toFloatRgb(pixels, out);
+
+        float half = 127 / 255.0f;
+        float[] expected = {1f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f, half, half, half};
+        float[] actual = new float[expected.length];
+        out.get(actual);
+        assertArrayEquals(expected, actual, 0f);
+    }
+
+    @Test
+    public void matchesLegacyConversionOnDirectBuffer() {
+        int[] pixels = new int[PixelNormalizer.PIXEL_COUNT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (int) (i * 2654435761L);
+        }
+        ByteBuffer legacy = ByteBuffer.allocateDirect(PixelNormalizer.FLOAT_INPUT_BYTES).order(ByteOrder.nativeOrder());
+        for (int value : pixels) {
+            legacy.putFloat(((value >> 16) & 0xFF) / 255.0f);
+            legacy.putFloat(((value >> 8) & 0xFF) / 255.0f);
+            legacy.putFloat((value & 0xFF) / 255.0f);
+        }
+        ByteBuffer direct = ByteBuffer.allocateDirect(PixelNormalizer.FLOAT_INPUT_BYTES).order(ByteOrder.nativeOrder());
+
+        PixelNormalizer.toFloatRgb(pixels, direct.asFloatBuffer());
+
+        legacy.rewind();
+        assertEquals(0, legacy.compareTo(direct));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUndersizedBuffer() {
+        PixelNormalizer.toFloatRgb(new int[4], FloatBuffer.allocate(11));
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PotholeIndexTest {
+
+    private static final double LAT = 12.9716;
+    private static final double LON = 77.5946;
+
+    /** Offsets a point by metres north and east. */
+    private static double[] offset(double lat, double lon, double north, double east) {
+        return new double[]{lat + north / GeoMath.METERS_PER_DEGREE_LAT, lon + east / GeoMath.metersPerDegreeLon(lat)};
+    }
+
+    @Test
+    public void mergesDetectionsWithinRadius() {
+        PotholeIndex index = new PotholeIndex(100);
+        int first = index.addOrMerge(LAT, LON, 5);
+        double[] close = offset(LAT, LON, 0.3, 0);
+        int second = index.addOrMerge(close[0], close[1], 5);
+        double[] far = offset(LAT, LON, 30, 0);
+        int third = index.addOrMerge(far[0], far[1], 5);
+
+        assertEquals(first, second);
+        assertNotEquals(first, third);
+        assertEquals(2, index.size());
+        assertEquals(2, index.hits(first));
+        assertEquals(1, index.hits(third));
+        // merged position is the mean of both detections
+        assertEquals((LAT + close[0]) / 2, index.latitude(first), 1e-9);
+    }
+
+    @Test
+    public void mergeAcrossCellBoundaryKeepsIndexConsistent() {
+        PotholeIndex index = new PotholeIndex(1);
+        double[] a = offset(LAT, LON, 0, 0);
+        double[] b = offset(LAT, LON, 3, 0);
+        int id = index.addOrMerge(a[0], a[1], 5);
+        index.addOrMerge(b[0], b[1], 5);
+        // the mean is 1.5 m away from the first detection, likely in another cell
+        assertEquals(id, index.nearest(index.latitude(id), index.longitude(id), 0.1));
+        assertEquals(1, index.countWithinRadius(LAT, LON, 10));
+    }
+
+    @Test
+    public void radiusQueriesMatchBruteForce() {
+        Random random = new Random(42);
+        PotholeIndex index = new PotholeIndex(50);
+        List<double[]> points = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            double[] p = offset(LAT, LON, random.nextGaussian() * 2000, random.nextGaussian() * 2000);
+            points.add(p);
+            index.add(p[0], p[1]);
+        }
+        for (int q = 0; q < 50; q++) {
+            double[] c = offset(LAT, LON, random.nextGaussian() * 2000, random.nextGaussian() * 2000);
+            double radius = 50 + random.nextDouble() * 1500;
+            int expected = 0;
+            for (double[] p : points) {
+                if (GeoMath.distanceMeters(c[0], c[1], p[0], p[1]) <= radius) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, index.countWithinRadius(c[0], c[1], radius));
+            int[] visited = {0};
+            index.forEachWithinRadius(c[0], c[1], radius, id -> visited[0]++);
+            assertEquals(expected, visited[0]);
+        }
+    }
+
+    @Test
+    public void nearestKReturnsClosestFirst() {
+        Random random = new Random(7);
+        PotholeIndex index = new PotholeIndex(20);
+        for (int i = 0; i < 2000; i++) {
+            double[] p = offset(LAT, LON, random.nextDouble() * 5000, random.nextDouble() * 5000);
+            index.add(p[0], p[1]);
+        }
+        final double[] q = offset(LAT, LON, 2500, 2500);
+        Integer[] all = new Integer[index.size()];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = i;
+        }
+        Arrays.sort(all, (a, b) -> Double.compare(distance(index, q, a), distance(index, q, b)));
+
+        int[] out = new int[10];
+        int found = index.nearest(q[0], q[1], 10, Double.MAX_VALUE, out);
+
+        assertEquals(10, found);
+        for (int i = 0; i < found; i++) {
+            assertEquals(all[i].intValue(), out[i]);
+        }
+    }
+
+    @Test
+    public void nearestRespectsMaxRadius() {
+        PotholeIndex index = new PotholeIndex(10);
+        double[] p = offset(LAT, LON, 100, 0);
+        index.add(p[0], p[1]);
+        int[] out = new int[3];
+        assertEquals(0, index.nearest(LAT, LON, 3, 50, out));
+        assertEquals(1, index.nearest(LAT, LON, 3, 150, out));
+        assertEquals(-1, index.nearest(LAT, LON, 50));
+    }
+
+    @Test
+    public void boxQueryUsesBothStrategies() {
+        PotholeIndex index = new PotholeIndex(10);
+        index.add(10, 10);
+        index.add(20, 20);
+        index.add(30, 30);
+        List<Integer> wide = new ArrayList<>();
+        index.forEachInBox(-90, -180, 90, 180, wide::add);
+        Collections.sort(wide);
+        assertEquals(Arrays.asList(0, 1, 2), wide);
+
+        List<Integer> narrow = new ArrayList<>();
+        index.forEachInBox(19.9999, 19.9999, 20.0001, 20.0001, narrow::add);
+        assertEquals(Collections.singletonList(1), narrow);
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        PotholeIndex index = new PotholeIndex(10);
+        index.add(LAT, LON);
+        index.clear();
+        assertEquals(0, index.size());
+        assertEquals(-1, index.nearest(LAT, LON, 1000));
+        assertEquals(0, index.addOrMerge(LAT, LON, 5));
+    }
+
+    private static double distance(PotholeIndex index, double[] q, int id) {
+        return GeoMath.distanceMeters(q[0], q[1], index.latitude(id), index.longitude(id));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PotholeListQueryTest {
+
+    private static final double LAT = 12.97;
+    private static final double LON = 77.59;
+
+    private static PotholeIndex randomIndex(int count, long seed) {
+        Random random = new Random(seed);
+        PotholeIndex index = new PotholeIndex(100);
+        for (int i = 0; i < count; i++) {
+            index.add(LAT + (random.nextDouble() - 0.5) * 0.2, LON + (random.nextDouble() - 0.5) * 0.2);
+        }
+        return index;
+    }
+
+    private static List<Integer> listAll(PotholeListQuery query) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < query.size(); i++) {
+            ids.add(query.idAt(i));
+        }
+        return ids;
+    }
+
+    private static List<Integer> byDistance(PotholeIndex index, List<Integer> ids) {
+        List<Integer> sorted = new ArrayList<>(ids);
+        sorted.sort(Comparator.comparingLong((Integer id) ->
+                Math.round(GeoMath.distanceMeters(LAT, LON, index.latitude(id), index.longitude(id)) * 1000))
+                .thenComparingInt(id -> id));
+        return sorted;
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(i);
+        }
+        return ids;
+    }
+
+    @Test
+    public void pagesNearestFirstAcrossPageBoundaries() {
+        PotholeIndex index = randomIndex(1000, 1);
+        PotholeListQuery query = new PotholeListQuery(index, 16);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+
+        assertEquals(byDistance(index, range(1000)), listAll(query));
+        // read one position at a time: a few pages were scanned, then the rest sorted
+        assertEquals(4, query.getPagesLoaded());
+    }
+
+    @Test
+    public void loadsOnlyThePagesAskedFor() {
+        PotholeListQuery query = new PotholeListQuery(randomIndex(1000, 2), 20);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+        assertEquals(0, query.loadedCount());
+
+        query.idAt(0);
+        assertEquals(20, query.loadedCount());
+        query.idAt(45);
+        assertEquals(60, query.loadedCount());
+        assertEquals(3, query.getPagesLoaded());
+    }
+
+    @Test
+    public void jumpingFarAheadSortsOnceAndKeepsTheOrder() {
+        PotholeIndex index = randomIndex(5000, 3);
+        PotholeListQuery query = new PotholeListQuery(index, 10);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+        int first = query.idAt(0);
+        int last = query.idAt(4999);
+
+        assertEquals(5000, query.loadedCount());
+        assertEquals(1, query.getPagesLoaded());
+        List<Integer> expected = byDistance(index, range(5000));
+        assertEquals(expected.get(0).intValue(), first);
+        assertEquals(expected.get(4999).intValue(), last);
+        assertEquals(expected, listAll(query));
+    }
+
+    @Test
+    public void ordersNewestFirstWithUnstampedLast() {
+        PotholeIndex index = randomIndex(6, 4);
+        PotholeListQuery query = new PotholeListQuery(index, 4);
+        query.setTimestamp(0, 1_000_000);
+        query.setTimestamp(1, 5_000_000);
+        query.setTimestamp(2, 3_000_000);
+        query.setTimestamp(3, 5_000_000);
+        query.setTimestamp(5, 2_000_000);
+        query.query(PotholeListQuery.Order.NEWEST, 0, 0, "");
+
+        // equal times in id order, pothole 4 has no time
+        assertEquals(Arrays.asList(1, 3, 2, 5, 0, 4), listAll(query));
+    }
+
+    @Test
+    public void filtersOnEveryTermOfTheTitle() {
+        PotholeIndex index = new PotholeIndex(100);
+        index.add(12.971600, 77.594600);
+        index.add(12.981234, 77.594600);
+        index.add(13.000000, 77.612345);
+        PotholeListQuery query = new PotholeListQuery(index, 10);
+
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "77.5946");
+        assertEquals(Arrays.asList(0, 1), listAll(query));
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "77.5946 12.98");
+        assertEquals(Collections.singletonList(1), listAll(query));
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "13.0");
+        assertEquals(Collections.singletonList(2), listAll(query));
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "nothing");
+        assertEquals(0, query.size());
+    }
+
+    @Test
+    public void typingAndDeletingMatchesAFreshSearch() {
+        PotholeIndex index = randomIndex(3000, 5);
+        PotholeListQuery typed = new PotholeListQuery(index, 25);
+        String[] steps = {"1", "12", "12.9", "12.9 7", "12.9 77", "12.9 7", "12", "", "5"};
+        for (String step : steps) {
+            typed.query(PotholeListQuery.Order.NEAREST, LAT, LON, step);
+            PotholeListQuery fresh = new PotholeListQuery(index, 25);
+            fresh.query(PotholeListQuery.Order.NEAREST, LAT, LON, step);
+            assertEquals(step, listAll(fresh), listAll(typed));
+        }
+    }
+
+    @Test
+    public void listsNewPotholesOnlyAfterTheNextQuery() {
+        PotholeIndex index = randomIndex(10, 6);
+        PotholeListQuery query = new PotholeListQuery(index, 4);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+        index.add(LAT, LON);
+        assertEquals(10, query.size());
+
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+        assertEquals(11, query.size());
+        assertEquals(10, query.idAt(0));
+    }
+
+    @Test
+    public void searchesAgainAfterPotholesMoved() {
+        PotholeIndex index = new PotholeIndex(100);
+        index.add(12.971600, 77.594600);
+        index.add(12.971700, 77.600000);
+        PotholeListQuery query = new PotholeListQuery(index, 10);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "77.59");
+        assertEquals(Collections.singletonList(0), listAll(query));
+
+        // the merge moves pothole 1 into the search without adding one
+        index.addOrMerge(12.971700, 77.599000, 200);
+        assertEquals(2, index.size());
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "77.599");
+        assertEquals(Collections.singletonList(1), listAll(query));
+    }
+
+    @Test
+    public void searchesAgainAfterTheIndexWasReloaded() {
+        PotholeIndex index = new PotholeIndex(100);
+        index.add(13.000000, 77.612345);
+        index.add(12.971600, 77.594600);
+        PotholeListQuery query = new PotholeListQuery(index, 10);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "12.97");
+        assertEquals(Collections.singletonList(1), listAll(query));
+
+        // same size, but the matching pothole is now id 0
+        index.clear();
+        index.add(12.971600, 77.594600);
+        index.add(13.000000, 77.612345);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "12.971");
+        assertEquals(Collections.singletonList(0), listAll(query));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void rejectsPositionsPastTheEnd() {
+        PotholeListQuery query = new PotholeListQuery(randomIndex(3, 7), 4);
+        query.query(PotholeListQuery.Order.NEAREST, LAT, LON, "");
+        query.idAt(3);
+    }
+}
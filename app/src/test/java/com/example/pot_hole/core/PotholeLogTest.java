@@ -0,0 +1,177 @@
+package com.example.pot_hole.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PotholeLogTest {
+
+    private File dir;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pothole-log").toFile();
+        file = new File(dir, "potholes.log");
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static List<PotholeRecord> latest(PotholeLog log) throws IOException {
+        List<PotholeRecord> records = new ArrayList<>();
+        log.readLatest(record -> records.add(copy(record)));
+        return records;
+    }
+
+    private static PotholeRecord copy(PotholeRecord record) {
+        PotholeRecord copy = new PotholeRecord();
+        copy.id = record.id;
+        copy.lat = record.lat;
+        copy.lon = record.lon;
+        copy.timestamp = record.timestamp;
+        copy.confidence = record.confidence;
+        copy.status = record.status;
+        return copy;
+    }
+
+    @Test
+    public void roundTripsRecordsAcrossReopen() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            assertEquals(0, log.append(12.9716123, 77.5946456, 1000L, 0.93f, PotholeLog.STATUS_DETECTED));
+            assertEquals(1, log.append(-33.8688197, 151.2092955, 2000L, 0.61f, PotholeLog.STATUS_REPORTED));
+            log.sync();
+        }
+        assertEquals(PotholeLog.HEADER_SIZE + 2 * PotholeLog.RECORD_SIZE, file.length());
+
+        try (PotholeLog log = PotholeLog.open(file)) {
+            List<PotholeRecord> records = latest(log);
+            assertEquals(2, records.size());
+            assertEquals(12.9716123, records.get(0).lat, 1e-7);
+            assertEquals(77.5946456, records.get(0).lon, 1e-7);
+            assertEquals(1000L, records.get(0).timestamp);
+            assertEquals(0.93f, records.get(0).confidence, 0f);
+            assertEquals(-33.8688197, records.get(1).lat, 1e-7);
+            assertEquals(PotholeLog.STATUS_REPORTED, records.get(1).status);
+            assertEquals(2, log.append(0, 0, 3000L, 0.5f, PotholeLog.STATUS_DETECTED));
+        }
+    }
+
+    @Test
+    public void latestRecordWinsAndDeletedAreHidden() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            int a = log.append(1, 1, 1, 0.6f, PotholeLog.STATUS_DETECTED);
+            int b = log.append(2, 2, 2, 0.7f, PotholeLog.STATUS_DETECTED);
+            log.write(a, 1.5, 1.5, 3, 0.8f, PotholeLog.STATUS_REPORTED);
+            log.write(b, 2, 2, 4, 0.7f, PotholeLog.STATUS_DELETED);
+
+            List<PotholeRecord> records = latest(log);
+            assertEquals(1, records.size());
+            assertEquals(1.5, records.get(0).lat, 1e-7);
+            assertEquals(PotholeLog.STATUS_REPORTED, records.get(0).status);
+            assertEquals(1, log.getLiveCount());
+            int[] all = {0};
+            log.readAll(record -> all[0]++);
+            assertEquals(4, all[0]);
+        }
+    }
+
+    @Test
+    public void truncatesTornTailAfterCrash() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            for (int i = 0; i < 10; i++) {
+                log.append(i, i, i, 0.9f, PotholeLog.STATUS_DETECTED);
+            }
+        }
+        // simulate a crash halfway through writing the eleventh record
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() + PotholeLog.RECORD_SIZE / 2);
+        }
+        try (PotholeLog log = PotholeLog.open(file)) {
+            assertEquals(10, latest(log).size());
+            assertEquals(10, log.append(10, 10, 10, 0.9f, PotholeLog.STATUS_DETECTED));
+        }
+        assertEquals(PotholeLog.HEADER_SIZE + 11 * PotholeLog.RECORD_SIZE, file.length());
+    }
+
+    @Test
+    public void dropsRecordsFromFirstCorruptOne() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            for (int i = 0; i < 5; i++) {
+                log.append(i, i, i, 0.9f, PotholeLog.STATUS_DETECTED);
+            }
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long latOfFourth = PotholeLog.HEADER_SIZE + 3 * PotholeLog.RECORD_SIZE + 4;
+            raf.seek(latOfFourth);
+            raf.write(0x7F);
+        }
+        try (PotholeLog log = PotholeLog.open(file)) {
+            assertEquals(3, log.getRecordCount());
+            assertEquals(3, latest(log).size());
+        }
+    }
+
+    @Test
+    public void compactionKeepsLatestAndPreservesIds() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            for (int i = 0; i < 100; i++) {
+                log.append(i, i, i, 0.5f, PotholeLog.STATUS_DETECTED);
+            }
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 100; i++) {
+                    log.write(i, i + 0.5, i, round, 0.6f, PotholeLog.STATUS_DETECTED);
+                }
+            }
+            log.write(99, 99, 99, 9, 0.6f, PotholeLog.STATUS_DELETED);
+            log.write(50, 50, 50, 9, 0.6f, PotholeLog.STATUS_DELETED);
+            assertTrue(log.needsCompaction());
+
+            log.compact();
+
+            assertFalse(log.needsCompaction());
+            assertEquals(98, log.getRecordCount());
+            assertEquals(PotholeLog.HEADER_SIZE + 98 * PotholeLog.RECORD_SIZE, file.length());
+            List<PotholeRecord> records = latest(log);
+            assertEquals(98, records.size());
+            assertEquals(51, records.get(50).id);
+            assertEquals(51.5, records.get(50).lat, 1e-7);
+            // ids of deleted potholes are never handed out again
+            assertEquals(100, log.append(0, 0, 0, 0.5f, PotholeLog.STATUS_DETECTED));
+        }
+        try (PotholeLog log = PotholeLog.open(file)) {
+            assertEquals(99, log.getLiveCount());
+            assertEquals(101, log.append(0, 0, 0, 0.5f, PotholeLog.STATUS_DETECTED));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsForeignFile() throws IOException {
+        Files.write(file.toPath(), "this is not a pothole log".getBytes("UTF-8"));
+        PotholeLog.open(file);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnknownIds() throws IOException {
+        try (PotholeLog log = PotholeLog.open(file)) {
+            log.write(5, 0, 0, 0, 0f, PotholeLog.STATUS_DETECTED);
+        }
+    }
+}
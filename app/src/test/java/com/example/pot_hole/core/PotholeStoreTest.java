@@ -0,0 +1,168 @@
+package com.example.pot_hole.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PotholeStoreTest {
+
+    /** A real log whose next writes can be made to fail, as on a full disk. */
+    private static final class FailingLog implements PotholeStore.Log {
+        final PotholeLog log;
+        int failures;
+
+        FailingLog(PotholeLog log) {
+            this.log = log;
+        }
+
+        @Override
+        public int append(double lat, double lon, long timestamp, float confidence, byte status) throws IOException {
+            failIfAsked();
+            return log.append(lat, lon, timestamp, confidence, status);
+        }
+
+        @Override
+        public void write(int id, double lat, double lon, long timestamp, float confidence, byte status) throws IOException {
+            failIfAsked();
+            log.write(id, lat, lon, timestamp, confidence, status);
+        }
+
+        @Override
+        public byte getStatus(int id) {
+            return log.getStatus(id);
+        }
+
+        private void failIfAsked() throws IOException {
+            if (failures > 0) {
+                failures--;
+                throw new IOException("No space left on device");
+            }
+        }
+    }
+
+    private File dir;
+    private PotholeLog log;
+    private PotholeIndex index;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("pothole-store").toFile();
+        log = PotholeLog.open(new File(dir, "potholes.log"));
+        index = new PotholeIndex(100);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        log.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private List<PotholeRecord> latest() throws IOException {
+        List<PotholeRecord> records = new ArrayList<>();
+        log.readLatest(record -> {
+            PotholeRecord copy = new PotholeRecord();
+            copy.id = record.id;
+            copy.lat = record.lat;
+            copy.lon = record.lon;
+            copy.status = record.status;
+            records.add(copy);
+        });
+        return records;
+    }
+
+    @Test
+    public void keepsSavingAfterAFailedWrite() throws IOException {
+        FailingLog failing = new FailingLog(log);
+        PotholeStore store = new PotholeStore(index, failing);
+
+        int first = index.add(12.97, 77.59);
+        failing.failures = 1;
+        try {
+            store.save(first, 1000, 0.9f, PotholeLog.STATUS_QUEUED);
+            fail("Expected the write to fail");
+        } catch (IOException expected) {
+        }
+        assertEquals(-1, store.logId(first));
+
+        // the index has moved on to id 1 while the log is still at 0
+        int second = index.add(12.98, 77.60);
+        store.save(second, 2000, 0.8f, PotholeLog.STATUS_QUEUED);
+        assertEquals(0, store.logId(second));
+
+        // the failed pothole is appended on its next save
+        store.save(first, 3000, 0.9f, PotholeLog.STATUS_REPORTED);
+        assertEquals(1, store.logId(first));
+
+        List<PotholeRecord> records = latest();
+        assertEquals(2, records.size());
+        assertEquals(12.98, records.get(0).lat, 1e-6);
+        assertEquals(12.97, records.get(1).lat, 1e-6);
+        assertEquals(PotholeLog.STATUS_REPORTED, records.get(1).status);
+    }
+
+    @Test
+    public void refinedPositionsKeepTheStoredStatus() throws IOException {
+        PotholeStore store = new PotholeStore(index, log);
+        int id = index.add(12.97, 77.59);
+        store.save(id, 1000, 0.9f, PotholeLog.STATUS_QUEUED);
+        store.save(id, 2000, 0.9f, PotholeLog.STATUS_DETECTED);
+        assertEquals(PotholeLog.STATUS_QUEUED, log.getStatus(store.logId(id)));
+
+        store.save(id, 3000, 0.9f, PotholeLog.STATUS_SENDING);
+        store.save(id, 4000, 0.9f, PotholeLog.STATUS_DETECTED);
+        assertEquals(PotholeLog.STATUS_SENDING, log.getStatus(store.logId(id)));
+
+        store.save(id, 5000, 0.9f, PotholeLog.STATUS_REPORTED);
+        assertEquals(PotholeLog.STATUS_REPORTED, log.getStatus(store.logId(id)));
+        assertEquals(5, log.getRecordCount());
+    }
+
+    @Test
+    public void mapsLoadedPotholesToTheirLogIds() throws IOException {
+        log.append(1, 1, 1000, 0.9f, PotholeLog.STATUS_DETECTED);
+        log.append(2, 2, 1000, 0.9f, PotholeLog.STATUS_DETECTED);
+        log.append(3, 3, 1000, 0.9f, PotholeLog.STATUS_DETECTED);
+        log.write(0, 1, 1, 2000, 0.9f, PotholeLog.STATUS_DELETED);
+
+        PotholeStore store = new PotholeStore(index, log);
+        store.clear();
+        log.readLatest(store::load);
+        assertEquals(2, index.size());
+        assertEquals(1, store.logId(0));
+        assertEquals(2, store.logId(1));
+
+        // saving index id 0 updates log id 1, not the deleted pothole
+        store.save(0, 3000, 0.9f, PotholeLog.STATUS_REPORTED);
+        List<PotholeRecord> records = latest();
+        assertEquals(2, records.size());
+        assertEquals(PotholeLog.STATUS_REPORTED, records.get(0).status);
+        assertEquals(PotholeLog.STATUS_DELETED, log.getStatus(0));
+    }
+
+    @Test
+    public void savesThePositionGivenByTheCaller() throws IOException {
+        PotholeStore store = new PotholeStore(index, log);
+        int id = index.add(12.97, 77.59);
+        // read on the main thread before the index moved the pothole
+        store.save(id, 12.96, 77.58, 1000, 0.9f, PotholeLog.STATUS_QUEUED);
+
+        List<PotholeRecord> records = latest();
+        assertEquals(1, records.size());
+        assertEquals(12.96, records.get(0).lat, 1e-6);
+        assertEquals(77.58, records.get(0).lon, 1e-6);
+    }
+}
@@ -0,0 +1,248 @@
+package com.example.pot_hole.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReportDispatcherTest {
+
+    private static final long MINUTE = 60_000;
+
+    private long now;
+    private final List<Long> sentIds = new ArrayList<>();
+    private final List<String> messages = new ArrayList<>();
+    private final List<Integer> sending = new ArrayList<>();
+    private final List<Integer> reported = new ArrayList<>();
+    private boolean accept = true;
+    private ReportDispatcher.Config config;
+    private ReportDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        config = new ReportDispatcher.Config();
+        config.windowMillis = MINUTE;
+        config.areaMeters = 2000;
+        config.maxReportsPerMessage = 3;
+        config.maxMessagesPerPeriod = 2;
+        config.periodMillis = 60 * MINUTE;
+        config.initialBackoffMillis = MINUTE;
+        config.maxBackoffMillis = 8 * MINUTE;
+        config.sendTimeoutMillis = 5 * MINUTE;
+        config.signature = "-- test";
+        dispatcher = new ReportDispatcher((batchId, message) -> {
+            sentIds.add(batchId);
+            messages.add(message);
+            return accept;
+        }, () -> now, new ReportDispatcher.Listener() {
+            @Override
+            public void onSending(List<ReportDispatcher.Report> reports) {
+                for (ReportDispatcher.Report report : reports) {
+                    sending.add(report.id);
+                }
+            }
+
+            @Override
+            public void onReported(List<ReportDispatcher.Report> reports) {
+                for (ReportDispatcher.Report report : reports) {
+                    reported.add(report.id);
+                }
+            }
+        }, config);
+    }
+
+    private void enqueue(int id, double lat, double lon) {
+        dispatcher.enqueue(new ReportDispatcher.Report(id, lat, lon, now, 0.9f));
+    }
+
+    private long lastBatch() {
+        return sentIds.get(sentIds.size() - 1);
+    }
+
+    @Test
+    public void waitsForTheWindowThenSendsOneDigest() {
+        enqueue(0, 12.97, 77.59);
+        assertEquals(MINUTE, dispatcher.tick());
+        now = 30_000;
+        enqueue(1, 12.971, 77.591);
+        assertEquals(MINUTE, dispatcher.tick());
+        assertTrue(sentIds.isEmpty());
+
+        now = MINUTE;
+        dispatcher.tick();
+        assertEquals(1, sentIds.size());
+        assertTrue(messages.get(0).startsWith("2 potholes detected at:\n"));
+        assertTrue(messages.get(0).contains("https://www.google.com/maps?q=12.97,77.59\n"));
+        assertTrue(messages.get(0).endsWith("\n\n-- test"));
+        assertEquals(Arrays.asList(0, 1), sending);
+        assertTrue(reported.isEmpty());
+
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(2, reported.size());
+        assertEquals(0, dispatcher.pendingCount());
+        assertEquals(ReportDispatcher.IDLE, dispatcher.tick());
+    }
+
+    @Test
+    public void fullMessageGoesOutWithoutWaiting() {
+        for (int i = 0; i < 4; i++) {
+            enqueue(i, 12.97 + i * 0.001, 77.59);
+        }
+        dispatcher.tick();
+        assertEquals(1, sentIds.size());
+        assertTrue(messages.get(0).startsWith("3 potholes"));
+        assertEquals(4, dispatcher.pendingCount());
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(1, dispatcher.pendingCount());
+        // the last one waits for its window
+        assertEquals(MINUTE, dispatcher.tick());
+    }
+
+    @Test
+    public void separateAreasGetSeparateMessages() {
+        enqueue(0, 12.97, 77.59);
+        enqueue(1, 28.61, 77.20);
+        enqueue(2, 12.971, 77.59);
+        now = MINUTE;
+        dispatcher.tick();
+        assertTrue(messages.get(0).startsWith("2 potholes"));
+        dispatcher.onSendResult(lastBatch(), true);
+        dispatcher.tick();
+        assertTrue(messages.get(1).startsWith("Pothole detected at:\nhttps://www.google.com/maps?q=28.61,77.2\n"));
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(Arrays.asList(0, 2, 1), reported);
+    }
+
+    @Test
+    public void rateLimitDefersMessages() {
+        for (int i = 0; i < 3; i++) {
+            enqueue(i, 12.97 + i, 77.59);
+        }
+        now = MINUTE;
+        for (int i = 0; i < 2; i++) {
+            dispatcher.tick();
+            dispatcher.onSendResult(lastBatch(), true);
+        }
+        assertEquals(2, sentIds.size());
+        // both sends happened at one minute, so the third waits for the period to pass
+        assertEquals(61 * MINUTE, dispatcher.tick());
+        now = 61 * MINUTE;
+        dispatcher.tick();
+        assertEquals(3, sentIds.size());
+    }
+
+    @Test
+    public void failuresBackOffExponentially() {
+        enqueue(0, 12.97, 77.59);
+        config.maxMessagesPerPeriod = 100;
+        now = MINUTE;
+        dispatcher.tick();
+        dispatcher.onSendResult(lastBatch(), false);
+        assertEquals(2 * MINUTE, dispatcher.tick());
+        now = 2 * MINUTE;
+        dispatcher.tick();
+        dispatcher.onSendResult(lastBatch(), false);
+        assertEquals(4 * MINUTE, dispatcher.tick());
+        now = 4 * MINUTE;
+        dispatcher.tick();
+        dispatcher.onSendResult(lastBatch(), false);
+        assertEquals(8 * MINUTE, dispatcher.tick());
+        now = 8 * MINUTE;
+        dispatcher.tick();
+        dispatcher.onSendResult(lastBatch(), false);
+        // capped at the maximum backoff
+        assertEquals(16 * MINUTE, dispatcher.tick());
+        now = 16 * MINUTE;
+        dispatcher.tick();
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(Collections.singletonList(0), reported);
+        assertEquals(4, dispatcher.getFailedCount());
+        assertEquals(1, dispatcher.getSentCount());
+    }
+
+    @Test
+    public void refusedSendIsRetriedAndRetryNowSkipsTheWait() {
+        accept = false;
+        enqueue(0, 12.97, 77.59);
+        now = MINUTE;
+        assertEquals(2 * MINUTE, dispatcher.tick());
+        accept = true;
+        dispatcher.retryNow();
+        dispatcher.tick();
+        assertEquals(2, sentIds.size());
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(1, reported.size());
+        // marked in flight before each attempt, the refused one too
+        assertEquals(Arrays.asList(0, 0), sending);
+    }
+
+    @Test
+    public void timeoutCountsAsFailureAndLateResultIsIgnored() {
+        enqueue(0, 12.97, 77.59);
+        now = MINUTE;
+        assertEquals(6 * MINUTE, dispatcher.tick());
+        long first = lastBatch();
+        now = 6 * MINUTE;
+        assertEquals(7 * MINUTE, dispatcher.tick());
+        dispatcher.onSendResult(first, true);
+        assertTrue(reported.isEmpty());
+        now = 7 * MINUTE;
+        dispatcher.tick();
+        assertNotEquals(first, lastBatch());
+        dispatcher.onSendResult(lastBatch(), true);
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void lateResultOfAnEarlierDispatcherSettlesAdoptedReports() {
+        enqueue(0, 12.97, 77.59);
+        now = MINUTE;
+        dispatcher.tick();
+        long earlier = lastBatch();
+
+        // the activity is recreated while the message is on its way
+        now = 2 * MINUTE;
+        setUp();
+        dispatcher.adopt(new ReportDispatcher.Report(0, 12.97, 77.59, 0, 0.9f), MINUTE);
+        assertEquals(1, dispatcher.pendingCount());
+        assertEquals(6 * MINUTE, dispatcher.tick());
+        assertEquals(1, sentIds.size());
+
+        dispatcher.onSendResult(earlier, true);
+        assertEquals(Collections.singletonList(0), reported);
+        assertEquals(0, dispatcher.pendingCount());
+        assertEquals(ReportDispatcher.IDLE, dispatcher.tick());
+        assertEquals(1, sentIds.size());
+    }
+
+    @Test
+    public void adoptedReportsAreSentAgainAfterFailureOrTimeout() {
+        now = 10 * MINUTE;
+        setUp();
+        dispatcher.adopt(new ReportDispatcher.Report(0, 12.97, 77.59, 0, 0.9f), 9 * MINUTE);
+        dispatcher.adopt(new ReportDispatcher.Report(1, 12.971, 77.59, 0, 0.9f), 9 * MINUTE);
+        dispatcher.onSendResult(10 * MINUTE, false);
+        dispatcher.onSendResult(10 * MINUTE, true);
+        // results for our own batch ids never settle adopted reports
+        assertEquals(2, dispatcher.pendingCount());
+        assertEquals(14 * MINUTE, dispatcher.tick());
+
+        now = 14 * MINUTE;
+        dispatcher.tick();
+        assertEquals(1, sentIds.size());
+        assertTrue(messages.get(0).startsWith("2 potholes"));
+        assertEquals(Arrays.asList(0, 1), sending);
+
+        dispatcher.onSendResult(lastBatch(), false);
+        dispatcher.adopt(new ReportDispatcher.Report(2, 12.97, 77.59, 0, 0.9f), 14 * MINUTE);
+        dispatcher.onSendResult(9 * MINUTE, false);
+        // a failed earlier send is queued again without waiting for the timeout
+        assertEquals(3, dispatcher.pendingCount());
+        assertEquals(2, dispatcher.getFailedCount());
+    }
+}
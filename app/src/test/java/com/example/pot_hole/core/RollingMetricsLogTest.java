@@ -0,0 +1,70 @@
+package com.example.pot_hole.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RollingMetricsLogTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("metrics-log").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        return Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void appendsUntilFullThenRolls() throws IOException {
+        File file = new File(dir, "metrics.txt");
+        // every line takes 10 bytes with its newline, so three fit
+        RollingMetricsLog log = new RollingMetricsLog(file, 30, 3);
+        for (int i = 0; i < 8; i++) {
+            log.append("line-" + i + "...");
+        }
+
+        assertEquals(2, lines(file).size());
+        assertEquals("line-6...", lines(file).get(0));
+        assertEquals("line-3...", lines(new File(dir, "metrics.txt.1")).get(0));
+        assertEquals(3, lines(new File(dir, "metrics.txt.1")).size());
+        assertEquals("line-0...", lines(new File(dir, "metrics.txt.2")).get(0));
+        assertFalse(new File(dir, "metrics.txt.3").exists());
+
+        log.append("line-8...");
+        log.append("line-9...");
+        assertEquals("line-3...", lines(new File(dir, "metrics.txt.2")).get(0));
+        assertEquals(3, dir.listFiles().length);
+    }
+
+    @Test
+    public void oversizedLineIsStillWritten() throws IOException {
+        File file = new File(dir, "metrics.txt");
+        RollingMetricsLog log = new RollingMetricsLog(file, 4, 1);
+        log.append("a long line");
+        log.append("another long line");
+        assertEquals(1, lines(file).size());
+        assertEquals("another long line", lines(file).get(0));
+    }
+}
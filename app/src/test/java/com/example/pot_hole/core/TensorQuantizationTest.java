@@ -0,0 +1,67 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TensorQuantizationTest {
+
+    @Test
+    public void usualUint8InputIsTheRawChannel() {
+        byte[] lut = new TensorQuantization(1 / 255f, 0, false).pixelLut();
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i, lut[i] & 0xFF);
+        }
+    }
+
+    @Test
+    public void int8InputIsShiftedAndClamped() {
+        byte[] lut = new TensorQuantization(1 / 255f, -128, true).pixelLut();
+        for (int i = 0; i < 256; i++) {
+            assertEquals(i - 128, lut[i]);
+        }
+        // a narrower input range saturates instead of wrapping
+        byte[] narrow = new TensorQuantization(1 / 510f, 0, false).pixelLut();
+        assertEquals(0, narrow[0]);
+        assertEquals(254, narrow[127] & 0xFF);
+        assertEquals(255, narrow[200] & 0xFF);
+    }
+
+    @Test
+    public void quantizedRgbMatchesFloatPathWithinOneStep() {
+        TensorQuantization quantization = new TensorQuantization(1 / 255f, 0, false);
+        byte[] lut = quantization.pixelLut();
+        int[] pixels = {0xFFFF0000, 0x0000FF00, 0x800000FF, 0xFF7F3F1F};
+        ByteBuffer out = ByteBuffer.allocate(pixels.length * 3);
+
+        PixelNormalizer.toQuantizedRgb(pixels, lut, out);
+
+        assertEquals(0, out.position());
+        int[] channels = {255, 0, 0, 0, 255, 0, 0, 0, 255, 0x7F, 0x3F, 0x1F};
+        for (int i = 0; i < channels.length; i++) {
+            assertEquals(channels[i], out.get(i) & 0xFF);
+            assertEquals(PixelNormalizer.normalize(channels[i]), quantization.dequantize(out.get(i)), quantization.scale / 2);
+        }
+    }
+
+    @Test
+    public void dequantizesOutputProbabilities() {
+        TensorQuantization softmax = new TensorQuantization(1 / 256f, 0, false);
+        ByteBuffer raw = ByteBuffer.wrap(new byte[]{(byte) 230, 26});
+        float[] probabilities = new float[2];
+        softmax.dequantize(raw, probabilities);
+        assertEquals(0.898f, probabilities[0], 0.001f);
+        assertEquals(0.102f, probabilities[1], 0.001f);
+
+        TensorQuantization signed = new TensorQuantization(1 / 256f, -128, true);
+        assertEquals(0f, signed.dequantize((byte) -128), 0f);
+        assertEquals(255 / 256f, signed.dequantize((byte) 127), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTooSmallBuffer() {
+        PixelNormalizer.toQuantizedRgb(new int[4], new byte[256], ByteBuffer.allocate(11));
+    }
+}
@@ -0,0 +1,266 @@
+package com.example.pot_hole.core;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/** Runs the cache against a local stand-in for the tile server. */
+public class TileCacheTest {
+
+    private static final int TILE_BYTES = 1000;
+
+    private File dir;
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private String baseUrl;
+    // response headers of the stand-in server, null to leave them out
+    private volatile String cacheControl;
+    private volatile String etag;
+    private long now = 1_000_000;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("tile-cache").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            if (cacheControl != null) {
+                exchange.getResponseHeaders().set("Cache-Control", cacheControl);
+            }
+            if (etag != null) {
+                exchange.getResponseHeaders().set("ETag", etag);
+                if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+            }
+            byte[] body = tile(exchange.getRequestURI().getPath());
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    // Deterministic body per path, padded to TILE_BYTES
+    private static byte[] tile(String path) {
+        byte[] body = new byte[TILE_BYTES];
+        byte[] name = path.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(name, 0, body, 0, Math.min(name.length, body.length));
+        return body;
+    }
+
+    private TileCache open(long maxBytes) throws IOException {
+        return new TileCache(dir, maxBytes, TileCache.httpFetcher("test", 2000), () -> now);
+    }
+
+    private byte[] load(TileCache cache, String key) {
+        return cache.getOrFetch(key, baseUrl + key + ".png", false, true);
+    }
+
+    @Test
+    public void fetchesOnceThenServesFromDisk() throws IOException {
+        TileCache cache = open(100 * TILE_BYTES);
+        byte[] first = load(cache, "14/11700/7600");
+        byte[] second = load(cache, "14/11700/7600");
+
+        assertArrayEquals(tile("/14/11700/7600.png"), first);
+        assertArrayEquals(first, second);
+        assertEquals(1, requests.get());
+        TileCache.Stats stats = cache.getStats();
+        assertEquals(1, stats.hits);
+        assertEquals(1, stats.misses);
+        assertEquals(0.5, stats.hitRate(), 1e-9);
+        assertEquals(1, stats.hitLatency.count());
+        assertEquals(1, stats.fetchLatency.count());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverTheCap() throws IOException {
+        TileCache cache = open(3 * TILE_BYTES);
+        load(cache, "1/0/0");
+        load(cache, "1/0/1");
+        load(cache, "1/1/0");
+        // touch the oldest so 1/0/1 becomes the least recently used
+        assertNotNull(cache.get("1/0/0"));
+        load(cache, "1/1/1");
+
+        assertEquals(3, cache.size());
+        assertEquals(3 * TILE_BYTES, cache.getTotalBytes());
+        assertFalse(cache.contains("1/0/1"));
+        assertTrue(cache.contains("1/0/0"));
+        assertTrue(cache.contains("1/1/1"));
+        assertEquals(1, cache.getStats().evictions);
+    }
+
+    @Test
+    public void neverEvictsPinnedEntries() throws IOException {
+        TileCache cache = open(2 * TILE_BYTES);
+        cache.getOrFetch("leaflet/leaflet.js", baseUrl + "leaflet.js", true, true);
+        for (int x = 0; x < 5; x++) {
+            load(cache, "3/" + x + "/0");
+        }
+
+        assertTrue(cache.contains("leaflet/leaflet.js"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void servesCachedTilesWhileServerIsDown() throws IOException {
+        TileCache cache = open(100 * TILE_BYTES);
+        load(cache, "5/1/1");
+        server.stop(0);
+
+        assertNotNull(load(cache, "5/1/1"));
+        assertNull(load(cache, "5/1/2"));
+        assertEquals(1, cache.getStats().fetchFailures);
+    }
+
+    @Test
+    public void reopensWithTheSameEntriesAndRecency() throws IOException {
+        TileCache cache = open(3 * TILE_BYTES);
+        cache.put("2/0/0", new byte[TILE_BYTES], false);
+        cache.put("2/0/1", new byte[TILE_BYTES], false);
+        cache.put("leaflet/leaflet.css", new byte[TILE_BYTES], true);
+        // file times have coarse resolution on some file systems
+        new File(dir, "2_002f0_002f0").setLastModified(1000);
+        new File(dir, "2_002f0_002f1").setLastModified(2000);
+
+        TileCache reopened = open(3 * TILE_BYTES);
+        assertEquals(3, reopened.size());
+        assertEquals(3 * TILE_BYTES, reopened.getTotalBytes());
+        reopened.put("2/1/0", new byte[TILE_BYTES], false);
+
+        assertFalse(reopened.contains("2/0/0"));
+        assertTrue(reopened.contains("2/0/1"));
+        assertTrue(reopened.contains("leaflet/leaflet.css"));
+    }
+
+    @Test
+    public void prefetchSkipsCachedEntries() throws IOException {
+        TileCache cache = open(100 * TILE_BYTES);
+        assertTrue(cache.prefetch("7/1/1", baseUrl + "7/1/1.png"));
+        assertTrue(cache.prefetch("7/1/1", baseUrl + "7/1/1.png"));
+
+        assertEquals(1, requests.get());
+        // prefetches are not lookups
+        assertEquals(0.0, cache.getStats().hitRate(), 0);
+    }
+
+    @Test
+    public void replacesAnEntryInPlace() throws IOException {
+        TileCache cache = open(100 * TILE_BYTES);
+        cache.put("k", new byte[10], false);
+        byte[] newer = new byte[20];
+        Arrays.fill(newer, (byte) 7);
+        cache.put("k", newer, false);
+
+        assertArrayEquals(newer, cache.get("k"));
+        assertEquals(20, cache.getTotalBytes());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void revalidatesExpiredTilesWhenOnline() throws IOException {
+        cacheControl = "max-age=60";
+        etag = "\"v1\"";
+        TileCache cache = open(100 * TILE_BYTES);
+        byte[] first = load(cache, "9/4/4");
+        now += 30_000;
+        load(cache, "9/4/4");
+        assertEquals(1, requests.get());
+
+        now += 60_000;
+        assertArrayEquals(first, load(cache, "9/4/4"));
+        assertEquals(2, requests.get());
+        assertEquals(1, cache.getStats().revalidations);
+
+        // the 304 renewed the expiry
+        now += 30_000;
+        load(cache, "9/4/4");
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void servesExpiredTilesOffline() throws IOException {
+        cacheControl = "max-age=60";
+        TileCache cache = open(100 * TILE_BYTES);
+        byte[] first = load(cache, "9/4/5");
+        now += 120_000;
+
+        assertArrayEquals(first, cache.getOrFetch("9/4/5", baseUrl + "9/4/5.png", false, false));
+        assertEquals(1, requests.get());
+        server.stop(0);
+        assertArrayEquals(first, load(cache, "9/4/5"));
+        TileCache.Stats stats = cache.getStats();
+        assertEquals(2, stats.staleHits);
+        assertEquals(1, stats.fetchFailures);
+    }
+
+    @Test
+    public void keepsExpiryAcrossReopen() throws IOException {
+        cacheControl = "max-age=60";
+        load(open(100 * TILE_BYTES), "9/4/6");
+        load(open(100 * TILE_BYTES), "9/4/6");
+        assertEquals(1, requests.get());
+
+        now += 120_000;
+        TileCache reopened = open(100 * TILE_BYTES);
+        assertEquals(TILE_BYTES, reopened.getTotalBytes());
+        load(reopened, "9/4/6");
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void neverExpiresPinnedEntries() throws IOException {
+        cacheControl = "no-cache";
+        TileCache cache = open(100 * TILE_BYTES);
+        cache.getOrFetch("leaflet/leaflet.js", baseUrl + "leaflet.js", true, true);
+        now += 365L * 24 * 60 * 60 * 1000;
+        cache.getOrFetch("leaflet/leaflet.js", baseUrl + "leaflet.js", true, true);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void readsFreshnessFromHeaders() {
+        assertEquals(600_000, TileCache.maxAgeMillis("public, max-age=600", 0, 0));
+        assertEquals(0, TileCache.maxAgeMillis("no-cache, max-age=600", 0, 0));
+        assertEquals(0, TileCache.maxAgeMillis("no-store", 5000, 1000));
+        assertEquals(4000, TileCache.maxAgeMillis(null, 5000, 1000));
+        assertEquals(4000, TileCache.maxAgeMillis("public", 5000, 1000));
+        assertEquals(-1, TileCache.maxAgeMillis(null, 0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveCap() throws IOException {
+        open(0);
+    }
+}
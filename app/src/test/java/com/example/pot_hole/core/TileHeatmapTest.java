@@ -0,0 +1,64 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TileHeatmapTest {
+
+    private static final float EPSILON = 1e-6f;
+
+    @Test
+    public void averagesOverlappingTilesPerCell() {
+        // tiles at x = 0, 112 and 224, each 224 wide, over a 448 wide frame
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 16).plan(448, 224);
+        TileHeatmap heatmap = TileHeatmap.merge(plan, new float[]{0.9f, 0.3f, 0f}, 4, 1);
+
+        // cell centres at 56, 168, 280 and 392
+        assertEquals(0.9f, heatmap.cell(0, 0), EPSILON);
+        assertEquals(0.6f, heatmap.cell(1, 0), EPSILON);
+        assertEquals(0.15f, heatmap.cell(2, 0), EPSILON);
+        assertEquals(0f, heatmap.cell(3, 0), EPSILON);
+        assertEquals(0.9f, heatmap.probability(), EPSILON);
+        assertEquals(0, heatmap.hottestCol());
+    }
+
+    @Test
+    public void findsASmallHotspotTheWholeFrameWouldDilute() {
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 64).plan(1344, 896);
+        float[] scores = new float[plan.count()];
+        // a pothole near the bottom right corner, seen only by the tiles containing it
+        int potholeX = 1250;
+        int potholeY = 800;
+        for (int tile = 0; tile < plan.count(); tile++) {
+            boolean sees = potholeX >= plan.x(tile) && potholeX < plan.x(tile) + plan.cropWidth
+                    && potholeY >= plan.y(tile) && potholeY < plan.y(tile) + plan.cropHeight;
+            scores[tile] = sees ? 0.95f : 0.05f;
+        }
+        TileHeatmap heatmap = TileHeatmap.merge(plan, scores, 6, 4);
+        assertEquals(0.95f, heatmap.probability(), EPSILON);
+        assertEquals(5, heatmap.hottestCol());
+        assertEquals(3, heatmap.hottestRow());
+        assertEquals("bottom right", heatmap.describeHottest());
+    }
+
+    @Test
+    public void describesTheCentre() {
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 1).whole(300, 300);
+        TileHeatmap heatmap = TileHeatmap.merge(plan, new float[]{0.7f}, 3, 3);
+        // every cell is covered by the single tile
+        assertEquals(0.7f, heatmap.cell(2, 2), EPSILON);
+        assertEquals("top left", heatmap.describeHottest());
+
+        float[] scores = {0f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 0f};
+        TilePlanner.Plan grid = new TilePlanner(100, 0, 9).plan(300, 300);
+        assertEquals(9, grid.count());
+        assertEquals("centre", TileHeatmap.merge(grid, scores, 3, 3).describeHottest());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingScores() {
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 16).plan(448, 224);
+        TileHeatmap.merge(plan, new float[2], 4, 1);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.pot_hole.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TilePlannerTest {
+
+    @Test
+    public void spreadsFullSizeTilesEvenlyWhenTheyFit() {
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 16).plan(448, 224);
+        assertEquals(224, plan.cropWidth);
+        assertEquals(3, plan.cols);
+        assertEquals(1, plan.rows);
+        assertEquals(0, plan.x(0));
+        assertEquals(112, plan.x(1));
+        assertEquals(224, plan.x(2));
+        assertEquals(0, plan.y(2));
+    }
+
+    @Test
+    public void growsTilesUntilTheGridFits() {
+        TilePlanner planner = new TilePlanner(224, 0.25, 12);
+        TilePlanner.Plan plan = planner.plan(1920, 1080);
+        assertTrue(plan.count() <= 12);
+        assertTrue(plan.cropWidth > 224);
+        assertEquals(plan.cropWidth, plan.cropHeight);
+
+        // tiles reach both edges and neighbours overlap by at least a quarter
+        int lastCol = plan.cols - 1;
+        int lastRow = (plan.rows - 1) * plan.cols;
+        assertEquals(1920, plan.x(lastCol) + plan.cropWidth);
+        assertEquals(1080, plan.y(lastRow) + plan.cropHeight);
+        for (int col = 1; col < plan.cols; col++) {
+            assertTrue(plan.x(col - 1) + plan.cropWidth - plan.x(col) >= plan.cropWidth / 4);
+        }
+        for (int row = 1; row < plan.rows; row++) {
+            assertTrue(plan.y((row - 1) * plan.cols) + plan.cropHeight - plan.y(row * plan.cols) >= plan.cropHeight / 4);
+        }
+    }
+
+    @Test
+    public void neverCropsBeyondTheShortSide() {
+        TilePlanner.Plan plan = new TilePlanner(224, 0.5, 1).plan(4000, 300);
+        assertEquals(300, plan.cropWidth);
+        assertEquals(1, plan.rows);
+        assertTrue(plan.cols > 1);
+
+        TilePlanner.Plan small = new TilePlanner(224, 0.25, 4).plan(100, 80);
+        assertEquals(80, small.cropWidth);
+        assertEquals(2, small.cols);
+        assertEquals(20, small.x(1));
+    }
+
+    @Test
+    public void extractsTheCropAtFullResolution() {
+        int width = 448;
+        int height = 224;
+        int[] frame = gradient(width, height);
+        TilePlanner.Plan plan = new TilePlanner(224, 0.25, 16).plan(width, height);
+        int[] out = new int[224 * 224];
+
+        plan.extract(frame, 1, out);
+        assertEquals(frame[112], out[0]);
+        assertEquals(frame[10 * width + 112 + 20], out[10 * 224 + 20]);
+        assertEquals(frame[223 * width + 335], out[224 * 224 - 1]);
+    }
+
+    @Test
+    public void averagesWhenScalingDown() {
+        int width = 896;
+        int height = 448;
+        int[] frame = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // a one pixel checkerboard of black and white averages to mid grey
+                frame[y * width + x] = (x + y) % 2 == 0 ? 0xFFFFFFFF : 0xFF000000;
+            }
+        }
+        TilePlanner.Plan whole = new TilePlanner(224, 0.25, 1).whole(width, height);
+        assertEquals(1, whole.count());
+        int[] out = new int[224 * 224];
+        whole.extract(frame, 0, out);
+        for (int pixel : out) {
+            assertEquals(0xFF7F7F7F, pixel);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsFullOverlap() {
+        new TilePlanner(224, 1, 4);
+    }
+
+    private static int[] gradient(int width, int height) {
+        int[] frame = new int[width * height];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = 0xFF000000 | i;
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,46 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// The plain-Java hot paths are compiled straight from the app sources
+sourceSets {
+    main {
+        java {
+            srcDir("../app/src/main/java")
+            include("com/example/pot_hole/core/**")
+        }
+    }
+}
+
+// TensorFlow Lite only ships Android artifacts, so end-to-end inference needs a desktop build:
+// -Ptflite.jar=<tensorflowlitelib.jar> -Ptflite.libraryPath=<dir with libtensorflowlite_jni.so>
+val tfliteJar = findProperty("tflite.jar")
+if (tfliteJar != null) {
+    sourceSets.named("jmh") {
+        java.srcDir("src/tflite/java")
+    }
+    dependencies {
+        "jmhImplementation"(files(tfliteJar))
+    }
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Machine-readable results for tracking regressions between commits
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // e.g. -Pjmh.includes=PotholeIndexBenchmark
+    findProperty("jmh.includes")?.let { includes.add(it.toString()) }
+    jvmArgsAppend.add("-Dpothole.model=${rootDir}/app/src/main/ml/model.tflite")
+    findProperty("pothole.quantModel")?.let { jvmArgsAppend.add("-Dpothole.quantModel=$it") }
+    findProperty("tflite.libraryPath")?.let { jvmArgsAppend.add("-Djava.library.path=$it") }
+}
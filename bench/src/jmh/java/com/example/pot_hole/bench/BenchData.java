@@ -0,0 +1,46 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PotholeIndex;
+
+import java.util.Random;
+
+/** Reproducible pothole positions shared by the benchmarks. */
+final class BenchData {
+
+    static final double CENTER_LAT = 12.97;
+    static final double CENTER_LON = 77.59;
+    // Every data set is spread over the same area, so larger sets are also denser
+    static final double SPREAD_DEGREES = 0.5;
+
+    private BenchData() {
+    }
+
+    /** {@code count} positions as interleaved lat, lon pairs. */
+    static double[] positions(int count, long seed) {
+        Random random = new Random(seed);
+        double[] positions = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            positions[2 * i] = CENTER_LAT + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+            positions[2 * i + 1] = CENTER_LON + (random.nextDouble() - 0.5) * SPREAD_DEGREES;
+        }
+        return positions;
+    }
+
+    static PotholeIndex index(double[] positions, double cellSizeMeters) {
+        PotholeIndex index = new PotholeIndex(cellSizeMeters);
+        for (int i = 0; i < positions.length; i += 2) {
+            index.add(positions[i], positions[i + 1]);
+        }
+        return index;
+    }
+
+    /** Packed ARGB pixels of a random camera-sized image. */
+    static int[] pixels(int count, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[count];
+        for (int i = 0; i < count; i++) {
+            pixels[i] = 0xFF000000 | random.nextInt(0x1000000);
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.LocationHistory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One thread adding fixes while three look up capture positions, for the lock-free
+ * {@link LocationHistory} against a synchronized ring buffer running the same lookup. The
+ * writer pauses between fixes, since real fixes arrive far less often than frames are
+ * geotagged; only the readers' throughput is meaningful.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LocationHistoryBenchmark {
+
+    private static final int CAPACITY = 64;
+    private static final long FIX_INTERVAL_NANOS = 100000000L;
+    // roughly 20 us of work between fixes
+    private static final long WRITER_PAUSE_TOKENS = 10000;
+
+    private LocationHistory history;
+    private SynchronizedLocationHistory baseline;
+    // only touched by the writer thread
+    private long writerTime;
+    private volatile long newestTime;
+
+    @Setup
+    public void setUp() {
+        history = new LocationHistory(CAPACITY, 2, 40);
+        baseline = new SynchronizedLocationHistory(CAPACITY, 2, 40);
+        for (int i = 0; i < CAPACITY; i++) {
+            add();
+        }
+    }
+
+    private void add() {
+        writerTime += FIX_INTERVAL_NANOS;
+        history.add(writerTime, lat(), BenchData.CENTER_LON, accuracy(), provider());
+        baseline.add(writerTime, lat(), BenchData.CENTER_LON, accuracy(), provider());
+        newestTime = writerTime;
+    }
+
+    private double lat() {
+        return BenchData.CENTER_LAT + writerTime * 1e-12;
+    }
+
+    // every fourth fix from the network provider, so the lookups have fixes to choose between
+    private int provider() {
+        return (writerTime / FIX_INTERVAL_NANOS) % 4 == 0 ? LocationHistory.PROVIDER_NETWORK : LocationHistory.PROVIDER_GPS;
+    }
+
+    private double accuracy() {
+        return provider() == LocationHistory.PROVIDER_NETWORK ? 30 : 5;
+    }
+
+    /** Per-thread scratch so lookups do not allocate. */
+    @State(Scope.Thread)
+    public static class Reader {
+        final LocationHistory.Fix out = new LocationHistory.Fix();
+        final LocationHistory.Fix before = new LocationHistory.Fix();
+        final LocationHistory.Fix after = new LocationHistory.Fix();
+        final LocationHistory.Fix probe = new LocationHistory.Fix();
+        long offset;
+
+        long nextCaptureTime(long newest) {
+            // somewhere in the last few fixes, like a frame that waited for inference
+            offset = (offset + 7919) % (5 * FIX_INTERVAL_NANOS);
+            return newest - offset;
+        }
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(1)
+    public void lockFreeAdd() {
+        Blackhole.consumeCPU(WRITER_PAUSE_TOKENS);
+        writerTime += FIX_INTERVAL_NANOS;
+        history.add(writerTime, lat(), BenchData.CENTER_LON, accuracy(), provider());
+        newestTime = writerTime;
+    }
+
+    @Benchmark
+    @Group("lockFree")
+    @GroupThreads(3)
+    public double lockFreeLookup(Reader reader) {
+        history.positionAt(reader.nextCaptureTime(newestTime), reader.out, reader.before, reader.after, reader.probe);
+        return reader.out.lat;
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(1)
+    public void synchronizedAdd() {
+        Blackhole.consumeCPU(WRITER_PAUSE_TOKENS);
+        writerTime += FIX_INTERVAL_NANOS;
+        baseline.add(writerTime, lat(), BenchData.CENTER_LON, accuracy(), provider());
+        newestTime = writerTime;
+    }
+
+    @Benchmark
+    @Group("synchronized")
+    @GroupThreads(3)
+    public double synchronizedLookup(Reader reader) {
+        baseline.positionAt(reader.nextCaptureTime(newestTime), reader.out);
+        return reader.out.lat;
+    }
+}
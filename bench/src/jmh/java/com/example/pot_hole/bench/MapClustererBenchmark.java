@@ -0,0 +1,66 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.MapClusterer;
+import com.example.pot_hole.core.PotholeIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** Clustering the visible potholes for one map viewport, with MainActivity's settings. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MapClustererBenchmark {
+
+    private static final double CELL_SIZE_METERS = 100;
+    private static final int CELL_PIXELS = 64;
+    private static final int PYRAMID_MAX_ZOOM = 10;
+    private static final int CLUSTER_MAX_ZOOM = 15;
+    private static final int SCREEN_PIXELS = 1080;
+    private static final int PROBES = 256;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    // from the prebuilt pyramid, aggregated on the fly, and single markers
+    @Param({"8", "10", "13", "16"})
+    public int zoom;
+
+    private MapClusterer clusterer;
+    private final MapClusterer.Clusters clusters = new MapClusterer.Clusters();
+    private double[] centers;
+    private double halfSpanDegrees;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        PotholeIndex index = BenchData.index(BenchData.positions(size, 1), CELL_SIZE_METERS);
+        clusterer = new MapClusterer(index, CELL_PIXELS, PYRAMID_MAX_ZOOM, CLUSTER_MAX_ZOOM);
+        clusterer.rebuild();
+        centers = BenchData.positions(PROBES, 2);
+        halfSpanDegrees = 360.0 * SCREEN_PIXELS / (256 * Math.pow(2, zoom)) / 2;
+    }
+
+    @Benchmark
+    public int query() {
+        int probe = next;
+        next = (next + 1) % PROBES;
+        double lat = centers[2 * probe];
+        double lon = centers[2 * probe + 1];
+        clusterer.query(lat - halfSpanDegrees, lon - halfSpanDegrees, lat + halfSpanDegrees, lon + halfSpanDegrees, zoom, clusters);
+        return clusters.size;
+    }
+
+    @Benchmark
+    public void rebuild() {
+        clusterer.rebuild();
+    }
+}
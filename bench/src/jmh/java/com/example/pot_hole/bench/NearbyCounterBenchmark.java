@@ -0,0 +1,64 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.NearbyCounter;
+import com.example.pot_hole.core.PotholeIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/** The nearby-potholes count, from the coarse grid and by scanning the index. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NearbyCounterBenchmark {
+
+    private static final double INDEX_CELL_SIZE_METERS = 100;
+    private static final double NEARBY_CELL_SIZE_METERS = 500;
+    private static final int PROBES = 256;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"1000", "5000", "20000"})
+    public double radiusMeters;
+
+    private PotholeIndex index;
+    private NearbyCounter counter;
+    // a different position every call, so the counter's cache never answers
+    private double[] probes;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        index = BenchData.index(BenchData.positions(size, 1), INDEX_CELL_SIZE_METERS);
+        counter = new NearbyCounter(index, NEARBY_CELL_SIZE_METERS);
+        counter.rebuild();
+        probes = BenchData.positions(PROBES, 2);
+    }
+
+    private int nextProbe() {
+        int probe = next;
+        next = (next + 1) % PROBES;
+        return probe;
+    }
+
+    @Benchmark
+    public int gridCount() {
+        int probe = nextProbe();
+        return counter.count(probes[2 * probe], probes[2 * probe + 1], radiusMeters);
+    }
+
+    @Benchmark
+    public int indexScan() {
+        int probe = nextProbe();
+        return index.countWithinRadius(probes[2 * probe], probes[2 * probe + 1], radiusMeters);
+    }
+}
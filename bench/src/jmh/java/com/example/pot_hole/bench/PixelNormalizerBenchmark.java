@@ -0,0 +1,63 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TensorQuantization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/** Pixel-to-tensor conversion of one 224x224 frame. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PixelNormalizerBenchmark {
+
+    private int[] pixels;
+    private ByteBuffer floatInput;
+    private FloatBuffer floatView;
+    private ByteBuffer quantizedInput;
+    private byte[] lut;
+
+    @Setup
+    public void setUp() {
+        pixels = BenchData.pixels(PixelNormalizer.PIXEL_COUNT, 1);
+        floatInput = ByteBuffer.allocateDirect(PixelNormalizer.FLOAT_INPUT_BYTES).order(ByteOrder.nativeOrder());
+        floatView = floatInput.asFloatBuffer();
+        quantizedInput = ByteBuffer.allocateDirect(PixelNormalizer.QUANTIZED_INPUT_BYTES).order(ByteOrder.nativeOrder());
+        lut = new TensorQuantization(1 / 255f, 0, false).pixelLut();
+    }
+
+    /** The original convertBitmapToByteBuffer loop: a division and relative put per channel. */
+    @Benchmark
+    public ByteBuffer divideAndPutFloat() {
+        floatInput.rewind();
+        for (int value : pixels) {
+            floatInput.putFloat(((value >> 16) & 0xFF) / 255.0f);
+            floatInput.putFloat(((value >> 8) & 0xFF) / 255.0f);
+            floatInput.putFloat((value & 0xFF) / 255.0f);
+        }
+        return floatInput;
+    }
+
+    @Benchmark
+    public FloatBuffer toFloatRgb() {
+        PixelNormalizer.toFloatRgb(pixels, floatView);
+        return floatView;
+    }
+
+    @Benchmark
+    public ByteBuffer toQuantizedRgb() {
+        PixelNormalizer.toQuantizedRgb(pixels, lut, quantizedInput);
+        return quantizedInput;
+    }
+}
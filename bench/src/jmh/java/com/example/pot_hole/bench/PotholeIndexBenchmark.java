@@ -0,0 +1,96 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PotholeIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Pothole dedup and lookup against 1k to 1M known potholes. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PotholeIndexBenchmark {
+
+    private static final double CELL_SIZE_METERS = 100;
+    private static final double DEDUP_RADIUS_METERS = 10;
+    private static final int PROBES = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private PotholeIndex index;
+    private List<String> potholeStrings;
+    // detections a few meters from known potholes, then brand new ones, interleaved
+    private double[] probes;
+    private String[] probeStrings;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        double[] positions = BenchData.positions(size, 1);
+        potholeStrings = new ArrayList<>(size);
+        for (int i = 0; i < positions.length; i += 2) {
+            potholeStrings.add("Pothole at: " + positions[i] + ", " + positions[i + 1]);
+        }
+        Random random = new Random(2);
+        double[] fresh = BenchData.positions(PROBES, 3);
+        probes = new double[PROBES * 2];
+        probeStrings = new String[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            if (i % 2 == 0) {
+                int known = random.nextInt(size);
+                probes[2 * i] = positions[2 * known] + (random.nextDouble() - 0.5) * 5e-5;
+                probes[2 * i + 1] = positions[2 * known + 1] + (random.nextDouble() - 0.5) * 5e-5;
+            } else {
+                probes[2 * i] = fresh[2 * i];
+                probes[2 * i + 1] = fresh[2 * i + 1];
+            }
+            probeStrings[i] = "Pothole at: " + probes[2 * i] + ", " + probes[2 * i + 1];
+        }
+        index = BenchData.index(positions, CELL_SIZE_METERS);
+    }
+
+    @Setup(Level.Iteration)
+    public void resetIndex() {
+        // addOrMerge grows the index, so every iteration starts from the same state
+        if (index.size() != size) {
+            index = BenchData.index(BenchData.positions(size, 1), CELL_SIZE_METERS);
+        }
+    }
+
+    private int nextProbe() {
+        int probe = next;
+        next = (next + 1) % PROBES;
+        return probe;
+    }
+
+    @Benchmark
+    public int nearest() {
+        int probe = nextProbe();
+        return index.nearest(probes[2 * probe], probes[2 * probe + 1], DEDUP_RADIUS_METERS);
+    }
+
+    @Benchmark
+    public int addOrMerge() {
+        int probe = nextProbe();
+        return index.addOrMerge(probes[2 * probe], probes[2 * probe + 1], DEDUP_RADIUS_METERS);
+    }
+
+    /** The original dedup: an exact coordinate-string match over the whole list. */
+    @Benchmark
+    public boolean stringListContains() {
+        return potholeStrings.contains(probeStrings[nextProbe()]);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.GeoMath;
+import com.example.pot_hole.core.PotholeIndex;
+import com.example.pot_hole.core.PotholeListQuery;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Opening, scrolling and searching the pothole list. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PotholeListQueryBenchmark {
+
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    private PotholeIndex index;
+    private PotholeListQuery query;
+
+    @Setup
+    public void setUp() {
+        index = BenchData.index(BenchData.positions(size, 1), 100);
+        query = new PotholeListQuery(index, PAGE_SIZE);
+        Random random = new Random(2);
+        long now = 1700000000000L;
+        for (int id = 0; id < size; id++) {
+            // about a year of detections
+            query.setTimestamp(id, now - (long) (random.nextDouble() * 365 * 86400000L));
+        }
+    }
+
+    /** Opening the list: keys for every pothole plus the first page. */
+    @Benchmark
+    public int firstPageNearest() {
+        query.query(PotholeListQuery.Order.NEAREST, BenchData.CENTER_LAT, BenchData.CENTER_LON, "");
+        return query.idAt(0);
+    }
+
+    @Benchmark
+    public int firstPageNewest() {
+        query.query(PotholeListQuery.Order.NEWEST, BenchData.CENTER_LAT, BenchData.CENTER_LON, "");
+        return query.idAt(0);
+    }
+
+    /** Scrolling through ten pages one position at a time. */
+    @Benchmark
+    public int scrollTenPages() {
+        query.query(PotholeListQuery.Order.NEAREST, BenchData.CENTER_LAT, BenchData.CENTER_LON, "");
+        int sum = 0;
+        for (int i = 0; i < 10 * PAGE_SIZE; i++) {
+            sum += query.idAt(i);
+        }
+        return sum;
+    }
+
+    /** Fast scrolling to the middle of the list. */
+    @Benchmark
+    public int jumpToMiddle() {
+        query.query(PotholeListQuery.Order.NEAREST, BenchData.CENTER_LAT, BenchData.CENTER_LON, "");
+        return query.idAt(size / 2);
+    }
+
+    /** Typing a search one character at a time, showing the first page after each. */
+    @Benchmark
+    public int typeSearch() {
+        query.query(PotholeListQuery.Order.NEAREST, BenchData.CENTER_LAT, BenchData.CENTER_LON, "");
+        String search = "12.97 77.5";
+        int sum = 0;
+        for (int i = 1; i <= search.length(); i++) {
+            query.query(PotholeListQuery.Order.NEAREST, BenchData.CENTER_LAT, BenchData.CENTER_LON, search.substring(0, i));
+            sum += query.size() > 0 ? query.idAt(0) : 0;
+        }
+        return sum;
+    }
+
+    /** The straightforward alternative: every pothole boxed and sorted by distance up front. */
+    @Benchmark
+    public int fullSortNearest() {
+        List<Integer> ids = new ArrayList<>(size);
+        double[] distances = new double[size];
+        for (int id = 0; id < size; id++) {
+            ids.add(id);
+            distances[id] = GeoMath.distanceMeters(BenchData.CENTER_LAT, BenchData.CENTER_LON, index.latitude(id), index.longitude(id));
+        }
+        ids.sort(Comparator.comparingDouble(id -> distances[id]));
+        return ids.get(0);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PotholeLog;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+/**
+ * Saving one new pothole and loading them all, for the binary log against the original
+ * "Pothole at: lat, lon" string set that was rewritten in full on every save.
+ *
+ * <p>The string set is stored the way SharedPreferences commits it: the old file moved to a
+ * backup, the whole map written as {@code <map><set name="..."><string>...} XML and synced,
+ * then the backup deleted; loading pull-parses the XML back into a set. StAX stands in for
+ * Android's XmlSerializer and XmlPullParser, so absolute numbers differ from a device.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PotholeLogBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int size;
+
+    private File dir;
+    private PotholeLog log;
+    private static final String PREFS_KEY = "potholes";
+    private static final XMLOutputFactory XML_OUT = XMLOutputFactory.newInstance();
+    private static final XMLInputFactory XML_IN = XMLInputFactory.newInstance();
+
+    private File prefsFile;
+    private List<String> potholeStrings;
+    private double[] positions;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        dir = File.createTempFile("pothole-bench", "");
+        if (!dir.delete() || !dir.mkdir()) {
+            throw new IOException("Failed to create " + dir);
+        }
+        positions = BenchData.positions(size, 1);
+        log = PotholeLog.open(new File(dir, "potholes.log"));
+        potholeStrings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            log.append(positions[2 * i], positions[2 * i + 1], 1700000000000L + i, 0.9f, PotholeLog.STATUS_DETECTED);
+            potholeStrings.add("Pothole at: " + positions[2 * i] + ", " + positions[2 * i + 1]);
+        }
+        prefsFile = new File(dir, "PotholePrefs.xml");
+        writePrefs(new HashSet<>(potholeStrings));
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        log.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public int logAppend() throws IOException {
+        int i = next++ % size;
+        return log.append(positions[2 * i], positions[2 * i + 1], 1700000000000L, 0.9f, PotholeLog.STATUS_DETECTED);
+    }
+
+    @Benchmark
+    public void logReadLatest(Blackhole blackhole) throws IOException {
+        log.readLatest(record -> blackhole.consume(record.lat + record.lon));
+    }
+
+    @Benchmark
+    public void sharedPrefsSave() throws IOException {
+        writePrefs(new HashSet<>(potholeStrings));
+    }
+
+    @Benchmark
+    public void sharedPrefsLoad(Blackhole blackhole) throws IOException {
+        for (String pothole : readPrefs()) {
+            String[] coords = pothole.split(": ")[1].split(", ");
+            blackhole.consume(Double.parseDouble(coords[0]) + Double.parseDouble(coords[1]));
+        }
+    }
+
+    private void writePrefs(Set<String> potholes) throws IOException {
+        File backup = new File(prefsFile.getPath() + ".bak");
+        if (prefsFile.exists() && !prefsFile.renameTo(backup)) {
+            throw new IOException("Failed to back up " + prefsFile);
+        }
+        try (FileOutputStream file = new FileOutputStream(prefsFile)) {
+            BufferedOutputStream out = new BufferedOutputStream(file);
+            XMLStreamWriter xml = XML_OUT.createXMLStreamWriter(out, "utf-8");
+            xml.writeStartDocument("utf-8", "1.0");
+            xml.writeStartElement("map");
+            xml.writeStartElement("set");
+            xml.writeAttribute("name", PREFS_KEY);
+            for (String pothole : potholes) {
+                xml.writeStartElement("string");
+                xml.writeCharacters(pothole);
+                xml.writeEndElement();
+            }
+            xml.writeEndElement();
+            xml.writeEndElement();
+            xml.writeEndDocument();
+            xml.close();
+            out.flush();
+            // commit() syncs before reporting success
+            file.getFD().sync();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        backup.delete();
+    }
+
+    private Set<String> readPrefs() throws IOException {
+        Set<String> potholes = new HashSet<>();
+        try (InputStream in = new BufferedInputStream(new FileInputStream(prefsFile), 16 * 1024)) {
+            XMLStreamReader xml = XML_IN.createXMLStreamReader(in);
+            while (xml.hasNext()) {
+                if (xml.next() == XMLStreamConstants.START_ELEMENT && xml.getLocalName().equals("string")) {
+                    potholes.add(xml.getElementText());
+                }
+            }
+            xml.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        return potholes;
+    }
+}
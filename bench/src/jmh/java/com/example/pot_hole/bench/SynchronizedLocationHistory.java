@@ -0,0 +1,103 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.LocationHistory;
+
+/**
+ * Baseline for {@link LocationHistoryBenchmark}: the same ring buffer and lookup as
+ * {@link LocationHistory}, binary search plus the cheapest fix within the window on each side,
+ * guarded by one lock instead of per-slot sequence stamps.
+ */
+final class SynchronizedLocationHistory {
+
+    // fixes considered on each side of the capture time, as in LocationHistory
+    private static final int WINDOW = 4;
+
+    private final long[] times;
+    private final double[] lats;
+    private final double[] lons;
+    private final double[] accuracies;
+    private final int mask;
+    private final double networkAccuracyPenalty;
+    private final double maxSpeedMetersPerSecond;
+    private long count;
+    private long lastTimeNanos = Long.MIN_VALUE;
+
+    SynchronizedLocationHistory(int capacity, double networkAccuracyPenalty, double maxSpeedMetersPerSecond) {
+        times = new long[capacity];
+        lats = new double[capacity];
+        lons = new double[capacity];
+        accuracies = new double[capacity];
+        mask = capacity - 1;
+        this.networkAccuracyPenalty = networkAccuracyPenalty;
+        this.maxSpeedMetersPerSecond = maxSpeedMetersPerSecond;
+    }
+
+    synchronized boolean add(long timeNanos, double lat, double lon, double accuracyMeters, int provider) {
+        if (timeNanos < lastTimeNanos) {
+            return false;
+        }
+        lastTimeNanos = timeNanos;
+        int slot = (int) (count & mask);
+        times[slot] = timeNanos;
+        lats[slot] = lat;
+        lons[slot] = lon;
+        accuracies[slot] = provider == LocationHistory.PROVIDER_NETWORK
+                ? accuracyMeters * networkAccuracyPenalty : accuracyMeters;
+        count++;
+        return true;
+    }
+
+    synchronized boolean positionAt(long timeNanos, LocationHistory.Fix out) {
+        long start = Math.max(0, count - times.length);
+        if (count == 0 || timeNanos < times[(int) (start & mask)]) {
+            return false;
+        }
+        long low = start;
+        long high = count;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (times[(int) (mid & mask)] <= timeNanos) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        int before = -1;
+        double beforeCost = Double.POSITIVE_INFINITY;
+        for (long i = low - 1; i >= Math.max(start, low - WINDOW); i--) {
+            int slot = (int) (i & mask);
+            double cost = cost(slot, timeNanos);
+            if (cost < beforeCost) {
+                beforeCost = cost;
+                before = slot;
+            }
+        }
+        int after = -1;
+        double afterCost = Double.POSITIVE_INFINITY;
+        for (long i = low; i < Math.min(count, low + WINDOW); i++) {
+            int slot = (int) (i & mask);
+            double cost = cost(slot, timeNanos);
+            if (cost < afterCost) {
+                afterCost = cost;
+                after = slot;
+            }
+        }
+        out.timeNanos = timeNanos;
+        if (after < 0) {
+            out.lat = lats[before];
+            out.lon = lons[before];
+            out.accuracyMeters = beforeCost;
+            return true;
+        }
+        double span = times[after] - times[before];
+        double t = span > 0 ? (timeNanos - times[before]) / span : 0;
+        out.lat = lats[before] + (lats[after] - lats[before]) * t;
+        out.lon = lons[before] + (lons[after] - lons[before]) * t;
+        out.accuracyMeters = beforeCost + (afterCost - beforeCost) * t;
+        return true;
+    }
+
+    private double cost(int slot, long timeNanos) {
+        return accuracies[slot] + maxSpeedMetersPerSecond * Math.abs(timeNanos - times[slot]) / 1e9;
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TileHeatmap;
+import com.example.pot_hole.core.TilePlanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Java side of classifying a full-resolution photo: squeezing the whole frame into one
+ * 224x224 input against cutting it into overlapping tiles, filling a batched input and merging
+ * the tile scores. Model time is measured by the tflite InferenceBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TiledInferenceBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Param({"6", "12", "24"})
+    public int maxTiles;
+
+    private int[] frame;
+    private int[] tile;
+    private TilePlanner planner;
+    private TilePlanner.Plan plan;
+    private TilePlanner.Plan whole;
+    private FloatBuffer single;
+    private FloatBuffer[] batch;
+    private float[] scores;
+
+    @Setup
+    public void setUp() {
+        frame = BenchData.pixels(WIDTH * HEIGHT, 1);
+        tile = new int[PixelNormalizer.PIXEL_COUNT];
+        planner = new TilePlanner(PixelNormalizer.INPUT_SIZE, 0.25, maxTiles);
+        plan = planner.plan(WIDTH, HEIGHT);
+        whole = planner.whole(WIDTH, HEIGHT);
+        single = floats(1)[0];
+        batch = floats(plan.count());
+        scores = new float[plan.count()];
+        Random random = new Random(2);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = random.nextFloat();
+        }
+    }
+
+    // One direct buffer split into a view per tile, as the batched input tensor is laid out
+    private static FloatBuffer[] floats(int tiles) {
+        int perTile = PixelNormalizer.FLOAT_INPUT_BYTES;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(tiles * perTile).order(ByteOrder.nativeOrder());
+        FloatBuffer[] views = new FloatBuffer[tiles];
+        for (int i = 0; i < tiles; i++) {
+            buffer.position(i * perTile).limit((i + 1) * perTile);
+            views[i] = buffer.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+            buffer.clear();
+        }
+        return views;
+    }
+
+    /** The existing path: the whole frame downscaled into one input. */
+    @Benchmark
+    public FloatBuffer singleCrop() {
+        whole.extract(frame, 0, tile);
+        PixelNormalizer.toFloatRgb(tile, single);
+        return single;
+    }
+
+    @Benchmark
+    public TilePlanner.Plan planTiles() {
+        return planner.plan(WIDTH, HEIGHT);
+    }
+
+    /** Every tile extracted and normalized into the batched input. */
+    @Benchmark
+    public FloatBuffer[] fillBatch() {
+        for (int i = 0; i < plan.count(); i++) {
+            plan.extract(frame, i, tile);
+            PixelNormalizer.toFloatRgb(tile, batch[i]);
+        }
+        return batch;
+    }
+
+    @Benchmark
+    public TileHeatmap mergeScores() {
+        return TileHeatmap.merge(plan, scores, 8, 6);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TensorQuantization;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One frame from pixels to probabilities on the desktop TensorFlow Lite runtime, for the float
+ * model and, with -Ppothole.quantModel, a quantized variant.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InferenceBenchmark {
+
+    @Param({"float", "quantized"})
+    public String variant;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Interpreter interpreter;
+    private int[] pixels;
+    private ByteBuffer input;
+    private byte[] lut;
+    private float[][] floatOutput;
+    private ByteBuffer quantizedOutput;
+    private TensorQuantization outputQuantization;
+    private float[] probabilities;
+
+    @Setup
+    public void setUp() {
+        String path = System.getProperty("float".equals(variant) ? "pothole.model" : "pothole.quantModel");
+        if (path == null || !new File(path).isFile()) {
+            throw new IllegalStateException("No " + variant + " model, see bench/build.gradle.kts");
+        }
+        interpreter = new Interpreter(new File(path), new Interpreter.Options().setNumThreads(threads));
+        Tensor inputTensor = interpreter.getInputTensor(0);
+        Tensor outputTensor = interpreter.getOutputTensor(0);
+        TensorQuantization inputQuantization = quantization(inputTensor);
+        lut = inputQuantization != null ? inputQuantization.pixelLut() : null;
+        outputQuantization = quantization(outputTensor);
+        input = ByteBuffer.allocateDirect(inputTensor.numBytes()).order(ByteOrder.nativeOrder());
+        int classes = outputTensor.shape()[1];
+        floatOutput = new float[1][classes];
+        quantizedOutput = ByteBuffer.allocateDirect(classes).order(ByteOrder.nativeOrder());
+        probabilities = new float[classes];
+        pixels = BenchData.pixels(PixelNormalizer.PIXEL_COUNT, 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        interpreter.close();
+    }
+
+    @Benchmark
+    public float[] classify() {
+        if (lut != null) {
+            PixelNormalizer.toQuantizedRgb(pixels, lut, input);
+        } else {
+            PixelNormalizer.toFloatRgb(pixels, input.asFloatBuffer());
+        }
+        input.rewind();
+        if (outputQuantization != null) {
+            quantizedOutput.rewind();
+            interpreter.run(input, quantizedOutput);
+            outputQuantization.dequantize(quantizedOutput, probabilities);
+        } else {
+            interpreter.run(input, floatOutput);
+            System.arraycopy(floatOutput[0], 0, probabilities, 0, probabilities.length);
+        }
+        return probabilities;
+    }
+
+    private static TensorQuantization quantization(Tensor tensor) {
+        DataType type = tensor.dataType();
+        if (type != DataType.UINT8 && type != DataType.INT8) {
+            return null;
+        }
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        return new TensorQuantization(params.getScale(), params.getZeroPoint(), type == DataType.INT8);
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.pot_hole.bench;
+
+import com.example.pot_hole.core.PixelNormalizer;
+import com.example.pot_hole.core.TileHeatmap;
+import com.example.pot_hole.core.TilePlanner;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A 1920x1080 photo from pixels to a decision with the float model: squeezed into one input,
+ * against cut into tiles run as one batch or one tile at a time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TiledModelBenchmark {
+
+    private static final int WIDTH = 1920;
+    private static final int HEIGHT = 1080;
+
+    @Param({"6", "12"})
+    public int maxTiles;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Interpreter single;
+    private Interpreter batched;
+    private int[] frame;
+    private int[] tile;
+    private TilePlanner.Plan plan;
+    private TilePlanner.Plan whole;
+    private ByteBuffer input;
+    private ByteBuffer batchInput;
+    private FloatBuffer[] batchViews;
+    private float[][] output;
+    private float[][] batchOutput;
+    private float[] scores;
+
+    @Setup
+    public void setUp() {
+        String path = System.getProperty("pothole.model");
+        if (path == null || !new File(path).isFile()) {
+            throw new IllegalStateException("No model, see bench/build.gradle.kts");
+        }
+        single = new Interpreter(new File(path), new Interpreter.Options().setNumThreads(threads));
+        if (single.getInputTensor(0).dataType() != DataType.FLOAT32) {
+            throw new IllegalStateException("Expects the float model");
+        }
+        TilePlanner planner = new TilePlanner(PixelNormalizer.INPUT_SIZE, 0.25, maxTiles);
+        plan = planner.plan(WIDTH, HEIGHT);
+        whole = planner.whole(WIDTH, HEIGHT);
+        int n = plan.count();
+        batched = new Interpreter(new File(path), new Interpreter.Options().setNumThreads(threads));
+        int[] shape = batched.getInputTensor(0).shape().clone();
+        shape[0] = n;
+        batched.resizeInput(0, shape);
+        batched.allocateTensors();
+
+        frame = BenchData.pixels(WIDTH * HEIGHT, 1);
+        tile = new int[PixelNormalizer.PIXEL_COUNT];
+        input = ByteBuffer.allocateDirect(PixelNormalizer.FLOAT_INPUT_BYTES).order(ByteOrder.nativeOrder());
+        batchInput = ByteBuffer.allocateDirect(n * PixelNormalizer.FLOAT_INPUT_BYTES).order(ByteOrder.nativeOrder());
+        batchViews = new FloatBuffer[n];
+        for (int i = 0; i < n; i++) {
+            batchInput.limit((i + 1) * PixelNormalizer.FLOAT_INPUT_BYTES).position(i * PixelNormalizer.FLOAT_INPUT_BYTES);
+            batchViews[i] = batchInput.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+        }
+        batchInput.clear();
+        int classes = single.getOutputTensor(0).shape()[1];
+        output = new float[1][classes];
+        batchOutput = new float[n][classes];
+        scores = new float[n];
+    }
+
+    @TearDown
+    public void tearDown() {
+        single.close();
+        batched.close();
+    }
+
+    /** The existing photo path: one downscaled input. */
+    @Benchmark
+    public float singleCrop() {
+        whole.extract(frame, 0, tile);
+        PixelNormalizer.toFloatRgb(tile, input.asFloatBuffer());
+        input.rewind();
+        single.run(input, output);
+        return output[0][0];
+    }
+
+    @Benchmark
+    public float tiledBatch() {
+        for (int i = 0; i < plan.count(); i++) {
+            plan.extract(frame, i, tile);
+            PixelNormalizer.toFloatRgb(tile, batchViews[i]);
+        }
+        batchInput.rewind();
+        batched.run(batchInput, batchOutput);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = batchOutput[i][0];
+        }
+        return TileHeatmap.merge(plan, scores, 6, 4).probability();
+    }
+
+    /** What a delegate backend does: the tiles through the single-input interpreter in turn. */
+    @Benchmark
+    public float tiledSequential() {
+        for (int i = 0; i < plan.count(); i++) {
+            plan.extract(frame, i, tile);
+            PixelNormalizer.toFloatRgb(tile, input.asFloatBuffer());
+            input.rewind();
+            single.run(input, output);
+            scores[i] = output[0][0];
+        }
+        return TileHeatmap.merge(plan, scores, 6, 4).probability();
+    }
+}
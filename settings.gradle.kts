@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "pot_hole"
 include(":app")
+include(":bench")